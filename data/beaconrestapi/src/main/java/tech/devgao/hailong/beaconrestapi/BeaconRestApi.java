@@ -16,6 +16,7 @@ package tech.devgao.hailong.beaconrestapi;
 import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
 
 import io.javalin.Javalin;
+import io.javalin.http.Context;
 import java.util.ArrayList;
 import java.util.List;
 import tech.devgao.hailong.beaconrestapi.beaconhandlers.BeaconBlockHandler;
@@ -31,6 +32,8 @@ import tech.devgao.hailong.beaconrestapi.networkhandlers.PeersHandler;
 import tech.devgao.hailong.networking.p2p.network.P2PNetwork;
 import tech.devgao.hailong.provider.JsonProvider;
 import tech.devgao.hailong.storage.ChainStorageClient;
+import tech.devgao.hailong.storage.api.StorageQueryChannel;
+import tech.devgao.hailong.util.async.SafeFuture;
 
 public class BeaconRestApi {
 
@@ -39,6 +42,7 @@ public class BeaconRestApi {
 
   public BeaconRestApi(
       ChainStorageClient chainStorageClient,
+      StorageQueryChannel historicalChainData,
       P2PNetwork<?> p2pNetwork,
       final int requestedPortNumber) {
     app = Javalin.create();
@@ -46,7 +50,7 @@ public class BeaconRestApi {
 
     handlers.add(new GenesisTimeHandler(chainStorageClient));
     handlers.add(new BeaconHeadHandler(chainStorageClient));
-    handlers.add(new BeaconBlockHandler(chainStorageClient));
+    handlers.add(new BeaconBlockHandler(chainStorageClient, historicalChainData));
     handlers.add(new BeaconStateHandler(chainStorageClient));
     handlers.add(new FinalizedCheckpointHandler(chainStorageClient));
     handlers.add(new PeerIdHandler(p2pNetwork));
@@ -67,14 +71,23 @@ public class BeaconRestApi {
                 ctx -> {
                   ctx.contentType("application/json");
                   final Object response = handler.handleRequest(new RequestParams(ctx));
-                  if (response != null) {
-                    ctx.result(JsonProvider.objectToJSON(response));
+                  if (response instanceof SafeFuture) {
+                    ctx.result(
+                        ((SafeFuture<?>) response).thenApply(result -> toJson(ctx, result)));
                   } else {
-                    ctx.status(SC_NOT_FOUND).result(JsonProvider.objectToJSON("Not found"));
+                    ctx.result(toJson(ctx, response));
                   }
                 }));
   }
 
+  private static String toJson(final Context ctx, final Object response) {
+    if (response == null) {
+      ctx.status(SC_NOT_FOUND);
+      return JsonProvider.objectToJSON("Not found");
+    }
+    return JsonProvider.objectToJSON(response);
+  }
+
   public void stop() {
     app.stop();
   }
@@ -15,14 +15,20 @@ package tech.devgao.hailong.beaconrestapi.beaconhandlers;
 
 import org.apache.tuweni.bytes.Bytes32;
 import tech.devgao.hailong.beaconrestapi.handlerinterfaces.BeaconRestApiHandler;
+import tech.devgao.hailong.datastructures.blocks.BeaconBlock;
+import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
 import tech.devgao.hailong.storage.ChainStorageClient;
+import tech.devgao.hailong.storage.Store;
+import tech.devgao.hailong.storage.api.StorageQueryChannel;
 
 public class BeaconBlockHandler implements BeaconRestApiHandler {
 
   private final ChainStorageClient client;
+  private final StorageQueryChannel historicalChainData;
 
-  public BeaconBlockHandler(ChainStorageClient client) {
+  public BeaconBlockHandler(ChainStorageClient client, StorageQueryChannel historicalChainData) {
     this.client = client;
+    this.historicalChainData = historicalChainData;
   }
 
   @Override
@@ -33,6 +39,14 @@ public class BeaconBlockHandler implements BeaconRestApiHandler {
   @Override
   public Object handleRequest(RequestParams param) {
     Bytes32 root = Bytes32.fromHexString(param.getQueryParam("root"));
-    return client.getStore() != null ? client.getStore().getBlock(root) : null;
+    final Store store = client.getStore();
+    final BeaconBlock block = store != null ? store.getBlock(root) : null;
+    if (block != null) {
+      return block;
+    }
+    // Blocks pruned from the in-memory store are looked up in the database
+    return historicalChainData
+        .getBlockByRoot(root)
+        .thenApply(maybeBlock -> maybeBlock.map(SignedBeaconBlock::getMessage).orElse(null));
   }
 }
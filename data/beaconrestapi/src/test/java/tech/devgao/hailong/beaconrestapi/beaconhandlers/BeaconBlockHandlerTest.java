@@ -0,0 +1,79 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.beaconrestapi.beaconhandlers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static tech.devgao.hailong.util.async.SafeFuture.completedFuture;
+
+import java.util.Optional;
+import org.apache.tuweni.bytes.Bytes32;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tech.devgao.hailong.beaconrestapi.handlerinterfaces.BeaconRestApiHandler.RequestParams;
+import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
+import tech.devgao.hailong.datastructures.util.DataStructureUtil;
+import tech.devgao.hailong.storage.ChainStorageClient;
+import tech.devgao.hailong.storage.Store;
+import tech.devgao.hailong.storage.api.StorageQueryChannel;
+import tech.devgao.hailong.util.async.SafeFuture;
+
+class BeaconBlockHandlerTest {
+  private final SignedBeaconBlock block = DataStructureUtil.randomSignedBeaconBlock(1, 1);
+  private final Bytes32 root = block.getMessage().hash_tree_root();
+  private final RequestParams requestParams = mock(RequestParams.class);
+  private final ChainStorageClient storageClient = mock(ChainStorageClient.class);
+  private final Store store = mock(Store.class);
+  private final StorageQueryChannel historicalChainData = mock(StorageQueryChannel.class);
+  private final BeaconBlockHandler handler =
+      new BeaconBlockHandler(storageClient, historicalChainData);
+
+  @BeforeEach
+  public void setUp() {
+    when(requestParams.getQueryParam("root")).thenReturn(root.toHexString());
+    when(storageClient.getStore()).thenReturn(store);
+  }
+
+  @Test
+  public void shouldReturnBlockFromStore() {
+    when(store.getBlock(root)).thenReturn(block.getMessage());
+
+    assertThat(handler.handleRequest(requestParams)).isEqualTo(block.getMessage());
+    verifyNoInteractions(historicalChainData);
+  }
+
+  @Test
+  public void shouldQueryDatabaseWhenBlockIsNotInStore() {
+    when(historicalChainData.getBlockByRoot(root)).thenReturn(completedFuture(Optional.of(block)));
+
+    assertThat(getFutureResult()).isEqualTo(block.getMessage());
+  }
+
+  @Test
+  public void shouldReturnNullWhenBlockIsNotFound() {
+    when(historicalChainData.getBlockByRoot(root)).thenReturn(completedFuture(Optional.empty()));
+
+    assertThat(getFutureResult()).isNull();
+  }
+
+  private Object getFutureResult() {
+    final Object response = handler.handleRequest(requestParams);
+    assertThat(response).isInstanceOf(SafeFuture.class);
+    final SafeFuture<?> result = (SafeFuture<?>) response;
+    assertThat(result).isCompleted();
+    return result.join();
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2020 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.benchmarks;
+
+import static tech.devgao.hailong.datastructures.util.DataStructureUtil.randomBeaconState;
+import static tech.devgao.hailong.datastructures.util.DataStructureUtil.randomBytes32;
+import static tech.devgao.hailong.datastructures.util.DataStructureUtil.randomPublicKey;
+
+import com.google.common.primitives.UnsignedLong;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.ssz.SSZ;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.devgao.hailong.datastructures.state.BeaconState;
+import tech.devgao.hailong.datastructures.state.BeaconStateWithCache;
+import tech.devgao.hailong.datastructures.state.Validator;
+import tech.devgao.hailong.util.SSZTypes.SSZList;
+import tech.devgao.hailong.util.bls.BLSPublicKey;
+import tech.devgao.hailong.util.config.Constants;
+import tech.devgao.hailong.util.hashtree.HashTreeUtil;
+import tech.devgao.hailong.util.hashtree.HashTreeUtil.SSZTypes;
+
+/**
+ * Compares hashing the validator registry from scratch with the incremental hash of a state where
+ * only the validators and balances touched by a typical block have changed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BeaconStateHashBenchmark {
+
+  // Roughly the number of balances updated by the attestations in one block
+  private static final int CHANGED_BALANCES = 128;
+
+  @Param({"16384", "65536", "300000"})
+  int validatorsCount;
+
+  private BeaconState baseState;
+  private BeaconState state;
+  private int round;
+
+  @Setup(Level.Trial)
+  public void init() {
+    // Generating a key per validator is too slow for large registries and doesn't affect hashing
+    final BLSPublicKey pubkey = randomPublicKey(0);
+    final List<Validator> validators = new ArrayList<>(validatorsCount);
+    final List<UnsignedLong> balances = new ArrayList<>(validatorsCount);
+    for (int i = 0; i < validatorsCount; i++) {
+      validators.add(
+          new Validator(
+              pubkey,
+              randomBytes32(i),
+              UnsignedLong.valueOf(Constants.MAX_EFFECTIVE_BALANCE),
+              false,
+              UnsignedLong.ZERO,
+              UnsignedLong.ZERO,
+              Constants.FAR_FUTURE_EPOCH,
+              Constants.FAR_FUTURE_EPOCH));
+      balances.add(UnsignedLong.valueOf(Constants.MAX_EFFECTIVE_BALANCE));
+    }
+
+    baseState = randomBeaconState(1);
+    baseState.setValidators(
+        new SSZList<>(validators, Constants.VALIDATOR_REGISTRY_LIMIT, Validator.class));
+    baseState.setBalances(
+        new SSZList<>(balances, Constants.VALIDATOR_REGISTRY_LIMIT, UnsignedLong.class));
+    baseState.hash_tree_root();
+  }
+
+  @Setup(Level.Invocation)
+  public void applyBlockChanges() {
+    state = BeaconStateWithCache.deepCopy(baseState);
+    state.incrementSlot();
+    final List<UnsignedLong> balances = state.getBalances();
+    for (int i = 0; i < CHANGED_BALANCES; i++) {
+      final int index = (round * CHANGED_BALANCES + i * 7919) % validatorsCount;
+      balances.set(index, balances.get(index).plus(UnsignedLong.ONE));
+    }
+    final int validatorIndex = round % validatorsCount;
+    final Validator validator = state.getValidators().get(validatorIndex).copy();
+    validator.setSlashed(true);
+    state.getValidators().set(validatorIndex, validator);
+    round++;
+  }
+
+  @Benchmark
+  public Bytes32 fullRegistryHash() {
+    return HashTreeUtil.merkleize(
+        List.of(
+            HashTreeUtil.hash_tree_root(
+                SSZTypes.LIST_OF_COMPOSITE,
+                Constants.VALIDATOR_REGISTRY_LIMIT,
+                state.getValidators()),
+            HashTreeUtil.hash_tree_root_list_ul(
+                Constants.VALIDATOR_REGISTRY_LIMIT,
+                state.getBalances().stream()
+                    .map(balance -> SSZ.encodeUInt64(balance.longValue()))
+                    .collect(Collectors.toList()))));
+  }
+
+  @Benchmark
+  public Bytes32 incrementalRegistryHash() {
+    return HashTreeUtil.merkleize(
+        List.of(
+            HashTreeUtil.hash_tree_root_list_composite(
+                Constants.VALIDATOR_REGISTRY_LIMIT, state.getValidators()),
+            HashTreeUtil.hash_tree_root_list_unsigned_long(
+                Constants.VALIDATOR_REGISTRY_LIMIT, state.getBalances())));
+  }
+
+  @Benchmark
+  public Bytes32 incrementalStateHash() {
+    return state.hash_tree_root();
+  }
+}
@@ -105,7 +105,7 @@ public class DepositData implements Merkleizable, SimpleOffsetSerializable, SSZC
 
   public Bytes serialize() {
     return Bytes.wrap(
-        pubkey.getPublicKey().toBytesCompressed(),
+        pubkey.toBytesCompressed(),
         withdrawal_credentials,
         Bytes.ofUnsignedLong(amount.longValue()),
         signature.toBytes());
@@ -530,9 +530,9 @@ public class BeaconState implements Merkleizable, SimpleOffsetSerializable, SSZC
 
             // History
             latest_block_header.hash_tree_root(),
-            HashTreeUtil.hash_tree_root(SSZTypes.VECTOR_OF_COMPOSITE, block_roots),
-            HashTreeUtil.hash_tree_root(SSZTypes.VECTOR_OF_COMPOSITE, state_roots),
-            HashTreeUtil.hash_tree_root_list_bytes(
+            HashTreeUtil.hash_tree_root_vector_bytes32(block_roots),
+            HashTreeUtil.hash_tree_root_vector_bytes32(state_roots),
+            HashTreeUtil.hash_tree_root_list_bytes32(
                 Constants.HISTORICAL_ROOTS_LIMIT, historical_roots),
 
             // Ethereum 1.0 chain data
@@ -545,16 +545,13 @@ public class BeaconState implements Merkleizable, SimpleOffsetSerializable, SSZC
                 SSZTypes.BASIC, SSZ.encodeUInt64(eth1_deposit_index.longValue())),
 
             // Validator registry
-            HashTreeUtil.hash_tree_root(
-                SSZTypes.LIST_OF_COMPOSITE, Constants.VALIDATOR_REGISTRY_LIMIT, validators),
-            HashTreeUtil.hash_tree_root_list_ul(
-                Constants.VALIDATOR_REGISTRY_LIMIT,
-                balances.stream()
-                    .map(item -> SSZ.encodeUInt64(item.longValue()))
-                    .collect(Collectors.toList())),
+            HashTreeUtil.hash_tree_root_list_composite(
+                Constants.VALIDATOR_REGISTRY_LIMIT, validators),
+            HashTreeUtil.hash_tree_root_list_unsigned_long(
+                Constants.VALIDATOR_REGISTRY_LIMIT, balances),
 
             // Randomness
-            HashTreeUtil.hash_tree_root(SSZTypes.VECTOR_OF_COMPOSITE, randao_mixes),
+            HashTreeUtil.hash_tree_root_vector_bytes32(randao_mixes),
 
             // Slashings
             HashTreeUtil.hash_tree_root_vector_unsigned_long(slashings),
@@ -14,9 +14,7 @@
 package tech.devgao.hailong.datastructures.state;
 
 import com.google.common.primitives.UnsignedLong;
-import java.util.List;
 import org.apache.tuweni.bytes.Bytes32;
-import tech.devgao.hailong.datastructures.Copyable;
 import tech.devgao.hailong.datastructures.blocks.BeaconBlockHeader;
 import tech.devgao.hailong.datastructures.blocks.Eth1Data;
 import tech.devgao.hailong.util.SSZTypes.Bitvector;
@@ -138,22 +136,17 @@ public final class BeaconStateWithCache extends BeaconState {
     this.transitionCaches = transitionCaches;
   }
 
+  /**
+   * Creates an independent copy of the given state.
+   *
+   * <p>The SSZ lists and vectors in the copy share structure with the original, so this is O(1) in
+   * the number of validators. List elements are treated as immutable and are replaced rather than
+   * modified when the state is updated.
+   *
+   * @param state state to copy
+   * @return the copied state, with a copy of the original's caches if it had any
+   */
   public static BeaconStateWithCache deepCopy(BeaconState state) {
-    final SSZList<Validator> validators =
-        copyList(
-            state.getValidators(),
-            new SSZList<>(Validator.class, state.getValidators().getMaxSize()));
-    final SSZList<PendingAttestation> previous_epoch_attestations =
-        copyList(
-            state.getPrevious_epoch_attestations(),
-            new SSZList<>(
-                PendingAttestation.class, state.getPrevious_epoch_attestations().getMaxSize()));
-    final SSZList<PendingAttestation> current_epoch_attestations =
-        copyList(
-            state.getCurrent_epoch_attestations(),
-            new SSZList<>(
-                PendingAttestation.class, state.getCurrent_epoch_attestations().getMaxSize()));
-
     return new BeaconStateWithCache(
         state.getGenesis_time(),
         state.getSlot(),
@@ -171,7 +164,7 @@ public final class BeaconStateWithCache extends BeaconState {
         state.getEth1_deposit_index(),
 
         // Registry
-        validators,
+        new SSZList<>(state.getValidators()),
         new SSZList<>(state.getBalances()),
 
         // Randomness
@@ -181,8 +174,8 @@ public final class BeaconStateWithCache extends BeaconState {
         new SSZVector<>(state.getSlashings()),
 
         // Attestations
-        previous_epoch_attestations,
-        current_epoch_attestations,
+        new SSZList<>(state.getPrevious_epoch_attestations()),
+        new SSZList<>(state.getCurrent_epoch_attestations()),
 
         // Finality
         state.getJustification_bits().copy(),
@@ -234,12 +227,4 @@ public final class BeaconStateWithCache extends BeaconState {
   public TransitionCaches getTransitionCaches() {
     return transitionCaches;
   }
-
-  private static <S extends Copyable<S>, T extends List<S>> T copyList(
-      T sourceList, T destinationList) {
-    for (S sourceItem : sourceList) {
-      destinationList.add(sourceItem.copy());
-    }
-    return destinationList;
-  }
 }
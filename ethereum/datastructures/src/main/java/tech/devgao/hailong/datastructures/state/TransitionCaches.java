@@ -16,6 +16,7 @@ package tech.devgao.hailong.datastructures.state;
 import com.google.common.primitives.UnsignedLong;
 import java.util.List;
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.tuweni.bytes.Bytes32;
 import tech.devgao.hailong.datastructures.util.cache.Cache;
 import tech.devgao.hailong.datastructures.util.cache.LRUCache;
 import tech.devgao.hailong.datastructures.util.cache.NoOpCache;
@@ -27,12 +28,19 @@ public class TransitionCaches {
   private static int MAX_BEACON_PROPOSER_INDEX_CACHE = 1;
   private static int MAX_BEACON_COMMITTEE_CACHE = 64 * 64;
   private static int MAX_TOTAL_ACTIVE_BALANCE_CACHE = 1;
+  private static int MAX_SHUFFLING_CACHE = 8;
+
+  // A shuffling depends only on the seed and the number of active validators, so one cache is
+  // shared by every state rather than being copied with it
+  private static final Cache<Pair<Bytes32, Integer>, int[]> SHARED_SHUFFLING =
+      new LRUCache<>(MAX_SHUFFLING_CACHE);
 
   private static final TransitionCaches NO_OP_INSTANCE =
       new TransitionCaches(
           NoOpCache.getNoOpCache(),
           NoOpCache.getNoOpCache(),
           NoOpCache.getNoOpCache(),
+          NoOpCache.getNoOpCache(),
           NoOpCache.getNoOpCache()) {
 
         @Override
@@ -55,23 +63,27 @@ public class TransitionCaches {
   private final Cache<UnsignedLong, Integer> beaconProposerIndex;
   private final Cache<Pair<UnsignedLong, UnsignedLong>, List<Integer>> beaconCommittee;
   private final Cache<UnsignedLong, UnsignedLong> totalActiveBalance;
+  private final Cache<Pair<Bytes32, Integer>, int[]> shuffling;
 
   private TransitionCaches() {
     activeValidators = new LRUCache<>(MAX_ACTIVE_VALIDATORS_CACHE);
     beaconProposerIndex = new LRUCache<>(MAX_BEACON_PROPOSER_INDEX_CACHE);
     beaconCommittee = new LRUCache<>(MAX_BEACON_COMMITTEE_CACHE);
     totalActiveBalance = new LRUCache<>(MAX_TOTAL_ACTIVE_BALANCE_CACHE);
+    shuffling = SHARED_SHUFFLING;
   }
 
   private TransitionCaches(
       Cache<UnsignedLong, List<Integer>> activeValidators,
       Cache<UnsignedLong, Integer> beaconProposerIndex,
       Cache<Pair<UnsignedLong, UnsignedLong>, List<Integer>> beaconCommittee,
-      Cache<UnsignedLong, UnsignedLong> totalActiveBalance) {
+      Cache<UnsignedLong, UnsignedLong> totalActiveBalance,
+      Cache<Pair<Bytes32, Integer>, int[]> shuffling) {
     this.activeValidators = activeValidators;
     this.beaconProposerIndex = beaconProposerIndex;
     this.beaconCommittee = beaconCommittee;
     this.totalActiveBalance = totalActiveBalance;
+    this.shuffling = shuffling;
   }
 
   /** (epoch) -> (active validators) cache */
@@ -94,15 +106,26 @@ public class TransitionCaches {
     return totalActiveBalance;
   }
 
+  /**
+   * (seed, active validator count) -> (shuffled positions) cache, shared by all states. Entry
+   * {@code i} of a shuffling is {@code compute_shuffled_index(i, count, seed)}. The arrays must
+   * not be modified.
+   */
+  public Cache<Pair<Bytes32, Integer>, int[]> getShuffling() {
+    return shuffling;
+  }
+
   /**
    * Makes an independent copy which contains all the data in this instance Modifications to
-   * returned caches shouldn't affect caches from this instance
+   * returned caches shouldn't affect caches from this instance. The shuffling cache isn't
+   * state-specific and remains shared.
    */
   public TransitionCaches copy() {
     return new TransitionCaches(
         activeValidators.copy(),
         beaconProposerIndex.copy(),
         beaconCommittee.copy(),
-        totalActiveBalance.copy());
+        totalActiveBalance.copy(),
+        shuffling);
   }
 }
@@ -44,7 +44,7 @@ import tech.devgao.hailong.util.SSZTypes.Bitlist;
 import tech.devgao.hailong.util.SSZTypes.SSZList;
 import tech.devgao.hailong.util.bls.BLSPublicKey;
 import tech.devgao.hailong.util.bls.BLSSignature;
-import tech.devgao.hailong.util.bls.BLSVerify;
+import tech.devgao.hailong.util.bls.BLSSignatureVerifier;
 
 public class AttestationUtil {
 
@@ -137,6 +137,22 @@ public class AttestationUtil {
    */
   public static Boolean is_valid_indexed_attestation(
       BeaconState state, IndexedAttestation indexed_attestation) {
+    return is_valid_indexed_attestation(state, indexed_attestation, BLSSignatureVerifier.SIMPLE);
+  }
+
+  /**
+   * Verify validity of ``indexed_attestation``, checking its signature with the given verifier.
+   *
+   * @param state
+   * @param indexed_attestation
+   * @param signatureVerifier
+   * @see
+   *     <a>https://github.com/ethereum/eth2.0-specs/blob/v0.8.0/specs/core/0_beacon-chain.md#is_valid_indexed_attestation</a>
+   */
+  public static Boolean is_valid_indexed_attestation(
+      BeaconState state,
+      IndexedAttestation indexed_attestation,
+      BLSSignatureVerifier signatureVerifier) {
     List<UnsignedLong> attesting_indices = indexed_attestation.getAttesting_indices();
 
     if (!(attesting_indices.size() <= MAX_VALIDATORS_PER_COMMITTEE)) {
@@ -167,7 +183,7 @@ public class AttestationUtil {
     Bytes domain =
         get_domain(
             state, DOMAIN_BEACON_ATTESTER, indexed_attestation.getData().getTarget().getEpoch());
-    if (!BLSVerify.bls_verify(pubkey, message_hash, signature, domain)) {
+    if (!signatureVerifier.verify(pubkey, message_hash, signature, domain)) {
       STDOUT.log(
           Level.WARN, "AttestationUtil.is_valid_indexed_attestation: Verify aggregate signature");
       return false;
@@ -141,7 +141,7 @@ public class BeaconStateUtil {
     IntStream.range(0, state.getValidators().size())
         .forEach(
             index -> {
-              Validator validator = state.getValidators().get(index);
+              Validator validator = state.getValidators().get(index).copy();
               UnsignedLong balance = state.getBalances().get(index);
               UnsignedLong effective_balance =
                   min(
@@ -155,6 +155,7 @@ public class BeaconStateUtil {
                 validator.setActivation_eligibility_epoch(UnsignedLong.valueOf(GENESIS_EPOCH));
                 validator.setActivation_epoch(UnsignedLong.valueOf(GENESIS_EPOCH));
               }
+              state.getValidators().set(index, validator);
             });
 
     return state;
@@ -468,9 +469,11 @@ public class BeaconStateUtil {
     }
 
     // Set validator exit epoch and withdrawable epoch
+    validator = validator.copy();
     validator.setExit_epoch(exit_queue_epoch);
     validator.setWithdrawable_epoch(
         validator.getExit_epoch().plus(UnsignedLong.valueOf(MIN_VALIDATOR_WITHDRAWABILITY_DELAY)));
+    state.getValidators().set(index, validator);
   }
 
   /**
@@ -487,12 +490,13 @@ public class BeaconStateUtil {
       BeaconState state, int slashed_index, int whistleblower_index) {
     UnsignedLong epoch = get_current_epoch(state);
     initiate_validator_exit(state, slashed_index);
-    Validator validator = state.getValidators().get(slashed_index);
+    Validator validator = state.getValidators().get(slashed_index).copy();
     validator.setSlashed(true);
     validator.setWithdrawable_epoch(
         max(
             validator.getWithdrawable_epoch(),
             epoch.plus(UnsignedLong.valueOf(EPOCHS_PER_SLASHINGS_VECTOR))));
+    state.getValidators().set(slashed_index, validator);
     int index = epoch.mod(UnsignedLong.valueOf(EPOCHS_PER_SLASHINGS_VECTOR)).intValue();
     state
         .getSlashings()
@@ -616,10 +620,11 @@ public class BeaconStateUtil {
 
       Bytes roundAsByte = Bytes.of((byte) round);
 
-      Bytes hashBytes = Bytes.EMPTY;
+      // Copy the hashes into one array, as repeatedly wrapping Bytes makes each lookup linear
+      byte[] hashBytes = new byte[((list_size + 255) / 256) * Bytes32.SIZE];
       for (int i = 0; i < (list_size + 255) / 256; i++) {
         Bytes iAsBytes4 = int_to_bytes(i, 4);
-        hashBytes = Bytes.wrap(hashBytes, Hash.sha2_256(Bytes.wrap(seed, roundAsByte, iAsBytes4)));
+        Hash.sha2_256(Bytes.wrap(seed, roundAsByte, iAsBytes4)).copyTo(hashBytes, i * Bytes32.SIZE);
       }
 
       // This needs to be unsigned modulo.
@@ -638,7 +643,7 @@ public class BeaconStateUtil {
         }
 
         int hashPosition = (indices[i] < flip) ? flip : indices[i];
-        byte theByte = hashBytes.get(hashPosition / 8);
+        byte theByte = hashBytes[hashPosition / 8];
         byte theMask = powerOfTwoNumbers[hashPosition % 8];
         if ((theByte & theMask) != 0) {
           indices[i] = flip;
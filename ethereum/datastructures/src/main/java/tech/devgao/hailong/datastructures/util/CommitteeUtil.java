@@ -28,6 +28,7 @@ import static tech.devgao.hailong.util.config.Constants.SLOTS_PER_EPOCH;
 
 import com.google.common.primitives.UnsignedBytes;
 import com.google.common.primitives.UnsignedLong;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -144,6 +145,45 @@ public class CommitteeUtil {
         .collect(Collectors.toList());
   }
 
+  /**
+   * Computes indices of a new committee from a precomputed shuffling, equivalent to {@link
+   * #compute_committee(List, Bytes32, int, int)} where {@code shuffling[i]} is {@code
+   * compute_shuffled_index(i, indices.size(), seed)}.
+   *
+   * @param indices
+   * @param shuffling
+   * @param index
+   * @param count
+   * @return
+   */
+  public static List<Integer> compute_committee(
+      List<Integer> indices, int[] shuffling, int index, int count) {
+    checkArgument(
+        shuffling.length == indices.size(), "CommitteeUtil.compute_committee shuffling size");
+    int start = Math.floorDiv(indices.size() * index, count);
+    int end = Math.floorDiv(indices.size() * (index + 1), count);
+    List<Integer> committee = new ArrayList<>(end - start);
+    for (int i = start; i < end; i++) {
+      committee.add(indices.get(shuffling[i]));
+    }
+    return committee;
+  }
+
+  /**
+   * Returns the shuffling of the active validators for ``seed``, computing the whole list at once
+   * rather than an index at a time and caching it for every committee of the epoch.
+   *
+   * @param state
+   * @param indices the active validator indices
+   * @param seed
+   * @return the shuffled positions in ``indices``
+   */
+  static int[] get_shuffling(BeaconState state, List<Integer> indices, Bytes32 seed) {
+    return BeaconStateWithCache.getTransitionCaches(state)
+        .getShuffling()
+        .get(Pair.of(seed, indices.size()), key -> BeaconStateUtil.shuffle(indices.size(), seed));
+  }
+
   /**
    * Return the beacon committee at ``slot`` for ``index``.
    *
@@ -170,11 +210,10 @@ public class CommitteeUtil {
               int count =
                   toIntExact(
                       committees_per_slot.times(UnsignedLong.valueOf(SLOTS_PER_EPOCH)).longValue());
+              List<Integer> indices = get_active_validator_indices(state, epoch);
+              Bytes32 seed = get_seed(state, epoch, DOMAIN_BEACON_ATTESTER);
               return compute_committee(
-                  get_active_validator_indices(state, epoch),
-                  get_seed(state, epoch, DOMAIN_BEACON_ATTESTER),
-                  committeeIndex,
-                  count);
+                  indices, get_shuffling(state, indices, seed), committeeIndex, count);
             });
   }
 }
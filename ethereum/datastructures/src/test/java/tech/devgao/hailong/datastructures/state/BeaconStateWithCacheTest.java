@@ -99,8 +99,9 @@ class BeaconStateWithCacheTest {
                     UnsignedLong.ZERO)));
     state.setValidators(new SSZList<>(new_records, VALIDATOR_REGISTRY_LIMIT, Validator.class));
     BeaconState deepCopy = BeaconStateWithCache.deepCopy(state);
-    Validator validator = deepCopy.getValidators().get(0);
+    Validator validator = deepCopy.getValidators().get(0).copy();
     validator.setPubkey(BLSPublicKey.random(9999999));
+    deepCopy.getValidators().set(0, validator);
     assertThat(deepCopy.getValidators().get(0).getPubkey())
         .isNotEqualTo(state.getValidators().get(0).getPubkey());
   }
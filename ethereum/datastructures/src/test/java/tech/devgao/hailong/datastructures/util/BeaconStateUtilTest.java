@@ -30,6 +30,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.bytes.Bytes32;
 import org.apache.tuweni.junit.BouncyCastleExtension;
@@ -334,6 +336,20 @@ class BeaconStateUtilTest {
     }
   }
 
+  @Test
+  void succeedsWhenComputeCommitteeFromShufflingMatchesComputeCommittee() {
+    Bytes32 seed = Bytes32.leftPad(Bytes.ofUnsignedInt(200));
+    List<Integer> indices =
+        IntStream.range(0, 1000).map(i -> i * 3).boxed().collect(Collectors.toList());
+    int[] shuffling = BeaconStateUtil.shuffle(indices.size(), seed);
+    int count = 7;
+    for (int index = 0; index < count; index++) {
+      assertEquals(
+          CommitteeUtil.compute_committee(indices, seed, index, count),
+          CommitteeUtil.compute_committee(indices, shuffling, index, count));
+    }
+  }
+
   // *************** END Shuffling Tests *****************
 
   @Test
@@ -35,6 +35,7 @@ import tech.devgao.hailong.datastructures.state.BeaconStateWithCache;
 import tech.devgao.hailong.datastructures.util.BeaconStateUtil;
 import tech.devgao.hailong.datastructures.validator.Signer;
 import tech.devgao.hailong.statetransition.util.EpochProcessingException;
+import tech.devgao.hailong.statetransition.util.ProposerDutyIndex;
 import tech.devgao.hailong.statetransition.util.SlotProcessingException;
 import tech.devgao.hailong.statetransition.util.StartupUtil;
 import tech.devgao.hailong.util.SSZTypes.SSZList;
@@ -46,9 +47,16 @@ import tech.devgao.hailong.util.hashtree.HashTreeUtil.SSZTypes;
 
 public class BlockProposalUtil {
   private final StateTransition stateTransition;
+  private final ProposerDutyIndex proposerDutyIndex;
 
   public BlockProposalUtil(final StateTransition stateTransition) {
+    this(stateTransition, new ProposerDutyIndex(stateTransition));
+  }
+
+  public BlockProposalUtil(
+      final StateTransition stateTransition, final ProposerDutyIndex proposerDutyIndex) {
     this.stateTransition = stateTransition;
+    this.proposerDutyIndex = proposerDutyIndex;
   }
 
   public SignedBeaconBlock createNewBlock(
@@ -133,13 +141,12 @@ public class BlockProposalUtil {
   }
 
   public int getProposerIndexForSlot(final BeaconState preState, final UnsignedLong slot) {
-    BeaconStateWithCache state = BeaconStateWithCache.deepCopy(preState);
     try {
-      stateTransition.process_slots(state, slot, false);
+      return proposerDutyIndex.getProposerIndex(preState, slot);
     } catch (SlotProcessingException | EpochProcessingException e) {
       STDOUT.log(Level.FATAL, "Coordinator checking proposer index exception");
+      return BeaconStateUtil.get_beacon_proposer_index(preState);
     }
-    return BeaconStateUtil.get_beacon_proposer_index(state);
   }
 
   /**
@@ -21,11 +21,6 @@ import static tech.devgao.hailong.statetransition.util.BlockProcessorUtil.proces
 import static tech.devgao.hailong.statetransition.util.BlockProcessorUtil.process_eth1_data;
 import static tech.devgao.hailong.statetransition.util.BlockProcessorUtil.process_operations;
 import static tech.devgao.hailong.statetransition.util.BlockProcessorUtil.process_randao;
-import static tech.devgao.hailong.statetransition.util.EpochProcessorUtil.process_final_updates;
-import static tech.devgao.hailong.statetransition.util.EpochProcessorUtil.process_justification_and_finalization;
-import static tech.devgao.hailong.statetransition.util.EpochProcessorUtil.process_registry_updates;
-import static tech.devgao.hailong.statetransition.util.EpochProcessorUtil.process_rewards_and_penalties;
-import static tech.devgao.hailong.statetransition.util.EpochProcessorUtil.process_slashings;
 import static tech.devgao.hailong.util.alogger.ALogger.STDOUT;
 import static tech.devgao.hailong.util.async.SafeFuture.reportExceptions;
 import static tech.devgao.hailong.util.config.Constants.DOMAIN_BEACON_PROPOSER;
@@ -48,9 +43,11 @@ import tech.devgao.hailong.datastructures.state.Validator;
 import tech.devgao.hailong.metrics.EpochMetrics;
 import tech.devgao.hailong.statetransition.util.BlockProcessingException;
 import tech.devgao.hailong.statetransition.util.EpochProcessingException;
+import tech.devgao.hailong.statetransition.util.EpochProcessor;
 import tech.devgao.hailong.statetransition.util.SlotProcessingException;
 import tech.devgao.hailong.util.alogger.ALogger;
-import tech.devgao.hailong.util.bls.BLSVerify;
+import tech.devgao.hailong.util.bls.BLSSignatureVerifier;
+import tech.devgao.hailong.util.bls.BatchBLSSignatureVerifier;
 
 public class StateTransition {
 
@@ -72,6 +69,9 @@ public class StateTransition {
    * https://github.com/ethereum/eth2.0-specs/blob/v0.7.1/specs/core/0_beacon-chain.md#beacon-chain-state-transition-function
    * Runs state transition up to and with the given block
    *
+   * <p>Signatures in the block are collected while it is processed and checked together in a
+   * single batch once processing is complete.
+   *
    * @param state
    * @param signed_block
    * @param validateStateRootAndSignatures
@@ -83,17 +83,51 @@ public class StateTransition {
       SignedBeaconBlock signed_block,
       boolean validateStateRootAndSignatures)
       throws StateTransitionException {
+    return initiate(state, signed_block, validateStateRootAndSignatures, true);
+  }
+
+  /**
+   * Runs state transition up to and with the given block, optionally without checking the
+   * signatures of the block's operations.
+   *
+   * <p>Skipping every check is only safe for blocks which have already been fully validated, such
+   * as when replaying imported blocks to regenerate a state.
+   *
+   * @param state the state to transition, which is modified
+   * @param signed_block the block to apply
+   * @param validateStateRootAndSignatures whether to check the proposer signature, the randao
+   *     reveal and the state root
+   * @param validateOperationSignatures whether to check the signatures of the block's
+   *     attestations, slashings and exits
+   * @return the post-state
+   * @throws StateTransitionException if the block is invalid
+   */
+  public BeaconStateWithCache initiate(
+      BeaconStateWithCache state,
+      SignedBeaconBlock signed_block,
+      boolean validateStateRootAndSignatures,
+      boolean validateOperationSignatures)
+      throws StateTransitionException {
     try {
       // Process slots (including those with no blocks) since block
       process_slots(state, signed_block.getMessage().getSlot(), printEnabled);
 
+      final BatchBLSSignatureVerifier signatureVerifier = new BatchBLSSignatureVerifier();
       // Verify signature
       if (validateStateRootAndSignatures) {
         checkArgument(
-            verify_block_signature(state, signed_block), "state_transition: Verify signature");
+            verify_block_signature(state, signed_block, signatureVerifier),
+            "state_transition: Verify signature");
       }
       // Process_block
-      process_block(state, signed_block.getMessage(), validateStateRootAndSignatures);
+      process_block(
+          state,
+          signed_block.getMessage(),
+          validateStateRootAndSignatures ? signatureVerifier : BLSSignatureVerifier.NO_OP,
+          validateOperationSignatures ? signatureVerifier : BLSSignatureVerifier.NO_OP);
+      if (validateStateRootAndSignatures || validateOperationSignatures) {
+        checkArgument(signatureVerifier.batchVerify(), "state_transition: Verify block signatures");
+      }
 
       Bytes32 stateRoot = state.hash_tree_root();
       // Validate state root (`validate_state_root == True` in production)
@@ -118,10 +152,12 @@ public class StateTransition {
   }
 
   private static boolean verify_block_signature(
-      final BeaconState state, SignedBeaconBlock signed_block) {
+      final BeaconState state,
+      SignedBeaconBlock signed_block,
+      final BLSSignatureVerifier signatureVerifier) {
     final Validator proposer = state.getValidators().get(get_beacon_proposer_index(state));
     final Bytes domain = get_domain(state, DOMAIN_BEACON_PROPOSER);
-    return BLSVerify.bls_verify(
+    return signatureVerifier.verify(
         proposer.getPubkey(),
         signed_block.getMessage().hash_tree_root(),
         signed_block.getSignature(),
@@ -140,15 +176,20 @@ public class StateTransition {
    *
    * @param state
    * @param block
+   * @param randaoSignatureVerifier
+   * @param operationSignatureVerifier
    * @throws BlockProcessingException
    */
   private void process_block(
-      BeaconStateWithCache state, BeaconBlock block, boolean validateStateRootAndSignatures)
+      BeaconStateWithCache state,
+      BeaconBlock block,
+      BLSSignatureVerifier randaoSignatureVerifier,
+      BLSSignatureVerifier operationSignatureVerifier)
       throws BlockProcessingException {
     process_block_header(state, block);
-    process_randao(state, block.getBody(), validateStateRootAndSignatures);
+    process_randao(state, block.getBody(), randaoSignatureVerifier);
     process_eth1_data(state, block.getBody());
-    process_operations(state, block.getBody());
+    process_operations(state, block.getBody(), operationSignatureVerifier);
   }
 
   /**
@@ -156,20 +197,15 @@ public class StateTransition {
    * https://github.com/ethereum/eth2.0-specs/blob/v0.7.1/specs/core/0_beacon-chain.md#beacon-chain-state-transition-function
    * Processes epoch
    *
+   * <p>The steps are applied by {@link EpochProcessor} from a single pass over the validators,
+   * which is equivalent to calling the individual steps in {@link
+   * tech.devgao.hailong.statetransition.util.EpochProcessorUtil} in order.
+   *
    * @param state
    * @throws EpochProcessingException
    */
   private static void process_epoch(BeaconStateWithCache state) throws EpochProcessingException {
-    // Note: the lines with @ label here will be inserted here in a future phase
-    process_justification_and_finalization(state);
-    process_rewards_and_penalties(state);
-    process_registry_updates(state);
-    // @process_reveal_deadlines
-    // @process_challenge_deadlines
-    process_slashings(state);
-    // @update_period_committee
-    process_final_updates(state);
-    // @after_process_final_updates
+    EpochProcessor.process_epoch(state);
   }
 
   /**
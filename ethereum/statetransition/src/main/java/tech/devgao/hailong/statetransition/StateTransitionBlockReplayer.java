@@ -0,0 +1,36 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.statetransition;
+
+import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
+import tech.devgao.hailong.datastructures.state.BeaconState;
+import tech.devgao.hailong.datastructures.state.BeaconStateWithCache;
+import tech.devgao.hailong.storage.BlockReplayer;
+
+/**
+ * Replays blocks which were fully validated when they were imported. It runs the state transition
+ * without checking any signatures or the state root.
+ */
+public class StateTransitionBlockReplayer implements BlockReplayer {
+
+  @Override
+  public BeaconState replay(final BeaconState preState, final SignedBeaconBlock block) {
+    try {
+      return new StateTransition(false)
+          .initiate(BeaconStateWithCache.deepCopy(preState), block, false, false);
+    } catch (StateTransitionException e) {
+      throw new IllegalStateException("Failed to replay block at slot " + block.getSlot(), e);
+    }
+  }
+}
@@ -19,6 +19,7 @@ import tech.devgao.hailong.datastructures.operations.Attestation;
 import tech.devgao.hailong.statetransition.StateTransition;
 import tech.devgao.hailong.storage.ChainStorageClient;
 import tech.devgao.hailong.storage.Store;
+import tech.devgao.hailong.util.bls.BLSSignatureVerifier;
 
 public class ForkChoiceAttestationProcessor {
 
@@ -32,9 +33,19 @@ public class ForkChoiceAttestationProcessor {
   }
 
   public AttestationProcessingResult processAttestation(final Attestation attestation) {
+    return processAttestation(attestation, BLSSignatureVerifier.SIMPLE);
+  }
+
+  /** Applies an attestation whose signature was already verified, e.g. by gossip validation. */
+  public AttestationProcessingResult processVerifiedAttestation(final Attestation attestation) {
+    return processAttestation(attestation, BLSSignatureVerifier.NO_OP);
+  }
+
+  private AttestationProcessingResult processAttestation(
+      final Attestation attestation, final BLSSignatureVerifier signatureVerifier) {
     final Store.Transaction transaction = storageClient.startStoreTransaction();
     final AttestationProcessingResult result =
-        on_attestation(transaction, attestation, stateTransition);
+        on_attestation(transaction, attestation, stateTransition, signatureVerifier);
     if (result.isSuccessful()) {
       transaction.commit(() -> {}, "Failed to persist attestation result");
     }
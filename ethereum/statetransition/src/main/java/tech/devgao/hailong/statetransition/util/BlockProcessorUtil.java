@@ -32,7 +32,6 @@ import static tech.devgao.hailong.datastructures.util.CommitteeUtil.get_beacon_c
 import static tech.devgao.hailong.datastructures.util.ValidatorsUtil.is_active_validator;
 import static tech.devgao.hailong.datastructures.util.ValidatorsUtil.is_slashable_validator;
 import static tech.devgao.hailong.util.alogger.ALogger.STDOUT;
-import static tech.devgao.hailong.util.bls.BLSVerify.bls_verify;
 import static tech.devgao.hailong.util.config.Constants.DOMAIN_BEACON_PROPOSER;
 import static tech.devgao.hailong.util.config.Constants.DOMAIN_RANDAO;
 import static tech.devgao.hailong.util.config.Constants.DOMAIN_VOLUNTARY_EXIT;
@@ -69,6 +68,7 @@ import tech.devgao.hailong.datastructures.operations.VoluntaryExit;
 import tech.devgao.hailong.datastructures.state.BeaconState;
 import tech.devgao.hailong.datastructures.state.PendingAttestation;
 import tech.devgao.hailong.datastructures.state.Validator;
+import tech.devgao.hailong.util.bls.BLSSignatureVerifier;
 import tech.devgao.hailong.util.config.Constants;
 import tech.devgao.hailong.util.hashtree.HashTreeUtil;
 import tech.devgao.hailong.util.hashtree.HashTreeUtil.SSZTypes;
@@ -117,11 +117,13 @@ public final class BlockProcessorUtil {
    *
    * @param state
    * @param body
+   * @param signatureVerifier
    * @throws BlockProcessingException
    * @see
    *     <a>https://github.com/ethereum/eth2.0-specs/blob/v0.8.0/specs/core/0_beacon-chain.md#randao</a>
    */
-  public static void process_randao(BeaconState state, BeaconBlockBody body, boolean validateRandao)
+  public static void process_randao(
+      BeaconState state, BeaconBlockBody body, BLSSignatureVerifier signatureVerifier)
       throws BlockProcessingException {
     try {
       UnsignedLong epoch = get_current_epoch(state);
@@ -131,12 +133,11 @@ public final class BlockProcessorUtil {
       Bytes32 messageHash =
           HashTreeUtil.hash_tree_root(SSZTypes.BASIC, SSZ.encodeUInt64(epoch.longValue()));
       checkArgument(
-          !validateRandao
-              || bls_verify(
-                  proposer.getPubkey(),
-                  messageHash,
-                  body.getRandao_reveal(),
-                  get_domain(state, DOMAIN_RANDAO)),
+          signatureVerifier.verify(
+              proposer.getPubkey(),
+              messageHash,
+              body.getRandao_reveal(),
+              get_domain(state, DOMAIN_RANDAO)),
           "process_randao: Verify that the provided randao value is valid");
       // Mix in RANDAO reveal
       Bytes32 mix =
@@ -179,6 +180,22 @@ public final class BlockProcessorUtil {
    */
   public static void process_operations(BeaconState state, BeaconBlockBody body)
       throws BlockProcessingException {
+    process_operations(state, body, BLSSignatureVerifier.SIMPLE);
+  }
+
+  /**
+   * Processes all block body operations, checking signatures with the given verifier
+   *
+   * @param state
+   * @param body
+   * @param signatureVerifier
+   * @throws BlockProcessingException
+   * @see
+   *     <a>https://github.com/ethereum/eth2.0-specs/blob/v0.8.0/specs/core/0_beacon-chain.md#operations</a>
+   */
+  public static void process_operations(
+      BeaconState state, BeaconBlockBody body, BLSSignatureVerifier signatureVerifier)
+      throws BlockProcessingException {
     try {
 
       checkArgument(
@@ -193,11 +210,11 @@ public final class BlockProcessorUtil {
                           .longValue())),
           "process_operations: Verify that outstanding deposits are processed up to the maximum number of deposits");
 
-      process_proposer_slashings(state, body.getProposer_slashings());
-      process_attester_slashings(state, body.getAttester_slashings());
-      process_attestations(state, body.getAttestations());
+      process_proposer_slashings(state, body.getProposer_slashings(), signatureVerifier);
+      process_attester_slashings(state, body.getAttester_slashings(), signatureVerifier);
+      process_attestations(state, body.getAttestations(), signatureVerifier);
       process_deposits(state, body.getDeposits());
-      process_voluntary_exits(state, body.getVoluntary_exits());
+      process_voluntary_exits(state, body.getVoluntary_exits(), signatureVerifier);
       // @process_shard_receipt_proofs
     } catch (IllegalArgumentException e) {
       STDOUT.log(Level.WARN, e.getMessage());
@@ -216,6 +233,14 @@ public final class BlockProcessorUtil {
    */
   public static void process_proposer_slashings(
       BeaconState state, List<ProposerSlashing> proposerSlashings) throws BlockProcessingException {
+    process_proposer_slashings(state, proposerSlashings, BLSSignatureVerifier.SIMPLE);
+  }
+
+  public static void process_proposer_slashings(
+      BeaconState state,
+      List<ProposerSlashing> proposerSlashings,
+      BLSSignatureVerifier signatureVerifier)
+      throws BlockProcessingException {
     try {
       // For each proposer_slashing in block.body.proposer_slashings:
       for (ProposerSlashing proposer_slashing : proposerSlashings) {
@@ -248,7 +273,7 @@ public final class BlockProcessorUtil {
             "process_proposer_slashings: Check proposer is slashable");
 
         checkArgument(
-            bls_verify(
+            signatureVerifier.verify(
                 proposer.getPubkey(),
                 proposer_slashing.getHeader_1().getMessage().hash_tree_root(),
                 proposer_slashing.getHeader_1().getSignature(),
@@ -259,7 +284,7 @@ public final class BlockProcessorUtil {
             "process_proposer_slashings: Verify signatures are valid 1");
 
         checkArgument(
-            bls_verify(
+            signatureVerifier.verify(
                 proposer.getPubkey(),
                 proposer_slashing.getHeader_2().getMessage().hash_tree_root(),
                 proposer_slashing.getHeader_2().getSignature(),
@@ -288,6 +313,14 @@ public final class BlockProcessorUtil {
    */
   public static void process_attester_slashings(
       BeaconState state, List<AttesterSlashing> attesterSlashings) throws BlockProcessingException {
+    process_attester_slashings(state, attesterSlashings, BLSSignatureVerifier.SIMPLE);
+  }
+
+  public static void process_attester_slashings(
+      BeaconState state,
+      List<AttesterSlashing> attesterSlashings,
+      BLSSignatureVerifier signatureVerifier)
+      throws BlockProcessingException {
     try {
 
       // For each attester_slashing in block.body.attester_slashings:
@@ -300,10 +333,10 @@ public final class BlockProcessorUtil {
             "process_attester_slashings: Verify if attestations are slashable");
 
         checkArgument(
-            is_valid_indexed_attestation(state, attestation_1),
+            is_valid_indexed_attestation(state, attestation_1, signatureVerifier),
             "process_attester_slashings: Is valid indexed attestation 1");
         checkArgument(
-            is_valid_indexed_attestation(state, attestation_2),
+            is_valid_indexed_attestation(state, attestation_2, signatureVerifier),
             "process_attester_slashings: Is valid indexed attestation 2");
         boolean slashed_any = false;
 
@@ -339,6 +372,12 @@ public final class BlockProcessorUtil {
    */
   public static void process_attestations(BeaconState state, List<Attestation> attestations)
       throws BlockProcessingException {
+    process_attestations(state, attestations, BLSSignatureVerifier.SIMPLE);
+  }
+
+  public static void process_attestations(
+      BeaconState state, List<Attestation> attestations, BLSSignatureVerifier signatureVerifier)
+      throws BlockProcessingException {
     try {
 
       for (Attestation attestation : attestations) {
@@ -392,7 +431,10 @@ public final class BlockProcessorUtil {
 
       attestations.stream()
           .parallel()
-          .filter(a -> !is_valid_indexed_attestation(state, get_indexed_attestation(state, a)))
+          .filter(
+              a ->
+                  !is_valid_indexed_attestation(
+                      state, get_indexed_attestation(state, a), signatureVerifier))
           .findAny()
           .ifPresent(
               invalidAttestation -> {
@@ -437,6 +479,12 @@ public final class BlockProcessorUtil {
    */
   public static void process_voluntary_exits(BeaconState state, List<SignedVoluntaryExit> exits)
       throws BlockProcessingException {
+    process_voluntary_exits(state, exits, BLSSignatureVerifier.SIMPLE);
+  }
+
+  public static void process_voluntary_exits(
+      BeaconState state, List<SignedVoluntaryExit> exits, BLSSignatureVerifier signatureVerifier)
+      throws BlockProcessingException {
     try {
 
       // For each exit in block.body.voluntaryExits:
@@ -472,7 +520,7 @@ public final class BlockProcessorUtil {
 
         Bytes domain = get_domain(state, DOMAIN_VOLUNTARY_EXIT, exit.getEpoch());
         checkArgument(
-            bls_verify(
+            signatureVerifier.verify(
                 validator.getPubkey(), exit.hash_tree_root(), signedExit.getSignature(), domain),
             "process_voluntary_exits: Verify signature");
 
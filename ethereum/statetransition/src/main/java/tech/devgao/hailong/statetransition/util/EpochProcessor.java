@@ -0,0 +1,262 @@
+/*
+ * Copyright 2020 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.statetransition.util;
+
+import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.compute_activation_exit_epoch;
+import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.get_current_epoch;
+import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.get_previous_epoch;
+import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.get_validator_churn_limit;
+import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.initiate_validator_exit;
+import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.integer_squareroot;
+import static tech.devgao.hailong.datastructures.util.ValidatorsUtil.is_eligible_for_activation;
+import static tech.devgao.hailong.statetransition.util.ValidatorStatuses.ELIGIBLE;
+import static tech.devgao.hailong.statetransition.util.ValidatorStatuses.PREVIOUS_EPOCH_HEAD_ATTESTER;
+import static tech.devgao.hailong.statetransition.util.ValidatorStatuses.PREVIOUS_EPOCH_SOURCE_ATTESTER;
+import static tech.devgao.hailong.statetransition.util.ValidatorStatuses.PREVIOUS_EPOCH_TARGET_ATTESTER;
+import static tech.devgao.hailong.util.config.Constants.BASE_REWARDS_PER_EPOCH;
+import static tech.devgao.hailong.util.config.Constants.BASE_REWARD_FACTOR;
+import static tech.devgao.hailong.util.config.Constants.EFFECTIVE_BALANCE_INCREMENT;
+import static tech.devgao.hailong.util.config.Constants.GENESIS_EPOCH;
+import static tech.devgao.hailong.util.config.Constants.INACTIVITY_PENALTY_QUOTIENT;
+import static tech.devgao.hailong.util.config.Constants.MAX_EFFECTIVE_BALANCE;
+import static tech.devgao.hailong.util.config.Constants.MIN_EPOCHS_TO_INACTIVITY_PENALTY;
+import static tech.devgao.hailong.util.config.Constants.PROPOSER_REWARD_QUOTIENT;
+
+import com.google.common.primitives.UnsignedLong;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import tech.devgao.hailong.datastructures.state.BeaconState;
+import tech.devgao.hailong.datastructures.state.BeaconStateWithCache;
+import tech.devgao.hailong.datastructures.state.Validator;
+
+/**
+ * Processes an epoch transition from {@link ValidatorStatuses} gathered in one pass, rather than
+ * rescanning the validators and attestations in each step the way {@link EpochProcessorUtil} does.
+ *
+ * <p>The result is identical to applying the steps of {@link EpochProcessorUtil} in order. Rewards,
+ * penalties and balances are computed on primitive arrays, and the balances are written back to the
+ * state once.
+ */
+public final class EpochProcessor {
+
+  private EpochProcessor() {}
+
+  /**
+   * Processes justification and finalization, rewards and penalties, registry updates, slashings
+   * and final updates.
+   *
+   * @param state
+   * @throws EpochProcessingException
+   * @see
+   *     <a>https://github.com/ethereum/eth2.0-specs/blob/v0.8.0/specs/core/0_beacon-chain.md#epoch-processing</a>
+   */
+  public static void process_epoch(BeaconStateWithCache state) throws EpochProcessingException {
+    try {
+      final ValidatorStatuses statuses = ValidatorStatuses.create(state);
+      process_justification_and_finalization(state, statuses);
+      process_rewards_and_penalties(state, statuses);
+      process_registry_updates(state, statuses);
+      process_slashings(state, statuses);
+      write_balances(state, statuses);
+      process_final_updates(state, statuses);
+    } catch (IllegalArgumentException e) {
+      throw new EpochProcessingException(e);
+    }
+  }
+
+  private static void process_justification_and_finalization(
+      BeaconState state, ValidatorStatuses statuses) {
+    if (get_current_epoch(state).compareTo(UnsignedLong.valueOf(GENESIS_EPOCH + 1)) <= 0) {
+      return;
+    }
+    EpochProcessorUtil.weigh_justification_and_finalization(
+        state,
+        UnsignedLong.fromLongBits(statuses.getCurrentEpochActiveBalance()),
+        UnsignedLong.fromLongBits(statuses.getPreviousEpochTargetBalance()),
+        UnsignedLong.fromLongBits(statuses.getCurrentEpochTargetBalance()));
+  }
+
+  private static void process_rewards_and_penalties(
+      BeaconState state, ValidatorStatuses statuses) {
+    if (get_current_epoch(state).equals(UnsignedLong.valueOf(GENESIS_EPOCH))) {
+      return;
+    }
+
+    final int validatorCount = statuses.getValidatorCount();
+    final long[] rewards = new long[validatorCount];
+    final long[] penalties = new long[validatorCount];
+    final long totalBalance = statuses.getCurrentEpochActiveBalance();
+    final long totalBalanceSqrt =
+        integer_squareroot(UnsignedLong.fromLongBits(totalBalance)).longValue();
+    final long finalityDelay =
+        get_previous_epoch(state).minus(state.getFinalized_checkpoint().getEpoch()).longValue();
+    final boolean inactivityLeak = finalityDelay > MIN_EPOCHS_TO_INACTIVITY_PENALTY;
+
+    final byte[] components = {
+      PREVIOUS_EPOCH_SOURCE_ATTESTER, PREVIOUS_EPOCH_TARGET_ATTESTER, PREVIOUS_EPOCH_HEAD_ATTESTER
+    };
+    final long[] attestingBalances = {
+      statuses.getPreviousEpochSourceBalance(),
+      statuses.getPreviousEpochTargetBalance(),
+      statuses.getPreviousEpochHeadBalance()
+    };
+
+    for (int index = 0; index < validatorCount; index++) {
+      final long baseReward = get_base_reward(statuses, index, totalBalanceSqrt);
+
+      // Proposer and inclusion delay micro-rewards
+      if (statuses.isUnslashedAttester(index, PREVIOUS_EPOCH_SOURCE_ATTESTER)) {
+        final long proposerReward = Long.divideUnsigned(baseReward, PROPOSER_REWARD_QUOTIENT);
+        rewards[statuses.getInclusionProposer(index)] += proposerReward;
+        rewards[index] +=
+            Long.divideUnsigned(baseReward - proposerReward, statuses.getInclusionDelay(index));
+      }
+
+      if (!statuses.hasFlags(index, ELIGIBLE)) {
+        continue;
+      }
+
+      // Micro-incentives for matching FFG source, FFG target, and head
+      for (int i = 0; i < components.length; i++) {
+        if (statuses.isUnslashedAttester(index, components[i])) {
+          rewards[index] += Long.divideUnsigned(baseReward * attestingBalances[i], totalBalance);
+        } else {
+          penalties[index] += baseReward;
+        }
+      }
+
+      // Inactivity penalty
+      if (inactivityLeak) {
+        penalties[index] += BASE_REWARDS_PER_EPOCH * baseReward;
+        if (!statuses.isUnslashedAttester(index, PREVIOUS_EPOCH_TARGET_ATTESTER)) {
+          penalties[index] +=
+              Long.divideUnsigned(
+                  statuses.getEffectiveBalance(index) * finalityDelay,
+                  INACTIVITY_PENALTY_QUOTIENT);
+        }
+      }
+    }
+
+    final long[] balances = statuses.getBalances();
+    for (int index = 0; index < validatorCount; index++) {
+      balances[index] += rewards[index];
+      balances[index] = decrease_balance(balances[index], penalties[index]);
+    }
+  }
+
+  private static long get_base_reward(
+      ValidatorStatuses statuses, int index, long totalBalanceSqrt) {
+    return Long.divideUnsigned(
+        Long.divideUnsigned(
+            statuses.getEffectiveBalance(index) * BASE_REWARD_FACTOR, totalBalanceSqrt),
+        BASE_REWARDS_PER_EPOCH);
+  }
+
+  private static void process_registry_updates(BeaconState state, ValidatorStatuses statuses) {
+    final UnsignedLong currentEpoch = get_current_epoch(state);
+    final List<Validator> validators = state.getValidators();
+
+    // Process activation eligibility and ejections
+    for (int index : statuses.getEligibleForActivationQueue()) {
+      final Validator validator = validators.get(index).copy();
+      validator.setActivation_eligibility_epoch(currentEpoch.plus(UnsignedLong.ONE));
+      validators.set(index, validator);
+    }
+    for (int index : statuses.getEjectable()) {
+      initiate_validator_exit(state, index);
+    }
+
+    // Queue validators eligible for activation and not yet dequeued for activation
+    final List<Integer> activationQueue =
+        statuses.getPendingActivation().stream()
+            .filter(index -> is_eligible_for_activation(state, validators.get(index)))
+            .sorted(
+                Comparator.<Integer, UnsignedLong>comparing(
+                        index -> validators.get(index).getActivation_eligibility_epoch())
+                    .thenComparing(Comparator.naturalOrder()))
+            .collect(Collectors.toList());
+
+    // Dequeued validators for activation up to churn limit (without resetting activation epoch)
+    final int churnLimit = get_validator_churn_limit(state).intValue();
+    final UnsignedLong activationEpoch = compute_activation_exit_epoch(currentEpoch);
+    for (int index : activationQueue.subList(0, Math.min(churnLimit, activationQueue.size()))) {
+      final Validator validator = validators.get(index).copy();
+      validator.setActivation_epoch(activationEpoch);
+      validators.set(index, validator);
+    }
+  }
+
+  private static void process_slashings(BeaconState state, ValidatorStatuses statuses) {
+    if (statuses.getSlashingPenaltyDue().isEmpty()) {
+      return;
+    }
+    final long totalBalance = statuses.getCurrentEpochActiveBalance();
+    final long slashingsSum =
+        state.getSlashings().stream().mapToLong(UnsignedLong::longValue).sum() * 3;
+    final long adjustedTotalSlashingBalance =
+        UnsignedLong.valueOf(slashingsSum).compareTo(UnsignedLong.fromLongBits(totalBalance)) < 0
+            ? slashingsSum
+            : totalBalance;
+
+    final long[] balances = statuses.getBalances();
+    for (int index : statuses.getSlashingPenaltyDue()) {
+      final long penaltyNumerator =
+          Long.divideUnsigned(statuses.getEffectiveBalance(index), EFFECTIVE_BALANCE_INCREMENT)
+              * adjustedTotalSlashingBalance;
+      final long penalty =
+          Long.divideUnsigned(penaltyNumerator, totalBalance) * EFFECTIVE_BALANCE_INCREMENT;
+      balances[index] = decrease_balance(balances[index], penalty);
+    }
+  }
+
+  private static void write_balances(BeaconState state, ValidatorStatuses statuses) {
+    final long[] balances = statuses.getBalances();
+    final List<UnsignedLong> stateBalances = state.getBalances();
+    for (int index = 0; index < balances.length; index++) {
+      if (stateBalances.get(index).longValue() != balances[index]) {
+        stateBalances.set(index, UnsignedLong.fromLongBits(balances[index]));
+      }
+    }
+  }
+
+  private static void process_final_updates(BeaconState state, ValidatorStatuses statuses) {
+    // Update effective balances with hysteresis
+    final long halfIncrement = EFFECTIVE_BALANCE_INCREMENT / 2;
+    final long[] balances = statuses.getBalances();
+    final List<Validator> validators = state.getValidators();
+    for (int index = 0; index < balances.length; index++) {
+      final long balance = balances[index];
+      final long effectiveBalance = statuses.getEffectiveBalance(index);
+      if (Long.compareUnsigned(balance, effectiveBalance) < 0
+          || Long.compareUnsigned(effectiveBalance + 3 * halfIncrement, balance) < 0) {
+        final long newEffectiveBalance =
+            balance - Long.remainderUnsigned(balance, EFFECTIVE_BALANCE_INCREMENT);
+        final Validator validator = validators.get(index).copy();
+        validator.setEffective_balance(
+            UnsignedLong.fromLongBits(
+                Long.compareUnsigned(newEffectiveBalance, MAX_EFFECTIVE_BALANCE) < 0
+                    ? newEffectiveBalance
+                    : MAX_EFFECTIVE_BALANCE));
+        validators.set(index, validator);
+      }
+    }
+
+    EpochProcessorUtil.process_final_updates_except_effective_balances(state);
+  }
+
+  private static long decrease_balance(long balance, long delta) {
+    return Long.compareUnsigned(delta, balance) > 0 ? 0 : balance - delta;
+  }
+}
@@ -202,74 +202,93 @@ public final class EpochProcessorUtil {
 
       UnsignedLong previous_epoch = get_previous_epoch(state);
       UnsignedLong current_epoch = get_current_epoch(state);
-      Checkpoint old_previous_justified_checkpoint = state.getPrevious_justified_checkpoint();
-      Checkpoint old_current_justified_checkpoint = state.getCurrent_justified_checkpoint();
-
-      // Process justifications
-      state.setPrevious_justified_checkpoint(state.getCurrent_justified_checkpoint());
-      Bitvector justificationBits = state.getJustification_bits().rightShift(1);
-
-      List<PendingAttestation> matching_target_attestations =
-          get_matching_target_attestations(state, previous_epoch);
-      if (get_attesting_balance(state, matching_target_attestations)
-              .times(UnsignedLong.valueOf(3))
-              .compareTo(get_total_active_balance(state).times(UnsignedLong.valueOf(2)))
-          >= 0) {
-        Checkpoint newCheckpoint =
-            new Checkpoint(previous_epoch, get_block_root(state, previous_epoch));
-        state.setCurrent_justified_checkpoint(newCheckpoint);
-        justificationBits.setBit(1);
-      }
-      matching_target_attestations = get_matching_target_attestations(state, current_epoch);
-      if (get_attesting_balance(state, matching_target_attestations)
-              .times(UnsignedLong.valueOf(3))
-              .compareTo(get_total_active_balance(state).times(UnsignedLong.valueOf(2)))
-          >= 0) {
-        Checkpoint newCheckpoint =
-            new Checkpoint(current_epoch, get_block_root(state, current_epoch));
-        state.setCurrent_justified_checkpoint(newCheckpoint);
-        justificationBits.setBit(0);
-      }
+      weigh_justification_and_finalization(
+          state,
+          get_total_active_balance(state),
+          get_attesting_balance(state, get_matching_target_attestations(state, previous_epoch)),
+          get_attesting_balance(state, get_matching_target_attestations(state, current_epoch)));
+    } catch (IllegalArgumentException e) {
+      throw new EpochProcessingException(e);
+    }
+  }
 
-      state.setJustification_bits(justificationBits);
+  /**
+   * Updates the justified and finalized checkpoints given the balance attesting to the previous and
+   * current epoch targets.
+   *
+   * @param state
+   * @param total_active_balance
+   * @param previous_epoch_target_balance
+   * @param current_epoch_target_balance
+   */
+  static void weigh_justification_and_finalization(
+      BeaconState state,
+      UnsignedLong total_active_balance,
+      UnsignedLong previous_epoch_target_balance,
+      UnsignedLong current_epoch_target_balance) {
+    UnsignedLong previous_epoch = get_previous_epoch(state);
+    UnsignedLong current_epoch = get_current_epoch(state);
+    Checkpoint old_previous_justified_checkpoint = state.getPrevious_justified_checkpoint();
+    Checkpoint old_current_justified_checkpoint = state.getCurrent_justified_checkpoint();
+
+    // Process justifications
+    state.setPrevious_justified_checkpoint(state.getCurrent_justified_checkpoint());
+    Bitvector justificationBits = state.getJustification_bits().rightShift(1);
+
+    if (previous_epoch_target_balance
+            .times(UnsignedLong.valueOf(3))
+            .compareTo(total_active_balance.times(UnsignedLong.valueOf(2)))
+        >= 0) {
+      Checkpoint newCheckpoint =
+          new Checkpoint(previous_epoch, get_block_root(state, previous_epoch));
+      state.setCurrent_justified_checkpoint(newCheckpoint);
+      justificationBits.setBit(1);
+    }
+    if (current_epoch_target_balance
+            .times(UnsignedLong.valueOf(3))
+            .compareTo(total_active_balance.times(UnsignedLong.valueOf(2)))
+        >= 0) {
+      Checkpoint newCheckpoint =
+          new Checkpoint(current_epoch, get_block_root(state, current_epoch));
+      state.setCurrent_justified_checkpoint(newCheckpoint);
+      justificationBits.setBit(0);
+    }
 
-      // Process finalizations
+    state.setJustification_bits(justificationBits);
 
-      // The 2nd/3rd/4th most recent epochs are justified, the 2nd using the 4th as source
-      if (all(justificationBits, 1, 4)
-          && old_previous_justified_checkpoint
-              .getEpoch()
-              .plus(UnsignedLong.valueOf(3))
-              .equals(current_epoch)) {
-        state.setFinalized_checkpoint(old_previous_justified_checkpoint);
-      }
-      // The 2nd/3rd most recent epochs are justified, the 2nd using the 3rd as source
-      if (all(justificationBits, 1, 3)
-          && old_previous_justified_checkpoint
-              .getEpoch()
-              .plus(UnsignedLong.valueOf(2))
-              .equals(current_epoch)) {
-        state.setFinalized_checkpoint(old_previous_justified_checkpoint);
-      }
-      // The 1st/2nd/3rd most recent epochs are justified, the 1st using the 3rd as source
-      if (all(justificationBits, 0, 3)
-          && old_current_justified_checkpoint
-              .getEpoch()
-              .plus(UnsignedLong.valueOf(2))
-              .equals(current_epoch)) {
-        state.setFinalized_checkpoint(old_current_justified_checkpoint);
-      }
-      // The 1st/2nd most recent epochs are justified, the 1st using the 2nd as source
-      if (all(justificationBits, 0, 2)
-          && old_current_justified_checkpoint
-              .getEpoch()
-              .plus(UnsignedLong.valueOf(1))
-              .equals(current_epoch)) {
-        state.setFinalized_checkpoint(old_current_justified_checkpoint);
-      }
+    // Process finalizations
 
-    } catch (IllegalArgumentException e) {
-      throw new EpochProcessingException(e);
+    // The 2nd/3rd/4th most recent epochs are justified, the 2nd using the 4th as source
+    if (all(justificationBits, 1, 4)
+        && old_previous_justified_checkpoint
+            .getEpoch()
+            .plus(UnsignedLong.valueOf(3))
+            .equals(current_epoch)) {
+      state.setFinalized_checkpoint(old_previous_justified_checkpoint);
+    }
+    // The 2nd/3rd most recent epochs are justified, the 2nd using the 3rd as source
+    if (all(justificationBits, 1, 3)
+        && old_previous_justified_checkpoint
+            .getEpoch()
+            .plus(UnsignedLong.valueOf(2))
+            .equals(current_epoch)) {
+      state.setFinalized_checkpoint(old_previous_justified_checkpoint);
+    }
+    // The 1st/2nd/3rd most recent epochs are justified, the 1st using the 3rd as source
+    if (all(justificationBits, 0, 3)
+        && old_current_justified_checkpoint
+            .getEpoch()
+            .plus(UnsignedLong.valueOf(2))
+            .equals(current_epoch)) {
+      state.setFinalized_checkpoint(old_current_justified_checkpoint);
+    }
+    // The 1st/2nd most recent epochs are justified, the 1st using the 2nd as source
+    if (all(justificationBits, 0, 2)
+        && old_current_justified_checkpoint
+            .getEpoch()
+            .plus(UnsignedLong.valueOf(1))
+            .equals(current_epoch)) {
+      state.setFinalized_checkpoint(old_current_justified_checkpoint);
     }
   }
 
@@ -473,8 +492,10 @@ public final class EpochProcessorUtil {
         Validator validator = validators.get(index);
 
         if (is_eligible_for_activation_queue(validator)) {
+          validator = validator.copy();
           validator.setActivation_eligibility_epoch(
               get_current_epoch(state).plus(UnsignedLong.ONE));
+          validators.set(index, validator);
         }
 
         if (is_active_validator(validator, get_current_epoch(state))
@@ -518,8 +539,9 @@ public final class EpochProcessorUtil {
       int churn_limit = get_validator_churn_limit(state).intValue();
       int sublist_size = Math.min(churn_limit, activation_queue.size());
       for (Integer index : activation_queue.subList(0, sublist_size)) {
-        Validator validator = state.getValidators().get(index);
+        Validator validator = state.getValidators().get(index).copy();
         validator.setActivation_epoch(compute_activation_exit_epoch(get_current_epoch(state)));
+        state.getValidators().set(index, validator);
       }
     } catch (IllegalArgumentException e) {
       throw new EpochProcessingException(e);
@@ -569,18 +591,6 @@ public final class EpochProcessorUtil {
    *     <a>https://github.com/ethereum/eth2.0-specs/blob/v0.8.0/specs/core/0_beacon-chain.md#final-updates</a>
    */
   public static void process_final_updates(BeaconState state) {
-    UnsignedLong current_epoch = get_current_epoch(state);
-    UnsignedLong next_epoch = current_epoch.plus(UnsignedLong.ONE);
-
-    // Reset eth1 data votes
-    if (state
-        .getSlot()
-        .plus(UnsignedLong.ONE)
-        .mod(UnsignedLong.valueOf(Constants.SLOTS_PER_ETH1_VOTING_PERIOD))
-        .equals(UnsignedLong.ZERO)) {
-      state.setEth1_data_votes(new SSZList<>(Eth1Data.class, SLOTS_PER_ETH1_VOTING_PERIOD));
-    }
-
     // Update effective balances with hysteresis
     List<Validator> validators = state.getValidators();
     List<UnsignedLong> balances = state.getBalances();
@@ -594,13 +604,37 @@ public final class EpochProcessorUtil {
                   .plus(UnsignedLong.valueOf(3 * HALF_INCREMENT))
                   .compareTo(balance)
               < 0) {
+        validator = validator.copy();
         validator.setEffective_balance(
             min(
                 balance.minus(balance.mod(UnsignedLong.valueOf(EFFECTIVE_BALANCE_INCREMENT))),
                 UnsignedLong.valueOf(MAX_EFFECTIVE_BALANCE)));
+        validators.set(index, validator);
       }
     }
 
+    process_final_updates_except_effective_balances(state);
+  }
+
+  /**
+   * Processes the final updates other than effective balance updates, which are independent of
+   * them.
+   *
+   * @param state
+   */
+  static void process_final_updates_except_effective_balances(BeaconState state) {
+    UnsignedLong current_epoch = get_current_epoch(state);
+    UnsignedLong next_epoch = current_epoch.plus(UnsignedLong.ONE);
+
+    // Reset eth1 data votes
+    if (state
+        .getSlot()
+        .plus(UnsignedLong.ONE)
+        .mod(UnsignedLong.valueOf(Constants.SLOTS_PER_ETH1_VOTING_PERIOD))
+        .equals(UnsignedLong.ZERO)) {
+      state.setEth1_data_votes(new SSZList<>(Eth1Data.class, SLOTS_PER_ETH1_VOTING_PERIOD));
+    }
+
     // Reset slashings
     int index = next_epoch.mod(UnsignedLong.valueOf(EPOCHS_PER_SLASHINGS_VECTOR)).intValue();
     state.getSlashings().set(index, UnsignedLong.ZERO);
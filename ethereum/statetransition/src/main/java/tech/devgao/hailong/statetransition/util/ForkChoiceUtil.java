@@ -17,8 +17,6 @@ import static tech.devgao.hailong.datastructures.util.AttestationUtil.get_indexe
 import static tech.devgao.hailong.datastructures.util.AttestationUtil.is_valid_indexed_attestation;
 import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.compute_epoch_at_slot;
 import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.compute_start_slot_at_epoch;
-import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.get_current_epoch;
-import static tech.devgao.hailong.datastructures.util.ValidatorsUtil.get_active_validator_indices;
 import static tech.devgao.hailong.util.config.Constants.GENESIS_EPOCH;
 import static tech.devgao.hailong.util.config.Constants.GENESIS_SLOT;
 import static tech.devgao.hailong.util.config.Constants.SAFE_SLOTS_TO_UPDATE_JUSTIFIED;
@@ -26,15 +24,8 @@ import static tech.devgao.hailong.util.config.Constants.SECONDS_PER_SLOT;
 
 import com.google.common.primitives.UnsignedLong;
 import java.time.Instant;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Optional;
-import java.util.stream.Collectors;
 import javax.annotation.CheckReturnValue;
-import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.bytes.Bytes32;
 import tech.devgao.hailong.data.BlockProcessingRecord;
 import tech.devgao.hailong.datastructures.blocks.BeaconBlock;
@@ -51,6 +42,8 @@ import tech.devgao.hailong.statetransition.blockimport.BlockImportResult;
 import tech.devgao.hailong.storage.ReadOnlyStore;
 import tech.devgao.hailong.storage.Store;
 import tech.devgao.hailong.storage.Store.Transaction;
+import tech.devgao.hailong.storage.votes.VoteTable;
+import tech.devgao.hailong.util.bls.BLSSignatureVerifier;
 
 public class ForkChoiceUtil {
   public static UnsignedLong get_slots_since_genesis(ReadOnlyStore store, boolean useUnixTime) {
@@ -93,84 +86,11 @@ public class ForkChoiceUtil {
   }
 
   /**
-   * Gets the latest attesting balance for the given block root
+   * Gets the root of the head block according to LMD-GHOST.
    *
-   * @param store
-   * @param root
-   * @see
-   *     <a>https://github.com/ethereum/eth2.0-specs/blob/v0.8.1/specs/core/0_fork-choice.md#get_latest_attesting_balance</a>
-   */
-  public static UnsignedLong get_latest_attesting_balance(Store store, Bytes32 root) {
-    BeaconState state = store.getCheckpointState(store.getJustifiedCheckpoint());
-    List<Integer> active_indices = get_active_validator_indices(state, get_current_epoch(state));
-    return UnsignedLong.valueOf(
-        active_indices.stream()
-            .filter(
-                i ->
-                    store.containsLatestMessage(UnsignedLong.valueOf(i))
-                        && get_ancestor(
-                                store,
-                                store.getLatestMessage(UnsignedLong.valueOf(i)).getRoot(),
-                                store.getBlock(root).getSlot())
-                            .equals(root))
-            .map(i -> state.getValidators().get(i).getEffective_balance())
-            .mapToLong(UnsignedLong::longValue)
-            .sum());
-  }
-
-  public static boolean filter_block_tree(
-      ReadOnlyStore store, Bytes32 block_root, Map<Bytes32, BeaconBlock> blocks) {
-    BeaconBlock block = store.getBlock(block_root);
-    List<Bytes32> children =
-        store.getBlockRoots().stream()
-            .filter(root -> store.getBlock(root).getParent_root().equals(block_root))
-            .collect(Collectors.toList());
-    // If any children branches contain expected finalized/justified checkpoints,
-    // add to filtered block-tree and signal viability to parent
-    if (!children.isEmpty()) {
-      boolean filter_block_tree_result =
-          children.stream()
-              .map(child -> filter_block_tree(store, child, blocks))
-              .reduce((a, b) -> a || b)
-              .orElse(false);
-      if (filter_block_tree_result) {
-        blocks.put(block_root, block);
-        return true;
-      }
-      return false;
-    }
-
-    BeaconState head_state = store.getBlockState(block_root);
-    boolean correct_justified =
-        store.getJustifiedCheckpoint().getEpoch().equals(UnsignedLong.valueOf(GENESIS_EPOCH))
-            || head_state.getCurrent_justified_checkpoint().equals(store.getJustifiedCheckpoint());
-    boolean correct_finalized =
-        store.getFinalizedCheckpoint().getEpoch().equals(UnsignedLong.valueOf(GENESIS_EPOCH))
-            || head_state.getFinalized_checkpoint().equals(store.getFinalizedCheckpoint());
-
-    if (correct_justified && correct_finalized) {
-      blocks.put(block_root, block);
-      return true;
-    }
-    return false;
-  }
-
-  /**
-   * Retrieve a filtered block tree from store, only returning branches whose leaf state's
-   * justified/finalized info agrees with that in store.
-   *
-   * @param store
-   * @return
-   */
-  public static Map<Bytes32, BeaconBlock> get_filtered_block_tree(Store store) {
-    Bytes32 base = store.getJustifiedCheckpoint().getRoot();
-    Map<Bytes32, BeaconBlock> blocks = new HashMap<>();
-    filter_block_tree(store, base, blocks);
-    return blocks;
-  }
-
-  /**
-   * Gets the root of the head block according to LMD-GHOST
+   * <p>Rather than rebuilding the filtered block tree and re-counting every validator's latest
+   * message for each candidate, this delegates to the store's proto-array, which is kept up to
+   * date as blocks and attestations are committed.
    *
    * @param store
    * @return
@@ -178,47 +98,9 @@ public class ForkChoiceUtil {
    *     <a>https://github.com/ethereum/eth2.0-specs/blob/v0.8.1/specs/core/0_fork-choice.md#get_head</a>
    */
   public static Bytes32 get_head(Store store) {
-    // Get filtered block tree that only includes viable branches
-    final Map<Bytes32, BeaconBlock> blocks = get_filtered_block_tree(store);
-
-    // Execute the LMD-GHOST fork choice
-    Bytes32 head = store.getJustifiedCheckpoint().getRoot();
-    UnsignedLong justified_slot = store.getJustifiedCheckpoint().getEpochSlot();
-
-    while (true) {
-      final Bytes32 head_in_filter = head;
-      List<Bytes32> children =
-          blocks.entrySet().stream()
-              .filter(
-                  (entry) -> {
-                    final BeaconBlock block = entry.getValue();
-                    return block.getParent_root().equals(head_in_filter)
-                        && block.getSlot().compareTo(justified_slot) > 0;
-                  })
-              .map(Entry::getKey)
-              .collect(Collectors.toList());
-
-      if (children.size() == 0) {
-        return head;
-      }
-
-      // Sort by latest attesting balance with ties broken lexicographically
-      UnsignedLong max_value = UnsignedLong.ZERO;
-      for (Bytes32 child : children) {
-        UnsignedLong curr_value = get_latest_attesting_balance(store, child);
-        if (curr_value.compareTo(max_value) > 0) {
-          max_value = curr_value;
-        }
-      }
-
-      final UnsignedLong max = max_value;
-      head =
-          children.stream()
-              .filter(child -> get_latest_attesting_balance(store, child).compareTo(max) == 0)
-              .max(Comparator.comparing(Bytes::toHexString))
-              .get();
-    }
+    return store.getForkChoiceStrategy().findHead(store);
   }
+
   /*
   To address the bouncing attack, only update conflicting justified
   checkpoints in the fork choice if in the early slots of the epoch.
@@ -325,13 +207,11 @@ public class ForkChoiceUtil {
       try {
         if (justifiedCheckpoint.getEpoch().compareTo(store.getBestJustifiedCheckpoint().getEpoch())
             > 0) {
-          storeCheckpointState(
-              store, st, justifiedCheckpoint, store.getBlockState(justifiedCheckpoint.getRoot()));
+          getOrStoreCheckpointState(store, st, justifiedCheckpoint);
           store.setBestJustifiedCheckpoint(justifiedCheckpoint);
         }
         if (should_update_justified_checkpoint(store, justifiedCheckpoint)) {
-          storeCheckpointState(
-              store, st, justifiedCheckpoint, store.getBlockState(justifiedCheckpoint.getRoot()));
+          getOrStoreCheckpointState(store, st, justifiedCheckpoint);
           store.setJustifiedCheckpoint(justifiedCheckpoint);
         }
       } catch (SlotProcessingException | EpochProcessingException e) {
@@ -343,8 +223,7 @@ public class ForkChoiceUtil {
     final Checkpoint finalizedCheckpoint = state.getFinalized_checkpoint();
     if (finalizedCheckpoint.getEpoch().compareTo(store.getFinalizedCheckpoint().getEpoch()) > 0) {
       try {
-        storeCheckpointState(
-            store, st, finalizedCheckpoint, store.getBlockState(finalizedCheckpoint.getRoot()));
+        getOrStoreCheckpointState(store, st, finalizedCheckpoint);
       } catch (SlotProcessingException | EpochProcessingException e) {
         return BlockImportResult.failedStateTransition(e);
       }
@@ -410,6 +289,25 @@ public class ForkChoiceUtil {
   @CheckReturnValue
   public static AttestationProcessingResult on_attestation(
       Store.Transaction store, Attestation attestation, StateTransition stateTransition) {
+    return on_attestation(store, attestation, stateTransition, BLSSignatureVerifier.SIMPLE);
+  }
+
+  /**
+   * Run ``on_attestation``, checking the attestation signature with the given verifier. Callers
+   * that have already verified the signature, such as gossip validation, can pass {@link
+   * BLSSignatureVerifier#NO_OP} to avoid verifying it twice.
+   *
+   * @param store
+   * @param attestation
+   * @param stateTransition
+   * @param signatureVerifier
+   */
+  @CheckReturnValue
+  public static AttestationProcessingResult on_attestation(
+      Store.Transaction store,
+      Attestation attestation,
+      StateTransition stateTransition,
+      BLSSignatureVerifier signatureVerifier) {
 
     Checkpoint target = attestation.getData().getTarget();
 
@@ -465,49 +363,57 @@ public class ForkChoiceUtil {
     }
 
     // Store target checkpoint state if not yet seen
-    BeaconState targetRootState = store.getBlockState(target.getRoot());
+    final BeaconState target_state;
     try {
-      storeCheckpointState(store, stateTransition, target, targetRootState);
+      target_state = getOrStoreCheckpointState(store, stateTransition, target);
     } catch (SlotProcessingException e) {
       return AttestationProcessingResult.failedStateTransition(e);
     } catch (EpochProcessingException e) {
       return AttestationProcessingResult.failedStateTransition(e);
     }
-    BeaconState target_state = store.getCheckpointState(target);
 
     // Get state at the `target` to validate attestation and calculate the committees
     IndexedAttestation indexed_attestation = get_indexed_attestation(target_state, attestation);
-    if (!is_valid_indexed_attestation(target_state, indexed_attestation)) {
+    if (!is_valid_indexed_attestation(target_state, indexed_attestation, signatureVerifier)) {
       return AttestationProcessingResult.invalid("on_attestation: Attestation is not valid");
     }
 
-    // Update latest messages
+    // Update latest messages, comparing primitive epochs to avoid a checkpoint per attester
+    final long targetEpoch = target.getEpoch().longValue();
+    final Bytes32 beaconBlockRoot = attestation.getData().getBeacon_block_root();
     for (UnsignedLong i : indexed_attestation.getAttesting_indices()) {
-      if (!store.containsLatestMessage(i)
-          || target.getEpoch().compareTo(store.getLatestMessage(i).getEpoch()) > 0) {
-        store.putLatestMessage(
-            i, new Checkpoint(target.getEpoch(), attestation.getData().getBeacon_block_root()));
+      final int validatorIndex = i.intValue();
+      final long previousEpoch = store.getLatestMessageEpoch(validatorIndex);
+      if (previousEpoch == VoteTable.NO_VOTE
+          || Long.compareUnsigned(targetEpoch, previousEpoch) > 0) {
+        store.putLatestMessage(validatorIndex, targetEpoch, beaconBlockRoot);
       }
     }
     return AttestationProcessingResult.SUCCESSFUL;
   }
 
-  private static void storeCheckpointState(
-      final Transaction store,
-      final StateTransition stateTransition,
-      final Checkpoint target,
-      final BeaconState targetRootState)
+  /**
+   * Returns the state of the target checkpoint, computing and storing it if the store doesn't have
+   * it. The store may have evicted the state from memory, so it's fetched rather than only checked
+   * for.
+   */
+  private static BeaconState getOrStoreCheckpointState(
+      final Transaction store, final StateTransition stateTransition, final Checkpoint target)
       throws SlotProcessingException, EpochProcessingException {
-    if (!store.containsCheckpointState(target)) {
-      final BeaconState targetState;
-      if (target.getEpochSlot().equals(targetRootState.getSlot())) {
-        targetState = targetRootState;
-      } else {
-        final BeaconStateWithCache base_state = BeaconStateWithCache.deepCopy(targetRootState);
-        stateTransition.process_slots(base_state, target.getEpochSlot(), false);
-        targetState = base_state;
-      }
-      store.putCheckpointState(target, targetState);
+    final BeaconState storedState = store.getCheckpointState(target);
+    if (storedState != null) {
+      return storedState;
+    }
+    final BeaconState targetRootState = store.getBlockState(target.getRoot());
+    final BeaconState targetState;
+    if (target.getEpochSlot().equals(targetRootState.getSlot())) {
+      targetState = targetRootState;
+    } else {
+      final BeaconStateWithCache base_state = BeaconStateWithCache.deepCopy(targetRootState);
+      stateTransition.process_slots(base_state, target.getEpochSlot(), false);
+      targetState = base_state;
     }
+    store.putCheckpointState(target, targetState);
+    return targetState;
   }
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.statetransition.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.compute_epoch_at_slot;
+import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.compute_start_slot_at_epoch;
+import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.get_block_root_at_slot;
+import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.get_current_epoch;
+import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.get_seed;
+import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.int_to_bytes;
+import static tech.devgao.hailong.datastructures.util.CommitteeUtil.compute_proposer_index;
+import static tech.devgao.hailong.datastructures.util.ValidatorsUtil.get_active_validator_indices;
+import static tech.devgao.hailong.util.config.Constants.DOMAIN_BEACON_PROPOSER;
+import static tech.devgao.hailong.util.config.Constants.GENESIS_EPOCH;
+import static tech.devgao.hailong.util.config.Constants.SLOTS_PER_EPOCH;
+
+import com.google.common.primitives.UnsignedLong;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.crypto.Hash;
+import tech.devgao.hailong.datastructures.blocks.BeaconBlockHeader;
+import tech.devgao.hailong.datastructures.state.BeaconState;
+import tech.devgao.hailong.datastructures.state.BeaconStateWithCache;
+import tech.devgao.hailong.statetransition.StateTransition;
+import tech.devgao.hailong.util.collections.LimitedMap;
+
+/**
+ * Answers which validator proposes a slot on the chain of a given state, without processing slots
+ * for every query.
+ *
+ * <p>The proposers of an epoch only depend on the state at the start of that epoch, which is fixed
+ * by the last block before the epoch (the dependent root). The proposers for a whole epoch are
+ * computed together and kept under the key (epoch, dependent root), so forks share an entry until
+ * they diverge before the epoch starts. A state from an earlier epoch is only advanced, copying it
+ * and processing the epoch transition, the first time an epoch is queried for its chain.
+ */
+public class ProposerDutyIndex {
+  private static final int MAX_CACHED_EPOCHS = 16;
+
+  private final StateTransition stateTransition;
+  private final Map<Pair<UnsignedLong, Bytes32>, int[]> proposersByEpoch =
+      LimitedMap.create(MAX_CACHED_EPOCHS);
+
+  public ProposerDutyIndex(final StateTransition stateTransition) {
+    this.stateTransition = stateTransition;
+  }
+
+  /**
+   * Returns the index of the validator which proposes {@code slot} on the chain of {@code state},
+   * assuming any slots between the state and {@code slot} are empty.
+   *
+   * @param state a state on the chain, no later than the epoch of {@code slot}
+   * @param slot the slot to find the proposer of
+   * @return the index of the proposer
+   * @throws IllegalArgumentException if {@code slot} is in an earlier epoch than {@code state}
+   * @throws SlotProcessingException if the state can't be advanced to the slot's epoch
+   * @throws EpochProcessingException if the state can't be advanced to the slot's epoch
+   */
+  public int getProposerIndex(final BeaconState state, final UnsignedLong slot)
+      throws SlotProcessingException, EpochProcessingException {
+    final UnsignedLong epoch = compute_epoch_at_slot(slot);
+    checkArgument(
+        epoch.compareTo(get_current_epoch(state)) >= 0,
+        "Can't find proposers for epoch %s from a state in a later epoch",
+        epoch);
+    final Pair<UnsignedLong, Bytes32> key = Pair.of(epoch, getDependentRoot(state, epoch));
+    int[] proposers = proposersByEpoch.get(key);
+    if (proposers == null) {
+      proposers = computeProposers(getEpochStartState(state, epoch), epoch);
+      proposersByEpoch.put(key, proposers);
+    }
+    return proposers[slot.minus(compute_start_slot_at_epoch(epoch)).intValue()];
+  }
+
+  private BeaconState getEpochStartState(final BeaconState state, final UnsignedLong epoch)
+      throws SlotProcessingException, EpochProcessingException {
+    if (get_current_epoch(state).equals(epoch)) {
+      // Effective balances, the active validators and the seed don't change within an epoch
+      return state;
+    }
+    final BeaconStateWithCache epochStartState = BeaconStateWithCache.deepCopy(state);
+    stateTransition.process_slots(epochStartState, compute_start_slot_at_epoch(epoch), false);
+    return epochStartState;
+  }
+
+  private static int[] computeProposers(final BeaconState state, final UnsignedLong epoch) {
+    final Bytes32 epochSeed = get_seed(state, epoch, DOMAIN_BEACON_PROPOSER);
+    final List<Integer> activeValidators = get_active_validator_indices(state, epoch);
+    final long startSlot = compute_start_slot_at_epoch(epoch).longValue();
+    final int[] proposers = new int[SLOTS_PER_EPOCH];
+    for (int i = 0; i < SLOTS_PER_EPOCH; i++) {
+      final Bytes32 seed =
+          Hash.sha2_256(Bytes.concatenate(epochSeed, int_to_bytes(startSlot + i, 8)));
+      proposers[i] = compute_proposer_index(state, activeValidators, seed);
+    }
+    return proposers;
+  }
+
+  /** Returns the root of the last block before {@code epoch} on the chain of {@code state}. */
+  private static Bytes32 getDependentRoot(final BeaconState state, final UnsignedLong epoch) {
+    if (epoch.equals(UnsignedLong.valueOf(GENESIS_EPOCH))) {
+      return Bytes32.ZERO;
+    }
+    final UnsignedLong epochStartSlot = compute_start_slot_at_epoch(epoch);
+    if (state.getSlot().compareTo(epochStartSlot) >= 0) {
+      return get_block_root_at_slot(state, epochStartSlot.minus(UnsignedLong.ONE));
+    }
+    // The state's latest block is the last one before the epoch
+    final BeaconBlockHeader latestBlockHeader =
+        new BeaconBlockHeader(state.getLatest_block_header());
+    if (latestBlockHeader.getState_root().equals(Bytes32.ZERO)) {
+      latestBlockHeader.setState_root(state.hash_tree_root());
+    }
+    return latestBlockHeader.hash_tree_root();
+  }
+}
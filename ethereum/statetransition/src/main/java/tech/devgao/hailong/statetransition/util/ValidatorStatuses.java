@@ -0,0 +1,295 @@
+/*
+ * Copyright 2020 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.statetransition.util;
+
+import static tech.devgao.hailong.datastructures.util.AttestationUtil.get_attesting_indices;
+import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.get_block_root;
+import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.get_block_root_at_slot;
+import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.get_current_epoch;
+import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.get_previous_epoch;
+import static tech.devgao.hailong.datastructures.util.ValidatorsUtil.is_active_validator;
+import static tech.devgao.hailong.datastructures.util.ValidatorsUtil.is_eligible_for_activation_queue;
+import static tech.devgao.hailong.util.config.Constants.EJECTION_BALANCE;
+import static tech.devgao.hailong.util.config.Constants.EPOCHS_PER_SLASHINGS_VECTOR;
+import static tech.devgao.hailong.util.config.Constants.FAR_FUTURE_EPOCH;
+import static tech.devgao.hailong.util.config.Constants.GENESIS_EPOCH;
+
+import com.google.common.primitives.UnsignedLong;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.tuweni.bytes.Bytes32;
+import tech.devgao.hailong.datastructures.state.BeaconState;
+import tech.devgao.hailong.datastructures.state.PendingAttestation;
+import tech.devgao.hailong.datastructures.state.Validator;
+
+/**
+ * The per-validator data needed by epoch processing, gathered in a single pass over the validators
+ * and the pending attestations.
+ *
+ * <p>Balances are held as the raw bits of the spec's uint64 values, so arithmetic on them must use
+ * the unsigned operations of {@link Long}.
+ */
+final class ValidatorStatuses {
+
+  /** Eligible for attestation rewards and penalties in the previous epoch. */
+  static final byte ELIGIBLE = 1;
+
+  static final byte SLASHED = 1 << 1;
+  static final byte ACTIVE_IN_CURRENT_EPOCH = 1 << 2;
+  static final byte PREVIOUS_EPOCH_SOURCE_ATTESTER = 1 << 3;
+  static final byte PREVIOUS_EPOCH_TARGET_ATTESTER = 1 << 4;
+  static final byte PREVIOUS_EPOCH_HEAD_ATTESTER = 1 << 5;
+  static final byte CURRENT_EPOCH_TARGET_ATTESTER = 1 << 6;
+
+  private final byte[] flags;
+  private final long[] effectiveBalances;
+  private final long[] balances;
+  private final long[] inclusionDelays;
+  private final int[] inclusionProposers;
+
+  private final List<Integer> eligibleForActivationQueue = new ArrayList<>();
+  private final List<Integer> ejectable = new ArrayList<>();
+  private final List<Integer> pendingActivation = new ArrayList<>();
+  private final List<Integer> slashingPenaltyDue = new ArrayList<>();
+
+  private long currentEpochActiveBalance;
+  private long previousEpochSourceBalance;
+  private long previousEpochTargetBalance;
+  private long previousEpochHeadBalance;
+  private long currentEpochTargetBalance;
+
+  private ValidatorStatuses(final int validatorCount) {
+    flags = new byte[validatorCount];
+    effectiveBalances = new long[validatorCount];
+    balances = new long[validatorCount];
+    inclusionDelays = new long[validatorCount];
+    inclusionProposers = new int[validatorCount];
+  }
+
+  /**
+   * Gathers the statuses of the validators in {@code state} at the end of its current epoch.
+   *
+   * @param state the state to process
+   * @return the validator statuses
+   * @throws IllegalArgumentException if the state's attestations can't be processed
+   */
+  static ValidatorStatuses create(final BeaconState state) {
+    final UnsignedLong currentEpoch = get_current_epoch(state);
+    final UnsignedLong previousEpoch = get_previous_epoch(state);
+    final UnsignedLong slashingsEpoch =
+        currentEpoch.plus(UnsignedLong.valueOf(EPOCHS_PER_SLASHINGS_VECTOR / 2));
+    final UnsignedLong ejectionBalance = UnsignedLong.valueOf(EJECTION_BALANCE);
+
+    final List<Validator> validators = state.getValidators();
+    final ValidatorStatuses statuses = new ValidatorStatuses(validators.size());
+    int index = 0;
+    for (Validator validator : validators) {
+      final boolean activeInCurrentEpoch = is_active_validator(validator, currentEpoch);
+      byte flag = 0;
+      if (validator.isSlashed()) {
+        flag |= SLASHED;
+      }
+      if (activeInCurrentEpoch) {
+        flag |= ACTIVE_IN_CURRENT_EPOCH;
+        statuses.currentEpochActiveBalance += validator.getEffective_balance().longValue();
+      }
+      if (is_active_validator(validator, previousEpoch)
+          || (validator.isSlashed()
+              && previousEpoch.plus(UnsignedLong.ONE).compareTo(validator.getWithdrawable_epoch())
+                  < 0)) {
+        flag |= ELIGIBLE;
+      }
+      statuses.flags[index] = flag;
+      statuses.effectiveBalances[index] = validator.getEffective_balance().longValue();
+
+      if (is_eligible_for_activation_queue(validator)) {
+        statuses.eligibleForActivationQueue.add(index);
+      }
+      if (activeInCurrentEpoch
+          && validator.getEffective_balance().compareTo(ejectionBalance) <= 0) {
+        statuses.ejectable.add(index);
+      }
+      if (validator.getActivation_epoch().equals(FAR_FUTURE_EPOCH)) {
+        statuses.pendingActivation.add(index);
+      }
+      if (validator.isSlashed() && slashingsEpoch.equals(validator.getWithdrawable_epoch())) {
+        statuses.slashingPenaltyDue.add(index);
+      }
+      index++;
+    }
+
+    index = 0;
+    for (UnsignedLong balance : state.getBalances()) {
+      statuses.balances[index++] = balance.longValue();
+    }
+
+    // Attestations are only used by justification and rewards, which are skipped at genesis
+    if (currentEpoch.compareTo(UnsignedLong.valueOf(GENESIS_EPOCH)) > 0) {
+      statuses.processPreviousEpochAttestations(state, previousEpoch);
+    }
+    if (currentEpoch.compareTo(UnsignedLong.valueOf(GENESIS_EPOCH + 1)) > 0) {
+      statuses.processCurrentEpochAttestations(state, currentEpoch);
+    }
+    return statuses;
+  }
+
+  private void processPreviousEpochAttestations(
+      final BeaconState state, final UnsignedLong previousEpoch) {
+    final List<PendingAttestation> attestations = state.getPrevious_epoch_attestations();
+    if (attestations.isEmpty()) {
+      return;
+    }
+    final Bytes32 targetRoot = get_block_root(state, previousEpoch);
+    for (PendingAttestation attestation : attestations) {
+      byte attestationFlags = PREVIOUS_EPOCH_SOURCE_ATTESTER;
+      if (attestation.getData().getTarget().getRoot().equals(targetRoot)) {
+        attestationFlags |= PREVIOUS_EPOCH_TARGET_ATTESTER;
+      }
+      if (attestation
+          .getData()
+          .getBeacon_block_root()
+          .equals(get_block_root_at_slot(state, attestation.getData().getSlot()))) {
+        attestationFlags |= PREVIOUS_EPOCH_HEAD_ATTESTER;
+      }
+
+      final long inclusionDelay = attestation.getInclusion_delay().longValue();
+      for (int index :
+          get_attesting_indices(
+              state, attestation.getData(), attestation.getAggregation_bits())) {
+        // Keep the earliest of the attestations with the smallest inclusion delay
+        if ((flags[index] & PREVIOUS_EPOCH_SOURCE_ATTESTER) == 0
+            || Long.compareUnsigned(inclusionDelay, inclusionDelays[index]) < 0) {
+          inclusionDelays[index] = inclusionDelay;
+          inclusionProposers[index] = attestation.getProposer_index().intValue();
+        }
+        addAttesterFlags(index, attestationFlags);
+      }
+    }
+  }
+
+  private void processCurrentEpochAttestations(
+      final BeaconState state, final UnsignedLong currentEpoch) {
+    final List<PendingAttestation> attestations = state.getCurrent_epoch_attestations();
+    if (attestations.isEmpty()) {
+      return;
+    }
+    final Bytes32 targetRoot = get_block_root(state, currentEpoch);
+    for (PendingAttestation attestation : attestations) {
+      if (attestation.getData().getTarget().getRoot().equals(targetRoot)) {
+        for (int index :
+            get_attesting_indices(
+                state, attestation.getData(), attestation.getAggregation_bits())) {
+          addAttesterFlags(index, CURRENT_EPOCH_TARGET_ATTESTER);
+        }
+      }
+    }
+  }
+
+  private void addAttesterFlags(final int index, final byte attestationFlags) {
+    final int newFlags = attestationFlags & ~flags[index];
+    flags[index] |= attestationFlags;
+    // Only unslashed attesters count towards the attesting balances
+    if ((flags[index] & SLASHED) != 0) {
+      return;
+    }
+    final long effectiveBalance = effectiveBalances[index];
+    if ((newFlags & PREVIOUS_EPOCH_SOURCE_ATTESTER) != 0) {
+      previousEpochSourceBalance += effectiveBalance;
+    }
+    if ((newFlags & PREVIOUS_EPOCH_TARGET_ATTESTER) != 0) {
+      previousEpochTargetBalance += effectiveBalance;
+    }
+    if ((newFlags & PREVIOUS_EPOCH_HEAD_ATTESTER) != 0) {
+      previousEpochHeadBalance += effectiveBalance;
+    }
+    if ((newFlags & CURRENT_EPOCH_TARGET_ATTESTER) != 0) {
+      currentEpochTargetBalance += effectiveBalance;
+    }
+  }
+
+  int getValidatorCount() {
+    return flags.length;
+  }
+
+  boolean hasFlags(final int index, final byte flag) {
+    return (flags[index] & flag) == flag;
+  }
+
+  /** @return true if the validator is unslashed and has all the given attester flags */
+  boolean isUnslashedAttester(final int index, final byte attesterFlag) {
+    return (flags[index] & (attesterFlag | SLASHED)) == attesterFlag;
+  }
+
+  long getEffectiveBalance(final int index) {
+    return effectiveBalances[index];
+  }
+
+  /**
+   * Balances are read once from the state and updated in place by epoch processing, which must
+   * write them back to the state when it's done.
+   */
+  long[] getBalances() {
+    return balances;
+  }
+
+  long getInclusionDelay(final int index) {
+    return inclusionDelays[index];
+  }
+
+  int getInclusionProposer(final int index) {
+    return inclusionProposers[index];
+  }
+
+  List<Integer> getEligibleForActivationQueue() {
+    return eligibleForActivationQueue;
+  }
+
+  List<Integer> getEjectable() {
+    return ejectable;
+  }
+
+  List<Integer> getPendingActivation() {
+    return pendingActivation;
+  }
+
+  List<Integer> getSlashingPenaltyDue() {
+    return slashingPenaltyDue;
+  }
+
+  // Totals follow get_total_balance, which never returns less than 1
+
+  long getCurrentEpochActiveBalance() {
+    return atLeastOne(currentEpochActiveBalance);
+  }
+
+  long getPreviousEpochSourceBalance() {
+    return atLeastOne(previousEpochSourceBalance);
+  }
+
+  long getPreviousEpochTargetBalance() {
+    return atLeastOne(previousEpochTargetBalance);
+  }
+
+  long getPreviousEpochHeadBalance() {
+    return atLeastOne(previousEpochHeadBalance);
+  }
+
+  long getCurrentEpochTargetBalance() {
+    return atLeastOne(currentEpochTargetBalance);
+  }
+
+  private static long atLeastOne(final long balance) {
+    return balance == 0 ? 1 : balance;
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.statetransition;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.primitives.UnsignedLong;
+import java.util.List;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tech.devgao.hailong.data.BlockProcessingRecord;
+import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
+import tech.devgao.hailong.datastructures.operations.Attestation;
+import tech.devgao.hailong.datastructures.state.BeaconState;
+import tech.devgao.hailong.datastructures.state.BeaconStateWithCache;
+import tech.devgao.hailong.datastructures.util.BeaconStateUtil;
+import tech.devgao.hailong.storage.ChainStorageClient;
+import tech.devgao.hailong.util.bls.BLSKeyGenerator;
+import tech.devgao.hailong.util.bls.BLSKeyPair;
+import tech.devgao.hailong.util.bls.BLSSignature;
+
+public class StateTransitionBlockReplayerTest {
+  private final List<BLSKeyPair> validatorKeys = BLSKeyGenerator.generateKeyPairs(8);
+  private final ChainStorageClient storageClient =
+      ChainStorageClient.memoryOnlyClient(mock(EventBus.class));
+  private final BeaconChainUtil chainUtil =
+      BeaconChainUtil.create(storageClient, validatorKeys, false);
+  private final StateTransitionBlockReplayer replayer = new StateTransitionBlockReplayer();
+
+  @BeforeAll
+  public static void init() {
+    BeaconStateUtil.BLS_VERIFY_DEPOSIT = false;
+    BeaconStateUtil.DEPOSIT_PROOFS_ENABLED = false;
+  }
+
+  @AfterAll
+  public static void dispose() {
+    BeaconStateUtil.BLS_VERIFY_DEPOSIT = true;
+    BeaconStateUtil.DEPOSIT_PROOFS_ENABLED = true;
+  }
+
+  @BeforeEach
+  public void setup() {
+    chainUtil.initializeStorage();
+  }
+
+  @Test
+  public void shouldReplayBlockWithoutCheckingAttestationSignatures() throws Exception {
+    final BlockProcessingRecord record1 = chainUtil.createAndImportBlockAtSlot(1);
+    final BlockProcessingRecord record2 = chainUtil.createAndImportBlockAtSlot(2);
+    final List<Attestation> attestations =
+        new AttestationGenerator(validatorKeys)
+            .getAttestationsForSlot(
+                record2.getPostState(), record1.getBlock().getMessage(), UnsignedLong.valueOf(2));
+    final List<Attestation> aggregatedAttestations =
+        AttestationGenerator.groupAndAggregateAttestations(attestations);
+    final BlockProcessingRecord record3 =
+        chainUtil.createAndImportBlockAtSlot(UnsignedLong.valueOf(3), aggregatedAttestations);
+
+    // Replay only runs on blocks which were validated on import, so signatures aren't checked
+    final SignedBeaconBlock block = record3.getBlock();
+    final Attestation attestation = block.getMessage().getBody().getAttestations().get(0);
+    attestation.setAggregate_signature(BLSSignature.random());
+    final BeaconState preState = record3.getPreState();
+    assertThatThrownBy(
+            () ->
+                new StateTransition(false)
+                    .initiate(BeaconStateWithCache.deepCopy(preState), block, false))
+        .isInstanceOf(StateTransitionException.class);
+
+    final BeaconState replayedState = replayer.replay(preState, block);
+    assertThat(replayedState.getSlot()).isEqualTo(block.getSlot());
+    assertThat(replayedState.getCurrent_epoch_attestations())
+        .isEqualTo(record3.getPostState().getCurrent_epoch_attestations());
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2020 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.statetransition.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.get_block_root;
+import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.get_block_root_at_slot;
+import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.get_committee_count_at_slot;
+import static tech.devgao.hailong.datastructures.util.CommitteeUtil.get_beacon_committee;
+import static tech.devgao.hailong.datastructures.util.DataStructureUtil.randomBeaconState;
+import static tech.devgao.hailong.datastructures.util.DataStructureUtil.randomBytes32;
+import static tech.devgao.hailong.datastructures.util.DataStructureUtil.randomPublicKey;
+
+import com.google.common.primitives.UnsignedLong;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.tuweni.bytes.Bytes32;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import tech.devgao.hailong.datastructures.operations.AttestationData;
+import tech.devgao.hailong.datastructures.state.BeaconStateWithCache;
+import tech.devgao.hailong.datastructures.state.Checkpoint;
+import tech.devgao.hailong.datastructures.state.PendingAttestation;
+import tech.devgao.hailong.datastructures.state.Validator;
+import tech.devgao.hailong.util.SSZTypes.Bitlist;
+import tech.devgao.hailong.util.SSZTypes.SSZList;
+import tech.devgao.hailong.util.config.Constants;
+
+class EpochProcessorTest {
+
+  private static final int VALIDATOR_COUNT = 256;
+  private static final long EPOCH = 8;
+
+  @ParameterizedTest
+  @ValueSource(longs = {0, 2, 6, 7})
+  void processEpochShouldMatchProcessingEachStep(final long finalizedEpoch) throws Exception {
+    final BeaconStateWithCache state = createState(finalizedEpoch, new Random(finalizedEpoch));
+
+    final BeaconStateWithCache expected = BeaconStateWithCache.deepCopy(state);
+    EpochProcessorUtil.process_justification_and_finalization(expected);
+    EpochProcessorUtil.process_rewards_and_penalties(expected);
+    EpochProcessorUtil.process_registry_updates(expected);
+    EpochProcessorUtil.process_slashings(expected);
+    EpochProcessorUtil.process_final_updates(expected);
+
+    final BeaconStateWithCache actual = BeaconStateWithCache.deepCopy(state);
+    EpochProcessor.process_epoch(actual);
+
+    assertThat(actual.getBalances()).isEqualTo(expected.getBalances());
+    assertThat(actual.getValidators()).isEqualTo(expected.getValidators());
+    assertThat(actual.hash_tree_root()).isEqualTo(expected.hash_tree_root());
+  }
+
+  private BeaconStateWithCache createState(final long finalizedEpoch, final Random random) {
+    final BeaconStateWithCache state = BeaconStateWithCache.fromBeaconState(randomBeaconState(1));
+    state.setSlot(UnsignedLong.valueOf((EPOCH + 1) * Constants.SLOTS_PER_EPOCH - 1));
+    state.setFinalized_checkpoint(
+        new Checkpoint(UnsignedLong.valueOf(finalizedEpoch), randomBytes32(2)));
+    state.setCurrent_justified_checkpoint(
+        new Checkpoint(UnsignedLong.valueOf(EPOCH - 1), randomBytes32(3)));
+    state.setPrevious_justified_checkpoint(
+        new Checkpoint(UnsignedLong.valueOf(EPOCH - 2), randomBytes32(4)));
+
+    final List<Validator> validators = new ArrayList<>();
+    final List<UnsignedLong> balances = new ArrayList<>();
+    for (int i = 0; i < VALIDATOR_COUNT; i++) {
+      validators.add(createValidator(i, finalizedEpoch, random));
+      balances.add(
+          UnsignedLong.valueOf(
+              Constants.MAX_EFFECTIVE_BALANCE
+                  - Constants.EFFECTIVE_BALANCE_INCREMENT * 2
+                  + (long) random.nextInt(1 << 30) * 4));
+    }
+    state.setValidators(
+        new SSZList<>(validators, Constants.VALIDATOR_REGISTRY_LIMIT, Validator.class));
+    state.setBalances(
+        new SSZList<>(balances, Constants.VALIDATOR_REGISTRY_LIMIT, UnsignedLong.class));
+    for (int i = 0; i < state.getSlashings().size(); i++) {
+      state
+          .getSlashings()
+          .set(i, UnsignedLong.valueOf(i % 3 == 0 ? Constants.MAX_EFFECTIVE_BALANCE : 0));
+    }
+
+    state.setPrevious_epoch_attestations(createAttestations(state, EPOCH - 1, random));
+    state.setCurrent_epoch_attestations(createAttestations(state, EPOCH, random));
+    return state;
+  }
+
+  private Validator createValidator(final int index, final long finalizedEpoch, final Random r) {
+    final UnsignedLong farFuture = Constants.FAR_FUTURE_EPOCH;
+    final UnsignedLong maxBalance = UnsignedLong.valueOf(Constants.MAX_EFFECTIVE_BALANCE);
+    UnsignedLong effectiveBalance = maxBalance;
+    boolean slashed = false;
+    UnsignedLong activationEligibilityEpoch = UnsignedLong.ZERO;
+    UnsignedLong activationEpoch = UnsignedLong.ZERO;
+    UnsignedLong exitEpoch = farFuture;
+    UnsignedLong withdrawableEpoch = farFuture;
+    switch (index % 8) {
+      case 1:
+        // Slashed, with its slashing penalty due this epoch
+        slashed = true;
+        exitEpoch = UnsignedLong.valueOf(EPOCH + 1);
+        withdrawableEpoch = UnsignedLong.valueOf(EPOCH + Constants.EPOCHS_PER_SLASHINGS_VECTOR / 2);
+        break;
+      case 2:
+        // Waiting for the activation queue
+        activationEligibilityEpoch = farFuture;
+        activationEpoch = farFuture;
+        break;
+      case 3:
+        // In the activation queue
+        activationEligibilityEpoch = UnsignedLong.valueOf(r.nextInt((int) finalizedEpoch + 1));
+        activationEpoch = farFuture;
+        break;
+      case 4:
+        // Due to be ejected
+        effectiveBalance = UnsignedLong.valueOf(Constants.EJECTION_BALANCE);
+        break;
+      case 5:
+        // Exited before the previous epoch
+        exitEpoch = UnsignedLong.valueOf(EPOCH - 2);
+        withdrawableEpoch = UnsignedLong.valueOf(EPOCH + 100);
+        break;
+      default:
+        effectiveBalance =
+            maxBalance.minus(
+                UnsignedLong.valueOf(Constants.EFFECTIVE_BALANCE_INCREMENT * r.nextInt(3)));
+    }
+    return new Validator(
+        randomPublicKey(index),
+        randomBytes32(index),
+        effectiveBalance,
+        slashed,
+        activationEligibilityEpoch,
+        activationEpoch,
+        exitEpoch,
+        withdrawableEpoch);
+  }
+
+  private SSZList<PendingAttestation> createAttestations(
+      final BeaconStateWithCache state, final long epoch, final Random random) {
+    final SSZList<PendingAttestation> attestations =
+        new SSZList<>(
+            PendingAttestation.class,
+            Constants.MAX_ATTESTATIONS * Constants.SLOTS_PER_EPOCH);
+    final Bytes32 targetRoot = get_block_root(state, UnsignedLong.valueOf(epoch));
+    for (long slot = epoch * Constants.SLOTS_PER_EPOCH;
+        slot < (epoch + 1) * Constants.SLOTS_PER_EPOCH && slot < state.getSlot().longValue();
+        slot++) {
+      final UnsignedLong attestationSlot = UnsignedLong.valueOf(slot);
+      final Bytes32 headRoot = get_block_root_at_slot(state, attestationSlot);
+      final long committeeCount = get_committee_count_at_slot(state, attestationSlot).longValue();
+      for (long index = 0; index < committeeCount; index++) {
+        final int committeeSize =
+            get_beacon_committee(state, attestationSlot, UnsignedLong.valueOf(index)).size();
+        // Several overlapping attestations per committee, with differing inclusion delays
+        for (int i = 0; i < 3; i++) {
+          final Bitlist bits = new Bitlist(committeeSize, Constants.MAX_VALIDATORS_PER_COMMITTEE);
+          for (int bit = 0; bit < committeeSize; bit++) {
+            if (random.nextInt(3) > 0) {
+              bits.setBit(bit);
+            }
+          }
+          final AttestationData data =
+              new AttestationData(
+                  attestationSlot,
+                  UnsignedLong.valueOf(index),
+                  random.nextBoolean() ? headRoot : randomBytes32(random.nextLong()),
+                  new Checkpoint(UnsignedLong.valueOf(epoch - 1), randomBytes32(5)),
+                  new Checkpoint(
+                      UnsignedLong.valueOf(epoch),
+                      random.nextInt(4) > 0 ? targetRoot : randomBytes32(random.nextLong())));
+          attestations.add(
+              new PendingAttestation(
+                  bits,
+                  data,
+                  UnsignedLong.valueOf(1 + random.nextInt(4)),
+                  UnsignedLong.valueOf(random.nextInt(VALIDATOR_COUNT))));
+        }
+      }
+    }
+    return attestations;
+  }
+}
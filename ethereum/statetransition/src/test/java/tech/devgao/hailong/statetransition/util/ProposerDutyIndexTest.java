@@ -0,0 +1,94 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.statetransition.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.get_beacon_proposer_index;
+import static tech.devgao.hailong.util.config.Constants.SLOTS_PER_EPOCH;
+
+import com.google.common.primitives.UnsignedLong;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import tech.devgao.hailong.datastructures.operations.DepositData;
+import tech.devgao.hailong.datastructures.state.BeaconState;
+import tech.devgao.hailong.datastructures.state.BeaconStateWithCache;
+import tech.devgao.hailong.datastructures.util.MockStartBeaconStateGenerator;
+import tech.devgao.hailong.datastructures.util.MockStartDepositGenerator;
+import tech.devgao.hailong.datastructures.util.MockStartValidatorKeyPairFactory;
+import tech.devgao.hailong.statetransition.StateTransition;
+import tech.devgao.hailong.util.bls.BLSKeyPair;
+
+class ProposerDutyIndexTest {
+
+  private final List<BLSKeyPair> validatorKeys =
+      new MockStartValidatorKeyPairFactory().generateKeyPairs(0, 16);
+  private final List<DepositData> depositDatas =
+      new MockStartDepositGenerator().createDeposits(validatorKeys);
+  private final BeaconState genesisState =
+      new MockStartBeaconStateGenerator().createInitialBeaconState(UnsignedLong.ONE, depositDatas);
+
+  private final StateTransition stateTransition = spy(new StateTransition(false));
+  private final ProposerDutyIndex proposerDutyIndex = new ProposerDutyIndex(stateTransition);
+
+  @Test
+  void shouldMatchProposerAfterProcessingSlots() throws Exception {
+    final BeaconState state = advanceTo(genesisState, UnsignedLong.valueOf(SLOTS_PER_EPOCH + 1));
+    for (long slot = SLOTS_PER_EPOCH + 1; slot < 3 * SLOTS_PER_EPOCH; slot++) {
+      final UnsignedLong proposalSlot = UnsignedLong.valueOf(slot);
+      assertThat(proposerDutyIndex.getProposerIndex(state, proposalSlot))
+          .describedAs("proposer for slot %s", slot)
+          .isEqualTo(get_beacon_proposer_index(advanceTo(state, proposalSlot)));
+    }
+  }
+
+  @Test
+  void shouldProcessEpochTransitionOncePerEpoch() throws Exception {
+    final long nextEpochStart = SLOTS_PER_EPOCH;
+    for (long slot = nextEpochStart; slot < nextEpochStart + SLOTS_PER_EPOCH; slot++) {
+      proposerDutyIndex.getProposerIndex(genesisState, UnsignedLong.valueOf(slot));
+    }
+
+    verify(stateTransition, times(1)).process_slots(any(), any(), anyBoolean());
+  }
+
+  @Test
+  void shouldNotProcessSlotsForCurrentEpoch() throws Exception {
+    for (long slot = 1; slot < SLOTS_PER_EPOCH; slot++) {
+      proposerDutyIndex.getProposerIndex(genesisState, UnsignedLong.valueOf(slot));
+    }
+
+    verify(stateTransition, never()).process_slots(any(), any(), anyBoolean());
+  }
+
+  @Test
+  void shouldRejectSlotBeforeStateEpoch() throws Exception {
+    final BeaconState state = advanceTo(genesisState, UnsignedLong.valueOf(SLOTS_PER_EPOCH));
+
+    assertThatThrownBy(() -> proposerDutyIndex.getProposerIndex(state, UnsignedLong.valueOf(1)))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private BeaconState advanceTo(final BeaconState state, final UnsignedLong slot) throws Exception {
+    final BeaconStateWithCache result = BeaconStateWithCache.deepCopy(state);
+    new StateTransition(false).process_slots(result, slot, false);
+    return result;
+  }
+}
@@ -23,6 +23,7 @@ import java.lang.reflect.Proxy;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.stream.Stream;
+import tech.devgao.hailong.util.async.SafeFuture;
 
 public class EventChannel<T> {
 
@@ -74,18 +75,18 @@ public class EventChannel<T> {
   private static <T> EventChannel<T> create(
       final Class<T> channelInterface, final EventDeliverer<T> eventDeliverer) {
     checkArgument(channelInterface.isInterface(), "Must provide an interface for the channel");
-    final String nonVoidMethods =
+    final String invalidMethods =
         Stream.of(channelInterface.getMethods())
             .filter(
                 method ->
-                    !method.getReturnType().equals(Void.TYPE)
+                    !isValidReturnType(method.getReturnType())
                         || method.getExceptionTypes().length > 0)
             .map(Method::getName)
             .collect(joining(", "));
     checkArgument(
-        nonVoidMethods.isEmpty(),
-        "All methods must have a void return type and no exceptions but "
-            + nonVoidMethods
+        invalidMethods.isEmpty(),
+        "All methods must have a void or SafeFuture return type and no exceptions but "
+            + invalidMethods
             + " did not");
     @SuppressWarnings("unchecked")
     final T publisher =
@@ -98,6 +99,10 @@ public class EventChannel<T> {
     return new EventChannel<>(publisher, eventDeliverer);
   }
 
+  private static boolean isValidReturnType(final Class<?> returnType) {
+    return returnType.equals(Void.TYPE) || returnType.equals(SafeFuture.class);
+  }
+
   public T getPublisher() {
     return publisher;
   }
@@ -16,6 +16,9 @@ package tech.devgao.hailong.events;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import tech.devgao.hailong.util.async.SafeFuture;
 import tech.devgao.hailong.util.events.Subscribers;
 
 abstract class EventDeliverer<T> implements InvocationHandler {
@@ -34,10 +37,37 @@ abstract class EventDeliverer<T> implements InvocationHandler {
         throw new RuntimeException(e);
       }
     }
+    if (method.getReturnType().equals(SafeFuture.class)) {
+      return deliverRequest(method, args);
+    }
     subscribers.forEach(subscriber -> deliverTo(subscriber, method, args));
     return null;
   }
 
+  /**
+   * Requests are answered by the single subscriber on the calling thread. The subscriber is
+   * responsible for completing the returned future asynchronously if the work is expensive.
+   */
+  private SafeFuture<?> deliverRequest(final Method method, final Object[] args) {
+    final List<T> responders = new ArrayList<>(1);
+    subscribers.forEach(responders::add);
+    if (responders.size() != 1) {
+      return SafeFuture.failedFuture(
+          new IllegalStateException(
+              "Expected exactly one subscriber to handle "
+                  + method.getName()
+                  + " but found "
+                  + responders.size()));
+    }
+    try {
+      return (SafeFuture<?>) method.invoke(responders.get(0), args);
+    } catch (IllegalAccessException e) {
+      return SafeFuture.failedFuture(e);
+    } catch (InvocationTargetException e) {
+      return SafeFuture.failedFuture(e.getTargetException());
+    }
+  }
+
   protected abstract void deliverTo(T subscriber, Method method, Object[] args);
 
   public void stop() {}
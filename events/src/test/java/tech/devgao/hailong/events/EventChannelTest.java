@@ -21,6 +21,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
 
 import java.util.concurrent.ExecutorService;
 import java.util.function.Supplier;
@@ -28,6 +29,7 @@ import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
 import tech.devgao.hailong.events.AsyncEventDeliverer.QueueReader;
+import tech.devgao.hailong.util.async.SafeFuture;
 
 class EventChannelTest {
   private final ChannelExceptionHandler exceptionHandler = mock(ChannelExceptionHandler.class);
@@ -154,6 +156,58 @@ class EventChannelTest {
     inOrder.verifyNoMoreInteractions();
   }
 
+  @Test
+  public void shouldReturnResponseFromSubscriberForRequests() {
+    final EventChannel<Request> channel = EventChannel.create(Request.class);
+    final Request subscriber = mock(Request.class);
+    when(subscriber.lookup("key")).thenReturn(SafeFuture.completedFuture("value"));
+    channel.subscribe(subscriber);
+
+    final SafeFuture<String> result = channel.getPublisher().lookup("key");
+
+    assertThat(result).isCompletedWithValue("value");
+  }
+
+  @Test
+  public void shouldFailRequestsWhenThereIsNoSubscriber() {
+    final EventChannel<Request> channel = EventChannel.create(Request.class);
+
+    final SafeFuture<String> result = channel.getPublisher().lookup("key");
+
+    assertThat(result).isCompletedExceptionally();
+  }
+
+  @Test
+  public void shouldFailRequestsWhenSubscriberThrows() {
+    final EventChannel<Request> channel = EventChannel.create(Request.class);
+    final Request subscriber = mock(Request.class);
+    final RuntimeException exception = new RuntimeException("Nope");
+    when(subscriber.lookup("key")).thenThrow(exception);
+    channel.subscribe(subscriber);
+
+    final SafeFuture<String> result = channel.getPublisher().lookup("key");
+
+    assertThat(result).isCompletedExceptionally();
+    assertThatThrownBy(result::join).hasCause(exception);
+  }
+
+  @Test
+  public void shouldDeliverRequestsDirectlyOnAsyncChannels() {
+    final ExecutorService executor = mock(ExecutorService.class);
+    final EventChannel<Request> channel = EventChannel.createAsync(Request.class, executor);
+    final Request subscriber = mock(Request.class);
+    when(subscriber.lookup("key")).thenReturn(SafeFuture.completedFuture("value"));
+    channel.subscribe(subscriber);
+
+    final SafeFuture<String> result = channel.getPublisher().lookup("key");
+
+    assertThat(result).isCompletedWithValue("value");
+  }
+
+  private interface Request {
+    SafeFuture<String> lookup(String key);
+  }
+
   private interface WithException {
     void someMethod() throws Exception;
   }
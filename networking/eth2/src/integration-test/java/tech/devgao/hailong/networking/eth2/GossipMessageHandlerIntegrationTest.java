@@ -28,6 +28,7 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
 import tech.devgao.hailong.datastructures.operations.Attestation;
+import tech.devgao.hailong.networking.eth2.gossip.events.GossipedAttestationEvent;
 import tech.devgao.hailong.statetransition.AttestationGenerator;
 import tech.devgao.hailong.statetransition.events.BlockProposedEvent;
 import tech.devgao.hailong.statetransition.events.CommitteeAssignmentEvent;
@@ -281,8 +282,8 @@ public class GossipMessageHandlerIntegrationTest {
     }
 
     @Subscribe
-    public void onAttestation(final Attestation attestation) {
-      attestations.add(attestation);
+    public void onAttestation(final GossipedAttestationEvent event) {
+      attestations.add(event.getAttestation());
     }
 
     public Collection<Attestation> getAttestations() {
@@ -20,6 +20,7 @@ import java.util.stream.Stream;
 import tech.devgao.hailong.networking.eth2.gossip.AggregateGossipManager;
 import tech.devgao.hailong.networking.eth2.gossip.AttestationGossipManager;
 import tech.devgao.hailong.networking.eth2.gossip.BlockGossipManager;
+import tech.devgao.hailong.networking.eth2.gossip.encoding.GossipEncoding;
 import tech.devgao.hailong.networking.eth2.peers.Eth2Peer;
 import tech.devgao.hailong.networking.eth2.peers.Eth2PeerManager;
 import tech.devgao.hailong.networking.eth2.rpc.beaconchain.BeaconChainMethods;
@@ -27,14 +28,22 @@ import tech.devgao.hailong.networking.p2p.network.DelegatingP2PNetwork;
 import tech.devgao.hailong.networking.p2p.network.P2PNetwork;
 import tech.devgao.hailong.networking.p2p.peer.NodeId;
 import tech.devgao.hailong.networking.p2p.peer.PeerConnectedSubscriber;
+import tech.devgao.hailong.statetransition.util.ProposerDutyIndex;
 import tech.devgao.hailong.storage.ChainStorageClient;
+import tech.devgao.hailong.util.async.DelayedExecutorAsyncRunner;
 import tech.devgao.hailong.util.async.SafeFuture;
+import tech.devgao.hailong.util.bls.BLSSignatureBatcher;
 
 public class Eth2Network extends DelegatingP2PNetwork<Eth2Peer> implements P2PNetwork<Eth2Peer> {
+  private static final int MAX_SIGNATURE_BATCH_SIZE = 64;
+  private static final long MAX_SIGNATURE_BATCH_DELAY_MILLIS = 50;
+
   private final P2PNetwork<?> network;
   private final Eth2PeerManager peerManager;
   private final EventBus eventBus;
   private final ChainStorageClient chainStorageClient;
+  private final GossipEncoding gossipEncoding;
+  private final ProposerDutyIndex proposerDutyIndex;
   private final AtomicReference<State> state = new AtomicReference<>(State.IDLE);
 
   private BlockGossipManager blockGossipManager;
@@ -45,12 +54,16 @@ public class Eth2Network extends DelegatingP2PNetwork<Eth2Peer> implements P2PNe
       final P2PNetwork<?> network,
       final Eth2PeerManager peerManager,
       final EventBus eventBus,
-      final ChainStorageClient chainStorageClient) {
+      final ChainStorageClient chainStorageClient,
+      final GossipEncoding gossipEncoding,
+      final ProposerDutyIndex proposerDutyIndex) {
     super(network);
     this.network = network;
     this.peerManager = peerManager;
     this.eventBus = eventBus;
     this.chainStorageClient = chainStorageClient;
+    this.gossipEncoding = gossipEncoding;
+    this.proposerDutyIndex = proposerDutyIndex;
   }
 
   @Override
@@ -60,9 +73,20 @@ public class Eth2Network extends DelegatingP2PNetwork<Eth2Peer> implements P2PNe
 
   private void startup() {
     state.set(State.RUNNING);
-    blockGossipManager = new BlockGossipManager(network, eventBus, chainStorageClient);
-    attestationGossipManager = new AttestationGossipManager(network, eventBus, chainStorageClient);
-    aggregateGossipManager = new AggregateGossipManager(network, eventBus, chainStorageClient);
+    final BLSSignatureBatcher signatureBatcher =
+        new BLSSignatureBatcher(
+            new DelayedExecutorAsyncRunner(),
+            MAX_SIGNATURE_BATCH_SIZE,
+            MAX_SIGNATURE_BATCH_DELAY_MILLIS);
+    blockGossipManager =
+        new BlockGossipManager(
+            network, gossipEncoding, eventBus, chainStorageClient, proposerDutyIndex);
+    attestationGossipManager =
+        new AttestationGossipManager(
+            network, gossipEncoding, eventBus, chainStorageClient, signatureBatcher);
+    aggregateGossipManager =
+        new AggregateGossipManager(
+            network, gossipEncoding, eventBus, chainStorageClient, signatureBatcher);
   }
 
   @Override
@@ -21,20 +21,26 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import org.hyperledger.besu.plugin.services.MetricsSystem;
+import tech.devgao.hailong.networking.eth2.gossip.encoding.GossipEncoding;
 import tech.devgao.hailong.networking.eth2.peers.Eth2PeerManager;
 import tech.devgao.hailong.networking.p2p.libp2p.LibP2PNetwork;
 import tech.devgao.hailong.networking.p2p.network.NetworkConfig;
 import tech.devgao.hailong.networking.p2p.network.P2PNetwork;
 import tech.devgao.hailong.networking.p2p.network.PeerHandler;
 import tech.devgao.hailong.networking.p2p.rpc.RpcMethod;
+import tech.devgao.hailong.statetransition.StateTransition;
+import tech.devgao.hailong.statetransition.util.ProposerDutyIndex;
 import tech.devgao.hailong.storage.ChainStorageClient;
-import tech.devgao.hailong.storage.HistoricalChainData;
+import tech.devgao.hailong.storage.api.StorageQueryChannel;
 
 public class Eth2NetworkBuilder {
   protected NetworkConfig config;
   protected EventBus eventBus;
   protected ChainStorageClient chainStorageClient;
+  protected StorageQueryChannel historicalChainData;
   protected MetricsSystem metricsSystem;
+  protected GossipEncoding gossipEncoding = GossipEncoding.SSZ;
+  protected ProposerDutyIndex proposerDutyIndex = new ProposerDutyIndex(new StateTransition(false));
   protected List<RpcMethod> rpcMethods = new ArrayList<>();
   protected List<PeerHandler> peerHandlers = new ArrayList<>();
 
@@ -48,7 +54,6 @@ public class Eth2NetworkBuilder {
     validate();
 
     // Setup eth2 handlers
-    final HistoricalChainData historicalChainData = new HistoricalChainData(eventBus);
     final Eth2PeerManager eth2PeerManager =
         Eth2PeerManager.create(chainStorageClient, historicalChainData, metricsSystem);
     final Collection<RpcMethod> eth2RpcMethods = eth2PeerManager.getBeaconChainMethods().all();
@@ -58,7 +63,8 @@ public class Eth2NetworkBuilder {
     // Build core network and inject eth2 handlers
     final P2PNetwork<?> network = buildNetwork();
 
-    return new Eth2Network(network, eth2PeerManager, eventBus, chainStorageClient);
+    return new Eth2Network(
+        network, eth2PeerManager, eventBus, chainStorageClient, gossipEncoding, proposerDutyIndex);
   }
 
   protected P2PNetwork<?> buildNetwork() {
@@ -70,6 +76,7 @@ public class Eth2NetworkBuilder {
     assertNotNull("eventBus", eventBus);
     assertNotNull("metricsSystem", metricsSystem);
     assertNotNull("chainStorageClient", chainStorageClient);
+    assertNotNull("historicalChainData", historicalChainData);
   }
 
   private void assertNotNull(String fieldName, Object fieldValue) {
@@ -94,12 +101,30 @@ public class Eth2NetworkBuilder {
     return this;
   }
 
+  public Eth2NetworkBuilder historicalChainData(final StorageQueryChannel historicalChainData) {
+    checkNotNull(historicalChainData);
+    this.historicalChainData = historicalChainData;
+    return this;
+  }
+
   public Eth2NetworkBuilder metricsSystem(final MetricsSystem metricsSystem) {
     checkNotNull(metricsSystem);
     this.metricsSystem = metricsSystem;
     return this;
   }
 
+  public Eth2NetworkBuilder gossipEncoding(final GossipEncoding gossipEncoding) {
+    checkNotNull(gossipEncoding);
+    this.gossipEncoding = gossipEncoding;
+    return this;
+  }
+
+  public Eth2NetworkBuilder proposerDutyIndex(final ProposerDutyIndex proposerDutyIndex) {
+    checkNotNull(proposerDutyIndex);
+    this.proposerDutyIndex = proposerDutyIndex;
+    return this;
+  }
+
   public Eth2NetworkBuilder rpcMethod(final RpcMethod rpcMethod) {
     checkNotNull(rpcMethod);
     rpcMethods.add(rpcMethod);
@@ -19,23 +19,29 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.tuweni.bytes.Bytes;
 import tech.devgao.hailong.datastructures.operations.AggregateAndProof;
 import tech.devgao.hailong.datastructures.util.SimpleOffsetSerializer;
+import tech.devgao.hailong.networking.eth2.gossip.encoding.GossipEncoding;
 import tech.devgao.hailong.networking.eth2.gossip.topics.AggregateTopicHandler;
 import tech.devgao.hailong.networking.p2p.gossip.GossipNetwork;
 import tech.devgao.hailong.networking.p2p.gossip.TopicChannel;
 import tech.devgao.hailong.storage.ChainStorageClient;
+import tech.devgao.hailong.util.bls.BLSSignatureBatcher;
 
 public class AggregateGossipManager {
   private final EventBus eventBus;
+  private final GossipEncoding gossipEncoding;
   private final TopicChannel channel;
   private final AtomicBoolean shutdown = new AtomicBoolean(false);
 
   public AggregateGossipManager(
       final GossipNetwork gossipNetwork,
+      final GossipEncoding gossipEncoding,
       final EventBus eventBus,
-      final ChainStorageClient chainStorageClient) {
+      final ChainStorageClient chainStorageClient,
+      final BLSSignatureBatcher signatureBatcher) {
     final AggregateTopicHandler aggregateTopicHandler =
-        new AggregateTopicHandler(eventBus, chainStorageClient);
+        new AggregateTopicHandler(eventBus, gossipEncoding, chainStorageClient, signatureBatcher);
     this.eventBus = eventBus;
+    this.gossipEncoding = gossipEncoding;
     channel = gossipNetwork.subscribe(aggregateTopicHandler.getTopic(), aggregateTopicHandler);
     eventBus.register(this);
   }
@@ -43,7 +49,7 @@ public class AggregateGossipManager {
   @Subscribe
   public void onNewAggregate(final AggregateAndProof aggregateAndProof) {
     final Bytes data = SimpleOffsetSerializer.serialize(aggregateAndProof);
-    channel.gossip(data);
+    channel.gossip(gossipEncoding.encode(data));
   }
 
   public void shutdown() {
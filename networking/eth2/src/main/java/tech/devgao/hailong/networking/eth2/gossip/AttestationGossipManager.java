@@ -26,30 +26,38 @@ import org.apache.logging.log4j.Logger;
 import org.apache.tuweni.bytes.Bytes;
 import tech.devgao.hailong.datastructures.operations.Attestation;
 import tech.devgao.hailong.datastructures.util.SimpleOffsetSerializer;
+import tech.devgao.hailong.networking.eth2.gossip.encoding.GossipEncoding;
 import tech.devgao.hailong.networking.eth2.gossip.topics.AttestationTopicHandler;
 import tech.devgao.hailong.networking.p2p.gossip.GossipNetwork;
 import tech.devgao.hailong.networking.p2p.gossip.TopicChannel;
 import tech.devgao.hailong.statetransition.events.CommitteeAssignmentEvent;
 import tech.devgao.hailong.statetransition.events.CommitteeDismissalEvent;
 import tech.devgao.hailong.storage.ChainStorageClient;
+import tech.devgao.hailong.util.bls.BLSSignatureBatcher;
 
 public class AttestationGossipManager {
   private static final Logger LOG = LogManager.getLogger();
 
   private final GossipNetwork gossipNetwork;
+  private final GossipEncoding gossipEncoding;
   private final EventBus eventBus;
   private final ChainStorageClient chainStorageClient;
+  private final BLSSignatureBatcher signatureBatcher;
 
   private final Map<Integer, TopicChannel> attestationChannels = new ConcurrentHashMap<>();
   private final AtomicBoolean shutdown = new AtomicBoolean(false);
 
   public AttestationGossipManager(
       final GossipNetwork gossipNetwork,
+      final GossipEncoding gossipEncoding,
       final EventBus eventBus,
-      final ChainStorageClient chainStorageClient) {
+      final ChainStorageClient chainStorageClient,
+      final BLSSignatureBatcher signatureBatcher) {
     this.gossipNetwork = gossipNetwork;
+    this.gossipEncoding = gossipEncoding;
     this.eventBus = eventBus;
     this.chainStorageClient = chainStorageClient;
+    this.signatureBatcher = signatureBatcher;
     eventBus.register(this);
   }
 
@@ -65,7 +73,7 @@ public class AttestationGossipManager {
       return;
     }
     final Bytes data = SimpleOffsetSerializer.serialize(attestation);
-    channel.gossip(data);
+    channel.gossip(gossipEncoding.encode(data));
   }
 
   @Subscribe
@@ -91,7 +99,8 @@ public class AttestationGossipManager {
 
   private TopicChannel createChannelForCommitteeIndex(final int committeeIndex) {
     final AttestationTopicHandler topicHandler =
-        new AttestationTopicHandler(eventBus, chainStorageClient, committeeIndex);
+        new AttestationTopicHandler(
+            eventBus, gossipEncoding, chainStorageClient, signatureBatcher, committeeIndex);
     return gossipNetwork.subscribe(topicHandler.getTopic(), topicHandler);
   }
 
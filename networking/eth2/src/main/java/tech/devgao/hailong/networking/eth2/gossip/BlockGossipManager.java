@@ -18,23 +18,30 @@ import com.google.common.eventbus.Subscribe;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.tuweni.bytes.Bytes;
 import tech.devgao.hailong.datastructures.util.SimpleOffsetSerializer;
+import tech.devgao.hailong.networking.eth2.gossip.encoding.GossipEncoding;
 import tech.devgao.hailong.networking.eth2.gossip.topics.BlockTopicHandler;
 import tech.devgao.hailong.networking.p2p.gossip.GossipNetwork;
 import tech.devgao.hailong.networking.p2p.gossip.TopicChannel;
 import tech.devgao.hailong.statetransition.events.BlockProposedEvent;
+import tech.devgao.hailong.statetransition.util.ProposerDutyIndex;
 import tech.devgao.hailong.storage.ChainStorageClient;
 
 public class BlockGossipManager {
   private final EventBus eventBus;
+  private final GossipEncoding gossipEncoding;
   private final TopicChannel channel;
   private final AtomicBoolean shutdown = new AtomicBoolean(false);
 
   public BlockGossipManager(
       final GossipNetwork gossipNetwork,
+      final GossipEncoding gossipEncoding,
       final EventBus eventBus,
-      final ChainStorageClient chainStorageClient) {
-    final BlockTopicHandler topicHandler = new BlockTopicHandler(eventBus, chainStorageClient);
+      final ChainStorageClient chainStorageClient,
+      final ProposerDutyIndex proposerDutyIndex) {
+    final BlockTopicHandler topicHandler =
+        new BlockTopicHandler(eventBus, gossipEncoding, chainStorageClient, proposerDutyIndex);
     this.eventBus = eventBus;
+    this.gossipEncoding = gossipEncoding;
     channel = gossipNetwork.subscribe(topicHandler.getTopic(), topicHandler);
     eventBus.register(this);
   }
@@ -43,7 +50,7 @@ public class BlockGossipManager {
   @SuppressWarnings("unused")
   void onBlockProposed(final BlockProposedEvent blockProposedEvent) {
     final Bytes data = SimpleOffsetSerializer.serialize(blockProposedEvent.getBlock());
-    channel.gossip(data);
+    channel.gossip(gossipEncoding.encode(data));
   }
 
   public void shutdown() {
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.networking.eth2.gossip.encoding;
+
+import org.apache.tuweni.bytes.Bytes;
+
+/** How the serialized SSZ of a gossip message is carried on the wire. */
+public interface GossipEncoding {
+  // The largest uncompressed gossip message accepted
+  int GOSSIP_MAX_SIZE = 1048576;
+
+  GossipEncoding SSZ = new SszGossipEncoding();
+  GossipEncoding SSZ_SNAPPY = new SnappyGossipEncoding();
+
+  static GossipEncoding fromName(final String name) {
+    if (SSZ.getName().equals(name)) {
+      return SSZ;
+    } else if (SSZ_SNAPPY.getName().equals(name)) {
+      return SSZ_SNAPPY;
+    }
+    throw new IllegalArgumentException("Unsupported gossip encoding " + name);
+  }
+
+  /** @return the name used as the last part of the topics messages are published on */
+  String getName();
+
+  Bytes encode(Bytes data);
+
+  /**
+   * Recovers the serialized SSZ of a received message.
+   *
+   * @param data the message as received
+   * @return the serialized SSZ
+   * @throws DecodingException if the message is malformed or larger than {@link #GOSSIP_MAX_SIZE}
+   */
+  Bytes decode(Bytes data) throws DecodingException;
+}
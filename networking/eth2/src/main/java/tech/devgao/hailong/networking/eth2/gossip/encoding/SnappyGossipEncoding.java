@@ -0,0 +1,61 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.networking.eth2.gossip.encoding;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import org.apache.tuweni.bytes.Bytes;
+import org.xerial.snappy.Snappy;
+
+/**
+ * Compresses each message as a single snappy block.
+ *
+ * <p>Both the compressed size and the uncompressed size recorded in the block's header are checked
+ * before the block is decompressed, so a small message can't be used to allocate a large buffer.
+ */
+class SnappyGossipEncoding implements GossipEncoding {
+  private static final int MAX_COMPRESSED_SIZE = Snappy.maxCompressedLength(GOSSIP_MAX_SIZE);
+
+  @Override
+  public String getName() {
+    return "ssz_snappy";
+  }
+
+  @Override
+  public Bytes encode(final Bytes data) {
+    try {
+      return Bytes.wrap(Snappy.compress(data.toArrayUnsafe()));
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public Bytes decode(final Bytes data) throws DecodingException {
+    if (data.size() > MAX_COMPRESSED_SIZE) {
+      throw new DecodingException("Compressed message of " + data.size() + " bytes is too long");
+    }
+    final byte[] compressed = data.toArrayUnsafe();
+    try {
+      final int uncompressedLength = Snappy.uncompressedLength(compressed);
+      if (uncompressedLength > GOSSIP_MAX_SIZE) {
+        throw new DecodingException(
+            "Message would decompress to " + uncompressedLength + " bytes, which is too long");
+      }
+      return Bytes.wrap(Snappy.uncompress(compressed));
+    } catch (final IOException e) {
+      throw new DecodingException("Failed to decompress message", e);
+    }
+  }
+}
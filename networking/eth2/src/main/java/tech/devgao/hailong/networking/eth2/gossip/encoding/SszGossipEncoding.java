@@ -0,0 +1,37 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.networking.eth2.gossip.encoding;
+
+import org.apache.tuweni.bytes.Bytes;
+
+class SszGossipEncoding implements GossipEncoding {
+
+  @Override
+  public String getName() {
+    return "ssz";
+  }
+
+  @Override
+  public Bytes encode(final Bytes data) {
+    return data;
+  }
+
+  @Override
+  public Bytes decode(final Bytes data) throws DecodingException {
+    if (data.size() > GOSSIP_MAX_SIZE) {
+      throw new DecodingException("Message of " + data.size() + " bytes is too long");
+    }
+    return data;
+  }
+}
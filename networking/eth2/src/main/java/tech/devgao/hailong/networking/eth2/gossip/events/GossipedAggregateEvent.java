@@ -0,0 +1,47 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.networking.eth2.gossip.events;
+
+import java.util.Objects;
+import tech.devgao.hailong.datastructures.operations.AggregateAndProof;
+
+/** A gossiped aggregate that passed validation, including its aggregate signature. */
+public class GossipedAggregateEvent {
+  private final AggregateAndProof aggregateAndProof;
+
+  public GossipedAggregateEvent(final AggregateAndProof aggregateAndProof) {
+    this.aggregateAndProof = aggregateAndProof;
+  }
+
+  public AggregateAndProof getAggregateAndProof() {
+    return aggregateAndProof;
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (!(o instanceof GossipedAggregateEvent)) {
+      return false;
+    }
+    final GossipedAggregateEvent that = (GossipedAggregateEvent) o;
+    return Objects.equals(aggregateAndProof, that.aggregateAndProof);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(aggregateAndProof);
+  }
+}
@@ -11,36 +11,37 @@
  * specific language governing permissions and limitations under the License.
  */
 
-package tech.devgao.hailong.storage.events;
+package tech.devgao.hailong.networking.eth2.gossip.events;
 
-import com.google.common.primitives.UnsignedLong;
 import java.util.Objects;
+import tech.devgao.hailong.datastructures.operations.Attestation;
 
-public class GetFinalizedBlockAtSlotRequest {
-  private final UnsignedLong slot;
+/** An attestation received over gossip whose signature has already been verified. */
+public class GossipedAttestationEvent {
+  private final Attestation attestation;
 
-  public GetFinalizedBlockAtSlotRequest(final UnsignedLong slot) {
-    this.slot = slot;
+  public GossipedAttestationEvent(final Attestation attestation) {
+    this.attestation = attestation;
   }
 
-  public UnsignedLong getSlot() {
-    return slot;
+  public Attestation getAttestation() {
+    return attestation;
   }
 
   @Override
   public boolean equals(final Object o) {
-    if (this == o) {
+    if (o == this) {
       return true;
     }
-    if (o == null || getClass() != o.getClass()) {
+    if (!(o instanceof GossipedAttestationEvent)) {
       return false;
     }
-    final GetFinalizedBlockAtSlotRequest that = (GetFinalizedBlockAtSlotRequest) o;
-    return Objects.equals(slot, that.slot);
+    final GossipedAttestationEvent that = (GossipedAttestationEvent) o;
+    return Objects.equals(attestation, that.attestation);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(slot);
+    return Objects.hash(attestation);
   }
 }
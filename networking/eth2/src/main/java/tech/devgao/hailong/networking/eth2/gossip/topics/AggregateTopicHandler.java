@@ -26,23 +26,42 @@ import tech.devgao.hailong.datastructures.operations.Attestation;
 import tech.devgao.hailong.datastructures.operations.IndexedAttestation;
 import tech.devgao.hailong.datastructures.state.BeaconState;
 import tech.devgao.hailong.datastructures.util.SimpleOffsetSerializer;
+import tech.devgao.hailong.networking.eth2.gossip.encoding.GossipEncoding;
+import tech.devgao.hailong.networking.eth2.gossip.events.GossipedAggregateEvent;
 import tech.devgao.hailong.storage.ChainStorageClient;
+import tech.devgao.hailong.util.async.SafeFuture;
+import tech.devgao.hailong.util.bls.BLSSignatureBatcher;
 
 public class AggregateTopicHandler extends Eth2TopicHandler<AggregateAndProof> {
   private static final Logger LOG = LogManager.getLogger();
 
-  public static final String TOPIC = "/eth2/beacon_aggregate_and_proof/ssz";
+  public static final String TOPIC_NAME = "beacon_aggregate_and_proof";
   private final ChainStorageClient chainStorageClient;
+  private final BLSSignatureBatcher signatureBatcher;
 
   public AggregateTopicHandler(
-      final EventBus eventBus, final ChainStorageClient chainStorageClient) {
-    super(eventBus);
+      final EventBus eventBus,
+      final GossipEncoding gossipEncoding,
+      final ChainStorageClient chainStorageClient,
+      final BLSSignatureBatcher signatureBatcher) {
+    super(eventBus, gossipEncoding);
     this.chainStorageClient = chainStorageClient;
+    this.signatureBatcher = signatureBatcher;
   }
 
   @Override
-  public String getTopic() {
-    return TOPIC;
+  protected String getTopicName() {
+    return TOPIC_NAME;
+  }
+
+  @Override
+  public Priority getPriority() {
+    return Priority.NORMAL;
+  }
+
+  @Override
+  protected Object createEvent(final AggregateAndProof aggregateAndProof) {
+    return new GossipedAggregateEvent(aggregateAndProof);
   }
 
   @Override
@@ -51,7 +70,7 @@ public class AggregateTopicHandler extends Eth2TopicHandler<AggregateAndProof> {
   }
 
   @Override
-  protected boolean validateData(final AggregateAndProof aggregateAndProof) {
+  protected SafeFuture<Boolean> validateData(final AggregateAndProof aggregateAndProof) {
     final Attestation attestation = aggregateAndProof.getAggregate();
     final BeaconState state =
         chainStorageClient.getStore().getBlockState(attestation.getData().getBeacon_block_root());
@@ -61,15 +80,20 @@ public class AggregateTopicHandler extends Eth2TopicHandler<AggregateAndProof> {
           attestation.hash_tree_root(),
           attestation.getData().getBeacon_block_root(),
           getTopic());
-      return false;
+      return SafeFuture.completedFuture(false);
     }
     final IndexedAttestation indexedAttestation = get_indexed_attestation(state, attestation);
-    final boolean validAttestation = is_valid_indexed_attestation(state, indexedAttestation);
-    if (!validAttestation) {
-      LOG.trace("Received invalid aggregate ({}) on {}", attestation.hash_tree_root(), getTopic());
-      return false;
-    }
-
-    return true;
+    return signatureBatcher
+        .verify(verifier -> is_valid_indexed_attestation(state, indexedAttestation, verifier))
+        .thenApply(
+            validAttestation -> {
+              if (!validAttestation) {
+                LOG.trace(
+                    "Received invalid aggregate ({}) on {}",
+                    attestation.hash_tree_root(),
+                    getTopic());
+              }
+              return validAttestation;
+            });
   }
 }
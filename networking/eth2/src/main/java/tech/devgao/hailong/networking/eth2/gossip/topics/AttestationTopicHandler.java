@@ -25,30 +25,48 @@ import tech.devgao.hailong.datastructures.operations.Attestation;
 import tech.devgao.hailong.datastructures.operations.IndexedAttestation;
 import tech.devgao.hailong.datastructures.state.BeaconState;
 import tech.devgao.hailong.datastructures.util.SimpleOffsetSerializer;
+import tech.devgao.hailong.networking.eth2.gossip.encoding.GossipEncoding;
+import tech.devgao.hailong.networking.eth2.gossip.events.GossipedAttestationEvent;
 import tech.devgao.hailong.storage.ChainStorageClient;
+import tech.devgao.hailong.util.async.SafeFuture;
+import tech.devgao.hailong.util.bls.BLSSignatureBatcher;
 
 public class AttestationTopicHandler extends Eth2TopicHandler<Attestation> {
 
   private static final Logger LOG = LogManager.getLogger();
-  private final String attestationsTopic;
+  private final String topicName;
   private final ChainStorageClient chainStorageClient;
+  private final BLSSignatureBatcher signatureBatcher;
 
   public AttestationTopicHandler(
       final EventBus eventBus,
+      final GossipEncoding gossipEncoding,
       final ChainStorageClient chainStorageClient,
+      final BLSSignatureBatcher signatureBatcher,
       final int committeeIndex) {
-    super(eventBus);
-    this.attestationsTopic = getTopic(committeeIndex);
+    super(eventBus, gossipEncoding);
+    this.topicName = getTopicName(committeeIndex);
     this.chainStorageClient = chainStorageClient;
+    this.signatureBatcher = signatureBatcher;
   }
 
-  private static String getTopic(final int committeeIndex) {
-    return "/eth2/index" + committeeIndex + "_beacon_attestation/ssz";
+  private static String getTopicName(final int committeeIndex) {
+    return "index" + committeeIndex + "_beacon_attestation";
   }
 
   @Override
-  public String getTopic() {
-    return attestationsTopic;
+  protected String getTopicName() {
+    return topicName;
+  }
+
+  @Override
+  public Priority getPriority() {
+    return Priority.LOW;
+  }
+
+  @Override
+  protected Object createEvent(final Attestation attestation) {
+    return new GossipedAttestationEvent(attestation);
   }
 
   @Override
@@ -57,7 +75,7 @@ public class AttestationTopicHandler extends Eth2TopicHandler<Attestation> {
   }
 
   @Override
-  protected boolean validateData(final Attestation attestation) {
+  protected SafeFuture<Boolean> validateData(final Attestation attestation) {
     final BeaconState state =
         chainStorageClient.getStore().getBlockState(attestation.getData().getBeacon_block_root());
     if (state == null) {
@@ -66,16 +84,20 @@ public class AttestationTopicHandler extends Eth2TopicHandler<Attestation> {
           attestation.hash_tree_root(),
           attestation.getData().getBeacon_block_root(),
           getTopic());
-      return false;
+      return SafeFuture.completedFuture(false);
     }
     final IndexedAttestation indexedAttestation = get_indexed_attestation(state, attestation);
-    final boolean validAttestation = is_valid_indexed_attestation(state, indexedAttestation);
-    if (!validAttestation) {
-      LOG.trace(
-          "Received invalid attestation ({}) on {}", attestation.hash_tree_root(), getTopic());
-      return false;
-    }
-
-    return true;
+    return signatureBatcher
+        .verify(verifier -> is_valid_indexed_attestation(state, indexedAttestation, verifier))
+        .thenApply(
+            validAttestation -> {
+              if (!validAttestation) {
+                LOG.trace(
+                    "Received invalid attestation ({}) on {}",
+                    attestation.hash_tree_root(),
+                    getTopic());
+              }
+              return validAttestation;
+            });
   }
 }
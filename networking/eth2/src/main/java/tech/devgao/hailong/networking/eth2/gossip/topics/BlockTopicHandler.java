@@ -13,7 +13,6 @@
 
 package tech.devgao.hailong.networking.eth2.gossip.topics;
 
-import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.get_beacon_proposer_index;
 import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.get_domain;
 import static tech.devgao.hailong.statetransition.util.ForkChoiceUtil.get_current_slot;
 import static tech.devgao.hailong.util.config.Constants.DOMAIN_BEACON_PROPOSER;
@@ -26,27 +25,34 @@ import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.ssz.SSZException;
 import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
 import tech.devgao.hailong.datastructures.state.BeaconState;
-import tech.devgao.hailong.datastructures.state.BeaconStateWithCache;
 import tech.devgao.hailong.datastructures.state.Validator;
 import tech.devgao.hailong.datastructures.util.SimpleOffsetSerializer;
+import tech.devgao.hailong.networking.eth2.gossip.encoding.GossipEncoding;
 import tech.devgao.hailong.networking.eth2.gossip.events.GossipedBlockEvent;
-import tech.devgao.hailong.statetransition.StateTransition;
 import tech.devgao.hailong.statetransition.util.EpochProcessingException;
+import tech.devgao.hailong.statetransition.util.ProposerDutyIndex;
 import tech.devgao.hailong.statetransition.util.SlotProcessingException;
 import tech.devgao.hailong.storage.ChainStorageClient;
+import tech.devgao.hailong.util.async.SafeFuture;
 import tech.devgao.hailong.util.bls.BLSSignature;
 import tech.devgao.hailong.util.bls.BLSVerify;
 
 public class BlockTopicHandler extends Eth2TopicHandler<SignedBeaconBlock> {
-  public static final String BLOCKS_TOPIC = "/eth2/beacon_block/ssz";
+  public static final String TOPIC_NAME = "beacon_block";
   private static final Logger LOG = LogManager.getLogger();
   private final ChainStorageClient chainStorageClient;
   private final EventBus eventBus;
-
-  public BlockTopicHandler(final EventBus eventBus, final ChainStorageClient chainStorageClient) {
-    super(eventBus);
+  private final ProposerDutyIndex proposerDutyIndex;
+
+  public BlockTopicHandler(
+      final EventBus eventBus,
+      final GossipEncoding gossipEncoding,
+      final ChainStorageClient chainStorageClient,
+      final ProposerDutyIndex proposerDutyIndex) {
+    super(eventBus, gossipEncoding);
     this.eventBus = eventBus;
     this.chainStorageClient = chainStorageClient;
+    this.proposerDutyIndex = proposerDutyIndex;
   }
 
   @Override
@@ -55,8 +61,13 @@ public class BlockTopicHandler extends Eth2TopicHandler<SignedBeaconBlock> {
   }
 
   @Override
-  public String getTopic() {
-    return BLOCKS_TOPIC;
+  protected String getTopicName() {
+    return TOPIC_NAME;
+  }
+
+  @Override
+  public Priority getPriority() {
+    return Priority.HIGH;
   }
 
   @Override
@@ -65,7 +76,11 @@ public class BlockTopicHandler extends Eth2TopicHandler<SignedBeaconBlock> {
   }
 
   @Override
-  protected boolean validateData(final SignedBeaconBlock block) {
+  protected SafeFuture<Boolean> validateData(final SignedBeaconBlock block) {
+    return SafeFuture.completedFuture(isValidBlock(block));
+  }
+
+  private boolean isValidBlock(final SignedBeaconBlock block) {
     if (chainStorageClient.isPreGenesis()) {
       // We can't process blocks pre-genesis
       return false;
@@ -95,18 +110,20 @@ public class BlockTopicHandler extends Eth2TopicHandler<SignedBeaconBlock> {
   }
 
   private boolean isBlockSignatureValid(final SignedBeaconBlock block, final BeaconState preState) {
-    final StateTransition stateTransition = new StateTransition(false);
-    final BeaconStateWithCache postState = BeaconStateWithCache.fromBeaconState(preState);
-
+    final int proposerIndex;
     try {
-      stateTransition.process_slots(postState, block.getMessage().getSlot(), false);
+      proposerIndex = proposerDutyIndex.getProposerIndex(preState, block.getMessage().getSlot());
+    } catch (final IllegalArgumentException e) {
+      // The slot comes from the peer, so this is an invalid block rather than a local failure
+      LOG.debug("Dropping gossiped block with no proposer at its slot: {}", e.getMessage());
+      return false;
     } catch (EpochProcessingException | SlotProcessingException e) {
-      LOG.error("Unable to process block state.", e);
+      LOG.error("Unable to determine block proposer.", e);
       return false;
     }
 
-    final int proposerIndex = get_beacon_proposer_index(postState);
-    final Validator proposer = postState.getValidators().get(proposerIndex);
+    // Validators are only added by blocks, so the proposer is already in the pre-state registry
+    final Validator proposer = preState.getValidators().get(proposerIndex);
     final Bytes domain = get_domain(preState, DOMAIN_BEACON_PROPOSER);
     final BLSSignature signature = block.getSignature();
     return BLSVerify.bls_verify(
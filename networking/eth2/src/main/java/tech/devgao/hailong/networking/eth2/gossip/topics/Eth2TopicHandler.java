@@ -18,47 +18,68 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.ssz.SSZException;
+import tech.devgao.hailong.networking.eth2.gossip.encoding.DecodingException;
+import tech.devgao.hailong.networking.eth2.gossip.encoding.GossipEncoding;
 import tech.devgao.hailong.networking.p2p.gossip.TopicHandler;
+import tech.devgao.hailong.util.async.SafeFuture;
 import tech.devgao.hailong.util.sos.SimpleOffsetSerializable;
 
 public abstract class Eth2TopicHandler<T extends SimpleOffsetSerializable> implements TopicHandler {
   private static final Logger LOG = LogManager.getLogger();
   private final EventBus eventBus;
+  private final GossipEncoding gossipEncoding;
 
-  protected Eth2TopicHandler(final EventBus eventBus) {
+  protected Eth2TopicHandler(final EventBus eventBus, final GossipEncoding gossipEncoding) {
     this.eventBus = eventBus;
+    this.gossipEncoding = gossipEncoding;
   }
 
   @Override
-  public boolean handleMessage(final Bytes bytes) {
-    T data;
+  public SafeFuture<Boolean> handleMessage(final Bytes bytes) {
+    final T data;
+    final SafeFuture<Boolean> validationResult;
     try {
-      data = deserializeData(bytes);
-      if (!validateData(data)) {
-        LOG.trace("Received invalid message for topic: {}", getTopic());
-        return false;
-      }
-    } catch (SSZException e) {
+      data = deserializeData(gossipEncoding.decode(bytes));
+      validationResult = validateData(data);
+    } catch (DecodingException | SSZException e) {
       LOG.trace("Received malformed gossip message on {}", getTopic());
-      return false;
+      return SafeFuture.completedFuture(false);
     } catch (Throwable e) {
       LOG.warn("Encountered exception while processing message for topic {}", getTopic(), e);
-      return false;
+      return SafeFuture.completedFuture(false);
     }
 
-    eventBus.post(createEvent(data));
-    return true;
+    return validationResult
+        .exceptionally(
+            error -> {
+              LOG.warn(
+                  "Encountered exception while processing message for topic {}", getTopic(), error);
+              return false;
+            })
+        .thenApply(
+            valid -> {
+              if (!valid) {
+                LOG.trace("Received invalid message for topic: {}", getTopic());
+                return false;
+              }
+              eventBus.post(createEvent(data));
+              return true;
+            });
   }
 
   protected Object createEvent(T data) {
     return data;
   }
 
-  public abstract String getTopic();
+  public String getTopic() {
+    return "/eth2/" + getTopicName() + "/" + gossipEncoding.getName();
+  }
+
+  protected abstract String getTopicName();
 
   protected abstract T deserialize(Bytes bytes) throws SSZException;
 
-  protected abstract boolean validateData(T dataObject);
+  protected abstract SafeFuture<Boolean> validateData(T dataObject);
 
   private T deserializeData(Bytes bytes) throws SSZException {
     final T deserialized = deserialize(bytes);
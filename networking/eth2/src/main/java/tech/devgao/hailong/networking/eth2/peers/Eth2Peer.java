@@ -14,12 +14,16 @@
 package tech.devgao.hailong.networking.eth2.peers;
 
 import com.google.common.base.MoreObjects;
+import com.google.common.base.Throwables;
 import com.google.common.primitives.UnsignedLong;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.bytes.Bytes32;
 import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
@@ -27,7 +31,6 @@ import tech.devgao.hailong.datastructures.networking.libp2p.rpc.BeaconBlocksByRa
 import tech.devgao.hailong.datastructures.networking.libp2p.rpc.BeaconBlocksByRootRequestMessage;
 import tech.devgao.hailong.datastructures.networking.libp2p.rpc.GoodbyeMessage;
 import tech.devgao.hailong.datastructures.networking.libp2p.rpc.RpcRequest;
-import tech.devgao.hailong.datastructures.networking.libp2p.rpc.StatusMessage;
 import tech.devgao.hailong.networking.eth2.rpc.beaconchain.BeaconChainMethods;
 import tech.devgao.hailong.networking.eth2.rpc.beaconchain.methods.StatusMessageFactory;
 import tech.devgao.hailong.networking.eth2.rpc.core.Eth2OutgoingRequestHandler;
@@ -35,17 +38,21 @@ import tech.devgao.hailong.networking.eth2.rpc.core.Eth2RpcMethod;
 import tech.devgao.hailong.networking.eth2.rpc.core.ResponseStream;
 import tech.devgao.hailong.networking.eth2.rpc.core.ResponseStream.ResponseListener;
 import tech.devgao.hailong.networking.eth2.rpc.core.ResponseStreamImpl;
+import tech.devgao.hailong.networking.eth2.rpc.core.encodings.RpcEncoding;
 import tech.devgao.hailong.networking.p2p.peer.DelegatingPeer;
 import tech.devgao.hailong.networking.p2p.peer.Peer;
+import tech.devgao.hailong.networking.p2p.rpc.UnsupportedProtocolException;
 import tech.devgao.hailong.util.async.SafeFuture;
 
 public class Eth2Peer extends DelegatingPeer implements Peer {
+  private static final Logger LOG = LogManager.getLogger();
   private final BeaconChainMethods rpcMethods;
   private final StatusMessageFactory statusMessageFactory;
   private volatile Optional<PeerStatus> remoteStatus = Optional.empty();
   private final SafeFuture<PeerStatus> initialStatus = new SafeFuture<>();
   private AtomicBoolean chainValidated = new AtomicBoolean(false);
   private AtomicInteger outstandingRequests = new AtomicInteger(0);
+  private volatile RpcEncoding rpcEncoding;
 
   public Eth2Peer(
       final Peer peer,
@@ -54,6 +61,7 @@ public class Eth2Peer extends DelegatingPeer implements Peer {
     super(peer);
     this.rpcMethods = rpcMethods;
     this.statusMessageFactory = statusMessageFactory;
+    this.rpcEncoding = rpcMethods.getPreferredEncoding();
   }
 
   public void updateStatus(final PeerStatus status) {
@@ -86,8 +94,7 @@ public class Eth2Peer extends DelegatingPeer implements Peer {
   }
 
   public SafeFuture<PeerStatus> sendStatus() {
-    final Eth2RpcMethod<StatusMessage, StatusMessage> statusMethod = rpcMethods.status();
-    return sendRequest(statusMethod, statusMessageFactory.createStatusMessage())
+    return sendRequest(rpcMethods::status, statusMessageFactory.createStatusMessage())
         .thenCompose(ResponseStream::expectSingleResponse)
         .thenApply(
             remoteStatus -> {
@@ -98,31 +105,26 @@ public class Eth2Peer extends DelegatingPeer implements Peer {
   }
 
   public SafeFuture<Void> sendGoodbye(final UnsignedLong reason) {
-    final Eth2RpcMethod<GoodbyeMessage, GoodbyeMessage> goodByeMethod = rpcMethods.goodBye();
-    return sendMessage(goodByeMethod, new GoodbyeMessage(reason));
+    return sendMessage(rpcMethods::goodBye, new GoodbyeMessage(reason));
   }
 
   public SafeFuture<Void> requestBlocksByRoot(
       final List<Bytes32> blockRoots, final ResponseListener<SignedBeaconBlock> listener) {
-    final Eth2RpcMethod<BeaconBlocksByRootRequestMessage, SignedBeaconBlock> blockByRoot =
-        rpcMethods.beaconBlocksByRoot();
-    return requestStream(blockByRoot, new BeaconBlocksByRootRequestMessage(blockRoots), listener);
+    return requestStream(
+        rpcMethods::beaconBlocksByRoot, new BeaconBlocksByRootRequestMessage(blockRoots), listener);
   }
 
   public SafeFuture<SignedBeaconBlock> requestBlockBySlot(
       final Bytes32 headBlockRoot, final UnsignedLong slot) {
-    final Eth2RpcMethod<BeaconBlocksByRangeRequestMessage, SignedBeaconBlock> blocksByRange =
-        rpcMethods.beaconBlocksByRange();
     final BeaconBlocksByRangeRequestMessage request =
         new BeaconBlocksByRangeRequestMessage(
             headBlockRoot, slot, UnsignedLong.ONE, UnsignedLong.ONE);
-    return requestSingleItem(blocksByRange, request);
+    return requestSingleItem(rpcMethods::beaconBlocksByRange, request);
   }
 
   public SafeFuture<SignedBeaconBlock> requestBlockByRoot(final Bytes32 blockRoot) {
-    final Eth2RpcMethod<BeaconBlocksByRootRequestMessage, SignedBeaconBlock> blockByRoot =
-        rpcMethods.beaconBlocksByRoot();
-    return requestSingleItem(blockByRoot, new BeaconBlocksByRootRequestMessage(List.of(blockRoot)));
+    return requestSingleItem(
+        rpcMethods::beaconBlocksByRoot, new BeaconBlocksByRootRequestMessage(List.of(blockRoot)));
   }
 
   public SafeFuture<Void> requestBlocksByRange(
@@ -131,32 +133,61 @@ public class Eth2Peer extends DelegatingPeer implements Peer {
       final UnsignedLong count,
       final UnsignedLong step,
       final ResponseListener<SignedBeaconBlock> listener) {
-    final Eth2RpcMethod<BeaconBlocksByRangeRequestMessage, SignedBeaconBlock> blocksByRange =
-        rpcMethods.beaconBlocksByRange();
     return requestStream(
-        blocksByRange,
+        rpcMethods::beaconBlocksByRange,
         new BeaconBlocksByRangeRequestMessage(headBlockRoot, startSlot, count, step),
         listener);
   }
 
   private <I extends RpcRequest, O> SafeFuture<Void> sendMessage(
-      final Eth2RpcMethod<I, O> method, final I request) {
+      final Function<RpcEncoding, Eth2RpcMethod<I, O>> method, final I request) {
     return sendRequest(method, request).thenCompose(ResponseStream::expectNoResponse);
   }
 
   private <I extends RpcRequest, O> SafeFuture<O> requestSingleItem(
-      final Eth2RpcMethod<I, O> method, final I request) {
+      final Function<RpcEncoding, Eth2RpcMethod<I, O>> method, final I request) {
     return sendRequest(method, request).thenCompose(ResponseStream::expectSingleResponse);
   }
 
   private <I extends RpcRequest, O> SafeFuture<Void> requestStream(
-      final Eth2RpcMethod<I, O> method,
+      final Function<RpcEncoding, Eth2RpcMethod<I, O>> method,
       final I request,
       final ResponseStream.ResponseListener<O> listener) {
     return sendRequest(method, request)
         .thenCompose(responseStream -> responseStream.expectMultipleResponses(listener));
   }
 
+  /**
+   * Sends a request using the encoding last agreed with this peer. If the peer refuses to negotiate
+   * the method's protocol in that encoding, the next supported encoding is tried and kept for later
+   * requests. Any other failure leaves the encoding unchanged.
+   */
+  private <I extends RpcRequest, O> SafeFuture<ResponseStream<O>> sendRequest(
+      final Function<RpcEncoding, Eth2RpcMethod<I, O>> method, final I request) {
+    final RpcEncoding encoding = rpcEncoding;
+    return sendRequest(method.apply(encoding), request)
+        .exceptionallyCompose(
+            error -> {
+              final Optional<RpcEncoding> fallback = rpcMethods.getFallbackEncoding(encoding);
+              if (fallback.isEmpty() || !isProtocolNegotiationFailure(error)) {
+                return SafeFuture.failedFuture(error);
+              }
+              LOG.debug(
+                  "Failed to send {} request to peer {}, retrying with {} encoding",
+                  encoding.getName(),
+                  getId(),
+                  fallback.get().getName(),
+                  error);
+              rpcEncoding = fallback.get();
+              return sendRequest(method, request);
+            });
+  }
+
+  private static boolean isProtocolNegotiationFailure(final Throwable error) {
+    return Throwables.getCausalChain(error).stream()
+        .anyMatch(cause -> cause instanceof UnsupportedProtocolException);
+  }
+
   public <I extends RpcRequest, O> SafeFuture<ResponseStream<O>> sendRequest(
       final Eth2RpcMethod<I, O> method, final I request) {
     Bytes payload = method.encodeRequest(request);
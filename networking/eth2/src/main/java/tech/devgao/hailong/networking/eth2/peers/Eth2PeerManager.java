@@ -28,7 +28,7 @@ import tech.devgao.hailong.networking.p2p.peer.Peer;
 import tech.devgao.hailong.networking.p2p.peer.PeerConnectedSubscriber;
 import tech.devgao.hailong.storage.ChainStorageClient;
 import tech.devgao.hailong.storage.CombinedChainDataClient;
-import tech.devgao.hailong.storage.HistoricalChainData;
+import tech.devgao.hailong.storage.api.StorageQueryChannel;
 import tech.devgao.hailong.util.events.Subscribers;
 
 public class Eth2PeerManager implements PeerLookup, PeerHandler {
@@ -56,7 +56,7 @@ public class Eth2PeerManager implements PeerLookup, PeerHandler {
 
   public static Eth2PeerManager create(
       final ChainStorageClient storageClient,
-      final HistoricalChainData historicalChainData,
+      final StorageQueryChannel historicalChainData,
       final MetricsSystem metricsSystem) {
     final PeerValidatorFactory peerValidatorFactory =
         (peer, status) ->
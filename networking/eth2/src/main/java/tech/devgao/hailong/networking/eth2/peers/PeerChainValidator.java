@@ -28,7 +28,7 @@ import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
 import tech.devgao.hailong.datastructures.networking.libp2p.rpc.GoodbyeMessage;
 import tech.devgao.hailong.datastructures.state.Checkpoint;
 import tech.devgao.hailong.storage.ChainStorageClient;
-import tech.devgao.hailong.storage.HistoricalChainData;
+import tech.devgao.hailong.storage.api.StorageQueryChannel;
 import tech.devgao.hailong.util.SSZTypes.Bytes4;
 import tech.devgao.hailong.util.async.SafeFuture;
 import tech.devgao.hailong.util.config.Constants;
@@ -37,7 +37,7 @@ public class PeerChainValidator {
   private static final Logger LOG = LogManager.getLogger();
 
   private final ChainStorageClient storageClient;
-  private final HistoricalChainData historicalChainData;
+  private final StorageQueryChannel historicalChainData;
   private final Eth2Peer peer;
   private final AtomicBoolean hasRun = new AtomicBoolean(false);
   private final PeerStatus status;
@@ -45,7 +45,7 @@ public class PeerChainValidator {
 
   private PeerChainValidator(
       final ChainStorageClient storageClient,
-      final HistoricalChainData historicalChainData,
+      final StorageQueryChannel historicalChainData,
       final Eth2Peer peer,
       final PeerStatus status) {
     this.storageClient = storageClient;
@@ -56,7 +56,7 @@ public class PeerChainValidator {
 
   public static PeerChainValidator create(
       final ChainStorageClient storageClient,
-      final HistoricalChainData historicalChainData,
+      final StorageQueryChannel historicalChainData,
       final Eth2Peer peer,
       final PeerStatus status) {
     return new PeerChainValidator(storageClient, historicalChainData, peer, status);
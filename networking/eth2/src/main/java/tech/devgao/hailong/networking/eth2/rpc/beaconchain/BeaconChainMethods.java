@@ -13,9 +13,13 @@
 
 package tech.devgao.hailong.networking.eth2.rpc.beaconchain;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import org.hyperledger.besu.plugin.services.MetricsSystem;
 import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
 import tech.devgao.hailong.datastructures.networking.libp2p.rpc.BeaconBlocksByRangeRequestMessage;
@@ -41,27 +45,19 @@ public class BeaconChainMethods {
       "/eth2/beacon_chain/req/beacon_blocks_by_root/1";
   private static final String BEACON_BLOCKS_BY_RANGE =
       "/eth2/beacon_chain/req/beacon_blocks_by_range/1";
+  // In order of preference
+  private static final List<RpcEncoding> SUPPORTED_ENCODINGS =
+      List.of(RpcEncoding.SSZ_SNAPPY, RpcEncoding.SSZ);
 
-  private final Eth2RpcMethod<StatusMessage, StatusMessage> status;
-  private final Eth2RpcMethod<GoodbyeMessage, GoodbyeMessage> goodBye;
-  private final Eth2RpcMethod<BeaconBlocksByRootRequestMessage, SignedBeaconBlock>
-      beaconBlocksByRoot;
-  private final Eth2RpcMethod<BeaconBlocksByRangeRequestMessage, SignedBeaconBlock>
-      beaconBlocksByRange;
-
-  private final Collection<Eth2RpcMethod<?, ?>> allMethods;
+  private final List<RpcEncoding> encodings;
+  private final Map<RpcEncoding, EncodedMethods> methodsByEncoding;
+  private final Collection<Eth2RpcMethod<?, ?>> allMethods = new ArrayList<>();
 
   private BeaconChainMethods(
-      final Eth2RpcMethod<StatusMessage, StatusMessage> status,
-      final Eth2RpcMethod<GoodbyeMessage, GoodbyeMessage> goodBye,
-      final Eth2RpcMethod<BeaconBlocksByRootRequestMessage, SignedBeaconBlock> beaconBlocksByRoot,
-      final Eth2RpcMethod<BeaconBlocksByRangeRequestMessage, SignedBeaconBlock>
-          beaconBlocksByRange) {
-    this.status = status;
-    this.goodBye = goodBye;
-    this.beaconBlocksByRoot = beaconBlocksByRoot;
-    this.beaconBlocksByRange = beaconBlocksByRange;
-    allMethods = List.of(status, goodBye, beaconBlocksByRoot, beaconBlocksByRange);
+      final List<RpcEncoding> encodings, final Map<RpcEncoding, EncodedMethods> methodsByEncoding) {
+    this.encodings = encodings;
+    this.methodsByEncoding = methodsByEncoding;
+    encodings.forEach(encoding -> allMethods.addAll(methodsByEncoding.get(encoding).all()));
   }
 
   public static BeaconChainMethods create(
@@ -70,19 +66,33 @@ public class BeaconChainMethods {
       final ChainStorageClient chainStorageClient,
       final MetricsSystem metricsSystem,
       final StatusMessageFactory statusMessageFactory) {
-    return new BeaconChainMethods(
-        createStatus(statusMessageFactory, peerLookup),
-        createGoodBye(metricsSystem, peerLookup),
-        createBeaconBlocksByRoot(chainStorageClient, peerLookup),
-        createBeaconBlocksByRange(combinedChainDataClient, peerLookup));
+    final StatusMessageHandler statusHandler = new StatusMessageHandler(statusMessageFactory);
+    final GoodbyeMessageHandler goodbyeHandler = new GoodbyeMessageHandler(metricsSystem);
+    final BeaconBlocksByRootMessageHandler beaconBlocksByRootHandler =
+        new BeaconBlocksByRootMessageHandler(chainStorageClient);
+    final BeaconBlocksByRangeMessageHandler beaconBlocksByRangeHandler =
+        new BeaconBlocksByRangeMessageHandler(combinedChainDataClient);
+
+    final Map<RpcEncoding, EncodedMethods> methodsByEncoding = new HashMap<>();
+    for (RpcEncoding encoding : SUPPORTED_ENCODINGS) {
+      methodsByEncoding.put(
+          encoding,
+          new EncodedMethods(
+              createStatus(encoding, statusHandler, peerLookup),
+              createGoodBye(encoding, goodbyeHandler, peerLookup),
+              createBeaconBlocksByRoot(encoding, beaconBlocksByRootHandler, peerLookup),
+              createBeaconBlocksByRange(encoding, beaconBlocksByRangeHandler, peerLookup)));
+    }
+    return new BeaconChainMethods(SUPPORTED_ENCODINGS, methodsByEncoding);
   }
 
   private static Eth2RpcMethod<StatusMessage, StatusMessage> createStatus(
-      final StatusMessageFactory statusMessageFactory, final PeerLookup peerLookup) {
-    final StatusMessageHandler statusHandler = new StatusMessageHandler(statusMessageFactory);
+      final RpcEncoding encoding,
+      final StatusMessageHandler statusHandler,
+      final PeerLookup peerLookup) {
     return new Eth2RpcMethod<>(
         STATUS,
-        RpcEncoding.SSZ,
+        encoding,
         StatusMessage.class,
         StatusMessage.class,
         false,
@@ -91,11 +101,12 @@ public class BeaconChainMethods {
   }
 
   private static Eth2RpcMethod<GoodbyeMessage, GoodbyeMessage> createGoodBye(
-      final MetricsSystem metricsSystem, final PeerLookup peerLookup) {
-    final GoodbyeMessageHandler goodbyeHandler = new GoodbyeMessageHandler(metricsSystem);
+      final RpcEncoding encoding,
+      final GoodbyeMessageHandler goodbyeHandler,
+      final PeerLookup peerLookup) {
     return new Eth2RpcMethod<>(
         GOODBYE,
-        RpcEncoding.SSZ,
+        encoding,
         GoodbyeMessage.class,
         GoodbyeMessage.class,
         true,
@@ -105,12 +116,12 @@ public class BeaconChainMethods {
 
   private static Eth2RpcMethod<BeaconBlocksByRootRequestMessage, SignedBeaconBlock>
       createBeaconBlocksByRoot(
-          final ChainStorageClient chainStorageClient, final PeerLookup peerLookup) {
-    final BeaconBlocksByRootMessageHandler beaconBlocksByRootHandler =
-        new BeaconBlocksByRootMessageHandler(chainStorageClient);
+          final RpcEncoding encoding,
+          final BeaconBlocksByRootMessageHandler beaconBlocksByRootHandler,
+          final PeerLookup peerLookup) {
     return new Eth2RpcMethod<>(
         BEACON_BLOCKS_BY_ROOT,
-        RpcEncoding.SSZ,
+        encoding,
         BeaconBlocksByRootRequestMessage.class,
         SignedBeaconBlock.class,
         false,
@@ -120,13 +131,12 @@ public class BeaconChainMethods {
 
   private static Eth2RpcMethod<BeaconBlocksByRangeRequestMessage, SignedBeaconBlock>
       createBeaconBlocksByRange(
-          final CombinedChainDataClient combinedChainDataClient, final PeerLookup peerLookup) {
-
-    final BeaconBlocksByRangeMessageHandler beaconBlocksByRangeHandler =
-        new BeaconBlocksByRangeMessageHandler(combinedChainDataClient);
+          final RpcEncoding encoding,
+          final BeaconBlocksByRangeMessageHandler beaconBlocksByRangeHandler,
+          final PeerLookup peerLookup) {
     return new Eth2RpcMethod<>(
         BEACON_BLOCKS_BY_RANGE,
-        RpcEncoding.SSZ,
+        encoding,
         BeaconBlocksByRangeRequestMessage.class,
         SignedBeaconBlock.class,
         false,
@@ -134,23 +144,82 @@ public class BeaconChainMethods {
         peerLookup);
   }
 
+  /** @return the methods for every supported encoding, each under its own protocol id */
   public Collection<RpcMethod> all() {
     return Collections.unmodifiableCollection(allMethods);
   }
 
+  public RpcEncoding getPreferredEncoding() {
+    return encodings.get(0);
+  }
+
+  /**
+   * @param encoding an encoding a peer failed to negotiate
+   * @return the next encoding to try, or empty if there are none left
+   */
+  public Optional<RpcEncoding> getFallbackEncoding(final RpcEncoding encoding) {
+    final int index = encodings.indexOf(encoding);
+    return index >= 0 && index < encodings.size() - 1
+        ? Optional.of(encodings.get(index + 1))
+        : Optional.empty();
+  }
+
   public Eth2RpcMethod<StatusMessage, StatusMessage> status() {
-    return status;
+    return status(getPreferredEncoding());
+  }
+
+  public Eth2RpcMethod<StatusMessage, StatusMessage> status(final RpcEncoding encoding) {
+    return methodsByEncoding.get(encoding).status;
   }
 
   public Eth2RpcMethod<GoodbyeMessage, GoodbyeMessage> goodBye() {
-    return goodBye;
+    return goodBye(getPreferredEncoding());
+  }
+
+  public Eth2RpcMethod<GoodbyeMessage, GoodbyeMessage> goodBye(final RpcEncoding encoding) {
+    return methodsByEncoding.get(encoding).goodBye;
   }
 
   public Eth2RpcMethod<BeaconBlocksByRootRequestMessage, SignedBeaconBlock> beaconBlocksByRoot() {
-    return beaconBlocksByRoot;
+    return beaconBlocksByRoot(getPreferredEncoding());
+  }
+
+  public Eth2RpcMethod<BeaconBlocksByRootRequestMessage, SignedBeaconBlock> beaconBlocksByRoot(
+      final RpcEncoding encoding) {
+    return methodsByEncoding.get(encoding).beaconBlocksByRoot;
   }
 
   public Eth2RpcMethod<BeaconBlocksByRangeRequestMessage, SignedBeaconBlock> beaconBlocksByRange() {
-    return beaconBlocksByRange;
+    return beaconBlocksByRange(getPreferredEncoding());
+  }
+
+  public Eth2RpcMethod<BeaconBlocksByRangeRequestMessage, SignedBeaconBlock> beaconBlocksByRange(
+      final RpcEncoding encoding) {
+    return methodsByEncoding.get(encoding).beaconBlocksByRange;
+  }
+
+  private static class EncodedMethods {
+    private final Eth2RpcMethod<StatusMessage, StatusMessage> status;
+    private final Eth2RpcMethod<GoodbyeMessage, GoodbyeMessage> goodBye;
+    private final Eth2RpcMethod<BeaconBlocksByRootRequestMessage, SignedBeaconBlock>
+        beaconBlocksByRoot;
+    private final Eth2RpcMethod<BeaconBlocksByRangeRequestMessage, SignedBeaconBlock>
+        beaconBlocksByRange;
+
+    private EncodedMethods(
+        final Eth2RpcMethod<StatusMessage, StatusMessage> status,
+        final Eth2RpcMethod<GoodbyeMessage, GoodbyeMessage> goodBye,
+        final Eth2RpcMethod<BeaconBlocksByRootRequestMessage, SignedBeaconBlock> beaconBlocksByRoot,
+        final Eth2RpcMethod<BeaconBlocksByRangeRequestMessage, SignedBeaconBlock>
+            beaconBlocksByRange) {
+      this.status = status;
+      this.goodBye = goodBye;
+      this.beaconBlocksByRoot = beaconBlocksByRoot;
+      this.beaconBlocksByRange = beaconBlocksByRange;
+    }
+
+    private List<Eth2RpcMethod<?, ?>> all() {
+      return List.of(status, goodBye, beaconBlocksByRoot, beaconBlocksByRange);
+    }
   }
 }
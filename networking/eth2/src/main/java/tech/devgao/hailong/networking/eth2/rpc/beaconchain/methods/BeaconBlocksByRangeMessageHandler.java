@@ -20,6 +20,7 @@ import static tech.devgao.hailong.util.async.SafeFuture.completedFuture;
 import com.google.common.base.Throwables;
 import com.google.common.primitives.UnsignedLong;
 import org.apache.logging.log4j.LogManager;
+import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.bytes.Bytes32;
 import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
 import tech.devgao.hailong.datastructures.networking.libp2p.rpc.BeaconBlocksByRangeRequestMessage;
@@ -76,10 +77,46 @@ public class BeaconBlocksByRangeMessageHandler
       final ResponseCallback<SignedBeaconBlock> callback) {
     return storageClient
         .getNonfinalizedBlockState(message.getHeadBlockRoot())
-        .map(headState -> sendNextBlock(new RequestState(message, headState.getSlot(), callback)))
+        .map(headState -> sendNextBlocks(new RequestState(message, headState.getSlot(), callback)))
         .orElseGet(() -> completedFuture(null));
   }
 
+  private SafeFuture<RequestState> sendNextBlocks(final RequestState requestState) {
+    if (!requestState.needsMoreBlocks()) {
+      return completedFuture(requestState);
+    }
+    final UnsignedLong finalizedSlot = storageClient.getFinalizedSlot();
+    if (requestState.currentSlot.compareTo(finalizedSlot) <= 0
+        && !requestState.hasReachedHeadSlot()) {
+      return sendFinalizedBlocks(requestState, finalizedSlot);
+    }
+    return sendNextBlock(requestState);
+  }
+
+  /**
+   * Streams the blocks from the remaining finalized slots as stored, reading them with one range
+   * query. The head slot is left to {@link #sendNextBlock(RequestState)} so that the head block is
+   * always the one sent for it.
+   */
+  private SafeFuture<RequestState> sendFinalizedBlocks(
+      final RequestState requestState, final UnsignedLong finalizedSlot) {
+    final UnsignedLong endSlot = requestState.getFinalizedEndSlot(finalizedSlot);
+    return storageClient
+        .streamFinalizedBlockBytes(
+            requestState.currentSlot, endSlot, requestState.step, requestState::sendSerializedBlock)
+        .thenCompose(
+            done -> {
+              if (!requestState.needsMoreBlocks()) {
+                return completedFuture(requestState);
+              }
+              requestState.skipPast(endSlot);
+              if (requestState.hasPassedHeadSlot()) {
+                return completedFuture(requestState);
+              }
+              return sendNextBlocks(requestState);
+            });
+  }
+
   private SafeFuture<RequestState> sendNextBlock(final RequestState requestState) {
     return storageClient
         .getBlockAtSlotExact(requestState.currentSlot, requestState.headBlockRoot)
@@ -90,7 +127,7 @@ public class BeaconBlocksByRangeMessageHandler
                 return completedFuture(requestState);
               }
               requestState.incrementCurrentSlot();
-              return sendNextBlock(requestState);
+              return sendNextBlocks(requestState);
             });
   }
 
@@ -122,17 +159,40 @@ public class BeaconBlocksByRangeMessageHandler
       return currentSlot.compareTo(headSlot) >= 0;
     }
 
+    private boolean hasPassedHeadSlot() {
+      return currentSlot.compareTo(headSlot) > 0;
+    }
+
     boolean isComplete() {
       return !needsMoreBlocks() || hasReachedHeadSlot();
     }
 
+    /** @return the last slot to read from finalized storage, which is before the head slot */
+    UnsignedLong getFinalizedEndSlot(final UnsignedLong finalizedSlot) {
+      final UnsignedLong lastSlotBeforeHead = headSlot.minus(ONE);
+      return finalizedSlot.compareTo(lastSlotBeforeHead) < 0 ? finalizedSlot : lastSlotBeforeHead;
+    }
+
     void sendBlock(final SignedBeaconBlock block) {
       remainingBlocks = remainingBlocks.minus(ONE);
       callback.respond(block);
     }
 
+    /** @return true if more blocks are still needed after sending this one */
+    boolean sendSerializedBlock(final Bytes block) {
+      remainingBlocks = remainingBlocks.minus(ONE);
+      callback.respondSerialized(block);
+      return needsMoreBlocks();
+    }
+
     void incrementCurrentSlot() {
       currentSlot = currentSlot.plus(step);
     }
+
+    /** Moves to the first requested slot after <code>slot</code>. */
+    void skipPast(final UnsignedLong slot) {
+      final UnsignedLong stepsTaken = slot.minus(currentSlot).dividedBy(step).plus(ONE);
+      currentSlot = currentSlot.plus(stepsTaken.times(step));
+    }
   }
 }
@@ -16,60 +16,65 @@ package tech.devgao.hailong.networking.eth2.rpc.core;
 import static com.google.common.base.Preconditions.checkArgument;
 
 import io.netty.buffer.ByteBuf;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-import org.apache.tuweni.bytes.Bytes;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
 
+/**
+ * Accumulates the buffers received on a stream until complete messages can be parsed from them.
+ *
+ * <p>Received buffers are added to a {@link CompositeByteBuf} without being copied. Parsed data is
+ * skipped by moving the reader index, and buffers are released as soon as all their data has been
+ * consumed.
+ */
 public class MessageBuffer {
 
-  private List<ByteBuf> buffers = new ArrayList<>();
-  private Bytes currentData = Bytes.EMPTY;
+  // Never consolidate the components, which would copy all the buffered data
+  private final CompositeByteBuf buffer = Unpooled.compositeBuffer(Integer.MAX_VALUE);
+  private boolean closed = false;
 
   public void appendData(final ByteBuf data) {
-    data.retain();
-    buffers.add(data);
-    currentData = Bytes.wrap(currentData, Bytes.wrapByteBuf(data));
+    if (closed) {
+      return;
+    }
+    buffer.addComponent(true, data.retain());
   }
 
   public void consumeData(final DataConsumer dataConsumer) throws RpcException {
-    while (!currentData.isEmpty()) {
-      final int consumedBytes = dataConsumer.consumeData(currentData);
+    while (!isEmpty()) {
+      final int readableBytes = buffer.readableBytes();
+      final int consumedBytes = dataConsumer.consumeData(buffer.slice());
       checkArgument(
-          consumedBytes <= currentData.size(), "Cannot consume more bytes than were in the data");
+          consumedBytes <= readableBytes, "Cannot consume more bytes than were in the data");
       checkArgument(consumedBytes >= 0, "Consumed bytes must not be negative");
       if (consumedBytes == 0) {
         // Can't parse any messages, wait for more data to arrive.
         return;
       }
-      trimParsedData(consumedBytes);
-    }
-  }
-
-  private void trimParsedData(final int totalMessageLength) {
-    currentData = currentData.slice(totalMessageLength);
-    int bytesToTrim = totalMessageLength;
-    for (final Iterator<ByteBuf> i = buffers.iterator(); i.hasNext() && bytesToTrim > 0; ) {
-      final ByteBuf buffer = i.next();
-      if (buffer.capacity() <= bytesToTrim) {
-        bytesToTrim -= buffer.capacity();
-        i.remove();
-        buffer.release();
-      }
+      buffer.skipBytes(consumedBytes);
+      buffer.discardReadComponents();
     }
   }
 
   public boolean isEmpty() {
-    return currentData.isEmpty();
+    return closed || !buffer.isReadable();
   }
 
   public void close() {
-    buffers.forEach(ByteBuf::release);
-    buffers.clear();
-    currentData = Bytes.EMPTY;
+    if (closed) {
+      return;
+    }
+    closed = true;
+    buffer.release();
   }
 
   public interface DataConsumer {
-    int consumeData(Bytes currentData) throws RpcException;
+    /**
+     * Parses as much of the data as possible.
+     *
+     * @param currentData a view of the unconsumed data, which the consumer is free to read from
+     * @return the number of bytes consumed, or 0 to wait for more data
+     * @throws RpcException if the data is invalid
+     */
+    int consumeData(ByteBuf currentData) throws RpcException;
   }
 }
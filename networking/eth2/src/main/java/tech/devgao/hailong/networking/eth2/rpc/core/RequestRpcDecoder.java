@@ -45,21 +45,22 @@ public class RequestRpcDecoder<T extends RpcRequest> {
     buffer.close();
   }
 
-  private int consumeData(final Bytes currentData) throws RpcException {
-    Bytes encodedMessageData = currentData;
-
-    final OptionalInt encodingSectionLength = encoding.getMessageLength(encodedMessageData);
+  private int consumeData(final ByteBuf currentData) throws RpcException {
+    final OptionalInt encodingSectionLength = encoding.getMessageLength(currentData);
     if (encodingSectionLength.isEmpty()) {
       // Too soon to calculate the next message length
       return 0;
     }
     final int encodedMessageLength = encodingSectionLength.getAsInt();
-    if (currentData.size() < encodedMessageLength) {
+    if (currentData.readableBytes() < encodedMessageLength) {
       // Still waiting for more data
       return 0;
     }
 
-    encodedMessageData = encodedMessageData.slice(0, encodedMessageLength);
+    // Only copy the request out of the received buffers once all of it has arrived
+    final byte[] encodedMessage = new byte[encodedMessageLength];
+    currentData.readBytes(encodedMessage);
+    final Bytes encodedMessageData = Bytes.wrap(encodedMessage);
     final T message = encoding.decode(encodedMessageData, dataType);
     result = Optional.of(message);
     return encodedMessageLength;
@@ -13,9 +13,19 @@
 
 package tech.devgao.hailong.networking.eth2.rpc.core;
 
+import org.apache.tuweni.bytes.Bytes;
+
 public interface ResponseCallback<T> {
   void respond(T data);
 
+  /**
+   * Responds with a message that has already been serialized, so it is written without being
+   * deserialized and serialized again.
+   *
+   * @param payload the serialized SSZ of a response message
+   */
+  void respondSerialized(Bytes payload);
+
   void completeSuccessfully();
 
   void completeWithError(RpcException error);
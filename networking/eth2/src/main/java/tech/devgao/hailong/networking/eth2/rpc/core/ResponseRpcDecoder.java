@@ -46,22 +46,22 @@ public class ResponseRpcDecoder<T> {
     }
   }
 
-  private int consumeData(final Bytes currentData) throws RpcException {
-    final byte statusCode = currentData.get(0);
-    Bytes encodedMessageData = currentData.slice(STATUS_CODE_LENGTH);
-    final OptionalInt encodingSectionLength = encoding.getMessageLength(encodedMessageData);
+  private int consumeData(final ByteBuf currentData) throws RpcException {
+    final byte statusCode = currentData.readByte();
+    final OptionalInt encodingSectionLength = encoding.getMessageLength(currentData);
     if (encodingSectionLength.isEmpty()) {
       // Too soon to calculate the next message length
       return 0;
     }
     final int encodedMessageLength = encodingSectionLength.getAsInt();
-    final int totalMessageLength = encodedMessageLength + STATUS_CODE_LENGTH;
-
-    if (currentData.size() < totalMessageLength) {
+    if (currentData.readableBytes() < encodedMessageLength) {
       // Still waiting for more data
       return 0;
     }
-    encodedMessageData = encodedMessageData.slice(0, encodedMessageLength);
+    // Only copy the chunk out of the received buffers once all of it has arrived
+    final byte[] encodedMessage = new byte[encodedMessageLength];
+    currentData.readBytes(encodedMessage);
+    final Bytes encodedMessageData = Bytes.wrap(encodedMessage);
     if (statusCode == SUCCESS_RESPONSE_CODE) {
       final T message = encoding.decode(encodedMessageData, dataType);
       callback.accept(message);
@@ -69,7 +69,7 @@ public class ResponseRpcDecoder<T> {
       final String errorMessage = encoding.decode(encodedMessageData, String.class);
       throw new RpcException(statusCode, errorMessage);
     }
-    return totalMessageLength;
+    return encodedMessageLength + STATUS_CODE_LENGTH;
   }
 
   public void close() throws RpcException {
@@ -38,6 +38,10 @@ public final class RpcEncoder {
     return Bytes.concatenate(Bytes.of(SUCCESS_RESPONSE_CODE), encoding.encode(response));
   }
 
+  public Bytes encodeSuccessfulResponsePayload(Bytes payload) {
+    return Bytes.concatenate(Bytes.of(SUCCESS_RESPONSE_CODE), encoding.encodePayload(payload));
+  }
+
   public Bytes encodeErrorResponse(RpcException error) {
     return Bytes.concatenate(
         Bytes.of(error.getResponseCode()), encoding.encode(error.getErrorMessage()));
@@ -15,6 +15,7 @@ package tech.devgao.hailong.networking.eth2.rpc.core;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
 import tech.devgao.hailong.networking.p2p.rpc.RpcStream;
 
 class RpcResponseCallback<TResponse> implements ResponseCallback<TResponse> {
@@ -32,6 +33,11 @@ class RpcResponseCallback<TResponse> implements ResponseCallback<TResponse> {
     rpcStream.writeBytes(rpcEncoder.encodeSuccessfulResponse(data)).reportExceptions();
   }
 
+  @Override
+  public void respondSerialized(final Bytes payload) {
+    rpcStream.writeBytes(rpcEncoder.encodeSuccessfulResponsePayload(payload)).reportExceptions();
+  }
+
   @Override
   public void completeSuccessfully() {
     rpcStream.disconnect().reportExceptions();
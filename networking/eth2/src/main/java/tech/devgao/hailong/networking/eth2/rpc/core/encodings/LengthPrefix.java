@@ -0,0 +1,85 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.networking.eth2.rpc.core.encodings;
+
+import com.google.protobuf.CodedOutputStream;
+import io.netty.buffer.ByteBuf;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Optional;
+import org.apache.tuweni.bytes.Bytes;
+import tech.devgao.hailong.networking.eth2.rpc.core.RpcException;
+
+/** A protobuf style varint length, read in place from a buffer. */
+final class LengthPrefix {
+  static final int MAX_CHUNK_SIZE = 1048576;
+  // Any length requiring more bytes than this will also be bigger than the maximum chunk size.
+  private static final int MAXIMUM_VARINT_LENGTH =
+      CodedOutputStream.computeUInt32SizeNoTag(MAX_CHUNK_SIZE);
+
+  private final int value;
+  private final int size;
+
+  private LengthPrefix(final int value, final int size) {
+    this.value = value;
+    this.size = size;
+  }
+
+  /**
+   * Reads a length prefix without moving the buffer's reader index.
+   *
+   * @param data the buffer to read from
+   * @param index the index of the first byte of the prefix
+   * @return the prefix, or empty if the buffer ends before the prefix does
+   * @throws RpcException if the prefix is too long to fit a length within the maximum chunk size
+   */
+  static Optional<LengthPrefix> read(final ByteBuf data, final int index) throws RpcException {
+    final int available = data.writerIndex() - index;
+    int value = 0;
+    for (int i = 0; i < available && i <= MAXIMUM_VARINT_LENGTH; i++) {
+      if (i >= MAXIMUM_VARINT_LENGTH) {
+        throw RpcException.CHUNK_TOO_LONG_ERROR;
+      }
+      final byte b = data.getByte(index + i);
+      value |= (b & 0x7F) << (7 * i);
+      // Var int ends at first byte where (b & 0x80) == 0
+      if ((b & 0x80) == 0) {
+        return Optional.of(new LengthPrefix(value, i + 1));
+      }
+    }
+    return Optional.empty();
+  }
+
+  static Bytes write(final int value) {
+    try {
+      final ByteArrayOutputStream output = new ByteArrayOutputStream();
+      final CodedOutputStream codedOutputStream = CodedOutputStream.newInstance(output);
+      codedOutputStream.writeUInt32NoTag(value);
+      codedOutputStream.flush();
+      return Bytes.wrap(output.toByteArray());
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /** @return the length encoded by the prefix */
+  int getValue() {
+    return value;
+  }
+
+  /** @return the number of bytes taken by the prefix itself */
+  int getSize() {
+    return size;
+  }
+}
@@ -14,10 +14,10 @@
 package tech.devgao.hailong.networking.eth2.rpc.core.encodings;
 
 import com.google.protobuf.CodedInputStream;
-import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
-import java.io.ByteArrayOutputStream;
+import io.netty.buffer.ByteBuf;
 import java.io.IOException;
+import java.util.Optional;
 import java.util.OptionalInt;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -26,9 +26,6 @@ import tech.devgao.hailong.networking.eth2.rpc.core.RpcException;
 
 public class LengthPrefixedEncoding implements RpcEncoding {
   private static final Logger LOG = LogManager.getLogger();
-  private static final int MAX_CHUNK_SIZE = 1048576;
-  // Any protobuf length requiring more bytes than this will also be bigger.
-  private static final int MAXIMUM_VARINT_LENGTH = writeVarInt(MAX_CHUNK_SIZE).size();
 
   private final String name;
   private final RpcPayloadEncoders payloadEncoder;
@@ -43,11 +40,12 @@ public class LengthPrefixedEncoding implements RpcEncoding {
   public <T> Bytes encode(final T message) {
     final RpcPayloadEncoder<T> encoder = payloadEncoder.getEncoder((Class<T>) message.getClass());
     final Bytes payload = encoder.encode(message);
-    return encodeMessageWithLength(payload);
+    return encodePayload(payload);
   }
 
-  private Bytes encodeMessageWithLength(final Bytes payload) {
-    final Bytes header = writeVarInt(payload.size());
+  @Override
+  public Bytes encodePayload(final Bytes payload) {
+    final Bytes header = LengthPrefix.write(payload.size());
     return Bytes.concatenate(header, payload);
   }
 
@@ -67,7 +65,7 @@ public class LengthPrefixedEncoding implements RpcEncoding {
         throw RpcException.MALFORMED_REQUEST_ERROR;
       }
 
-      if (expectedLength > MAX_CHUNK_SIZE) {
+      if (expectedLength > LengthPrefix.MAX_CHUNK_SIZE) {
         LOG.trace("Rejecting message as length is too long");
         throw RpcException.CHUNK_TOO_LONG_ERROR;
       }
@@ -98,42 +96,11 @@ public class LengthPrefixedEncoding implements RpcEncoding {
   }
 
   @Override
-  public OptionalInt getMessageLength(final Bytes message) throws RpcException {
-    final OptionalInt maybePrefixLength = getLengthPrefixSize(message);
-    if (maybePrefixLength.isEmpty()) {
+  public OptionalInt getMessageLength(final ByteBuf message) throws RpcException {
+    final Optional<LengthPrefix> prefix = LengthPrefix.read(message, message.readerIndex());
+    if (prefix.isEmpty()) {
       return OptionalInt.empty();
     }
-    final int prefixLength = maybePrefixLength.getAsInt();
-    final CodedInputStream in = CodedInputStream.newInstance(message.toArrayUnsafe());
-    try {
-      return OptionalInt.of(in.readRawVarint32() + prefixLength);
-    } catch (final IOException e) {
-      throw RpcException.MALFORMED_MESSAGE_LENGTH_ERROR;
-    }
-  }
-
-  // Var int ends at first byte where (b & 0x80) == 0
-  private OptionalInt getLengthPrefixSize(final Bytes message) throws RpcException {
-    for (int i = 0; i < message.size() && i <= MAXIMUM_VARINT_LENGTH; i++) {
-      if (i >= MAXIMUM_VARINT_LENGTH) {
-        throw RpcException.CHUNK_TOO_LONG_ERROR;
-      }
-      if ((message.get(i) & 0x80) == 0) {
-        return OptionalInt.of(i + 1);
-      }
-    }
-    return OptionalInt.empty();
-  }
-
-  private static Bytes writeVarInt(final int value) {
-    try {
-      final ByteArrayOutputStream output = new ByteArrayOutputStream();
-      final CodedOutputStream codedOutputStream = CodedOutputStream.newInstance(output);
-      codedOutputStream.writeUInt32NoTag(value);
-      codedOutputStream.flush();
-      return Bytes.wrap(output.toByteArray());
-    } catch (final IOException e) {
-      throw new RuntimeException(e);
-    }
+    return OptionalInt.of(prefix.get().getSize() + prefix.get().getValue());
   }
 }
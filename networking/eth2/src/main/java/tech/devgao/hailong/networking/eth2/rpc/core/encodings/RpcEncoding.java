@@ -13,31 +13,37 @@
 
 package tech.devgao.hailong.networking.eth2.rpc.core.encodings;
 
+import io.netty.buffer.ByteBuf;
 import java.util.OptionalInt;
 import org.apache.tuweni.bytes.Bytes;
-import tech.devgao.hailong.datastructures.networking.libp2p.rpc.BeaconBlocksByRootRequestMessage;
 import tech.devgao.hailong.networking.eth2.rpc.core.RpcException;
-import tech.devgao.hailong.networking.eth2.rpc.core.encodings.ssz.BeaconBlocksByRootRequestMessageEncoder;
-import tech.devgao.hailong.networking.eth2.rpc.core.encodings.ssz.SimpleOffsetSszEncoder;
-import tech.devgao.hailong.networking.eth2.rpc.core.encodings.ssz.StringSszEncoder;
 
 public interface RpcEncoding {
-  RpcEncoding SSZ =
-      new LengthPrefixedEncoding(
-          "ssz",
-          RpcPayloadEncoders.builder()
-              .withEncoder(
-                  BeaconBlocksByRootRequestMessage.class,
-                  new BeaconBlocksByRootRequestMessageEncoder())
-              .withEncoder(String.class, new StringSszEncoder())
-              .defaultEncoderProvider(SimpleOffsetSszEncoder::new)
-              .build());
+  RpcEncoding SSZ = new LengthPrefixedEncoding("ssz", RpcPayloadEncoders.createSszEncoders());
+  RpcEncoding SSZ_SNAPPY =
+      new SnappyFramedEncoding("ssz_snappy", RpcPayloadEncoders.createSszEncoders());
 
   <T> Bytes encode(T message);
 
+  /**
+   * Encodes a payload that has already been serialized, such as SSZ read straight from storage.
+   *
+   * @param payload the serialized message
+   * @return the encoded chunk
+   */
+  Bytes encodePayload(Bytes payload);
+
   <T> T decode(Bytes message, Class<T> clazz) throws RpcException;
 
   String getName();
 
-  OptionalInt getMessageLength(Bytes message) throws RpcException;
+  /**
+   * Calculates the total length of the next encoded chunk, reading from the buffer's reader index
+   * without moving it.
+   *
+   * @param message the data received so far
+   * @return the length of the chunk, or empty if not enough data has arrived to tell
+   * @throws RpcException if the length prefix is invalid
+   */
+  OptionalInt getMessageLength(ByteBuf message) throws RpcException;
 }
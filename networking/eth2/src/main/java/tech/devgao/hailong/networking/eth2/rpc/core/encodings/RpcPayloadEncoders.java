@@ -19,6 +19,10 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Function;
+import tech.devgao.hailong.datastructures.networking.libp2p.rpc.BeaconBlocksByRootRequestMessage;
+import tech.devgao.hailong.networking.eth2.rpc.core.encodings.ssz.BeaconBlocksByRootRequestMessageEncoder;
+import tech.devgao.hailong.networking.eth2.rpc.core.encodings.ssz.SimpleOffsetSszEncoder;
+import tech.devgao.hailong.networking.eth2.rpc.core.encodings.ssz.StringSszEncoder;
 
 public class RpcPayloadEncoders {
 
@@ -32,6 +36,15 @@ public class RpcPayloadEncoders {
     this.defaultEncoderProvider = defaultEncoderProvider;
   }
 
+  public static RpcPayloadEncoders createSszEncoders() {
+    return builder()
+        .withEncoder(
+            BeaconBlocksByRootRequestMessage.class, new BeaconBlocksByRootRequestMessageEncoder())
+        .withEncoder(String.class, new StringSszEncoder())
+        .defaultEncoderProvider(SimpleOffsetSszEncoder::new)
+        .build();
+  }
+
   public static RpcPayloadEncoders.Builder builder() {
     return new RpcPayloadEncoders.Builder();
   }
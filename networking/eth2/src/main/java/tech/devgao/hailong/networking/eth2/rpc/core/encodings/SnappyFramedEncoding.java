@@ -0,0 +1,252 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.networking.eth2.rpc.core.encodings;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.zip.CRC32C;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+import org.xerial.snappy.Snappy;
+import org.xerial.snappy.SnappyFramedOutputStream;
+import tech.devgao.hailong.networking.eth2.rpc.core.RpcException;
+
+/**
+ * Encodes each chunk as the varint length of the uncompressed payload, followed by the payload
+ * compressed with the snappy framing format.
+ *
+ * <p>Frame headers are checked against the length prefix before anything is decompressed. A chunk
+ * is rejected if its uncompressed length exceeds the maximum chunk size, if its frames claim more
+ * data than the prefix, or if its frames take more space than snappy could need to compress the
+ * prefixed length, so a peer can't make us buffer or inflate more than one maximum sized chunk.
+ */
+public class SnappyFramedEncoding implements RpcEncoding {
+  private static final Logger LOG = LogManager.getLogger();
+
+  private static final int FRAME_HEADER_LENGTH = 4;
+  private static final int CHECKSUM_LENGTH = 4;
+  private static final int MAX_FRAME_DATA_LENGTH = 65536;
+  private static final int COMPRESSED_DATA = 0x00;
+  private static final int UNCOMPRESSED_DATA = 0x01;
+  private static final int MIN_SKIPPABLE = 0x80;
+  private static final int STREAM_IDENTIFIER = 0xff;
+  private static final Bytes STREAM_IDENTIFIER_DATA = Bytes.wrap("sNaPpY".getBytes(US_ASCII));
+  // Bound on the overhead snappy adds to each block it compresses
+  private static final int MAX_COMPRESSION_OVERHEAD = 32;
+
+  private final String name;
+  private final RpcPayloadEncoders payloadEncoder;
+
+  SnappyFramedEncoding(final String name, final RpcPayloadEncoders payloadEncoder) {
+    this.name = name;
+    this.payloadEncoder = payloadEncoder;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> Bytes encode(final T message) {
+    final RpcPayloadEncoder<T> encoder = payloadEncoder.getEncoder((Class<T>) message.getClass());
+    return encodePayload(encoder.encode(message));
+  }
+
+  @Override
+  public Bytes encodePayload(final Bytes payload) {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (SnappyFramedOutputStream out = new SnappyFramedOutputStream(output)) {
+      out.write(payload.toArrayUnsafe());
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+    return Bytes.concatenate(LengthPrefix.write(payload.size()), Bytes.wrap(output.toByteArray()));
+  }
+
+  @Override
+  public <T> T decode(final Bytes message, final Class<T> clazz) throws RpcException {
+    final byte[] input = message.toArrayUnsafe();
+    final ByteBuf data = Unpooled.wrappedBuffer(input);
+    final OptionalInt chunkLength = getMessageLength(data);
+    if (chunkLength.isEmpty() || chunkLength.getAsInt() != input.length) {
+      LOG.trace("Rejecting message because its frames do not match its length");
+      throw RpcException.INCORRECT_LENGTH_ERROR;
+    }
+
+    // The frames have all been checked, so decompressing them fills the payload exactly
+    final LengthPrefix prefix = LengthPrefix.read(data, 0).orElseThrow();
+    final byte[] payload = new byte[prefix.getValue()];
+    int payloadLength = 0;
+    int index = prefix.getSize();
+    while (index < input.length) {
+      final int type = data.getUnsignedByte(index);
+      final int dataLength = data.getUnsignedMediumLE(index + 1);
+      final int dataStart = index + FRAME_HEADER_LENGTH;
+      if (type == COMPRESSED_DATA || type == UNCOMPRESSED_DATA) {
+        final int checksum = data.getIntLE(dataStart);
+        final int frameStart = payloadLength;
+        payloadLength +=
+            type == COMPRESSED_DATA
+                ? uncompress(input, dataStart + CHECKSUM_LENGTH, dataLength, payload, frameStart)
+                : copy(input, dataStart + CHECKSUM_LENGTH, dataLength, payload, frameStart);
+        if (maskedChecksum(payload, frameStart, payloadLength - frameStart) != checksum) {
+          LOG.trace("Rejecting message because a frame checksum did not match");
+          throw RpcException.MALFORMED_REQUEST_ERROR;
+        }
+      }
+      index = dataStart + dataLength;
+    }
+    return payloadEncoder.getEncoder(clazz).decode(Bytes.wrap(payload));
+  }
+
+  private int uncompress(
+      final byte[] input,
+      final int offset,
+      final int dataLength,
+      final byte[] payload,
+      final int payloadOffset)
+      throws RpcException {
+    try {
+      return Snappy.uncompress(input, offset, dataLength - CHECKSUM_LENGTH, payload, payloadOffset);
+    } catch (final IOException e) {
+      LOG.trace("Failed to decompress message data", e);
+      throw RpcException.MALFORMED_REQUEST_ERROR;
+    }
+  }
+
+  private int copy(
+      final byte[] input,
+      final int offset,
+      final int dataLength,
+      final byte[] payload,
+      final int payloadOffset) {
+    final int length = dataLength - CHECKSUM_LENGTH;
+    System.arraycopy(input, offset, payload, payloadOffset, length);
+    return length;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public OptionalInt getMessageLength(final ByteBuf message) throws RpcException {
+    final int start = message.readerIndex();
+    final Optional<LengthPrefix> prefix = LengthPrefix.read(message, start);
+    if (prefix.isEmpty()) {
+      return OptionalInt.empty();
+    }
+    final int uncompressedLength = prefix.get().getValue();
+    if (uncompressedLength > LengthPrefix.MAX_CHUNK_SIZE) {
+      LOG.trace("Rejecting message as length is too long");
+      throw RpcException.CHUNK_TOO_LONG_ERROR;
+    }
+    final int maxChunkLength = prefix.get().getSize() + getMaxFramedLength(uncompressedLength);
+
+    int index = start + prefix.get().getSize();
+    int remaining = uncompressedLength;
+    boolean streamStarted = false;
+    while (!streamStarted || remaining > 0) {
+      if (message.writerIndex() - index < FRAME_HEADER_LENGTH) {
+        return OptionalInt.empty();
+      }
+      final int type = message.getUnsignedByte(index);
+      final int dataLength = message.getUnsignedMediumLE(index + 1);
+      final int frameEnd = index + FRAME_HEADER_LENGTH + dataLength;
+      if (frameEnd - start > maxChunkLength) {
+        LOG.trace("Rejecting message as its frames are longer than its length allows");
+        throw RpcException.CHUNK_TOO_LONG_ERROR;
+      }
+      if (!streamStarted && type != STREAM_IDENTIFIER) {
+        LOG.trace("Rejecting message as it does not start with a stream identifier");
+        throw RpcException.MALFORMED_REQUEST_ERROR;
+      }
+      if (message.writerIndex() < frameEnd) {
+        return OptionalInt.empty();
+      }
+      remaining -= getFrameDataLength(message, index + FRAME_HEADER_LENGTH, type, dataLength);
+      if (remaining < 0) {
+        LOG.trace("Rejecting message because its frames exceed the specified length");
+        throw RpcException.INCORRECT_LENGTH_ERROR;
+      }
+      streamStarted = true;
+      index = frameEnd;
+    }
+    return OptionalInt.of(index - start);
+  }
+
+  /** @return the number of uncompressed bytes a complete frame holds */
+  private int getFrameDataLength(
+      final ByteBuf message, final int dataStart, final int type, final int dataLength)
+      throws RpcException {
+    final int uncompressedLength;
+    switch (type) {
+      case STREAM_IDENTIFIER:
+        if (!Bytes.wrapByteBuf(message, dataStart, dataLength).equals(STREAM_IDENTIFIER_DATA)) {
+          throw RpcException.MALFORMED_REQUEST_ERROR;
+        }
+        return 0;
+      case COMPRESSED_DATA:
+        final Optional<LengthPrefix> preamble =
+            dataLength > CHECKSUM_LENGTH
+                ? LengthPrefix.read(message, dataStart + CHECKSUM_LENGTH)
+                : Optional.empty();
+        if (preamble.isEmpty() || preamble.get().getSize() > dataLength - CHECKSUM_LENGTH) {
+          throw RpcException.MALFORMED_REQUEST_ERROR;
+        }
+        uncompressedLength = preamble.get().getValue();
+        break;
+      case UNCOMPRESSED_DATA:
+        if (dataLength < CHECKSUM_LENGTH) {
+          throw RpcException.MALFORMED_REQUEST_ERROR;
+        }
+        uncompressedLength = dataLength - CHECKSUM_LENGTH;
+        break;
+      default:
+        if (type < MIN_SKIPPABLE) {
+          // Reserved unskippable chunk type
+          throw RpcException.MALFORMED_REQUEST_ERROR;
+        }
+        return 0;
+    }
+    if (uncompressedLength > MAX_FRAME_DATA_LENGTH) {
+      throw RpcException.CHUNK_TOO_LONG_ERROR;
+    }
+    return uncompressedLength;
+  }
+
+  private static int getMaxFramedLength(final int uncompressedLength) {
+    final int frameCount =
+        Math.max(1, (uncompressedLength + MAX_FRAME_DATA_LENGTH - 1) / MAX_FRAME_DATA_LENGTH);
+    final int frameOverhead = FRAME_HEADER_LENGTH + CHECKSUM_LENGTH + MAX_COMPRESSION_OVERHEAD;
+    return FRAME_HEADER_LENGTH
+        + STREAM_IDENTIFIER_DATA.size()
+        + frameCount * frameOverhead
+        + uncompressedLength
+        + uncompressedLength / 6;
+  }
+
+  // Snappy framing stores CRC-32C checksums of the uncompressed data, rotated and offset
+  private static int maskedChecksum(final byte[] data, final int offset, final int length) {
+    final CRC32C crc = new CRC32C();
+    crc.update(data, offset, length);
+    final int value = (int) crc.getValue();
+    return ((value >>> 15) | (value << 17)) + 0xa282ead8;
+  }
+}
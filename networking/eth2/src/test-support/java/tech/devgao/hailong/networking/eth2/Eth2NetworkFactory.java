@@ -29,14 +29,21 @@ import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import tech.devgao.hailong.networking.eth2.gossip.encoding.GossipEncoding;
 import tech.devgao.hailong.networking.eth2.peers.Eth2PeerManager;
 import tech.devgao.hailong.networking.p2p.libp2p.LibP2PNetwork;
 import tech.devgao.hailong.networking.p2p.network.NetworkConfig;
 import tech.devgao.hailong.networking.p2p.network.P2PNetwork;
 import tech.devgao.hailong.networking.p2p.network.PeerHandler;
 import tech.devgao.hailong.networking.p2p.rpc.RpcMethod;
+import tech.devgao.hailong.statetransition.StateTransition;
+import tech.devgao.hailong.statetransition.StateTransitionBlockReplayer;
+import tech.devgao.hailong.statetransition.util.ProposerDutyIndex;
 import tech.devgao.hailong.storage.ChainStorageClient;
-import tech.devgao.hailong.storage.HistoricalChainData;
+import tech.devgao.hailong.storage.MapDbDatabase;
+import tech.devgao.hailong.storage.StateStorageMode;
+import tech.devgao.hailong.storage.StorageQueryService;
+import tech.devgao.hailong.storage.api.StorageQueryChannel;
 import tech.devgao.hailong.util.Waiter;
 
 public class Eth2NetworkFactory {
@@ -61,6 +68,8 @@ public class Eth2NetworkFactory {
     protected List<Eth2Network> peers = new ArrayList<>();
     protected EventBus eventBus;
     protected ChainStorageClient chainStorageClient;
+    protected StorageQueryChannel historicalChainData;
+    protected GossipEncoding gossipEncoding = GossipEncoding.SSZ;
     protected List<RpcMethod> rpcMethods = new ArrayList<>();
     protected List<PeerHandler> peerHandlers = new ArrayList<>();
 
@@ -101,7 +110,6 @@ public class Eth2NetworkFactory {
     protected Eth2Network buildNetwork(final NetworkConfig config) {
       {
         // Setup eth2 handlers
-        final HistoricalChainData historicalChainData = new HistoricalChainData(eventBus);
         final Eth2PeerManager eth2PeerManager =
             Eth2PeerManager.create(chainStorageClient, historicalChainData, METRICS_SYSTEM);
         final Collection<RpcMethod> eth2Protocols = eth2PeerManager.getBeaconChainMethods().all();
@@ -111,7 +119,13 @@ public class Eth2NetworkFactory {
         final P2PNetwork<?> network =
             new LibP2PNetwork(config, METRICS_SYSTEM, rpcMethods, peerHandlers);
 
-        return new Eth2Network(network, eth2PeerManager, eventBus, chainStorageClient);
+        return new Eth2Network(
+            network,
+            eth2PeerManager,
+            eventBus,
+            chainStorageClient,
+            gossipEncoding,
+            new ProposerDutyIndex(new StateTransition(false)));
       }
     }
 
@@ -133,6 +147,12 @@ public class Eth2NetworkFactory {
       if (chainStorageClient == null) {
         chainStorageClient = ChainStorageClient.memoryOnlyClient(eventBus);
       }
+      if (historicalChainData == null) {
+        historicalChainData =
+            StorageQueryService.create(
+                MapDbDatabase.createInMemory(
+                    StateStorageMode.archive(), new StateTransitionBlockReplayer()));
+      }
     }
 
     public Eth2P2PNetworkBuilder peer(final Eth2Network peer) {
@@ -152,6 +172,19 @@ public class Eth2NetworkFactory {
       return this;
     }
 
+    public Eth2P2PNetworkBuilder historicalChainData(
+        final StorageQueryChannel historicalChainData) {
+      checkNotNull(historicalChainData);
+      this.historicalChainData = historicalChainData;
+      return this;
+    }
+
+    public Eth2P2PNetworkBuilder gossipEncoding(final GossipEncoding gossipEncoding) {
+      checkNotNull(gossipEncoding);
+      this.gossipEncoding = gossipEncoding;
+      return this;
+    }
+
     public Eth2P2PNetworkBuilder rpcMethods(final Collection<RpcMethod> methods) {
       checkNotNull(methods);
       this.rpcMethods.addAll(methods);
@@ -26,10 +26,11 @@ import org.junit.jupiter.api.Test;
 import tech.devgao.hailong.datastructures.operations.AggregateAndProof;
 import tech.devgao.hailong.datastructures.util.DataStructureUtil;
 import tech.devgao.hailong.datastructures.util.SimpleOffsetSerializer;
-import tech.devgao.hailong.networking.eth2.gossip.topics.AggregateTopicHandler;
+import tech.devgao.hailong.networking.eth2.gossip.encoding.GossipEncoding;
 import tech.devgao.hailong.networking.p2p.gossip.GossipNetwork;
 import tech.devgao.hailong.networking.p2p.gossip.TopicChannel;
 import tech.devgao.hailong.storage.ChainStorageClient;
+import tech.devgao.hailong.util.bls.BLSSignatureBatcher;
 
 public class AggregateGossipManagerTest {
 
@@ -37,11 +38,15 @@ public class AggregateGossipManagerTest {
   private final ChainStorageClient storageClient = ChainStorageClient.memoryOnlyClient(eventBus);
   private final GossipNetwork gossipNetwork = mock(GossipNetwork.class);
   private final TopicChannel topicChannel = mock(TopicChannel.class);
+  private final BLSSignatureBatcher signatureBatcher = mock(BLSSignatureBatcher.class);
 
   @BeforeEach
   public void setup() {
-    doReturn(topicChannel).when(gossipNetwork).subscribe(eq(AggregateTopicHandler.TOPIC), any());
-    new AggregateGossipManager(gossipNetwork, eventBus, storageClient);
+    doReturn(topicChannel)
+        .when(gossipNetwork)
+        .subscribe(eq("/eth2/beacon_aggregate_and_proof/ssz"), any());
+    new AggregateGossipManager(
+        gossipNetwork, GossipEncoding.SSZ, eventBus, storageClient, signatureBatcher);
   }
 
   @Test
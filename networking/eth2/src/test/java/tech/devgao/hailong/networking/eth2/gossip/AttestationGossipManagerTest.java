@@ -31,12 +31,14 @@ import org.junit.jupiter.api.Test;
 import tech.devgao.hailong.datastructures.operations.Attestation;
 import tech.devgao.hailong.datastructures.util.DataStructureUtil;
 import tech.devgao.hailong.datastructures.util.SimpleOffsetSerializer;
+import tech.devgao.hailong.networking.eth2.gossip.encoding.GossipEncoding;
 import tech.devgao.hailong.networking.p2p.gossip.GossipNetwork;
 import tech.devgao.hailong.networking.p2p.gossip.TopicChannel;
 import tech.devgao.hailong.statetransition.BeaconChainUtil;
 import tech.devgao.hailong.statetransition.events.CommitteeAssignmentEvent;
 import tech.devgao.hailong.statetransition.events.CommitteeDismissalEvent;
 import tech.devgao.hailong.storage.ChainStorageClient;
+import tech.devgao.hailong.util.bls.BLSSignatureBatcher;
 
 public class AttestationGossipManagerTest {
 
@@ -45,6 +47,7 @@ public class AttestationGossipManagerTest {
   private final ChainStorageClient storageClient = ChainStorageClient.memoryOnlyClient(eventBus);
   private final GossipNetwork gossipNetwork = mock(GossipNetwork.class);
   private final TopicChannel topicChannel = mock(TopicChannel.class);
+  private final BLSSignatureBatcher signatureBatcher = mock(BLSSignatureBatcher.class);
 
   @BeforeEach
   public void setup() {
@@ -52,7 +55,8 @@ public class AttestationGossipManagerTest {
     doReturn(topicChannel)
         .when(gossipNetwork)
         .subscribe(argThat((val) -> val.matches(topicRegex)), any());
-    new AttestationGossipManager(gossipNetwork, eventBus, storageClient);
+    new AttestationGossipManager(
+        gossipNetwork, GossipEncoding.SSZ, eventBus, storageClient, signatureBatcher);
   }
 
   @Test
@@ -26,10 +26,12 @@ import org.junit.jupiter.api.Test;
 import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
 import tech.devgao.hailong.datastructures.util.DataStructureUtil;
 import tech.devgao.hailong.datastructures.util.SimpleOffsetSerializer;
-import tech.devgao.hailong.networking.eth2.gossip.topics.BlockTopicHandler;
+import tech.devgao.hailong.networking.eth2.gossip.encoding.GossipEncoding;
 import tech.devgao.hailong.networking.p2p.gossip.GossipNetwork;
 import tech.devgao.hailong.networking.p2p.gossip.TopicChannel;
+import tech.devgao.hailong.statetransition.StateTransition;
 import tech.devgao.hailong.statetransition.events.BlockProposedEvent;
+import tech.devgao.hailong.statetransition.util.ProposerDutyIndex;
 import tech.devgao.hailong.storage.ChainStorageClient;
 
 public class BlockGossipManagerTest {
@@ -41,8 +43,13 @@ public class BlockGossipManagerTest {
 
   @BeforeEach
   public void setup() {
-    doReturn(topicChannel).when(gossipNetwork).subscribe(eq(BlockTopicHandler.BLOCKS_TOPIC), any());
-    new BlockGossipManager(gossipNetwork, eventBus, storageClient);
+    doReturn(topicChannel).when(gossipNetwork).subscribe(eq("/eth2/beacon_block/ssz"), any());
+    new BlockGossipManager(
+        gossipNetwork,
+        GossipEncoding.SSZ,
+        eventBus,
+        storageClient,
+        new ProposerDutyIndex(new StateTransition(false)));
   }
 
   @Test
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.networking.eth2.gossip.encoding;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.junit.jupiter.api.Test;
+
+class SnappyGossipEncodingTest {
+  private final GossipEncoding encoding = GossipEncoding.SSZ_SNAPPY;
+
+  @Test
+  public void shouldRoundTripData() throws Exception {
+    final Bytes data = Bytes.wrap(new byte[1000]);
+    final Bytes encoded = encoding.encode(data);
+    assertThat(encoded.size()).isLessThan(data.size());
+    assertThat(encoding.decode(encoded)).isEqualTo(data);
+  }
+
+  @Test
+  public void shouldRejectMessagesThatDecompressBeyondMaximumSize() {
+    // Header declaring an uncompressed length of 2MiB
+    final Bytes encoded = Bytes.fromHexString("0x80808001");
+    assertThatThrownBy(() -> encoding.decode(encoded)).isInstanceOf(DecodingException.class);
+  }
+
+  @Test
+  public void shouldRejectMalformedMessages() {
+    final Bytes encoded = Bytes.fromHexString("0x0aff01");
+    assertThatThrownBy(() -> encoding.decode(encoded)).isInstanceOf(DecodingException.class);
+  }
+
+  @Test
+  public void shouldFindEncodingByName() {
+    assertThat(GossipEncoding.fromName("ssz_snappy")).isSameAs(GossipEncoding.SSZ_SNAPPY);
+    assertThat(GossipEncoding.fromName("ssz")).isSameAs(GossipEncoding.SSZ);
+    assertThatThrownBy(() -> GossipEncoding.fromName("json"))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -25,14 +25,21 @@ import org.junit.jupiter.api.Test;
 import tech.devgao.hailong.datastructures.operations.AggregateAndProof;
 import tech.devgao.hailong.datastructures.util.DataStructureUtil;
 import tech.devgao.hailong.datastructures.util.SimpleOffsetSerializer;
+import tech.devgao.hailong.networking.eth2.gossip.encoding.GossipEncoding;
+import tech.devgao.hailong.networking.eth2.gossip.events.GossipedAggregateEvent;
 import tech.devgao.hailong.statetransition.BeaconChainUtil;
 import tech.devgao.hailong.storage.ChainStorageClient;
+import tech.devgao.hailong.util.async.SafeFuture;
+import tech.devgao.hailong.util.async.StubAsyncRunner;
+import tech.devgao.hailong.util.bls.BLSSignatureBatcher;
 
 public class AggregateTopicHandlerTest {
   private final EventBus eventBus = mock(EventBus.class);
   private final ChainStorageClient storageClient = ChainStorageClient.memoryOnlyClient(eventBus);
+  private final BLSSignatureBatcher signatureBatcher =
+      new BLSSignatureBatcher(new StubAsyncRunner(), 1, 0);
   private final AggregateTopicHandler topicHandler =
-      new AggregateTopicHandler(eventBus, storageClient);
+      new AggregateTopicHandler(eventBus, GossipEncoding.SSZ, storageClient, signatureBatcher);
   private final BeaconChainUtil beaconChainUtil = BeaconChainUtil.create(12, storageClient);
 
   @BeforeEach
@@ -45,8 +52,8 @@ public class AggregateTopicHandlerTest {
     final AggregateAndProof aggregate = DataStructureUtil.randomAggregateAndProof(1);
     final Bytes serialized = SimpleOffsetSerializer.serialize(aggregate);
 
-    final boolean result = topicHandler.handleMessage(serialized);
-    assertThat(result).isEqualTo(false);
-    verify(eventBus, never()).post(aggregate);
+    final SafeFuture<Boolean> result = topicHandler.handleMessage(serialized);
+    assertThat(result).isCompletedWithValue(false);
+    verify(eventBus, never()).post(new GossipedAggregateEvent(aggregate));
   }
 }
@@ -27,19 +27,26 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import tech.devgao.hailong.datastructures.operations.Attestation;
 import tech.devgao.hailong.datastructures.util.SimpleOffsetSerializer;
+import tech.devgao.hailong.networking.eth2.gossip.encoding.GossipEncoding;
+import tech.devgao.hailong.networking.eth2.gossip.events.GossipedAttestationEvent;
 import tech.devgao.hailong.statetransition.AttestationGenerator;
 import tech.devgao.hailong.statetransition.BeaconChainUtil;
 import tech.devgao.hailong.storage.ChainStorageClient;
 import tech.devgao.hailong.storage.Store;
+import tech.devgao.hailong.util.async.SafeFuture;
+import tech.devgao.hailong.util.async.StubAsyncRunner;
 import tech.devgao.hailong.util.bls.BLSKeyGenerator;
 import tech.devgao.hailong.util.bls.BLSKeyPair;
+import tech.devgao.hailong.util.bls.BLSSignatureBatcher;
 
 public class AttestationTopicHandlerTest {
   private final List<BLSKeyPair> validatorKeys = BLSKeyGenerator.generateKeyPairs(12);
   private final EventBus eventBus = mock(EventBus.class);
   private final ChainStorageClient storageClient = ChainStorageClient.memoryOnlyClient(eventBus);
+  private final BLSSignatureBatcher signatureBatcher =
+      new BLSSignatureBatcher(new StubAsyncRunner(), 1, 0);
   private final AttestationTopicHandler topicHandler =
-      new AttestationTopicHandler(eventBus, storageClient, 1);
+      new AttestationTopicHandler(eventBus, GossipEncoding.SSZ, storageClient, signatureBatcher, 1);
 
   @BeforeEach
   public void setup() {
@@ -52,9 +59,9 @@ public class AttestationTopicHandlerTest {
     final Attestation attestation = attestationGenerator.validAttestation(storageClient);
     final Bytes serialized = SimpleOffsetSerializer.serialize(attestation);
 
-    final boolean result = topicHandler.handleMessage(serialized);
-    assertThat(result).isEqualTo(true);
-    verify(eventBus).post(attestation);
+    final SafeFuture<Boolean> result = topicHandler.handleMessage(serialized);
+    assertThat(result).isCompletedWithValue(true);
+    verify(eventBus).post(new GossipedAttestationEvent(attestation));
   }
 
   @Test
@@ -64,17 +71,17 @@ public class AttestationTopicHandlerTest {
         attestationGenerator.attestationWithInvalidSignature(storageClient);
     final Bytes serialized = SimpleOffsetSerializer.serialize(attestation);
 
-    final boolean result = topicHandler.handleMessage(serialized);
-    assertThat(result).isEqualTo(false);
-    verify(eventBus, never()).post(attestation);
+    final SafeFuture<Boolean> result = topicHandler.handleMessage(serialized);
+    assertThat(result).isCompletedWithValue(false);
+    verify(eventBus, never()).post(new GossipedAttestationEvent(attestation));
   }
 
   @Test
   public void handleMessage_invalidAttestation_invalidSSZ() {
     final Bytes serialized = Bytes.fromHexString("0x3456");
 
-    final boolean result = topicHandler.handleMessage(serialized);
-    assertThat(result).isEqualTo(false);
+    final SafeFuture<Boolean> result = topicHandler.handleMessage(serialized);
+    assertThat(result).isCompletedWithValue(false);
   }
 
   @Test
@@ -89,8 +96,8 @@ public class AttestationTopicHandlerTest {
     storageClient.setStore(mockStore);
     doReturn(null).when(mockStore).getBlockState(blockRoot);
 
-    final boolean result = topicHandler.handleMessage(serialized);
-    assertThat(result).isEqualTo(false);
-    verify(eventBus, never()).post(attestation);
+    final SafeFuture<Boolean> result = topicHandler.handleMessage(serialized);
+    assertThat(result).isCompletedWithValue(false);
+    verify(eventBus, never()).post(new GossipedAttestationEvent(attestation));
   }
 }
@@ -26,15 +26,24 @@ import org.junit.jupiter.api.Test;
 import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
 import tech.devgao.hailong.datastructures.util.DataStructureUtil;
 import tech.devgao.hailong.datastructures.util.SimpleOffsetSerializer;
+import tech.devgao.hailong.networking.eth2.gossip.encoding.GossipEncoding;
 import tech.devgao.hailong.networking.eth2.gossip.events.GossipedBlockEvent;
 import tech.devgao.hailong.statetransition.BeaconChainUtil;
+import tech.devgao.hailong.statetransition.StateTransition;
+import tech.devgao.hailong.statetransition.util.ProposerDutyIndex;
 import tech.devgao.hailong.storage.ChainStorageClient;
+import tech.devgao.hailong.util.async.SafeFuture;
 
 public class BlockTopicHandlerTest {
   private final EventBus eventBus = mock(EventBus.class);
   private final ChainStorageClient storageClient = ChainStorageClient.memoryOnlyClient(eventBus);
   private final BeaconChainUtil beaconChainUtil = BeaconChainUtil.create(2, storageClient);
-  private final BlockTopicHandler topicHandler = new BlockTopicHandler(eventBus, storageClient);
+  private final BlockTopicHandler topicHandler =
+      new BlockTopicHandler(
+          eventBus,
+          GossipEncoding.SSZ,
+          storageClient,
+          new ProposerDutyIndex(new StateTransition(false)));
 
   @BeforeEach
   public void setup() {
@@ -48,8 +57,8 @@ public class BlockTopicHandlerTest {
     Bytes serialized = SimpleOffsetSerializer.serialize(block);
     beaconChainUtil.setSlot(nextSlot);
 
-    final boolean result = topicHandler.handleMessage(serialized);
-    assertThat(result).isEqualTo(true);
+    final SafeFuture<Boolean> result = topicHandler.handleMessage(serialized);
+    assertThat(result).isCompletedWithValue(true);
     verify(eventBus).post(new GossipedBlockEvent(block));
   }
 
@@ -60,8 +69,8 @@ public class BlockTopicHandlerTest {
     Bytes serialized = SimpleOffsetSerializer.serialize(block);
     beaconChainUtil.setSlot(storageClient.getBestSlot());
 
-    final boolean result = topicHandler.handleMessage(serialized);
-    assertThat(result).isEqualTo(false);
+    final SafeFuture<Boolean> result = topicHandler.handleMessage(serialized);
+    assertThat(result).isCompletedWithValue(false);
     verify(eventBus).post(new GossipedBlockEvent(block));
   }
 
@@ -70,8 +79,8 @@ public class BlockTopicHandlerTest {
     SignedBeaconBlock block = DataStructureUtil.randomSignedBeaconBlock(1, 100);
     Bytes serialized = SimpleOffsetSerializer.serialize(block);
 
-    final boolean result = topicHandler.handleMessage(serialized);
-    assertThat(result).isEqualTo(false);
+    final SafeFuture<Boolean> result = topicHandler.handleMessage(serialized);
+    assertThat(result).isCompletedWithValue(false);
     verify(eventBus).post(new GossipedBlockEvent(block));
   }
 
@@ -79,8 +88,8 @@ public class BlockTopicHandlerTest {
   public void handleMessage_invalidBlock_invalidSSZ() {
     Bytes serialized = Bytes.fromHexString("0x1234");
 
-    final boolean result = topicHandler.handleMessage(serialized);
-    assertThat(result).isEqualTo(false);
+    final SafeFuture<Boolean> result = topicHandler.handleMessage(serialized);
+    assertThat(result).isCompletedWithValue(false);
   }
 
   @Test
@@ -90,8 +99,8 @@ public class BlockTopicHandlerTest {
     Bytes serialized = SimpleOffsetSerializer.serialize(block);
     beaconChainUtil.setSlot(nextSlot);
 
-    final boolean result = topicHandler.handleMessage(serialized);
-    assertThat(result).isEqualTo(false);
+    final SafeFuture<Boolean> result = topicHandler.handleMessage(serialized);
+    assertThat(result).isCompletedWithValue(false);
     verify(eventBus, never()).post(new GossipedBlockEvent(block));
   }
 }
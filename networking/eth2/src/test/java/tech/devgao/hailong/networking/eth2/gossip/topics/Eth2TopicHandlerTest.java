@@ -14,6 +14,7 @@
 package tech.devgao.hailong.networking.eth2.gossip.topics;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -28,32 +29,37 @@ import org.apache.tuweni.ssz.SSZException;
 import org.junit.jupiter.api.Test;
 import tech.devgao.hailong.datastructures.operations.Attestation;
 import tech.devgao.hailong.datastructures.util.DataStructureUtil;
+import tech.devgao.hailong.networking.eth2.gossip.encoding.GossipEncoding;
+import tech.devgao.hailong.util.async.SafeFuture;
 
 public class Eth2TopicHandlerTest {
-  private static final String TOPIC = "testing";
+  private static final String TOPIC_NAME = "testing";
 
   private final EventBus eventBus = mock(EventBus.class);
-  private final MockTopicHandler topicHandler = spy(new MockTopicHandler(eventBus));
+  private final MockTopicHandler topicHandler =
+      spy(new MockTopicHandler(eventBus, GossipEncoding.SSZ));
   private final Bytes message = Bytes.fromHexString("0x01");
 
   private final Attestation deserialized = DataStructureUtil.randomAttestation(1);
   private Supplier<Attestation> deserializer = Suppliers.ofInstance(deserialized);
   private Supplier<Boolean> validator = Suppliers.ofInstance(true);
+  private Supplier<SafeFuture<Boolean>> validation =
+      () -> SafeFuture.completedFuture(validator.get());
 
   @Test
   public void handleMessage_valid() {
-    final boolean result = topicHandler.handleMessage(message);
+    final SafeFuture<Boolean> result = topicHandler.handleMessage(message);
 
-    assertThat(result).isEqualTo(true);
+    assertThat(result).isCompletedWithValue(true);
     verify(eventBus).post(deserialized);
   }
 
   @Test
   public void handleMessage_invalid() {
     validator = Suppliers.ofInstance(false);
-    final boolean result = topicHandler.handleMessage(message);
+    final SafeFuture<Boolean> result = topicHandler.handleMessage(message);
 
-    assertThat(result).isEqualTo(false);
+    assertThat(result).isCompletedWithValue(false);
     verify(eventBus, never()).post(deserialized);
   }
 
@@ -64,9 +70,9 @@ public class Eth2TopicHandlerTest {
           throw new SSZException("whoops");
         };
     doThrow(new SSZException("whoops")).when(topicHandler).deserialize(message);
-    final boolean result = topicHandler.handleMessage(message);
+    final SafeFuture<Boolean> result = topicHandler.handleMessage(message);
 
-    assertThat(result).isEqualTo(false);
+    assertThat(result).isCompletedWithValue(false);
     verify(eventBus, never()).post(deserialized);
   }
 
@@ -76,18 +82,18 @@ public class Eth2TopicHandlerTest {
         () -> {
           throw new RuntimeException("whoops");
         };
-    final boolean result = topicHandler.handleMessage(message);
+    final SafeFuture<Boolean> result = topicHandler.handleMessage(message);
 
-    assertThat(result).isEqualTo(false);
+    assertThat(result).isCompletedWithValue(false);
     verify(eventBus, never()).post(deserialized);
   }
 
   @Test
   public void handleMessage_whenDeserializeReturnsNull() {
     deserializer = () -> null;
-    final boolean result = topicHandler.handleMessage(message);
+    final SafeFuture<Boolean> result = topicHandler.handleMessage(message);
 
-    assertThat(result).isEqualTo(false);
+    assertThat(result).isCompletedWithValue(false);
     verify(eventBus, never()).post(deserialized);
   }
 
@@ -97,21 +103,74 @@ public class Eth2TopicHandlerTest {
         () -> {
           throw new RuntimeException("whoops");
         };
-    final boolean result = topicHandler.handleMessage(message);
+    final SafeFuture<Boolean> result = topicHandler.handleMessage(message);
 
-    assertThat(result).isEqualTo(false);
+    assertThat(result).isCompletedWithValue(false);
+    verify(eventBus, never()).post(deserialized);
+  }
+
+  @Test
+  public void handleMessage_whenValidationCompletesLater() {
+    final SafeFuture<Boolean> pendingValidation = new SafeFuture<>();
+    validation = () -> pendingValidation;
+    final SafeFuture<Boolean> result = topicHandler.handleMessage(message);
+
+    assertThat(result).isNotDone();
+    verify(eventBus, never()).post(deserialized);
+
+    pendingValidation.complete(true);
+    assertThat(result).isCompletedWithValue(true);
+    verify(eventBus).post(deserialized);
+  }
+
+  @Test
+  public void handleMessage_whenValidationFailsLater() {
+    validation = () -> SafeFuture.failedFuture(new RuntimeException("whoops"));
+    final SafeFuture<Boolean> result = topicHandler.handleMessage(message);
+
+    assertThat(result).isCompletedWithValue(false);
+    verify(eventBus, never()).post(deserialized);
+  }
+
+  @Test
+  public void getTopic_shouldEndWithEncodingName() {
+    assertThat(topicHandler.getTopic()).isEqualTo("/eth2/testing/ssz");
+    assertThat(new MockTopicHandler(eventBus, GossipEncoding.SSZ_SNAPPY).getTopic())
+        .isEqualTo("/eth2/testing/ssz_snappy");
+  }
+
+  @Test
+  public void handleMessage_shouldDecompressSnappyMessages() {
+    final MockTopicHandler snappyHandler =
+        spy(new MockTopicHandler(eventBus, GossipEncoding.SSZ_SNAPPY));
+    final SafeFuture<Boolean> result =
+        snappyHandler.handleMessage(GossipEncoding.SSZ_SNAPPY.encode(message));
+
+    assertThat(result).isCompletedWithValue(true);
+    verify(snappyHandler).deserialize(message);
+    verify(eventBus).post(deserialized);
+  }
+
+  @Test
+  public void handleMessage_whenMessageCannotBeDecoded() {
+    final MockTopicHandler snappyHandler =
+        spy(new MockTopicHandler(eventBus, GossipEncoding.SSZ_SNAPPY));
+    final SafeFuture<Boolean> result = snappyHandler.handleMessage(Bytes.fromHexString("0xFF"));
+
+    assertThat(result).isCompletedWithValue(false);
+    verify(snappyHandler, never()).deserialize(any());
     verify(eventBus, never()).post(deserialized);
   }
 
   private class MockTopicHandler extends Eth2TopicHandler<Attestation> {
 
-    protected MockTopicHandler(final EventBus eventBus) {
-      super(eventBus);
+    protected MockTopicHandler(final EventBus eventBus, final GossipEncoding gossipEncoding) {
+      super(eventBus, gossipEncoding);
     }
 
     @Override
-    public String getTopic() {
-      return TOPIC;
+    protected String getTopicName() {
+      return TOPIC_NAME;
     }
 
     @Override
@@ -120,8 +179,8 @@ public class Eth2TopicHandlerTest {
     }
 
     @Override
-    protected boolean validateData(final Attestation attestation) {
-      return validator.get();
+    protected SafeFuture<Boolean> validateData(final Attestation attestation) {
+      return validation.get();
     }
   }
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.networking.eth2.peers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import tech.devgao.hailong.datastructures.networking.libp2p.rpc.GoodbyeMessage;
+import tech.devgao.hailong.networking.eth2.rpc.beaconchain.BeaconChainMethods;
+import tech.devgao.hailong.networking.eth2.rpc.beaconchain.methods.StatusMessageFactory;
+import tech.devgao.hailong.networking.eth2.rpc.core.Eth2RpcMethod;
+import tech.devgao.hailong.networking.eth2.rpc.core.encodings.RpcEncoding;
+import tech.devgao.hailong.networking.p2p.peer.Peer;
+import tech.devgao.hailong.networking.p2p.rpc.RpcMethod;
+import tech.devgao.hailong.networking.p2p.rpc.UnsupportedProtocolException;
+import tech.devgao.hailong.storage.ChainStorageClient;
+import tech.devgao.hailong.storage.CombinedChainDataClient;
+import tech.devgao.hailong.util.async.SafeFuture;
+
+class Eth2PeerTest {
+
+  private final ChainStorageClient chainStorageClient = mock(ChainStorageClient.class);
+  private final StatusMessageFactory statusMessageFactory =
+      new StatusMessageFactory(chainStorageClient);
+  private final BeaconChainMethods rpcMethods =
+      BeaconChainMethods.create(
+          mock(PeerLookup.class),
+          mock(CombinedChainDataClient.class),
+          chainStorageClient,
+          new NoOpMetricsSystem(),
+          statusMessageFactory);
+  private final RpcEncoding preferredEncoding = rpcMethods.getPreferredEncoding();
+  private final RpcEncoding fallbackEncoding =
+      rpcMethods.getFallbackEncoding(preferredEncoding).orElseThrow();
+  private final Peer delegate = mock(Peer.class);
+  private final Eth2Peer peer = new Eth2Peer(delegate, rpcMethods, statusMessageFactory);
+
+  @Test
+  void sendRequest_shouldFallBackToNextEncodingWhenProtocolIsRefused() {
+    when(delegate.sendRequest(any(), any(), any()))
+        .thenReturn(
+            SafeFuture.failedFuture(
+                new UnsupportedProtocolException("/protocol", new IllegalStateException())))
+        .thenReturn(new SafeFuture<>());
+
+    peer.sendGoodbye(GoodbyeMessage.REASON_CLIENT_SHUT_DOWN).reportExceptions();
+    peer.sendGoodbye(GoodbyeMessage.REASON_CLIENT_SHUT_DOWN).reportExceptions();
+
+    assertThat(getRequestEncodings(3))
+        .containsExactly(preferredEncoding, fallbackEncoding, fallbackEncoding);
+  }
+
+  @Test
+  void sendRequest_shouldKeepEncodingWhenRequestFailsForAnotherReason() {
+    when(delegate.sendRequest(any(), any(), any()))
+        .thenReturn(SafeFuture.failedFuture(new IllegalStateException("Stream closed")));
+
+    final SafeFuture<Void> result = peer.sendGoodbye(GoodbyeMessage.REASON_CLIENT_SHUT_DOWN);
+    peer.sendGoodbye(GoodbyeMessage.REASON_CLIENT_SHUT_DOWN).reportExceptions();
+
+    assertThat(result).isCompletedExceptionally();
+    assertThat(getRequestEncodings(2)).containsOnly(preferredEncoding);
+  }
+
+  private List<RpcEncoding> getRequestEncodings(final int requestCount) {
+    final ArgumentCaptor<RpcMethod> methodCaptor = ArgumentCaptor.forClass(RpcMethod.class);
+    verify(delegate, times(requestCount)).sendRequest(methodCaptor.capture(), any(), any());
+    return methodCaptor.getAllValues().stream()
+        .map(method -> ((Eth2RpcMethod<?, ?>) method).getEncoding())
+        .collect(Collectors.toList());
+  }
+}
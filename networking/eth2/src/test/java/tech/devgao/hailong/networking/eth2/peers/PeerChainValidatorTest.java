@@ -32,8 +32,8 @@ import tech.devgao.hailong.datastructures.networking.libp2p.rpc.GoodbyeMessage;
 import tech.devgao.hailong.datastructures.state.Checkpoint;
 import tech.devgao.hailong.datastructures.util.DataStructureUtil;
 import tech.devgao.hailong.storage.ChainStorageClient;
-import tech.devgao.hailong.storage.HistoricalChainData;
 import tech.devgao.hailong.storage.Store;
+import tech.devgao.hailong.storage.api.StorageQueryChannel;
 import tech.devgao.hailong.util.SSZTypes.Bytes4;
 import tech.devgao.hailong.util.async.SafeFuture;
 import tech.devgao.hailong.util.config.Constants;
@@ -43,7 +43,7 @@ public class PeerChainValidatorTest {
   private final Eth2Peer peer = mock(Eth2Peer.class);
   private final Store store = mock(Store.class);
   private final ChainStorageClient storageClient = mock(ChainStorageClient.class);
-  private final HistoricalChainData historicalChainData = mock(HistoricalChainData.class);
+  private final StorageQueryChannel historicalChainData = mock(StorageQueryChannel.class);
 
   private final UnsignedLong genesisTime = UnsignedLong.valueOf(0);
   private final Bytes4 remoteFork = new Bytes4(Bytes.fromHexString("0x1234", 4));
@@ -16,6 +16,7 @@ package tech.devgao.hailong.networking.eth2.rpc.beaconchain.methods;
 import static com.google.common.primitives.UnsignedLong.ONE;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -28,17 +29,21 @@ import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.bytes.Bytes32;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InOrder;
 import org.mockito.Mockito;
 import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
 import tech.devgao.hailong.datastructures.networking.libp2p.rpc.BeaconBlocksByRangeRequestMessage;
 import tech.devgao.hailong.datastructures.util.DataStructureUtil;
+import tech.devgao.hailong.datastructures.util.SimpleOffsetSerializer;
 import tech.devgao.hailong.networking.eth2.peers.Eth2Peer;
 import tech.devgao.hailong.networking.eth2.rpc.core.ResponseCallback;
 import tech.devgao.hailong.networking.eth2.rpc.core.RpcException;
 import tech.devgao.hailong.storage.CombinedChainDataClient;
+import tech.devgao.hailong.storage.api.StorageQueryChannel.BlockBytesConsumer;
 
 class BeaconBlocksByRangeMessageHandlerTest {
   private final Eth2Peer peer = mock(Eth2Peer.class);
@@ -56,6 +61,11 @@ class BeaconBlocksByRangeMessageHandlerTest {
   private final BeaconBlocksByRangeMessageHandler handler =
       new BeaconBlocksByRangeMessageHandler(storageClient);
 
+  @BeforeEach
+  public void setUp() {
+    when(storageClient.getFinalizedSlot()).thenReturn(UnsignedLong.ZERO);
+  }
+
   @Test
   public void shouldReturnNoBlocksWhenHeadBlockIsNotInStore() {
     final Bytes32 headBlockRoot = Bytes32.fromHexStringLenient("0x123456");
@@ -238,6 +248,91 @@ class BeaconBlocksByRangeMessageHandlerTest {
     verify(storageClient, never()).getBlockAtSlotExact(greaterThan(bestSlot), any());
   }
 
+  @Test
+  public void shouldSendFinalizedBlocksAsStoredThenContinueFromRecentBlocks() {
+    final int startBlock = 2;
+    final int count = 5;
+    final int skip = 1;
+    final SignedBeaconBlock headBlock = BLOCKS.get(10);
+    final Bytes32 headBlockRoot = headBlock.getMessage().hash_tree_root();
+    withCanonicalHeadBlock(headBlock);
+    when(storageClient.getFinalizedSlot()).thenReturn(UnsignedLong.valueOf(6));
+
+    // Slot 4 is empty
+    withFinalizedBlocks(2, 6, 1, 2, 3, 5, 6);
+    withBlockAtSlot(7, headBlockRoot);
+
+    handler.onIncomingMessage(
+        peer,
+        new BeaconBlocksByRangeRequestMessage(
+            headBlockRoot,
+            UnsignedLong.valueOf(startBlock),
+            UnsignedLong.valueOf(count),
+            UnsignedLong.valueOf(skip)),
+        listener);
+
+    final InOrder inOrder = Mockito.inOrder(listener);
+    inOrder.verify(listener).respondSerialized(serialize(BLOCKS.get(2)));
+    inOrder.verify(listener).respondSerialized(serialize(BLOCKS.get(3)));
+    inOrder.verify(listener).respondSerialized(serialize(BLOCKS.get(5)));
+    inOrder.verify(listener).respondSerialized(serialize(BLOCKS.get(6)));
+    inOrder.verify(listener).respond(BLOCKS.get(7));
+    inOrder.verify(listener).completeSuccessfully();
+    verifyNoMoreInteractions(listener);
+    verify(storageClient, never()).getBlockAtSlotExact(lessThan(UnsignedLong.valueOf(7)), any());
+  }
+
+  @Test
+  public void shouldStopSendingFinalizedBlocksOnceCountIsReached() {
+    final int startBlock = 2;
+    final int count = 2;
+    final int skip = 2;
+    final SignedBeaconBlock headBlock = BLOCKS.get(10);
+    final Bytes32 headBlockRoot = headBlock.getMessage().hash_tree_root();
+    withCanonicalHeadBlock(headBlock);
+    when(storageClient.getFinalizedSlot()).thenReturn(UnsignedLong.valueOf(8));
+    withFinalizedBlocks(2, 8, 2, 2, 4, 6, 8);
+
+    handler.onIncomingMessage(
+        peer,
+        new BeaconBlocksByRangeRequestMessage(
+            headBlockRoot,
+            UnsignedLong.valueOf(startBlock),
+            UnsignedLong.valueOf(count),
+            UnsignedLong.valueOf(skip)),
+        listener);
+
+    final InOrder inOrder = Mockito.inOrder(listener);
+    inOrder.verify(listener).respondSerialized(serialize(BLOCKS.get(2)));
+    inOrder.verify(listener).respondSerialized(serialize(BLOCKS.get(4)));
+    inOrder.verify(listener).completeSuccessfully();
+    verifyNoMoreInteractions(listener);
+    verify(storageClient, never()).getBlockAtSlotExact(any(), any());
+  }
+
+  @Test
+  public void shouldStreamAllFinalizedBlocksWithOneQuery() {
+    final SignedBeaconBlock headBlock = BLOCKS.get(10);
+    final Bytes32 headBlockRoot = headBlock.getMessage().hash_tree_root();
+    withCanonicalHeadBlock(headBlock, UnsignedLong.valueOf(200));
+    when(storageClient.getFinalizedSlot()).thenReturn(UnsignedLong.valueOf(100));
+    when(storageClient.streamFinalizedBlockBytes(any(), any(), any(), any()))
+        .thenReturn(completedFuture(null));
+    when(storageClient.getBlockAtSlotExact(any(), any()))
+        .thenReturn(completedFuture(Optional.empty()));
+
+    handler.onIncomingMessage(
+        peer,
+        new BeaconBlocksByRangeRequestMessage(headBlockRoot, ONE, UnsignedLong.MAX_VALUE, ONE),
+        listener);
+
+    verify(storageClient)
+        .streamFinalizedBlockBytes(eq(ONE), eq(UnsignedLong.valueOf(100)), eq(ONE), any());
+    verify(storageClient, never()).getBlockAtSlotExact(lessThan(UnsignedLong.valueOf(101)), any());
+    verify(storageClient).getBlockAtSlotExact(UnsignedLong.valueOf(200), headBlockRoot);
+    verifyNoBlocksReturned();
+  }
+
   @Test
   public void shouldRejectRequestWhenStepIsZero() {
     final int startBlock = 15;
@@ -296,7 +391,38 @@ class BeaconBlocksByRangeMessageHandlerTest {
         .thenReturn(completedFuture(Optional.empty()));
   }
 
+  private void withFinalizedBlocks(
+      final int startSlot, final int endSlot, final int step, final int... blockSlots) {
+    final List<Bytes> blocks =
+        IntStream.of(blockSlots)
+            .mapToObj(slot -> serialize(BLOCKS.get(slot)))
+            .collect(Collectors.toList());
+    when(storageClient.streamFinalizedBlockBytes(
+            eq(UnsignedLong.valueOf(startSlot)),
+            eq(UnsignedLong.valueOf(endSlot)),
+            eq(UnsignedLong.valueOf(step)),
+            any()))
+        .thenAnswer(
+            invocation -> {
+              final BlockBytesConsumer consumer = invocation.getArgument(3);
+              for (Bytes block : blocks) {
+                if (!consumer.accept(block)) {
+                  break;
+                }
+              }
+              return completedFuture(null);
+            });
+  }
+
+  private Bytes serialize(final SignedBeaconBlock block) {
+    return SimpleOffsetSerializer.serialize(block);
+  }
+
   private UnsignedLong greaterThan(final UnsignedLong bestSlot) {
     return argThat(argument -> argument.compareTo(bestSlot) > 0);
   }
+
+  private UnsignedLong lessThan(final UnsignedLong slot) {
+    return argThat(argument -> argument.compareTo(slot) < 0);
+  }
 }
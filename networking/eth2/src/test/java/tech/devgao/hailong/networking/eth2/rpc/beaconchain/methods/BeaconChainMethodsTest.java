@@ -27,6 +27,8 @@ import tech.devgao.hailong.datastructures.networking.libp2p.rpc.StatusMessage;
 import tech.devgao.hailong.networking.eth2.peers.PeerLookup;
 import tech.devgao.hailong.networking.eth2.rpc.beaconchain.BeaconChainMethods;
 import tech.devgao.hailong.networking.eth2.rpc.core.RequestRpcDecoder;
+import tech.devgao.hailong.networking.eth2.rpc.core.encodings.RpcEncoding;
+import tech.devgao.hailong.networking.p2p.rpc.RpcMethod;
 import tech.devgao.hailong.storage.ChainStorageClient;
 import tech.devgao.hailong.storage.CombinedChainDataClient;
 import tech.devgao.hailong.util.SSZTypes.Bytes4;
@@ -81,11 +83,28 @@ public class BeaconChainMethodsTest {
   @Test
   public void shouldDecodeStatusMessageRequest() throws Exception {
     final RequestRpcDecoder<StatusMessage> decoder =
-        beaconChainMethods.status().createRequestDecoder();
+        beaconChainMethods.status(RpcEncoding.SSZ).createRequestDecoder();
     final StatusMessage decodedRequest =
         decoder
             .onDataReceived(Unpooled.wrappedBuffer(RECORDED_STATUS_REQUEST_BYTES.toArrayUnsafe()))
             .orElseThrow();
     assertThat(decodedRequest).isEqualTo(RECORDED_STATUS_MESSAGE_DATA);
   }
+
+  @Test
+  public void shouldRegisterEachMethodForEverySupportedEncoding() {
+    assertThat(beaconChainMethods.all())
+        .extracting(RpcMethod::getId)
+        .contains(
+            "/eth2/beacon_chain/req/status/1/ssz_snappy", "/eth2/beacon_chain/req/status/1/ssz");
+    assertThat(beaconChainMethods.all()).hasSize(8);
+  }
+
+  @Test
+  public void shouldPreferSnappyAndFallBackToSsz() {
+    assertThat(beaconChainMethods.getPreferredEncoding()).isEqualTo(RpcEncoding.SSZ_SNAPPY);
+    assertThat(beaconChainMethods.getFallbackEncoding(RpcEncoding.SSZ_SNAPPY))
+        .contains(RpcEncoding.SSZ);
+    assertThat(beaconChainMethods.getFallbackEncoding(RpcEncoding.SSZ)).isEmpty();
+  }
 }
@@ -14,21 +14,18 @@
 package tech.devgao.hailong.networking.eth2.rpc.core;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.verifyNoMoreInteractions;
-import static org.mockito.Mockito.when;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
+import java.util.ArrayList;
+import java.util.List;
 import org.apache.tuweni.bytes.Bytes;
 import org.junit.jupiter.api.Test;
 import tech.devgao.hailong.networking.eth2.rpc.core.MessageBuffer.DataConsumer;
 
 class MessageBufferTest {
 
-  private final DataConsumer consumer = mock(DataConsumer.class);
   private final MessageBuffer buffer = new MessageBuffer();
   private final ByteBuf input = Unpooled.wrappedBuffer(new byte[] {0, 1, 2, 3, 4, 5, 6, 7, 8, 9});
 
@@ -45,32 +42,63 @@ class MessageBufferTest {
 
   @Test
   public void shouldRemoveConsumedBytes() throws Exception {
-    when(consumer.consumeData(Bytes.wrapByteBuf(input))).thenReturn(3);
-    when(consumer.consumeData(Bytes.wrapByteBuf(input).slice(3))).thenReturn(7);
+    final List<Bytes> consumedData = new ArrayList<>();
+    final DataConsumer consumer = recordingConsumer(consumedData, 3, 7);
 
     buffer.appendData(input);
     buffer.consumeData(consumer);
 
-    verify(consumer).consumeData(Bytes.wrapByteBuf(input));
-    verify(consumer).consumeData(Bytes.wrapByteBuf(input).slice(3));
-    verifyNoMoreInteractions(consumer);
+    assertThat(consumedData)
+        .containsExactly(Bytes.wrapByteBuf(input), Bytes.wrapByteBuf(input).slice(3));
     assertThat(buffer.isEmpty()).isTrue();
   }
 
   @Test
   public void shouldStopConsumingDataWhenConsumerReturnsZero() throws Exception {
-    when(consumer.consumeData(Bytes.wrapByteBuf(input))).thenReturn(3);
-    when(consumer.consumeData(Bytes.wrapByteBuf(input).slice(3))).thenReturn(0);
+    final List<Bytes> consumedData = new ArrayList<>();
+    final DataConsumer consumer = recordingConsumer(consumedData, 3, 0);
 
     buffer.appendData(input);
     buffer.consumeData(consumer);
 
-    verify(consumer).consumeData(Bytes.wrapByteBuf(input));
-    verify(consumer).consumeData(Bytes.wrapByteBuf(input).slice(3));
-    verifyNoMoreInteractions(consumer);
+    assertThat(consumedData)
+        .containsExactly(Bytes.wrapByteBuf(input), Bytes.wrapByteBuf(input).slice(3));
     assertThat(buffer.isEmpty()).isFalse();
   }
 
+  @Test
+  public void shouldPresentDataFromMultipleBuffersContiguously() throws Exception {
+    final ByteBuf input2 = Unpooled.wrappedBuffer(new byte[] {11, 22, 33});
+    final List<Bytes> consumedData = new ArrayList<>();
+    final DataConsumer consumer = recordingConsumer(consumedData, 12, 0);
+
+    buffer.appendData(input);
+    buffer.appendData(input2);
+    buffer.consumeData(consumer);
+
+    assertThat(consumedData)
+        .containsExactly(
+            Bytes.concatenate(Bytes.wrapByteBuf(input), Bytes.wrapByteBuf(input2)),
+            Bytes.of(33));
+  }
+
+  @Test
+  public void shouldNotMoveConsumedPositionWhenConsumerReadsData() throws Exception {
+    final List<Bytes> consumedData = new ArrayList<>();
+    final DataConsumer consumer =
+        data -> {
+          consumedData.add(Bytes.wrap(ByteBufUtil.getBytes(data)));
+          data.skipBytes(data.readableBytes());
+          return consumedData.size() == 1 ? 3 : 0;
+        };
+
+    buffer.appendData(input);
+    buffer.consumeData(consumer);
+
+    assertThat(consumedData)
+        .containsExactly(Bytes.wrapByteBuf(input), Bytes.wrapByteBuf(input).slice(3));
+  }
+
   @Test
   public void shouldRetainByteBufWhenAdded() {
     assertThat(input.refCnt()).isEqualTo(1);
@@ -99,7 +127,7 @@ class MessageBufferTest {
   @Test
   public void shouldReleaseByteBufsWhenDataConsumed() throws Exception {
     final ByteBuf input2 = Unpooled.wrappedBuffer(new byte[] {11, 22, 33});
-    when(consumer.consumeData(any())).thenReturn(11, 0);
+    final DataConsumer consumer = recordingConsumer(new ArrayList<>(), 11, 0);
 
     buffer.appendData(input);
     buffer.appendData(input2);
@@ -122,4 +150,13 @@ class MessageBufferTest {
 
     assertThat(buffer.isEmpty()).isTrue();
   }
+
+  private DataConsumer recordingConsumer(
+      final List<Bytes> consumedData, final int... consumedLengths) {
+    return data -> {
+      // Copy the data as the buffer moves on once the consumer returns
+      consumedData.add(Bytes.wrap(ByteBufUtil.getBytes(data)));
+      return consumedLengths[consumedData.size() - 1];
+    };
+  }
 }
@@ -19,12 +19,15 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import com.google.common.primitives.UnsignedLong;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import java.nio.charset.StandardCharsets;
 import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.bytes.Bytes32;
 import org.junit.jupiter.api.Test;
 import tech.devgao.hailong.datastructures.networking.libp2p.rpc.BeaconBlocksByRootRequestMessage;
 import tech.devgao.hailong.datastructures.networking.libp2p.rpc.StatusMessage;
+import tech.devgao.hailong.datastructures.util.SimpleOffsetSerializer;
 import tech.devgao.hailong.networking.eth2.rpc.core.RpcException;
 import tech.devgao.hailong.util.SSZTypes.Bytes4;
 
@@ -85,27 +88,27 @@ class LengthPrefixedEncodingTest {
 
   @Test
   public void shouldNotHaveMessageLengthWhenNoDataProvided() throws Exception {
-    assertThat(encoding.getMessageLength(Bytes.EMPTY)).isEmpty();
+    assertThat(encoding.getMessageLength(byteBuf(Bytes.EMPTY))).isEmpty();
   }
 
   @Test
   public void shouldNotHaveMessageLengthWhenOnlyPartialLengthPrefixReceived() throws Exception {
-    assertThat(encoding.getMessageLength(TWO_BYTE_LENGTH_PREFIX.slice(0, 1))).isEmpty();
+    assertThat(encoding.getMessageLength(byteBuf(TWO_BYTE_LENGTH_PREFIX.slice(0, 1)))).isEmpty();
   }
 
   @Test
   public void shouldIncludeBytesInLengthPrefixWhenCalculatingMessageLength() throws Exception {
-    assertThat(encoding.getMessageLength(ONE_BYTE_LENGTH_PREFIX))
+    assertThat(encoding.getMessageLength(byteBuf(ONE_BYTE_LENGTH_PREFIX)))
         .hasValue(ONE_BYTE_LENGTH_PREFIX_VALUE + 1);
-    assertThat(encoding.getMessageLength(TWO_BYTE_LENGTH_PREFIX))
+    assertThat(encoding.getMessageLength(byteBuf(TWO_BYTE_LENGTH_PREFIX)))
         .hasValue(TWO_BYTE_LENGTH_PREFIX_VALUE + 2);
-    assertThat(encoding.getMessageLength(THREE_BYTE_LENGTH_PREFIX))
+    assertThat(encoding.getMessageLength(byteBuf(THREE_BYTE_LENGTH_PREFIX)))
         .hasValue(THREE_BYTE_LENGTH_PREFIX_VALUE + 3);
   }
 
   @Test
   public void shouldThrowRpcExceptionIfMessageLengthPrefixIsMoreThanThreeBytes() {
-    assertThatThrownBy(() -> encoding.getMessageLength(Bytes.fromHexString("0x80808001")))
+    assertThatThrownBy(() -> encoding.getMessageLength(byteBuf(Bytes.fromHexString("0x80808001"))))
         .isEqualTo(RpcException.CHUNK_TOO_LONG_ERROR);
   }
 
@@ -147,6 +150,31 @@ class LengthPrefixedEncodingTest {
     assertThat(encoding.decode(encoded, String.class)).isEqualTo(expected);
   }
 
+  @Test
+  public void shouldEncodeSerializedPayloadTheSameAsMessage() {
+    final StatusMessage message =
+        new StatusMessage(
+            new Bytes4(Bytes.of(0, 0, 0, 0)),
+            Bytes32.ZERO,
+            UnsignedLong.ZERO,
+            Bytes32.ZERO,
+            UnsignedLong.ZERO);
+    assertThat(encoding.encodePayload(SimpleOffsetSerializer.serialize(message)))
+        .isEqualTo(encoding.encode(message));
+  }
+
+  @Test
+  public void shouldReadMessageLengthFromReaderIndex() throws Exception {
+    final ByteBuf data = byteBuf(Bytes.concatenate(Bytes.of(1, 2), TWO_BYTE_LENGTH_PREFIX));
+    data.readerIndex(2);
+    assertThat(encoding.getMessageLength(data)).hasValue(TWO_BYTE_LENGTH_PREFIX_VALUE + 2);
+    assertThat(data.readerIndex()).isEqualTo(2);
+  }
+
+  private ByteBuf byteBuf(final Bytes data) {
+    return Unpooled.wrappedBuffer(data.toArrayUnsafe());
+  }
+
   private Bytes createValidStatusMessage() {
     return encoding.encode(
         new StatusMessage(
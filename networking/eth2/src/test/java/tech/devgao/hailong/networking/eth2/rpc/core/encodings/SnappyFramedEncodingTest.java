@@ -0,0 +1,133 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.networking.eth2.rpc.core.encodings;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.google.common.primitives.UnsignedLong;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.bytes.MutableBytes;
+import org.junit.jupiter.api.Test;
+import tech.devgao.hailong.datastructures.networking.libp2p.rpc.StatusMessage;
+import tech.devgao.hailong.datastructures.util.SimpleOffsetSerializer;
+import tech.devgao.hailong.networking.eth2.rpc.core.RpcException;
+import tech.devgao.hailong.util.SSZTypes.Bytes4;
+
+class SnappyFramedEncodingTest {
+  private static final int LENGTH_PREFIX_SIZE = 1;
+  private static final int STREAM_IDENTIFIER_SIZE = 10;
+  private static final int FRAME_HEADER_SIZE = 4;
+
+  private final RpcEncoding encoding = RpcEncoding.SSZ_SNAPPY;
+  private final StatusMessage statusMessage =
+      new StatusMessage(
+          new Bytes4(Bytes.of(0, 0, 0, 0)),
+          Bytes32.ZERO,
+          UnsignedLong.ZERO,
+          Bytes32.ZERO,
+          UnsignedLong.ZERO);
+
+  @Test
+  public void shouldRoundTripStatusMessage() throws Exception {
+    final Bytes encoded = encoding.encode(statusMessage);
+    assertThat(encoding.decode(encoded, StatusMessage.class)).isEqualTo(statusMessage);
+  }
+
+  @Test
+  public void shouldRoundtripString() throws Exception {
+    final String expected = "Some string to test";
+    final Bytes encoded = encoding.encode(expected);
+    assertThat(encoding.decode(encoded, String.class)).isEqualTo(expected);
+  }
+
+  @Test
+  public void shouldDecodeSerializedPayload() throws Exception {
+    final Bytes encoded = encoding.encodePayload(SimpleOffsetSerializer.serialize(statusMessage));
+    assertThat(encoding.decode(encoded, StatusMessage.class)).isEqualTo(statusMessage);
+  }
+
+  @Test
+  public void shouldCompressRepetitivePayloads() {
+    final Bytes encoded = encoding.encode(statusMessage);
+    assertThat(encoded.size()).isLessThan(RpcEncoding.SSZ.encode(statusMessage).size());
+  }
+
+  @Test
+  public void shouldReadMessageLengthFromReaderIndex() throws Exception {
+    final Bytes encoded = encoding.encode(statusMessage);
+    final ByteBuf data = byteBuf(Bytes.concatenate(Bytes.of(1, 2), encoded, Bytes.of(3)));
+    data.readerIndex(2);
+    assertThat(encoding.getMessageLength(data)).hasValue(encoded.size());
+    assertThat(data.readerIndex()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldNotHaveMessageLengthUntilAllFramesReceived() throws Exception {
+    final Bytes encoded = encoding.encode(statusMessage);
+    assertThat(encoding.getMessageLength(byteBuf(Bytes.EMPTY))).isEmpty();
+    assertThat(encoding.getMessageLength(byteBuf(encoded.slice(0, LENGTH_PREFIX_SIZE + 2))))
+        .isEmpty();
+    assertThat(encoding.getMessageLength(byteBuf(encoded.slice(0, encoded.size() - 1))))
+        .isEmpty();
+  }
+
+  @Test
+  public void shouldRejectLengthPrefixExceedingMaximumLength() {
+    assertThatThrownBy(() -> encoding.getMessageLength(byteBuf(Bytes.fromHexString("0x818040"))))
+        .isEqualTo(RpcException.CHUNK_TOO_LONG_ERROR);
+  }
+
+  @Test
+  public void shouldRejectFramesHoldingMoreThanLengthPrefix() {
+    final MutableBytes encoded = encoding.encode(statusMessage).mutableCopy();
+    encoded.set(0, (byte) 0x40);
+    assertThatThrownBy(() -> encoding.decode(encoded, StatusMessage.class))
+        .isEqualTo(RpcException.INCORRECT_LENGTH_ERROR);
+  }
+
+  @Test
+  public void shouldRejectTrailingData() {
+    final Bytes encoded = Bytes.concatenate(encoding.encode(statusMessage), Bytes.of(1, 2, 3));
+    assertThatThrownBy(() -> encoding.decode(encoded, StatusMessage.class))
+        .isEqualTo(RpcException.INCORRECT_LENGTH_ERROR);
+  }
+
+  @Test
+  public void shouldRejectFramesWithIncorrectChecksum() {
+    final MutableBytes encoded = encoding.encode(statusMessage).mutableCopy();
+    final int checksumIndex = LENGTH_PREFIX_SIZE + STREAM_IDENTIFIER_SIZE + FRAME_HEADER_SIZE;
+    encoded.set(checksumIndex, (byte) (encoded.get(checksumIndex) ^ 0xff));
+    assertThatThrownBy(() -> encoding.decode(encoded, StatusMessage.class))
+        .isEqualTo(RpcException.MALFORMED_REQUEST_ERROR);
+  }
+
+  @Test
+  public void shouldRejectStreamWithoutStreamIdentifier() {
+    final Bytes encoded = encoding.encode(statusMessage);
+    final Bytes withoutIdentifier =
+        Bytes.concatenate(
+            encoded.slice(0, LENGTH_PREFIX_SIZE),
+            encoded.slice(LENGTH_PREFIX_SIZE + STREAM_IDENTIFIER_SIZE));
+    assertThatThrownBy(() -> encoding.getMessageLength(byteBuf(withoutIdentifier)))
+        .isEqualTo(RpcException.MALFORMED_REQUEST_ERROR);
+  }
+
+  private ByteBuf byteBuf(final Bytes data) {
+    return Unpooled.wrappedBuffer(data.toArrayUnsafe());
+  }
+}
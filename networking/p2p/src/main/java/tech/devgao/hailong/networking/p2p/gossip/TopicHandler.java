@@ -14,6 +14,7 @@
 package tech.devgao.hailong.networking.p2p.gossip;
 
 import org.apache.tuweni.bytes.Bytes;
+import tech.devgao.hailong.util.async.SafeFuture;
 
 public interface TopicHandler {
 
@@ -21,7 +22,23 @@ public interface TopicHandler {
    * Validate and process gossip message
    *
    * @param bytes The gossip message
-   * @return {@code true} if the message is valid, {@code false} otherwise
+   * @return a future completed with {@code true} if the message is valid, {@code false} otherwise
    */
-  public boolean handleMessage(Bytes bytes);
+  public SafeFuture<Boolean> handleMessage(Bytes bytes);
+
+  /**
+   * The priority of this topic's messages when validation can't keep up with the messages received.
+   *
+   * @return the priority of the topic, {@link Priority#NORMAL} by default
+   */
+  default Priority getPriority() {
+    return Priority.NORMAL;
+  }
+
+  /** Message priorities, from the first to be validated to the last. */
+  enum Priority {
+    HIGH,
+    NORMAL,
+    LOW
+  }
 }
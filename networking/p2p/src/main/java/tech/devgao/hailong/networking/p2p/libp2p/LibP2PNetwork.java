@@ -50,6 +50,7 @@ import org.hyperledger.besu.plugin.services.MetricsSystem;
 import tech.devgao.hailong.networking.p2p.gossip.GossipNetwork;
 import tech.devgao.hailong.networking.p2p.gossip.TopicChannel;
 import tech.devgao.hailong.networking.p2p.gossip.TopicHandler;
+import tech.devgao.hailong.networking.p2p.libp2p.gossip.GossipValidationPipeline;
 import tech.devgao.hailong.networking.p2p.libp2p.gossip.LibP2PGossipNetwork;
 import tech.devgao.hailong.networking.p2p.libp2p.rpc.RpcHandler;
 import tech.devgao.hailong.networking.p2p.network.NetworkConfig;
@@ -72,6 +73,7 @@ public class LibP2PNetwork implements P2PNetwork<Peer> {
   private final PeerManager peerManager;
   private final Multiaddr advertisedAddr;
   private final Gossip gossip;
+  private final GossipValidationPipeline gossipValidationPipeline;
   private final GossipNetwork gossipNetwork;
 
   private final AtomicReference<State> state = new AtomicReference<>(State.IDLE);
@@ -97,7 +99,8 @@ public class LibP2PNetwork implements P2PNetwork<Peer> {
     // Setup gossip
     gossip = new Gossip();
     final PubsubPublisherApi publisher = gossip.createPublisher(privKey, new Random().nextLong());
-    gossipNetwork = new LibP2PGossipNetwork(gossip, publisher);
+    gossipValidationPipeline = GossipValidationPipeline.create(metricsSystem);
+    gossipNetwork = new LibP2PGossipNetwork(gossip, publisher, gossipValidationPipeline);
 
     // Setup rpc methods
     rpcMethods.forEach(method -> rpcHandlers.put(method, new RpcHandler(method)));
@@ -209,6 +212,7 @@ public class LibP2PNetwork implements P2PNetwork<Peer> {
     STDOUT.log(Level.DEBUG, "JvmLibP2PNetwork.stop()");
     reportExceptions(host.stop());
     scheduler.shutdownNow();
+    gossipValidationPipeline.stop();
   }
 
   @Override
@@ -17,7 +17,7 @@ import io.libp2p.core.pubsub.MessageApi;
 import io.libp2p.core.pubsub.PubsubPublisherApi;
 import io.libp2p.core.pubsub.Topic;
 import io.netty.buffer.Unpooled;
-import java.util.Set;
+import java.time.Duration;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 import org.apache.logging.log4j.LogManager;
@@ -25,28 +25,31 @@ import org.apache.logging.log4j.Logger;
 import org.apache.tuweni.bytes.Bytes;
 import tech.devgao.hailong.networking.p2p.gossip.TopicHandler;
 import tech.devgao.hailong.util.async.SafeFuture;
-import tech.devgao.hailong.util.collections.LimitedSet;
-import tech.devgao.hailong.util.collections.LimitedSet.Mode;
 
 public class GossipHandler implements Function<MessageApi, CompletableFuture<Boolean>> {
   private static final Logger LOG = LogManager.getLogger();
 
   private static SafeFuture<Boolean> VALIDATION_FAILED = SafeFuture.completedFuture(false);
-  private static SafeFuture<Boolean> VALIDATION_SUCCEEDED = SafeFuture.completedFuture(true);
   static final int GOSSIP_MAX_SIZE = 1048576;
-  private static final int MAX_SENT_MESSAGES = 2048;
+  private static final Duration SEEN_MESSAGE_TTL = Duration.ofMinutes(2);
+  private static final int MAX_SEEN_MESSAGES = 65536;
 
   private final Topic topic;
   private final PubsubPublisherApi publisher;
   private final TopicHandler handler;
-  private final Set<Bytes> processedMessages =
-      LimitedSet.create(MAX_SENT_MESSAGES, Mode.DROP_LEAST_RECENTLY_ACCESSED);
+  private final GossipValidationPipeline.TopicQueue validationQueue;
+  private final SeenMessageCache processedMessages =
+      new SeenMessageCache(SEEN_MESSAGE_TTL, MAX_SEEN_MESSAGES);
 
   public GossipHandler(
-      final Topic topic, final PubsubPublisherApi publisher, final TopicHandler handler) {
+      final Topic topic,
+      final PubsubPublisherApi publisher,
+      final TopicHandler handler,
+      final GossipValidationPipeline validationPipeline) {
     this.topic = topic;
     this.publisher = publisher;
     this.handler = handler;
+    this.validationQueue = validationPipeline.createQueue(topic.getTopic(), handler.getPriority());
   }
 
   @Override
@@ -59,20 +62,21 @@ public class GossipHandler implements Function<MessageApi, CompletableFuture<Boo
           GOSSIP_MAX_SIZE);
       return VALIDATION_FAILED;
     }
-    Bytes bytes = Bytes.wrapByteBuf(message.getData()).copy();
-    if (!processedMessages.add(bytes)) {
+    final Bytes data = Bytes.wrapByteBuf(message.getData());
+    if (!processedMessages.add(SeenMessageCache.messageId(data))) {
       // We've already seen this message, skip processing
-      LOG.trace("Ignoring duplicate message for topic {}: {} bytes", topic, bytes.size());
+      LOG.trace("Ignoring duplicate message for topic {}: {} bytes", topic, data.size());
       return VALIDATION_FAILED;
     }
+    // Only copy messages we're going to process, the buffer is released once we return
+    final Bytes bytes = data.copy();
     LOG.trace("Received message for topic {}: {} bytes", topic, bytes.size());
 
-    final boolean result = handler.handleMessage(bytes);
-    return result ? VALIDATION_SUCCEEDED : VALIDATION_FAILED;
+    return validationQueue.submit(() -> handler.handleMessage(bytes));
   }
 
   public void gossip(Bytes bytes) {
-    if (!processedMessages.add(bytes)) {
+    if (!processedMessages.add(SeenMessageCache.messageId(bytes))) {
       // We've already gossiped this data
       return;
     }
@@ -83,4 +87,9 @@ public class GossipHandler implements Function<MessageApi, CompletableFuture<Boo
             () -> LOG.trace("Successfully gossiped message on {}", topic),
             err -> LOG.debug("Failed to gossip message on " + topic, err));
   }
+
+  /** Stops validating messages, treating any still waiting as invalid. */
+  public void close() {
+    validationQueue.close();
+  }
 }
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.networking.p2p.libp2p.gossip;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.LabelledMetric;
+import tech.devgao.hailong.metrics.HailongMetricCategory;
+import tech.devgao.hailong.networking.p2p.gossip.TopicHandler.Priority;
+import tech.devgao.hailong.util.async.SafeFuture;
+
+/**
+ * Validates gossip messages on a pool of worker threads, so the network threads which receive them
+ * never wait for state transitions or signature checks.
+ *
+ * <p>Each topic has its own bounded queue. Workers take messages from the queues of the highest
+ * priority first, and from queues of the same priority in turn. When a topic's queue is full, its
+ * oldest message is dropped without being validated and counted in the {@code
+ * gossip_messages_dropped_total} metric.
+ */
+public class GossipValidationPipeline {
+  private static final Logger LOG = LogManager.getLogger();
+  private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+  private final Lock lock = new ReentrantLock();
+  private final Condition tasksAvailable = lock.newCondition();
+  private final Map<Priority, List<TopicQueue>> queuesByPriority = new EnumMap<>(Priority.class);
+  private final int[] nextQueueByPriority = new int[Priority.values().length];
+  private final int queueCapacity;
+  private final LabelledMetric<Counter> droppedMessagesCounter;
+  private int pendingTasks = 0;
+  private boolean stopped = false;
+
+  GossipValidationPipeline(
+      final MetricsSystem metricsSystem, final int workerCount, final int queueCapacity) {
+    this.queueCapacity = queueCapacity;
+    for (Priority priority : Priority.values()) {
+      queuesByPriority.put(priority, new ArrayList<>());
+    }
+    droppedMessagesCounter =
+        metricsSystem.createLabelledCounter(
+            HailongMetricCategory.NETWORK,
+            "gossip_messages_dropped_total",
+            "Total number of gossip messages dropped because validation fell behind",
+            "topic");
+    metricsSystem.createGauge(
+        HailongMetricCategory.NETWORK,
+        "gossip_validation_queue_size",
+        "Current number of gossip messages waiting to be validated",
+        this::getPendingTaskCount);
+
+    final ThreadFactory threadFactory =
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("gossip-validation-%d").build();
+    for (int i = 0; i < workerCount; i++) {
+      threadFactory.newThread(this::processTasks).start();
+    }
+  }
+
+  public static GossipValidationPipeline create(final MetricsSystem metricsSystem) {
+    return new GossipValidationPipeline(
+        metricsSystem, Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY);
+  }
+
+  TopicQueue createQueue(final String topic, final Priority priority) {
+    final TopicQueue queue = new TopicQueue(topic, priority);
+    lock.lock();
+    try {
+      queuesByPriority.get(priority).add(queue);
+    } finally {
+      lock.unlock();
+    }
+    return queue;
+  }
+
+  private int getPendingTaskCount() {
+    lock.lock();
+    try {
+      return pendingTasks;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Stops the workers. Messages still waiting to be validated are treated as invalid. */
+  public void stop() {
+    final List<ValidationTask> abandoned = new ArrayList<>();
+    lock.lock();
+    try {
+      stopped = true;
+      queuesByPriority.values().stream()
+          .flatMap(List::stream)
+          .forEach(queue -> abandoned.addAll(queue.clear()));
+      tasksAvailable.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    abandoned.forEach(ValidationTask::reject);
+  }
+
+  private void processTasks() {
+    try {
+      Optional<ValidationTask> task = takeTask();
+      while (task.isPresent()) {
+        task.get().run();
+        task = takeTask();
+      }
+    } catch (final InterruptedException e) {
+      LOG.debug("Gossip validation worker interrupted", e);
+    }
+  }
+
+  private Optional<ValidationTask> takeTask() throws InterruptedException {
+    lock.lock();
+    try {
+      while (pendingTasks == 0 && !stopped) {
+        tasksAvailable.await();
+      }
+      return stopped ? Optional.empty() : Optional.of(pollNextTask());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Runs the waiting tasks on the calling thread, for pipelines created without workers. */
+  void runPendingTasks() {
+    while (true) {
+      final ValidationTask task;
+      lock.lock();
+      try {
+        if (pendingTasks == 0) {
+          return;
+        }
+        task = pollNextTask();
+      } finally {
+        lock.unlock();
+      }
+      task.run();
+    }
+  }
+
+  private ValidationTask pollNextTask() {
+    for (Priority priority : Priority.values()) {
+      final List<TopicQueue> queues = queuesByPriority.get(priority);
+      final int start = nextQueueByPriority[priority.ordinal()];
+      for (int i = 0; i < queues.size(); i++) {
+        final int index = (start + i) % queues.size();
+        final ValidationTask task = queues.get(index).tasks.pollFirst();
+        if (task != null) {
+          nextQueueByPriority[priority.ordinal()] = (index + 1) % queues.size();
+          pendingTasks--;
+          return task;
+        }
+      }
+    }
+    throw new IllegalStateException("No gossip message available to validate");
+  }
+
+  class TopicQueue {
+    private final String topic;
+    private final Priority priority;
+    private final Deque<ValidationTask> tasks = new ArrayDeque<>();
+    private boolean closed = false;
+
+    private TopicQueue(final String topic, final Priority priority) {
+      this.topic = topic;
+      this.priority = priority;
+    }
+
+    /**
+     * Queues a message to be validated.
+     *
+     * @param validation starts validating and processing the message
+     * @return a future completed with the result of the validation, or {@code false} if the message
+     *     is dropped before it can be validated
+     */
+    SafeFuture<Boolean> submit(final Supplier<SafeFuture<Boolean>> validation) {
+      final ValidationTask task = new ValidationTask(validation);
+      ValidationTask dropped = null;
+      lock.lock();
+      try {
+        // Messages already being delivered when the topic is unsubscribed may still arrive
+        if (stopped || closed) {
+          return SafeFuture.completedFuture(false);
+        }
+        if (tasks.size() >= queueCapacity) {
+          dropped = tasks.pollFirst();
+        } else {
+          pendingTasks++;
+        }
+        tasks.addLast(task);
+        tasksAvailable.signal();
+      } finally {
+        lock.unlock();
+      }
+      if (dropped != null) {
+        LOG.trace("Dropping gossip message for topic {} as validation has fallen behind", topic);
+        droppedMessagesCounter.labels(topic).inc();
+        dropped.reject();
+      }
+      return task.result;
+    }
+
+    /** Removes this queue from the pipeline, treating any waiting messages as invalid. */
+    void close() {
+      final List<ValidationTask> abandoned;
+      lock.lock();
+      try {
+        closed = true;
+        queuesByPriority.get(priority).remove(this);
+        abandoned = clear();
+      } finally {
+        lock.unlock();
+      }
+      abandoned.forEach(ValidationTask::reject);
+    }
+
+    private List<ValidationTask> clear() {
+      final List<ValidationTask> removed = new ArrayList<>(tasks);
+      pendingTasks -= removed.size();
+      tasks.clear();
+      return removed;
+    }
+  }
+
+  private static class ValidationTask {
+    private final Supplier<SafeFuture<Boolean>> validation;
+    private final SafeFuture<Boolean> result = new SafeFuture<>();
+
+    private ValidationTask(final Supplier<SafeFuture<Boolean>> validation) {
+      this.validation = validation;
+    }
+
+    // Workers move on once validation has started, signature checks may complete it later
+    private void run() {
+      try {
+        validation.get().finish(result::complete, this::onFailure);
+      } catch (final Throwable t) {
+        onFailure(t);
+      }
+    }
+
+    private void onFailure(final Throwable error) {
+      LOG.warn("Failed to validate gossip message", error);
+      result.complete(false);
+    }
+
+    private void reject() {
+      result.complete(false);
+    }
+  }
+}
@@ -24,16 +24,22 @@ public class LibP2PGossipNetwork
     implements tech.devgao.hailong.networking.p2p.gossip.GossipNetwork {
   private final Gossip gossip;
   private final PubsubPublisherApi publisher;
+  private final GossipValidationPipeline validationPipeline;
 
-  public LibP2PGossipNetwork(final Gossip gossip, final PubsubPublisherApi publisher) {
+  public LibP2PGossipNetwork(
+      final Gossip gossip,
+      final PubsubPublisherApi publisher,
+      final GossipValidationPipeline validationPipeline) {
     this.gossip = gossip;
     this.publisher = publisher;
+    this.validationPipeline = validationPipeline;
   }
 
   @Override
   public TopicChannel subscribe(final String topic, final TopicHandler topicHandler) {
     final Topic libP2PTopic = new Topic(topic);
-    final GossipHandler gossipHandler = new GossipHandler(libP2PTopic, publisher, topicHandler);
+    final GossipHandler gossipHandler =
+        new GossipHandler(libP2PTopic, publisher, topicHandler, validationPipeline);
     PubsubSubscription subscription = gossip.subscribe(gossipHandler, libP2PTopic);
     return new LibP2PTopicChannel(gossipHandler, subscription);
   }
@@ -41,6 +41,7 @@ public class LibP2PTopicChannel implements TopicChannel {
   public void close() {
     if (closed.compareAndSet(false, true)) {
       subscription.unsubscribe();
+      topicHandler.close();
     }
   }
 }
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.networking.p2p.libp2p.gossip;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.crypto.Hash;
+
+/**
+ * Remembers which gossip messages have been seen recently by a 64-bit prefix of their SHA-256
+ * hash, rather than holding on to the messages themselves.
+ *
+ * <p>Ids are spread across independently locked stripes. Each stripe groups its ids into time
+ * buckets, and a whole bucket is dropped once it's older than the time-to-live, so ids expire
+ * between {@code (BUCKET_COUNT - 1) / BUCKET_COUNT} of the ttl and the full ttl after they were
+ * added. If a stripe fills up before then, its oldest bucket is dropped early. Buckets are
+ * open-addressing tables of primitive longs, so recording an id doesn't allocate.
+ */
+final class SeenMessageCache {
+  private static final int STRIPE_COUNT = 16;
+  private static final int BUCKET_COUNT = 4;
+
+  private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+  private final LongSupplier clockMillis;
+  private final long bucketDurationMillis;
+  private final int maxIdsPerStripe;
+
+  SeenMessageCache(final Duration ttl, final int maxSize) {
+    this(ttl, maxSize, () -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+  }
+
+  SeenMessageCache(final Duration ttl, final int maxSize, final LongSupplier clockMillis) {
+    this.clockMillis = clockMillis;
+    this.bucketDurationMillis = Math.max(1, ttl.toMillis() / BUCKET_COUNT);
+    this.maxIdsPerStripe = Math.max(1, maxSize / STRIPE_COUNT);
+    for (int i = 0; i < STRIPE_COUNT; i++) {
+      stripes[i] = new Stripe();
+    }
+  }
+
+  static long messageId(final Bytes message) {
+    return Hash.sha2_256(message).getLong(0);
+  }
+
+  /**
+   * Records a message id as seen.
+   *
+   * @param messageId the id of the message
+   * @return true if the id hadn't been seen within the time-to-live
+   */
+  boolean add(final long messageId) {
+    final long bucketTime = Math.floorDiv(clockMillis.getAsLong(), bucketDurationMillis);
+    final Stripe stripe = stripes[(int) (messageId & (STRIPE_COUNT - 1))];
+    synchronized (stripe) {
+      return stripe.add(messageId, bucketTime);
+    }
+  }
+
+  private class Stripe {
+    private final LongSet[] buckets = new LongSet[BUCKET_COUNT];
+    private final long[] bucketTimes = new long[BUCKET_COUNT];
+    private int size = 0;
+
+    private Stripe() {
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        buckets[i] = new LongSet();
+      }
+      Arrays.fill(bucketTimes, Long.MIN_VALUE);
+    }
+
+    private boolean add(final long messageId, final long bucketTime) {
+      expireBuckets(bucketTime);
+      for (LongSet bucket : buckets) {
+        if (bucket.contains(messageId)) {
+          return false;
+        }
+      }
+      if (size >= maxIdsPerStripe) {
+        dropOldestBucket();
+      }
+      final int index = (int) Math.floorMod(bucketTime, BUCKET_COUNT);
+      bucketTimes[index] = bucketTime;
+      buckets[index].add(messageId);
+      size++;
+      return true;
+    }
+
+    private void expireBuckets(final long bucketTime) {
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        if (bucketTimes[i] <= bucketTime - BUCKET_COUNT) {
+          clearBucket(i);
+        }
+      }
+    }
+
+    private void dropOldestBucket() {
+      int oldest = -1;
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        if (!buckets[i].isEmpty() && (oldest < 0 || bucketTimes[i] < bucketTimes[oldest])) {
+          oldest = i;
+        }
+      }
+      if (oldest >= 0) {
+        clearBucket(oldest);
+      }
+    }
+
+    private void clearBucket(final int index) {
+      size -= buckets[index].size();
+      buckets[index].clear();
+      bucketTimes[index] = Long.MIN_VALUE;
+    }
+  }
+
+  /** A set of longs using linear probing, where a zero slot is empty. */
+  private static final class LongSet {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final long EMPTY = 0;
+
+    private long[] table = new long[INITIAL_CAPACITY];
+    private boolean containsEmpty = false;
+    private int size = 0;
+
+    private boolean contains(final long value) {
+      if (value == EMPTY) {
+        return containsEmpty;
+      }
+      final int mask = table.length - 1;
+      for (int i = indexOf(value, mask); table[i] != EMPTY; i = (i + 1) & mask) {
+        if (table[i] == value) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /** Adds a value which isn't already in the set. */
+    private void add(final long value) {
+      size++;
+      if (value == EMPTY) {
+        containsEmpty = true;
+        return;
+      }
+      // Keep the table at most half full so probe sequences stay short
+      if (size * 2 > table.length) {
+        final long[] oldTable = table;
+        table = new long[oldTable.length * 2];
+        for (long existing : oldTable) {
+          if (existing != EMPTY) {
+            insert(existing);
+          }
+        }
+      }
+      insert(value);
+    }
+
+    private void insert(final long value) {
+      final int mask = table.length - 1;
+      int i = indexOf(value, mask);
+      while (table[i] != EMPTY) {
+        i = (i + 1) & mask;
+      }
+      table[i] = value;
+    }
+
+    private boolean isEmpty() {
+      return size == 0;
+    }
+
+    private int size() {
+      return size;
+    }
+
+    private void clear() {
+      Arrays.fill(table, EMPTY);
+      containsEmpty = false;
+      size = 0;
+    }
+
+    private static int indexOf(final long value, final int mask) {
+      // All ids in a stripe share their low bits, so spread every bit of the id across the table
+      return (int) ((value * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+  }
+}
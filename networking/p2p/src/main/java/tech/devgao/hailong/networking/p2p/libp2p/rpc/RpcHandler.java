@@ -13,7 +13,9 @@
 
 package tech.devgao.hailong.networking.p2p.libp2p.rpc;
 
+import com.google.common.base.Throwables;
 import io.libp2p.core.Connection;
+import io.libp2p.core.NoSuchProtocolException;
 import io.libp2p.core.P2PChannel;
 import io.libp2p.core.multistream.Mode;
 import io.libp2p.core.multistream.Multistream;
@@ -34,6 +36,7 @@ import tech.devgao.hailong.networking.p2p.peer.NodeId;
 import tech.devgao.hailong.networking.p2p.rpc.RpcMethod;
 import tech.devgao.hailong.networking.p2p.rpc.RpcRequestHandler;
 import tech.devgao.hailong.networking.p2p.rpc.RpcStream;
+import tech.devgao.hailong.networking.p2p.rpc.UnsupportedProtocolException;
 import tech.devgao.hailong.util.async.SafeFuture;
 
 public class RpcHandler implements ProtocolBinding<Controller> {
@@ -54,6 +57,16 @@ public class RpcHandler implements ProtocolBinding<Controller> {
                 .createStream(
                     Multistream.create(this.toInitiator(rpcMethod.getId())).toStreamHandler())
                 .getController())
+        .exceptionallyCompose(
+            error -> {
+              // Only a failed multistream negotiation means the peer refused the protocol, any
+              // other error such as a timeout or muxer failure is passed on unchanged
+              if (!isProtocolNegotiationFailure(error)) {
+                return SafeFuture.failedFuture(error);
+              }
+              return SafeFuture.failedFuture(
+                  new UnsupportedProtocolException(rpcMethod.getId(), error));
+            })
         .thenCompose(
             ctr -> {
               ctr.setRequestHandler(handler);
@@ -63,6 +76,11 @@ public class RpcHandler implements ProtocolBinding<Controller> {
             });
   }
 
+  private static boolean isProtocolNegotiationFailure(final Throwable error) {
+    return Throwables.getCausalChain(error).stream()
+        .anyMatch(cause -> cause instanceof NoSuchProtocolException);
+  }
+
   @NotNull
   @Override
   public String getAnnounce() {
@@ -0,0 +1,22 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.networking.p2p.rpc;
+
+/** Thrown when a peer won't open a stream for the protocol of an RPC method. */
+public class UnsupportedProtocolException extends RuntimeException {
+
+  public UnsupportedProtocolException(final String protocolId, final Throwable cause) {
+    super("Peer did not agree to protocol " + protocolId, cause);
+  }
+}
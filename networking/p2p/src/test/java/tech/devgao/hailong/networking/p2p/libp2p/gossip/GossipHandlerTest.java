@@ -25,6 +25,7 @@ import io.libp2p.core.pubsub.Topic;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import tech.devgao.hailong.network.p2p.jvmlibp2p.MockMessageApi;
@@ -35,11 +36,14 @@ public class GossipHandlerTest {
   private final Topic topic = new Topic("Testing");
   private final PubsubPublisherApi publisher = mock(PubsubPublisherApi.class);
   private final TopicHandler topicHandler = mock(TopicHandler.class);
-  private final GossipHandler gossipHandler = new GossipHandler(topic, publisher, topicHandler);
+  private final GossipValidationPipeline validationPipeline =
+      new GossipValidationPipeline(new NoOpMetricsSystem(), 0, 10);
+  private final GossipHandler gossipHandler =
+      new GossipHandler(topic, publisher, topicHandler, validationPipeline);
 
   @BeforeEach
   public void setup() {
-    when(topicHandler.handleMessage(any())).thenReturn(true);
+    when(topicHandler.handleMessage(any())).thenReturn(SafeFuture.completedFuture(true));
     when(publisher.publish(any(), any())).thenReturn(SafeFuture.completedFuture(null));
   }
 
@@ -48,7 +52,9 @@ public class GossipHandlerTest {
     final Bytes data = Bytes.fromHexString("0x01");
     final MockMessageApi message = new MockMessageApi(data, topic);
     final SafeFuture<Boolean> result = gossipHandler.apply(message);
+    assertThat(result).isNotDone();
 
+    validationPipeline.runPendingTasks();
     assertThat(result).isCompletedWithValue(true);
   }
 
@@ -56,8 +62,9 @@ public class GossipHandlerTest {
   public void apply_invalid() {
     final Bytes data = Bytes.fromHexString("0x01");
     final MockMessageApi message = new MockMessageApi(data, topic);
-    when(topicHandler.handleMessage(any())).thenReturn(false);
+    when(topicHandler.handleMessage(any())).thenReturn(SafeFuture.completedFuture(false));
     final SafeFuture<Boolean> result = gossipHandler.apply(message);
+    validationPipeline.runPendingTasks();
 
     assertThat(result).isCompletedWithValue(false);
   }
@@ -80,6 +87,7 @@ public class GossipHandlerTest {
 
     gossipHandler.apply(message);
     final SafeFuture<Boolean> result = gossipHandler.apply(message);
+    validationPipeline.runPendingTasks();
 
     assertThat(result).isCompletedWithValue(false);
     verify(topicHandler).handleMessage(any());
@@ -136,6 +144,18 @@ public class GossipHandlerTest {
     verify(topicHandler, never()).handleMessage(any());
   }
 
+  @Test
+  public void close_rejectsQueuedMessages() {
+    final MockMessageApi message = new MockMessageApi(Bytes.fromHexString("0x01"), topic);
+    final SafeFuture<Boolean> result = gossipHandler.apply(message);
+
+    gossipHandler.close();
+    validationPipeline.runPendingTasks();
+
+    assertThat(result).isCompletedWithValue(false);
+    verify(topicHandler, never()).handleMessage(any());
+  }
+
   private ByteBuf toByteBuf(final Bytes bytes) {
     return Unpooled.wrappedBuffer(bytes.toArrayUnsafe());
   }
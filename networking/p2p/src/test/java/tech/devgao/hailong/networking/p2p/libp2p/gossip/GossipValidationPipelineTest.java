@@ -0,0 +1,154 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.networking.p2p.libp2p.gossip;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.Test;
+import tech.devgao.hailong.networking.p2p.gossip.TopicHandler.Priority;
+import tech.devgao.hailong.networking.p2p.libp2p.gossip.GossipValidationPipeline.TopicQueue;
+import tech.devgao.hailong.util.async.SafeFuture;
+
+public class GossipValidationPipelineTest {
+  private final GossipValidationPipeline pipeline =
+      new GossipValidationPipeline(new NoOpMetricsSystem(), 0, 2);
+  private final List<String> validated = new ArrayList<>();
+
+  @Test
+  @SuppressWarnings("FutureReturnValueIgnored")
+  public void shouldValidateHigherPrioritiesFirst() {
+    final TopicQueue low = pipeline.createQueue("low", Priority.LOW);
+    final TopicQueue normal = pipeline.createQueue("normal", Priority.NORMAL);
+    final TopicQueue high = pipeline.createQueue("high", Priority.HIGH);
+
+    low.submit(validation("low"));
+    normal.submit(validation("normal"));
+    high.submit(validation("high"));
+    pipeline.runPendingTasks();
+
+    assertThat(validated).containsExactly("high", "normal", "low");
+  }
+
+  @Test
+  @SuppressWarnings("FutureReturnValueIgnored")
+  public void shouldTakeTurnsBetweenTopicsOfTheSamePriority() {
+    final TopicQueue first = pipeline.createQueue("first", Priority.NORMAL);
+    final TopicQueue second = pipeline.createQueue("second", Priority.NORMAL);
+
+    first.submit(validation("first-1"));
+    first.submit(validation("first-2"));
+    second.submit(validation("second-1"));
+    second.submit(validation("second-2"));
+    pipeline.runPendingTasks();
+
+    assertThat(validated).containsExactly("first-1", "second-1", "first-2", "second-2");
+  }
+
+  @Test
+  public void shouldDropOldestMessageWhenQueueIsFull() {
+    final TopicQueue queue = pipeline.createQueue("topic", Priority.NORMAL);
+
+    final SafeFuture<Boolean> dropped = queue.submit(validation("1"));
+    final SafeFuture<Boolean> second = queue.submit(validation("2"));
+    final SafeFuture<Boolean> third = queue.submit(validation("3"));
+    assertThat(dropped).isCompletedWithValue(false);
+
+    pipeline.runPendingTasks();
+    assertThat(validated).containsExactly("2", "3");
+    assertThat(second).isCompletedWithValue(true);
+    assertThat(third).isCompletedWithValue(true);
+  }
+
+  @Test
+  public void shouldTreatFailedValidationAsInvalid() {
+    final TopicQueue queue = pipeline.createQueue("topic", Priority.NORMAL);
+
+    final SafeFuture<Boolean> result =
+        queue.submit(
+            () -> {
+              throw new IllegalStateException("Failed");
+            });
+    pipeline.runPendingTasks();
+
+    assertThat(result).isCompletedWithValue(false);
+  }
+
+  @Test
+  public void shouldCompleteWhenAsynchronousValidationCompletes() {
+    final TopicQueue queue = pipeline.createQueue("topic", Priority.NORMAL);
+    final SafeFuture<Boolean> validation = new SafeFuture<>();
+
+    final SafeFuture<Boolean> result = queue.submit(() -> validation);
+    pipeline.runPendingTasks();
+    assertThat(result).isNotDone();
+
+    validation.complete(true);
+    assertThat(result).isCompletedWithValue(true);
+  }
+
+  @Test
+  public void shouldRejectQueuedAndNewMessagesWhenStopped() {
+    final TopicQueue queue = pipeline.createQueue("topic", Priority.NORMAL);
+    final SafeFuture<Boolean> queued = queue.submit(validation("1"));
+
+    pipeline.stop();
+
+    assertThat(queued).isCompletedWithValue(false);
+    assertThat(queue.submit(validation("2"))).isCompletedWithValue(false);
+    assertThat(validated).isEmpty();
+  }
+
+  @Test
+  public void shouldRejectMessagesSubmittedAfterQueueIsClosed() {
+    final TopicQueue closedQueue = pipeline.createQueue("closed", Priority.NORMAL);
+    final TopicQueue openQueue = pipeline.createQueue("open", Priority.NORMAL);
+    closedQueue.close();
+
+    assertThat(closedQueue.submit(validation("closed"))).isCompletedWithValue(false);
+    final SafeFuture<Boolean> result = openQueue.submit(validation("open"));
+    pipeline.runPendingTasks();
+
+    assertThat(validated).containsExactly("open");
+    assertThat(result).isCompletedWithValue(true);
+  }
+
+  @Test
+  public void shouldValidateOnWorkerThreads() throws Exception {
+    final GossipValidationPipeline workerPipeline =
+        new GossipValidationPipeline(new NoOpMetricsSystem(), 2, 10);
+    try {
+      final TopicQueue queue = workerPipeline.createQueue("topic", Priority.NORMAL);
+      final Thread caller = Thread.currentThread();
+
+      final SafeFuture<Boolean> result =
+          queue.submit(() -> SafeFuture.completedFuture(Thread.currentThread() != caller));
+
+      assertThat(result.get(5, TimeUnit.SECONDS)).isTrue();
+    } finally {
+      workerPipeline.stop();
+    }
+  }
+
+  private Supplier<SafeFuture<Boolean>> validation(final String name) {
+    return () -> {
+      validated.add(name);
+      return SafeFuture.completedFuture(true);
+    };
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.networking.p2p.libp2p.gossip;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.tuweni.bytes.Bytes;
+import org.junit.jupiter.api.Test;
+
+public class SeenMessageCacheTest {
+  private static final Duration TTL = Duration.ofMillis(400);
+
+  private final AtomicLong time = new AtomicLong(1000);
+  private final SeenMessageCache cache = new SeenMessageCache(TTL, 1024, time::get);
+
+  @Test
+  public void add_shouldRejectDuplicateIds() {
+    assertThat(cache.add(1)).isTrue();
+    assertThat(cache.add(2)).isTrue();
+    assertThat(cache.add(1)).isFalse();
+    assertThat(cache.add(2)).isFalse();
+  }
+
+  @Test
+  public void add_shouldRememberEveryIdInAFullStripe() {
+    // 16 stripes of 64 ids, so multiples of 16, including zero, all land in the same stripe
+    for (long id = 0; id < 64 * 16; id += 16) {
+      assertThat(cache.add(id)).isTrue();
+    }
+    for (long id = 0; id < 64 * 16; id += 16) {
+      assertThat(cache.add(id)).isFalse();
+    }
+  }
+
+  @Test
+  public void add_shouldRememberIdsAcrossBuckets() {
+    assertThat(cache.add(1)).isTrue();
+    time.addAndGet(250);
+    assertThat(cache.add(1)).isFalse();
+  }
+
+  @Test
+  public void add_shouldForgetIdsAfterTtl() {
+    assertThat(cache.add(1)).isTrue();
+    time.addAndGet(TTL.toMillis());
+    assertThat(cache.add(1)).isTrue();
+    assertThat(cache.add(1)).isFalse();
+  }
+
+  @Test
+  public void add_shouldDropOldestBucketWhenFull() {
+    // 16 stripes of 2 ids, so ids 0, 16 and 32 all land in the same stripe
+    final SeenMessageCache smallCache = new SeenMessageCache(TTL, 32, time::get);
+    assertThat(smallCache.add(0)).isTrue();
+    time.addAndGet(100);
+    assertThat(smallCache.add(16)).isTrue();
+    assertThat(smallCache.add(32)).isTrue();
+
+    assertThat(smallCache.add(16)).isFalse();
+    assertThat(smallCache.add(0)).isTrue();
+  }
+
+  @Test
+  public void messageId_shouldDependOnContent() {
+    final Bytes message = Bytes.fromHexString("0x010203");
+    assertThat(SeenMessageCache.messageId(message))
+        .isEqualTo(SeenMessageCache.messageId(Bytes.fromHexString("0x010203")));
+    assertThat(SeenMessageCache.messageId(message))
+        .isNotEqualTo(SeenMessageCache.messageId(Bytes.fromHexString("0x010204")));
+  }
+}
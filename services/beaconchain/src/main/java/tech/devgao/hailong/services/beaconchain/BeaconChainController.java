@@ -14,6 +14,7 @@
 package tech.devgao.hailong.services.beaconchain;
 
 import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.compute_epoch_at_slot;
+import static tech.devgao.hailong.statetransition.util.ForkChoiceUtil.compute_slots_since_epoch_start;
 import static tech.devgao.hailong.statetransition.util.ForkChoiceUtil.get_head;
 import static tech.devgao.hailong.statetransition.util.ForkChoiceUtil.on_tick;
 import static tech.devgao.hailong.util.alogger.ALogger.STDOUT;
@@ -25,7 +26,6 @@ import com.google.common.eventbus.Subscribe;
 import com.google.common.primitives.UnsignedLong;
 import io.libp2p.core.crypto.KeyKt;
 import io.libp2p.core.crypto.PrivKey;
-import java.util.Date;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
@@ -41,6 +41,7 @@ import tech.devgao.hailong.metrics.HailongMetricCategory;
 import tech.devgao.hailong.metrics.SettableGauge;
 import tech.devgao.hailong.networking.eth2.Eth2Network;
 import tech.devgao.hailong.networking.eth2.Eth2NetworkBuilder;
+import tech.devgao.hailong.networking.eth2.gossip.encoding.GossipEncoding;
 import tech.devgao.hailong.networking.p2p.mock.MockP2PNetwork;
 import tech.devgao.hailong.networking.p2p.network.NetworkConfig;
 import tech.devgao.hailong.networking.p2p.network.P2PNetwork;
@@ -50,13 +51,17 @@ import tech.devgao.hailong.service.serviceutils.Service;
 import tech.devgao.hailong.statetransition.AttestationAggregator;
 import tech.devgao.hailong.statetransition.BlockAttestationsPool;
 import tech.devgao.hailong.statetransition.StateProcessor;
+import tech.devgao.hailong.statetransition.StateTransition;
+import tech.devgao.hailong.statetransition.StateTransitionBlockReplayer;
 import tech.devgao.hailong.statetransition.blockimport.BlockImporter;
 import tech.devgao.hailong.statetransition.events.BroadcastAggregatesEvent;
 import tech.devgao.hailong.statetransition.events.BroadcastAttestationEvent;
 import tech.devgao.hailong.statetransition.genesis.PreGenesisDepositHandler;
+import tech.devgao.hailong.statetransition.util.ProposerDutyIndex;
 import tech.devgao.hailong.statetransition.util.StartupUtil;
 import tech.devgao.hailong.storage.ChainStorageClient;
 import tech.devgao.hailong.storage.Store;
+import tech.devgao.hailong.storage.api.StorageQueryChannel;
 import tech.devgao.hailong.storage.events.NodeStartEvent;
 import tech.devgao.hailong.storage.events.SlotEvent;
 import tech.devgao.hailong.storage.events.StoreInitializedEvent;
@@ -65,11 +70,13 @@ import tech.devgao.hailong.sync.SyncService;
 import tech.devgao.hailong.util.alogger.ALogger;
 import tech.devgao.hailong.util.config.HailongConfiguration;
 import tech.devgao.hailong.util.config.Constants;
+import tech.devgao.hailong.util.time.SlotScheduler;
+import tech.devgao.hailong.util.time.SlotScheduler.SlotEventHandler;
 import tech.devgao.hailong.util.time.TimeProvider;
 import tech.devgao.hailong.util.time.Timer;
 import tech.devgao.hailong.validator.coordinator.ValidatorCoordinator;
 
-public class BeaconChainController {
+public class BeaconChainController implements SlotEventHandler {
   private final ExecutorService networkExecutor = Executors.newSingleThreadExecutor();
   private Runnable networkTask;
   private final EventChannels eventChannels;
@@ -77,19 +84,21 @@ public class BeaconChainController {
   private final TimeProvider timeProvider;
   private EventBus eventBus;
   private Timer timer;
+  private SlotScheduler slotScheduler;
   private ChainStorageClient chainStorageClient;
   private P2PNetwork<?> p2pNetwork;
   private final MetricsSystem metricsSystem;
   private SettableGauge currentSlotGauge;
   private SettableGauge currentEpochGauge;
   private StateProcessor stateProcessor;
-  private UnsignedLong nodeSlot = UnsignedLong.ZERO;
   private BeaconRestApi beaconRestAPI;
   private AttestationAggregator attestationAggregator;
   private BlockAttestationsPool blockAttestationsPool;
   private Service syncService;
   private boolean testMode;
   private AttestationManager attestationManager;
+  private final ProposerDutyIndex proposerDutyIndex =
+      new ProposerDutyIndex(new StateTransition(false));
 
   public BeaconChainController(
       TimeProvider timeProvider,
@@ -129,10 +138,16 @@ public class BeaconChainController {
     } catch (IllegalArgumentException e) {
       System.exit(1);
     }
+    this.slotScheduler = SlotScheduler.create(timeProvider, SECONDS_PER_SLOT, this);
   }
 
   public void initStorage() {
-    this.chainStorageClient = ChainStorageClient.storageBackedClient(eventBus);
+    this.chainStorageClient =
+        config.isWriteBehindEnabled()
+            ? ChainStorageClient.writeBehindClient(eventBus, config.getWriteBehindQueueSize())
+            : ChainStorageClient.storageBackedClient(eventBus);
+    chainStorageClient.setStateCacheLimit(
+        new StateTransitionBlockReplayer(), config.getHotStateCacheBytes());
   }
 
   public void initMetrics() {
@@ -159,6 +174,7 @@ public class BeaconChainController {
         chainStorageClient,
         attestationAggregator,
         blockAttestationsPool,
+        proposerDutyIndex,
         config);
   }
 
@@ -200,7 +216,10 @@ public class BeaconChainController {
               .config(p2pConfig)
               .eventBus(eventBus)
               .chainStorageClient(chainStorageClient)
+              .historicalChainData(eventChannels.getPublisher(StorageQueryChannel.class))
               .metricsSystem(metricsSystem)
+              .gossipEncoding(GossipEncoding.fromName(config.getGossipEncoding()))
+              .proposerDutyIndex(proposerDutyIndex)
               .build();
       this.networkTask = () -> this.p2pNetwork.start().reportExceptions();
     } else {
@@ -221,7 +240,11 @@ public class BeaconChainController {
   public void initRestAPI() {
     STDOUT.log(Level.DEBUG, "BeaconChainController.initRestAPI()");
     beaconRestAPI =
-        new BeaconRestApi(chainStorageClient, p2pNetwork, config.getBeaconRestAPIPortNumber());
+        new BeaconRestApi(
+            chainStorageClient,
+            eventChannels.getPublisher(StorageQueryChannel.class),
+            p2pNetwork,
+            config.getBeaconRestAPIPortNumber());
   }
 
   public void initSyncManager() {
@@ -282,6 +305,7 @@ public class BeaconChainController {
       networkExecutor.shutdownNow();
     }
     this.timer.stop();
+    this.slotScheduler.stop();
     this.beaconRestAPI.stop();
     this.eventBus.unregister(this);
   }
@@ -289,8 +313,11 @@ public class BeaconChainController {
   @Subscribe
   @SuppressWarnings("unused")
   private void onStoreInitializedEvent(final StoreInitializedEvent event) {
+    if (slotScheduler.isStarted()) {
+      return;
+    }
     UnsignedLong genesisTime = chainStorageClient.getGenesisTime();
-    UnsignedLong currentTime = UnsignedLong.valueOf(System.currentTimeMillis() / 1000);
+    UnsignedLong currentTime = timeProvider.getTimeInSeconds();
     UnsignedLong currentSlot = UnsignedLong.ZERO;
     if (currentTime.compareTo(genesisTime) > 0) {
       UnsignedLong deltaTime = currentTime.minus(genesisTime);
@@ -299,59 +326,61 @@ public class BeaconChainController {
       UnsignedLong timeUntilGenesis = genesisTime.minus(currentTime);
       STDOUT.log(Level.INFO, timeUntilGenesis + " seconds until genesis.", ALogger.Color.GREEN);
     }
-    nodeSlot = currentSlot;
+    slotScheduler.start(genesisTime, currentSlot);
   }
 
-  @Subscribe
-  @SuppressWarnings("unused")
-  private void onTick(Date date) {
-    if (chainStorageClient.isPreGenesis()) {
-      return;
-    }
-    final UnsignedLong currentTime = UnsignedLong.valueOf(date.getTime() / 1000);
-    final Store.Transaction transaction = chainStorageClient.startStoreTransaction();
-    on_tick(transaction, currentTime);
-    transaction.commit().join();
-    final UnsignedLong nextSlotStartTime =
+  @Override
+  public void onSlotStart(final UnsignedLong slot) {
+    updateStoreTime(slot);
+    this.eventBus.post(new SlotEvent(slot));
+    this.currentSlotGauge.set(slot.longValue());
+    this.currentEpochGauge.set(compute_epoch_at_slot(slot).longValue());
+    STDOUT.log(Level.INFO, "******* Slot Event *******", ALogger.Color.WHITE);
+    STDOUT.log(Level.INFO, "Node slot:                             " + slot);
+  }
+
+  private void updateStoreTime(final UnsignedLong slot) {
+    final UnsignedLong slotStartTime =
         chainStorageClient
             .getGenesisTime()
-            .plus(nodeSlot.times(UnsignedLong.valueOf(SECONDS_PER_SLOT)));
-    if (chainStorageClient.getStore().getTime().compareTo(nextSlotStartTime) >= 0) {
-      processSlot();
+            .plus(slot.times(UnsignedLong.valueOf(SECONDS_PER_SLOT)));
+    final UnsignedLong currentTime = timeProvider.getTimeInSeconds();
+    final UnsignedLong time =
+        currentTime.compareTo(slotStartTime) > 0 ? currentTime : slotStartTime;
+    if (compute_slots_since_epoch_start(slot).equals(UnsignedLong.ZERO)) {
+      // The justified checkpoint may be updated at the start of an epoch
+      final Store.Transaction transaction = chainStorageClient.startStoreTransaction();
+      on_tick(transaction, time);
+      transaction.commit().join();
+    } else {
+      chainStorageClient.getStore().updateTime(time);
     }
   }
 
-  private void processSlot() {
-    try {
-      this.eventBus.post(new SlotEvent(nodeSlot));
-      this.currentSlotGauge.set(nodeSlot.longValue());
-      this.currentEpochGauge.set(compute_epoch_at_slot(nodeSlot).longValue());
-      STDOUT.log(Level.INFO, "******* Slot Event *******", ALogger.Color.WHITE);
-      STDOUT.log(Level.INFO, "Node slot:                             " + nodeSlot);
-      Thread.sleep(SECONDS_PER_SLOT * 1000 / 3);
-      Bytes32 headBlockRoot = this.stateProcessor.processHead();
-      // Logging
-      STDOUT.log(
-          Level.INFO,
-          "Head block slot:" + "                       " + chainStorageClient.getBestSlot());
-      STDOUT.log(
-          Level.INFO,
-          "Justified epoch:"
-              + "                       "
-              + chainStorageClient.getStore().getJustifiedCheckpoint().getEpoch());
-      STDOUT.log(
-          Level.INFO,
-          "Finalized epoch:"
-              + "                       "
-              + chainStorageClient.getStore().getFinalizedCheckpoint().getEpoch());
+  @Override
+  public void onAttestationDue(final UnsignedLong slot) {
+    Bytes32 headBlockRoot = this.stateProcessor.processHead();
+    // Logging
+    STDOUT.log(
+        Level.INFO,
+        "Head block slot:" + "                       " + chainStorageClient.getBestSlot());
+    STDOUT.log(
+        Level.INFO,
+        "Justified epoch:"
+            + "                       "
+            + chainStorageClient.getStore().getJustifiedCheckpoint().getEpoch());
+    STDOUT.log(
+        Level.INFO,
+        "Finalized epoch:"
+            + "                       "
+            + chainStorageClient.getStore().getFinalizedCheckpoint().getEpoch());
 
-      this.eventBus.post(new BroadcastAttestationEvent(headBlockRoot, nodeSlot));
-      Thread.sleep(SECONDS_PER_SLOT * 1000 / 3);
-      this.eventBus.post(new BroadcastAggregatesEvent());
-      nodeSlot = nodeSlot.plus(UnsignedLong.ONE);
-    } catch (InterruptedException e) {
-      STDOUT.log(Level.FATAL, "onTick: " + e.toString());
-    }
+    this.eventBus.post(new BroadcastAttestationEvent(headBlockRoot, slot));
+  }
+
+  @Override
+  public void onAggregationDue(final UnsignedLong slot) {
+    this.eventBus.post(new BroadcastAggregatesEvent());
   }
 
   @Subscribe
@@ -15,16 +15,25 @@ package tech.devgao.hailong.services.chainstorage;
 
 import static tech.devgao.hailong.util.alogger.ALogger.STDOUT;
 
+import java.io.IOException;
 import org.apache.logging.log4j.Level;
 import tech.devgao.hailong.service.serviceutils.ServiceConfig;
 import tech.devgao.hailong.service.serviceutils.ServiceInterface;
+import tech.devgao.hailong.statetransition.StateTransitionBlockReplayer;
 import tech.devgao.hailong.storage.ChainStorageServer;
+import tech.devgao.hailong.storage.api.StorageQueryChannel;
 
 public class ChainStorageService implements ServiceInterface {
+  private ChainStorageServer chainStorageServer;
 
   @Override
   public void init(ServiceConfig config) {
-    new ChainStorageServer(config.getEventBus(), config.getConfig());
+    chainStorageServer =
+        new ChainStorageServer(
+            config.getEventBus(), config.getConfig(), new StateTransitionBlockReplayer());
+    config
+        .getEventChannels()
+        .subscribe(StorageQueryChannel.class, chainStorageServer.getQueryService());
   }
 
   @Override
@@ -33,5 +42,12 @@ public class ChainStorageService implements ServiceInterface {
   @Override
   public void stop() {
     STDOUT.log(Level.DEBUG, "ChainStorageService.stop()");
+    if (chainStorageServer != null) {
+      try {
+        chainStorageServer.close();
+      } catch (IOException e) {
+        STDOUT.log(Level.WARN, "Failed to close chain storage: " + e.getMessage());
+      }
+    }
   }
 }
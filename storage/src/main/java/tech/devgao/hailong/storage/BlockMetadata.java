@@ -0,0 +1,130 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.storage;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.primitives.UnsignedLong;
+import java.util.Objects;
+import java.util.Optional;
+import org.apache.tuweni.bytes.Bytes32;
+import tech.devgao.hailong.datastructures.blocks.BeaconBlock;
+import tech.devgao.hailong.datastructures.state.BeaconState;
+
+/**
+ * The parts of a block and its post-state needed to place the block in the chain and in fork
+ * choice, without holding the block or state itself. The post-state epochs are only known for
+ * blocks which were stored with their state.
+ */
+public final class BlockMetadata {
+  private final UnsignedLong slot;
+  private final Bytes32 parentRoot;
+  private final Bytes32 stateRoot;
+  private final Optional<UnsignedLong> justifiedEpoch;
+  private final Optional<UnsignedLong> finalizedEpoch;
+
+  public BlockMetadata(
+      final UnsignedLong slot,
+      final Bytes32 parentRoot,
+      final Bytes32 stateRoot,
+      final Optional<UnsignedLong> justifiedEpoch,
+      final Optional<UnsignedLong> finalizedEpoch) {
+    checkArgument(
+        justifiedEpoch.isPresent() == finalizedEpoch.isPresent(),
+        "Justified and finalized epochs must both be present or both be absent");
+    this.slot = slot;
+    this.parentRoot = parentRoot;
+    this.stateRoot = stateRoot;
+    this.justifiedEpoch = justifiedEpoch;
+    this.finalizedEpoch = finalizedEpoch;
+  }
+
+  public static BlockMetadata create(final BeaconBlock block, final BeaconState postState) {
+    return new BlockMetadata(
+        block.getSlot(),
+        block.getParent_root(),
+        block.getState_root(),
+        Optional.of(postState.getCurrent_justified_checkpoint().getEpoch()),
+        Optional.of(postState.getFinalized_checkpoint().getEpoch()));
+  }
+
+  public static BlockMetadata create(final BeaconBlock block) {
+    return new BlockMetadata(
+        block.getSlot(),
+        block.getParent_root(),
+        block.getState_root(),
+        Optional.empty(),
+        Optional.empty());
+  }
+
+  public UnsignedLong getSlot() {
+    return slot;
+  }
+
+  public Bytes32 getParentRoot() {
+    return parentRoot;
+  }
+
+  public Bytes32 getStateRoot() {
+    return stateRoot;
+  }
+
+  /** @return true if the block was stored with its post-state */
+  public boolean hasPostState() {
+    return justifiedEpoch.isPresent();
+  }
+
+  /** @return the current justified epoch of the block's post-state, if it's known */
+  public Optional<UnsignedLong> getJustifiedEpoch() {
+    return justifiedEpoch;
+  }
+
+  /** @return the finalized epoch of the block's post-state, if it's known */
+  public Optional<UnsignedLong> getFinalizedEpoch() {
+    return finalizedEpoch;
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof BlockMetadata)) {
+      return false;
+    }
+    final BlockMetadata that = (BlockMetadata) o;
+    return Objects.equals(slot, that.slot)
+        && Objects.equals(parentRoot, that.parentRoot)
+        && Objects.equals(stateRoot, that.stateRoot)
+        && Objects.equals(justifiedEpoch, that.justifiedEpoch)
+        && Objects.equals(finalizedEpoch, that.finalizedEpoch);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(slot, parentRoot, stateRoot, justifiedEpoch, finalizedEpoch);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("slot", slot)
+        .add("parentRoot", parentRoot)
+        .add("stateRoot", stateRoot)
+        .add("justifiedEpoch", justifiedEpoch)
+        .add("finalizedEpoch", finalizedEpoch)
+        .toString();
+  }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.storage;
+
+import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
+import tech.devgao.hailong.datastructures.state.BeaconState;
+
+/** Regenerates the post-state of a block that has already been validated and finalized. */
+@FunctionalInterface
+public interface BlockReplayer {
+
+  /**
+   * Applies {@code block} to a copy of {@code preState}, which must not be modified.
+   *
+   * @param preState the post-state of the block's parent
+   * @param block the block to apply
+   * @return the post-state of the block
+   * @throws IllegalStateException if the block can't be applied
+   */
+  BeaconState replay(BeaconState preState, SignedBeaconBlock block);
+}
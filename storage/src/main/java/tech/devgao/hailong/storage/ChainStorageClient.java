@@ -13,6 +13,7 @@
 
 package tech.devgao.hailong.storage;
 
+import static com.google.common.base.Preconditions.checkNotNull;
 import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.compute_epoch_at_slot;
 import static tech.devgao.hailong.util.alogger.ALogger.STDOUT;
 
@@ -20,6 +21,7 @@ import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 import com.google.common.primitives.UnsignedLong;
 import java.util.Optional;
+import java.util.function.Function;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -33,6 +35,7 @@ import tech.devgao.hailong.datastructures.state.Fork;
 import tech.devgao.hailong.datastructures.util.BeaconStateUtil;
 import tech.devgao.hailong.storage.Store.StoreUpdateHandler;
 import tech.devgao.hailong.storage.events.FinalizedCheckpointEvent;
+import tech.devgao.hailong.storage.events.StoreDataLoaderEvent;
 import tech.devgao.hailong.storage.events.StoreGenesisDiskUpdateEvent;
 import tech.devgao.hailong.storage.events.StoreInitializedEvent;
 import tech.devgao.hailong.util.SSZTypes.Bytes4;
@@ -52,6 +55,8 @@ public class ChainStorageClient implements ChainStorage, StoreUpdateHandler {
       UnsignedLong.ZERO; // slot of the block chosen by lmd ghost to build and attest on
   // Time
   private volatile UnsignedLong genesisTime;
+  private volatile Function<BeaconState, Store> genesisStoreFactory = Store::get_genesis_store;
+  private volatile StoreDataLoader genesisStoreDataLoader = StoreDataLoader.NONE;
 
   public static ChainStorageClient memoryOnlyClient(final EventBus eventBus) {
     return new ChainStorageClient(eventBus, TransactionPrecommit.memoryOnly());
@@ -61,6 +66,17 @@ public class ChainStorageClient implements ChainStorage, StoreUpdateHandler {
     return new ChainStorageClient(eventBus, TransactionPrecommit.storageEnabled(eventBus));
   }
 
+  /**
+   * Creates a client whose transactions update the in-memory store immediately and are written to
+   * disk in the background, with at most {@code maxPendingUpdates} transactions waiting to be
+   * written.
+   */
+  public static ChainStorageClient writeBehindClient(
+      final EventBus eventBus, final int maxPendingUpdates) {
+    return new ChainStorageClient(
+        eventBus, TransactionPrecommit.writeBehind(eventBus, maxPendingUpdates));
+  }
+
   private ChainStorageClient(EventBus eventBus, final TransactionPrecommit transactionPrecommit) {
     this.eventBus = eventBus;
     this.transactionPrecommit = transactionPrecommit;
@@ -69,7 +85,7 @@ public class ChainStorageClient implements ChainStorage, StoreUpdateHandler {
 
   public void initializeFromGenesis(final BeaconState initialState) {
     setGenesisTime(initialState.getGenesis_time());
-    final Store store = Store.get_genesis_store(initialState);
+    final Store store = genesisStoreFactory.apply(initialState);
     setStore(store);
     eventBus.post(new StoreGenesisDiskUpdateEvent(store));
 
@@ -91,6 +107,24 @@ public class ChainStorageClient implements ChainStorage, StoreUpdateHandler {
     eventBus.post(new StoreInitializedEvent());
   }
 
+  /**
+   * Limits the states kept in memory by a store created from genesis. States which don't fit are
+   * loaded from disk, once storage provides a loader, or regenerated with {@code blockReplayer}
+   * when they're next needed. By default every state is kept in memory.
+   */
+  public void setStateCacheLimit(final BlockReplayer blockReplayer, final long maxStateCacheBytes) {
+    checkNotNull(blockReplayer);
+    this.genesisStoreFactory =
+        genesisState ->
+            Store.get_genesis_store(
+                genesisState, genesisStoreDataLoader, blockReplayer, maxStateCacheBytes);
+  }
+
+  @Subscribe
+  public void onStoreDataLoader(final StoreDataLoaderEvent event) {
+    this.genesisStoreDataLoader = event.getDataLoader();
+  }
+
   public void setGenesisTime(UnsignedLong genesisTime) {
     this.genesisTime = genesisTime;
   }
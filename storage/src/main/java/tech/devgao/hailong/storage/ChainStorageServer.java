@@ -13,41 +13,61 @@
 
 package tech.devgao.hailong.storage;
 
-import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 import java.io.File;
+import java.io.IOException;
 import java.util.Optional;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
-import tech.devgao.hailong.storage.events.GetFinalizedBlockAtSlotRequest;
-import tech.devgao.hailong.storage.events.GetFinalizedBlockAtSlotResponse;
+import tech.devgao.hailong.storage.api.StorageQueryChannel;
+import tech.devgao.hailong.storage.events.StoreDataLoaderEvent;
 import tech.devgao.hailong.storage.events.StoreDiskUpdateCompleteEvent;
 import tech.devgao.hailong.storage.events.StoreDiskUpdateEvent;
 import tech.devgao.hailong.storage.events.StoreGenesisDiskUpdateEvent;
 import tech.devgao.hailong.util.config.HailongConfiguration;
 
-public class ChainStorageServer {
+public class ChainStorageServer implements AutoCloseable {
   private static final Logger LOG = LogManager.getLogger();
-  private final Database database;
   private final EventBus eventBus;
+  private final Database database;
+  // Only used when store updates are written behind, otherwise they're written as they arrive
+  private final Optional<WriteBehindJournal> journal;
+  private final StorageQueryService queryService;
 
-  public ChainStorageServer(EventBus eventBus, HailongConfiguration config) {
+  public ChainStorageServer(
+      EventBus eventBus, HailongConfiguration config, BlockReplayer blockReplayer) {
     this.eventBus = eventBus;
-    this.database = MapDbDatabase.createOnDisk(new File("./"), config.startFromDisk());
+    this.database =
+        MapDbDatabase.createOnDisk(
+            new File("./"),
+            config.startFromDisk(),
+            StateStorageMode.create(
+                config.getStateStorageMode(), config.getStateSnapshotInterval()),
+            blockReplayer);
+    this.journal =
+        config.isWriteBehindEnabled()
+            ? Optional.of(
+                new WriteBehindJournal(database, eventBus, config.getWriteBehindQueueSize()))
+            : Optional.empty();
+    this.queryService = StorageQueryService.create(database);
     eventBus.register(this);
     if (config.startFromDisk()) {
-      Store memoryStore = database.createMemoryStore();
+      Store memoryStore = database.createMemoryStore(config.getHotStateCacheBytes());
       eventBus.post(memoryStore);
+    } else {
+      eventBus.post(new StoreDataLoaderEvent(database.createStoreDataLoader()));
     }
   }
 
   @Subscribe
   public void onStoreDiskUpdate(final StoreDiskUpdateEvent event) {
+    if (journal.isPresent()) {
+      journal.get().append(event);
+      return;
+    }
     try {
       database.insert(event);
-
       eventBus.post(new StoreDiskUpdateCompleteEvent(event.getTransactionId(), Optional.empty()));
     } catch (final RuntimeException e) {
       LOG.debug("Transaction " + event.getTransactionId() + " failed", e);
@@ -60,11 +80,15 @@ public class ChainStorageServer {
     database.storeGenesis(event.getStore());
   }
 
-  @Subscribe
-  @AllowConcurrentEvents
-  public void onGetBlockBySlotRequest(final GetFinalizedBlockAtSlotRequest request) {
-    final Optional<SignedBeaconBlock> block =
-        database.getFinalizedRootAtSlot(request.getSlot()).flatMap(database::getSignedBlock);
-    eventBus.post(new GetFinalizedBlockAtSlotResponse(request.getSlot(), block));
+  public StorageQueryChannel getQueryService() {
+    return queryService;
+  }
+
+  /** Stops serving queries, writes out any queued store updates and closes the database. */
+  @Override
+  public void close() throws IOException {
+    queryService.close();
+    journal.ifPresent(WriteBehindJournal::close);
+    database.close();
   }
 }
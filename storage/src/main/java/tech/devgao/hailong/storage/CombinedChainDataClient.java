@@ -13,6 +13,7 @@
 
 package tech.devgao.hailong.storage;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.compute_start_slot_at_epoch;
 import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.get_block_root_at_slot;
@@ -27,6 +28,8 @@ import org.apache.tuweni.bytes.Bytes32;
 import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
 import tech.devgao.hailong.datastructures.state.BeaconState;
 import tech.devgao.hailong.datastructures.util.BeaconStateUtil;
+import tech.devgao.hailong.storage.api.StorageQueryChannel;
+import tech.devgao.hailong.storage.api.StorageQueryChannel.BlockBytesConsumer;
 import tech.devgao.hailong.util.async.SafeFuture;
 
 public class CombinedChainDataClient {
@@ -35,10 +38,10 @@ public class CombinedChainDataClient {
   private static final SafeFuture<Optional<SignedBeaconBlock>> BLOCK_NOT_AVAILABLE =
       completedFuture(Optional.empty());
   private final ChainStorageClient recentChainData;
-  private final HistoricalChainData historicalChainData;
+  private final StorageQueryChannel historicalChainData;
 
   public CombinedChainDataClient(
-      final ChainStorageClient recentChainData, final HistoricalChainData historicalChainData) {
+      final ChainStorageClient recentChainData, final StorageQueryChannel historicalChainData) {
     this.recentChainData = recentChainData;
     this.historicalChainData = historicalChainData;
   }
@@ -117,10 +120,37 @@ public class CombinedChainDataClient {
         Optional.ofNullable(store.getSignedBlock(get_block_root_at_slot(state, slot))));
   }
 
+  /**
+   * Streams the serialized SSZ of the blocks in every <code>step</code>th slot from <code>
+   * startSlot</code> to <code>endSlot</code> inclusive, in slot order. Empty slots are skipped. The
+   * blocks are read from finalized storage in a single query and are not deserialized, so every
+   * slot in the range must be at or before {@link #getFinalizedSlot()}.
+   *
+   * @param startSlot the first slot to get the block for
+   * @param endSlot the last slot to get the block for
+   * @param step the number of slots between each requested slot
+   * @param consumer receives each serialized block and returns false to stop the stream early
+   * @return a future which completes once the stream has finished
+   */
+  public SafeFuture<Void> streamFinalizedBlockBytes(
+      final UnsignedLong startSlot,
+      final UnsignedLong endSlot,
+      final UnsignedLong step,
+      final BlockBytesConsumer consumer) {
+    checkArgument(
+        endSlot.compareTo(getFinalizedSlot()) <= 0,
+        "Range ending at slot %s is not finalized",
+        endSlot);
+    return historicalChainData.streamFinalizedBlockBytes(startSlot, endSlot, step, consumer);
+  }
+
+  /** @return the last slot whose block is read from finalized storage */
+  public UnsignedLong getFinalizedSlot() {
+    return compute_start_slot_at_epoch(recentChainData.getFinalizedEpoch());
+  }
+
   private boolean isFinalized(final UnsignedLong slot) {
-    final UnsignedLong finalizedEpoch = recentChainData.getFinalizedEpoch();
-    final UnsignedLong finalizedSlot = compute_start_slot_at_epoch(finalizedEpoch);
-    return finalizedSlot.compareTo(slot) >= 0;
+    return getFinalizedSlot().compareTo(slot) >= 0;
   }
 
   public Optional<BeaconState> getNonfinalizedBlockState(final Bytes32 blockRoot) {
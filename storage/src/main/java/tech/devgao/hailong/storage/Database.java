@@ -15,7 +15,10 @@ package tech.devgao.hailong.storage;
 
 import com.google.common.primitives.UnsignedLong;
 import java.io.Closeable;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.bytes.Bytes32;
 import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
 import tech.devgao.hailong.datastructures.state.BeaconState;
@@ -27,11 +30,42 @@ public interface Database extends Closeable {
 
   void insert(StoreDiskUpdateEvent event);
 
-  Store createMemoryStore();
+  /**
+   * Applies the updates in order and commits them together, so that either all or none of them are
+   * stored.
+   */
+  void insertAll(List<StoreDiskUpdateEvent> events);
+
+  default Store createMemoryStore() {
+    return createMemoryStore(Store.DEFAULT_MAX_STATE_CACHE_BYTES);
+  }
+
+  /**
+   * Creates the in-memory store from the non-finalized data on disk. The store keeps at most about
+   * {@code maxStateCacheBytes} of block states in memory and loads the rest from disk when needed.
+   */
+  Store createMemoryStore(long maxStateCacheBytes);
+
+  /** Creates a loader which reads the blocks and states of a store from this database. */
+  StoreDataLoader createStoreDataLoader();
 
   Optional<Bytes32> getFinalizedRootAtSlot(UnsignedLong slot);
 
   Optional<SignedBeaconBlock> getSignedBlock(Bytes32 root);
 
+  /**
+   * Streams the serialized SSZ of the finalized blocks in every {@code step}th slot from {@code
+   * startSlot} to {@code endSlot} inclusive, in slot order. Blocks are returned as stored, without
+   * being deserialized, and empty slots are skipped.
+   */
+  Stream<Bytes> streamFinalizedBlockBytes(
+      UnsignedLong startSlot, UnsignedLong endSlot, UnsignedLong step);
+
   Optional<BeaconState> getState(Bytes32 root);
+
+  /**
+   * Returns the post-state of a finalized block. States which were not stored on disk are
+   * regenerated by replaying blocks from the nearest earlier stored state.
+   */
+  Optional<BeaconState> getFinalizedState(Bytes32 root);
 }
@@ -19,17 +19,23 @@ import static tech.devgao.hailong.util.alogger.ALogger.STDOUT;
 import com.google.common.primitives.UnsignedLong;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
-import java.util.Collections;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentNavigableMap;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.bytes.Bytes32;
 import org.mapdb.Atomic;
 import org.mapdb.Atomic.Var;
@@ -39,50 +45,98 @@ import org.mapdb.DBMaker.Maker;
 import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
 import tech.devgao.hailong.datastructures.state.BeaconState;
 import tech.devgao.hailong.datastructures.state.Checkpoint;
+import tech.devgao.hailong.datastructures.util.SimpleOffsetSerializer;
+import tech.devgao.hailong.storage.archive.FinalizedBlockArchive;
 import tech.devgao.hailong.storage.events.StoreDiskUpdateEvent;
+import tech.devgao.hailong.storage.utils.BlockMetadataSerializer;
 import tech.devgao.hailong.storage.utils.Bytes32Serializer;
+import tech.devgao.hailong.storage.utils.BytesSerializer;
 import tech.devgao.hailong.storage.utils.MapDBSerializer;
 import tech.devgao.hailong.storage.utils.UnsignedLongSerializer;
+import tech.devgao.hailong.storage.votes.VoteTable;
+import tech.devgao.hailong.storage.votes.VoteTableFile;
+import tech.devgao.hailong.util.collections.LimitedMap;
 
 public class MapDbDatabase implements Database {
   private static final Logger LOG = LogManager.getLogger();
+  private static final int MAX_REGENERATED_STATES = 8;
   private final DB db;
+  private final StateStorageMode stateStorageMode;
+  private final BlockReplayer blockReplayer;
   private final Var<UnsignedLong> time;
   private final Var<UnsignedLong> genesisTime;
   private final Atomic.Var<Checkpoint> justifiedCheckpoint;
   private final Atomic.Var<Checkpoint> bestJustifiedCheckpoint;
   private final Atomic.Var<Checkpoint> finalizedCheckpoint;
 
-  private final ConcurrentNavigableMap<UnsignedLong, Bytes32> finalizedRootsBySlot;
-  private final ConcurrentMap<Bytes32, SignedBeaconBlock> finalizedBlocksByRoot;
+  // Finalized blocks are kept serialized, outside the database, in an append-only archive
+  private final FinalizedBlockArchive finalizedBlocks;
   private final ConcurrentMap<Bytes32, BeaconState> finalizedStatesByRoot;
   private final ConcurrentMap<Bytes32, SignedBeaconBlock> hotBlocksByRoot;
   private final ConcurrentMap<Bytes32, BeaconState> hotStatesByRoot;
+  // Compact side tables, so restarting doesn't need to read every hot block and state
+  private final ConcurrentMap<Bytes32, BlockMetadata> hotBlockMetadataByRoot;
+  private final ConcurrentNavigableMap<UnsignedLong, Bytes> hotRootsBySlot;
 
   private final ConcurrentMap<Checkpoint, BeaconState> checkpointStates;
-  private final ConcurrentMap<UnsignedLong, Checkpoint> latestMessages;
+  // Latest messages are kept in a fixed-width file, outside the database, updated in place
+  private final VoteTableFile latestMessagesFile;
+  private final VoteTable latestMessages;
 
   // In memory only
-  private final ConcurrentNavigableMap<UnsignedLong, Set<Bytes32>> hotRootsBySlotCache =
-      new ConcurrentSkipListMap<>();
+  private final Map<Bytes32, BeaconState> regeneratedStates =
+      LimitedMap.create(MAX_REGENERATED_STATES);
 
-  public static Database createOnDisk(final File directory, final boolean startFromDisk) {
+  public static Database createOnDisk(
+      final File directory,
+      final boolean startFromDisk,
+      final StateStorageMode stateStorageMode,
+      final BlockReplayer blockReplayer) {
     final File databaseFile = new File(directory, "hailong.db");
+    final Path archiveDirectory = new File(directory, "finalized-blocks").toPath();
+    final Path latestMessagesFile = new File(directory, "latest-messages.dat").toPath();
     try {
       if (!startFromDisk) {
         Files.deleteIfExists(databaseFile.toPath());
+        FinalizedBlockArchive.delete(archiveDirectory);
+        VoteTableFile.delete(latestMessagesFile);
       }
-    } catch (IOException e) {
+    } catch (IOException | UncheckedIOException e) {
       STDOUT.log(Level.WARN, "Failed to clear old database");
     }
-    return new MapDbDatabase(DBMaker.fileDB(databaseFile));
+    final long startTime = System.nanoTime();
+    final FinalizedBlockArchive finalizedBlocks = FinalizedBlockArchive.open(archiveDirectory);
+    LOG.info(
+        "Opened finalized block archive in {} ms", elapsedMillis(startTime, System.nanoTime()));
+    return new MapDbDatabase(
+        DBMaker.fileDB(databaseFile),
+        finalizedBlocks,
+        VoteTableFile.open(latestMessagesFile),
+        stateStorageMode,
+        blockReplayer);
   }
 
-  public static Database createInMemory() {
-    return new MapDbDatabase(DBMaker.memoryDB());
+  public static Database createInMemory(
+      final StateStorageMode stateStorageMode, final BlockReplayer blockReplayer) {
+    return new MapDbDatabase(
+        DBMaker.memoryDB(),
+        FinalizedBlockArchive.createTemporary(),
+        VoteTableFile.createTemporary(),
+        stateStorageMode,
+        blockReplayer);
   }
 
-  private MapDbDatabase(final Maker dbMaker) {
+  private MapDbDatabase(
+      final Maker dbMaker,
+      final FinalizedBlockArchive finalizedBlocks,
+      final VoteTableFile latestMessagesFile,
+      final StateStorageMode stateStorageMode,
+      final BlockReplayer blockReplayer) {
+    final long startTime = System.nanoTime();
+    this.finalizedBlocks = finalizedBlocks;
+    this.latestMessagesFile = latestMessagesFile;
+    this.stateStorageMode = stateStorageMode;
+    this.blockReplayer = blockReplayer;
     db = dbMaker.transactionEnable().make();
     time = db.atomicVar("time", new UnsignedLongSerializer()).createOrOpen();
     genesisTime = db.atomicVar("genesisTime", new UnsignedLongSerializer()).createOrOpen();
@@ -94,15 +148,6 @@ public class MapDbDatabase implements Database {
     finalizedCheckpoint =
         db.atomicVar("finalizedCheckpoint", new MapDBSerializer<>(Checkpoint.class)).createOrOpen();
 
-    finalizedRootsBySlot =
-        db.treeMap("finalizedRootsBySlot", new UnsignedLongSerializer(), new Bytes32Serializer())
-            .createOrOpen();
-    finalizedBlocksByRoot =
-        db.hashMap(
-                "finalizedBlocksByRoot",
-                new Bytes32Serializer(),
-                new MapDBSerializer<>(SignedBeaconBlock.class))
-            .createOrOpen();
     finalizedStatesByRoot =
         db.hashMap(
                 "finalizedStatsByRoot",
@@ -123,6 +168,13 @@ public class MapDbDatabase implements Database {
                 new MapDBSerializer<>(BeaconState.class))
             .createOrOpen();
 
+    hotBlockMetadataByRoot =
+        db.hashMap("hotBlockMetadataByRoot", new Bytes32Serializer(), new BlockMetadataSerializer())
+            .createOrOpen();
+    hotRootsBySlot =
+        db.treeMap("hotRootsBySlot", new UnsignedLongSerializer(), new BytesSerializer())
+            .createOrOpen();
+
     checkpointStates =
         db.hashMap(
                 "checkpointStates",
@@ -130,15 +182,91 @@ public class MapDbDatabase implements Database {
                 new MapDBSerializer<>(BeaconState.class))
             .createOrOpen();
 
-    latestMessages =
+    latestMessages = latestMessagesFile.load();
+
+    final long openedTime = System.nanoTime();
+    moveLatestMessagesToVoteTable();
+    moveFinalizedBlocksToArchive();
+    final long archiveMigratedTime = System.nanoTime();
+    indexHotBlocks();
+    final long indexedTime = System.nanoTime();
+    LOG.info(
+        "Opened database in {} ms: open {} ms, archive migration {} ms, hot block index {} ms",
+        elapsedMillis(startTime, indexedTime),
+        elapsedMillis(startTime, openedTime),
+        elapsedMillis(openedTime, archiveMigratedTime),
+        elapsedMillis(archiveMigratedTime, indexedTime));
+  }
+
+  private static long elapsedMillis(final long startTime, final long endTime) {
+    return TimeUnit.NANOSECONDS.toMillis(endTime - startTime);
+  }
+
+  /**
+   * Builds the hot block side tables for a database written by an earlier version, which only
+   * stored full blocks. Every hot block and state is read once.
+   */
+  private void indexHotBlocks() {
+    if (!hotBlockMetadataByRoot.isEmpty() || hotBlocksByRoot.isEmpty()) {
+      return;
+    }
+    LOG.info("Indexing {} hot blocks", hotBlocksByRoot.size());
+    hotBlocksByRoot.forEach((root, block) -> addHotBlock(root, block, hotStatesByRoot.get(root)));
+    db.commit();
+  }
+
+  /** Moves latest messages stored in the database by earlier versions into the vote table. */
+  private void moveLatestMessagesToVoteTable() {
+    if (!db.exists("latestMessages")) {
+      return;
+    }
+    final ConcurrentMap<UnsignedLong, Checkpoint> storedMessages =
         db.hashMap(
                 "latestMessages",
                 new UnsignedLongSerializer(),
                 new MapDBSerializer<>(Checkpoint.class))
-            .createOrOpen();
+            .open();
+    if (storedMessages.isEmpty()) {
+      return;
+    }
+    LOG.info("Moving {} latest messages to the vote table", storedMessages.size());
+    storedMessages.forEach(
+        (validatorIndex, checkpoint) -> {
+          if (!latestMessages.contains(validatorIndex.intValue())) {
+            latestMessages.put(validatorIndex, checkpoint);
+          }
+        });
+    latestMessagesFile.writeAll(latestMessages);
+    storedMessages.clear();
+    db.commit();
+  }
 
-    // Recreate hotRootsBySlotCache
-    hotBlocksByRoot.forEach(this::addToHotRootsBySlotCache);
+  /** Moves finalized blocks stored in the database by earlier versions into the archive. */
+  private void moveFinalizedBlocksToArchive() {
+    if (!db.exists("finalizedRootsBySlot")) {
+      return;
+    }
+    final ConcurrentNavigableMap<UnsignedLong, Bytes32> rootsBySlot =
+        db.treeMap("finalizedRootsBySlot", new UnsignedLongSerializer(), new Bytes32Serializer())
+            .open();
+    if (rootsBySlot.isEmpty()) {
+      return;
+    }
+    final ConcurrentMap<Bytes32, Bytes> blocksByRoot =
+        db.hashMap("finalizedBlocksByRoot", new Bytes32Serializer(), new BytesSerializer())
+            .createOrOpen();
+    LOG.info("Moving {} finalized blocks to the finalized block archive", rootsBySlot.size());
+    final UnsignedLong archivedSlot = finalizedBlocks.getLastSlot().orElse(null);
+    rootsBySlot.forEach(
+        (slot, root) -> {
+          final Bytes block = blocksByRoot.get(root);
+          if (block != null && (archivedSlot == null || slot.compareTo(archivedSlot) > 0)) {
+            finalizedBlocks.append(slot, root, block);
+          }
+        });
+    rootsBySlot.clear();
+    blocksByRoot.clear();
+    db.commit();
   }
 
   @Override
@@ -155,10 +283,9 @@ public class MapDbDatabase implements Database {
               root -> {
                 final SignedBeaconBlock block = store.getSignedBlock(root);
                 final BeaconState state = store.getBlockState(root);
-                addHotBlock(root, block);
+                addHotBlock(root, block, state);
                 hotStatesByRoot.put(root, state);
-                finalizedRootsBySlot.put(block.getSlot(), root);
-                finalizedBlocksByRoot.put(root, block);
+                putFinalizedBlock(root, block);
                 finalizedStatesByRoot.put(root, state);
               });
       checkpointStates.put(
@@ -176,37 +303,77 @@ public class MapDbDatabase implements Database {
 
   @Override
   public synchronized void insert(final StoreDiskUpdateEvent event) {
+    insertAll(List.of(event));
+  }
+
+  @Override
+  public synchronized void insertAll(final List<StoreDiskUpdateEvent> events) {
     try {
-      final Checkpoint previousFinalizedCheckpoint = finalizedCheckpoint.get();
-      final Checkpoint newFinalizedCheckpoint =
-          event.getFinalizedCheckpoint().orElse(previousFinalizedCheckpoint);
-      event.getTime().ifPresent(time::set);
-      event.getGenesisTime().ifPresent(genesisTime::set);
-      event.getFinalizedCheckpoint().ifPresent(finalizedCheckpoint::set);
-      event.getJustifiedCheckpoint().ifPresent(justifiedCheckpoint::set);
-      event.getBestJustifiedCheckpoint().ifPresent(bestJustifiedCheckpoint::set);
-      checkpointStates.putAll(event.getCheckpointStates());
-      latestMessages.putAll(event.getLatestMessages());
-
-      event.getBlocks().forEach(this::addHotBlock);
-      hotStatesByRoot.putAll(event.getBlockStates());
-
-      if (previousFinalizedCheckpoint == null
-          || !previousFinalizedCheckpoint.equals(newFinalizedCheckpoint)) {
-        recordFinalizedBlocks(newFinalizedCheckpoint);
-        pruneCheckpointStates(newFinalizedCheckpoint);
-        pruneHotBlocks(newFinalizedCheckpoint);
-      }
+      events.forEach(this::applyUpdate);
       db.commit();
     } catch (final RuntimeException | Error e) {
       db.rollback();
       throw e;
     }
+    events.forEach(this::recordLatestMessages);
+  }
+
+  private void recordLatestMessages(final StoreDiskUpdateEvent event) {
+    event
+        .getLatestMessages()
+        .forEach(
+            (validatorIndex, epoch, root) -> {
+              latestMessages.put(validatorIndex, epoch, root);
+              latestMessagesFile.write(validatorIndex, epoch, root);
+            });
+  }
+
+  private void applyUpdate(final StoreDiskUpdateEvent event) {
+    final Checkpoint previousFinalizedCheckpoint = finalizedCheckpoint.get();
+    final Checkpoint newFinalizedCheckpoint =
+        event.getFinalizedCheckpoint().orElse(previousFinalizedCheckpoint);
+    event.getTime().ifPresent(time::set);
+    event.getGenesisTime().ifPresent(genesisTime::set);
+    event.getFinalizedCheckpoint().ifPresent(finalizedCheckpoint::set);
+    event.getJustifiedCheckpoint().ifPresent(justifiedCheckpoint::set);
+    event.getBestJustifiedCheckpoint().ifPresent(bestJustifiedCheckpoint::set);
+    checkpointStates.putAll(event.getCheckpointStates());
+
+    event
+        .getBlocks()
+        .forEach((root, block) -> addHotBlock(root, block, event.getBlockStates().get(root)));
+    hotStatesByRoot.putAll(event.getBlockStates());
+
+    if (previousFinalizedCheckpoint == null
+        || !previousFinalizedCheckpoint.equals(newFinalizedCheckpoint)) {
+      recordFinalizedBlocks(newFinalizedCheckpoint);
+      pruneCheckpointStates(newFinalizedCheckpoint);
+      pruneHotBlocks(newFinalizedCheckpoint);
+    }
   }
 
-  private void addHotBlock(final Bytes32 root, final SignedBeaconBlock block) {
+  private void addHotBlock(
+      final Bytes32 root, final SignedBeaconBlock block, final BeaconState state) {
     hotBlocksByRoot.put(root, block);
-    addToHotRootsBySlotCache(root, block);
+    hotBlockMetadataByRoot.put(
+        root,
+        state != null
+            ? BlockMetadata.create(block.getMessage(), state)
+            : BlockMetadata.create(block.getMessage()));
+    final Bytes roots = hotRootsBySlot.get(block.getSlot());
+    if (roots == null) {
+      hotRootsBySlot.put(block.getSlot(), root);
+    } else if (!splitRoots(roots).contains(root)) {
+      hotRootsBySlot.put(block.getSlot(), Bytes.concatenate(roots, root));
+    }
+  }
+
+  private static List<Bytes32> splitRoots(final Bytes roots) {
+    final List<Bytes32> result = new ArrayList<>(roots.size() / Bytes32.SIZE);
+    for (int offset = 0; offset < roots.size(); offset += Bytes32.SIZE) {
+      result.add(Bytes32.wrap(roots.slice(offset, Bytes32.SIZE)));
+    }
+    return result;
   }
 
   private void recordFinalizedBlocks(final Checkpoint newFinalizedCheckpoint) {
@@ -215,7 +382,9 @@ public class MapDbDatabase implements Database {
         newFinalizedCheckpoint.getEpoch(),
         newFinalizedCheckpoint.getRoot());
     final UnsignedLong highestFinalizedSlot =
-        finalizedRootsBySlot.isEmpty() ? UnsignedLong.ZERO : finalizedRootsBySlot.lastKey();
+        finalizedBlocks.getLastSlot().orElse(UnsignedLong.ZERO);
+    // Blocks are found walking back from the checkpoint but must be archived in slot order
+    final Deque<Bytes32> newlyFinalizedRoots = new ArrayDeque<>();
     Bytes32 newlyFinalizedBlockRoot = newFinalizedCheckpoint.getRoot();
     SignedBeaconBlock newlyFinalizedBlock = hotBlocksByRoot.get(newlyFinalizedBlockRoot);
     while (newlyFinalizedBlock != null
@@ -224,20 +393,23 @@ public class MapDbDatabase implements Database {
           "Recording finalized block {} at slot {}",
           newlyFinalizedBlock.getSlot(),
           newlyFinalizedBlockRoot);
-      finalizedRootsBySlot.put(newlyFinalizedBlock.getSlot(), newlyFinalizedBlockRoot);
-      finalizedBlocksByRoot.put(newlyFinalizedBlockRoot, newlyFinalizedBlock);
-      final Optional<BeaconState> finalizedState = getState(newlyFinalizedBlockRoot);
-      if (finalizedState.isPresent()) {
-        finalizedStatesByRoot.put(newlyFinalizedBlockRoot, finalizedState.get());
-      } else {
-        LOG.error(
-            "Missing finalized state {} for epoch {}",
-            newlyFinalizedBlockRoot,
-            newFinalizedCheckpoint.getEpoch());
+      newlyFinalizedRoots.push(newlyFinalizedBlockRoot);
+      final Bytes32 parentRoot = newlyFinalizedBlock.getMessage().getParent_root();
+      if (shouldStoreFinalizedState(newlyFinalizedBlock, parentRoot)) {
+        final Optional<BeaconState> finalizedState = getState(newlyFinalizedBlockRoot);
+        if (finalizedState.isPresent()) {
+          finalizedStatesByRoot.put(newlyFinalizedBlockRoot, finalizedState.get());
+        } else {
+          LOG.error(
+              "Missing finalized state {} for epoch {}",
+              newlyFinalizedBlockRoot,
+              newFinalizedCheckpoint.getEpoch());
+        }
       }
-      newlyFinalizedBlockRoot = newlyFinalizedBlock.getMessage().getParent_root();
+      newlyFinalizedBlockRoot = parentRoot;
       newlyFinalizedBlock = hotBlocksByRoot.get(newlyFinalizedBlockRoot);
     }
+    newlyFinalizedRoots.forEach(root -> putFinalizedBlock(root, hotBlocksByRoot.get(root)));
 
     if (newlyFinalizedBlock == null) {
       LOG.error(
@@ -247,6 +419,13 @@ public class MapDbDatabase implements Database {
     }
   }
 
+  private boolean shouldStoreFinalizedState(
+      final SignedBeaconBlock block, final Bytes32 parentRoot) {
+    return getSignedBlock(parentRoot)
+        .map(parent -> stateStorageMode.shouldStoreState(block.getSlot(), parent.getSlot()))
+        .orElse(true);
+  }
+
   private void pruneCheckpointStates(final Checkpoint newFinalizedCheckpoint) {
     checkpointStates
         .keySet()
@@ -258,51 +437,71 @@ public class MapDbDatabase implements Database {
     // TODO: Can we prune blocks from in the finalized epoch as well?
     final UnsignedLong startOfFinalizedEpoch =
         compute_start_slot_at_epoch(newFinalizedCheckpoint.getEpoch());
-    final ConcurrentNavigableMap<UnsignedLong, Set<Bytes32>> toRemove =
-        hotRootsBySlotCache.headMap(startOfFinalizedEpoch);
-    LOG.trace("Pruning slots {} from non-finalized pool", toRemove::keySet);
-    toRemove
-        .values()
-        .forEach(
-            roots -> {
-              hotBlocksByRoot.keySet().removeAll(roots);
-              hotStatesByRoot.keySet().removeAll(roots);
-            });
-    hotRootsBySlotCache.keySet().removeAll(toRemove.keySet());
+    final List<UnsignedLong> slotsToRemove =
+        new ArrayList<>(hotRootsBySlot.headMap(startOfFinalizedEpoch).keySet());
+    LOG.trace("Pruning slots {} from non-finalized pool", slotsToRemove);
+    for (UnsignedLong slot : slotsToRemove) {
+      final List<Bytes32> roots = splitRoots(hotRootsBySlot.remove(slot));
+      hotBlocksByRoot.keySet().removeAll(roots);
+      hotStatesByRoot.keySet().removeAll(roots);
+      hotBlockMetadataByRoot.keySet().removeAll(roots);
+    }
   }
 
-  private void addToHotRootsBySlotCache(final Bytes32 root, final SignedBeaconBlock block) {
-    hotRootsBySlotCache
-        .computeIfAbsent(
-            block.getSlot(), key -> Collections.newSetFromMap(new ConcurrentHashMap<>()))
-        .add(root);
+  @Override
+  public synchronized Store createMemoryStore(final long maxStateCacheBytes) {
+    final long startTime = System.nanoTime();
+    final Store store =
+        new Store(
+            time.get(),
+            genesisTime.get(),
+            justifiedCheckpoint.get(),
+            finalizedCheckpoint.get(),
+            bestJustifiedCheckpoint.get(),
+            hotBlockMetadataByRoot,
+            checkpointStates.keySet(),
+            latestMessages,
+            createStoreDataLoader(),
+            blockReplayer,
+            maxStateCacheBytes);
+    LOG.info(
+        "Created store with {} hot blocks in {} ms",
+        hotBlockMetadataByRoot.size(),
+        elapsedMillis(startTime, System.nanoTime()));
+    return store;
   }
 
   @Override
-  public Store createMemoryStore() {
-    return new Store(
-        time.get(),
-        genesisTime.get(),
-        justifiedCheckpoint.get(),
-        finalizedCheckpoint.get(),
-        bestJustifiedCheckpoint.get(),
-        hotBlocksByRoot,
-        hotStatesByRoot,
-        checkpointStates,
-        latestMessages);
+  public StoreDataLoader createStoreDataLoader() {
+    return new DatabaseDataLoader();
   }
 
   @Override
   public Optional<Bytes32> getFinalizedRootAtSlot(final UnsignedLong slot) {
-    return Optional.ofNullable(finalizedRootsBySlot.get(slot));
+    return finalizedBlocks.getRootAtSlot(slot);
   }
 
   @Override
   public Optional<SignedBeaconBlock> getSignedBlock(final Bytes32 root) {
     final SignedBeaconBlock block = hotBlocksByRoot.get(root);
-    return block != null
-        ? Optional.of(block)
-        : Optional.ofNullable(finalizedBlocksByRoot.get(root));
+    return block != null ? Optional.of(block) : Optional.ofNullable(getFinalizedBlock(root));
+  }
+
+  @Override
+  public Stream<Bytes> streamFinalizedBlockBytes(
+      final UnsignedLong startSlot, final UnsignedLong endSlot, final UnsignedLong step) {
+    return finalizedBlocks.streamBlocks(startSlot, endSlot, step);
+  }
+
+  private SignedBeaconBlock getFinalizedBlock(final Bytes32 root) {
+    return finalizedBlocks
+        .getBlock(root)
+        .map(blockData -> SimpleOffsetSerializer.deserialize(blockData, SignedBeaconBlock.class))
+        .orElse(null);
+  }
+
+  private void putFinalizedBlock(final Bytes32 root, final SignedBeaconBlock block) {
+    finalizedBlocks.append(block.getSlot(), root, SimpleOffsetSerializer.serialize(block));
   }
 
   @Override
@@ -311,7 +510,68 @@ public class MapDbDatabase implements Database {
   }
 
   @Override
-  public void close() {
+  public Optional<BeaconState> getFinalizedState(final Bytes32 root) {
+    final BeaconState state = getStoredOrRegeneratedState(root);
+    if (state != null) {
+      return Optional.of(state);
+    }
+    if (!finalizedBlocks.contains(root)) {
+      return Optional.empty();
+    }
+
+    // Walk back to the nearest available state, then replay the blocks after it
+    final Deque<SignedBeaconBlock> blocksToReplay = new ArrayDeque<>();
+    Bytes32 blockRoot = root;
+    BeaconState baseState = null;
+    while (baseState == null) {
+      final SignedBeaconBlock block = getFinalizedBlock(blockRoot);
+      if (block == null) {
+        LOG.error("Missing finalized block {} while regenerating state {}", blockRoot, root);
+        return Optional.empty();
+      }
+      blocksToReplay.push(block);
+      blockRoot = block.getMessage().getParent_root();
+      baseState = getStoredOrRegeneratedState(blockRoot);
+    }
+
+    LOG.debug("Regenerating state {} by replaying {} blocks", root, blocksToReplay.size());
+    BeaconState regeneratedState = baseState;
+    for (SignedBeaconBlock block : blocksToReplay) {
+      regeneratedState = blockReplayer.replay(regeneratedState, block);
+    }
+    regeneratedStates.put(root, regeneratedState);
+    return Optional.of(regeneratedState);
+  }
+
+  private BeaconState getStoredOrRegeneratedState(final Bytes32 root) {
+    final BeaconState state = finalizedStatesByRoot.get(root);
+    return state != null ? state : regeneratedStates.get(root);
+  }
+
+  /** Loads the blocks and states the store doesn't hold in memory, as they're requested. */
+  private class DatabaseDataLoader implements StoreDataLoader {
+
+    @Override
+    public Optional<SignedBeaconBlock> loadBlock(final Bytes32 blockRoot) {
+      return getSignedBlock(blockRoot);
+    }
+
+    @Override
+    public Optional<BeaconState> loadBlockState(final Bytes32 blockRoot) {
+      // States of blocks finalized since the store was created may have been pruned
+      return getState(blockRoot).or(() -> getFinalizedState(blockRoot));
+    }
+
+    @Override
+    public Optional<BeaconState> loadCheckpointState(final Checkpoint checkpoint) {
+      return Optional.ofNullable(checkpointStates.get(checkpoint));
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
     db.close();
+    finalizedBlocks.close();
+    latestMessagesFile.close();
   }
 }
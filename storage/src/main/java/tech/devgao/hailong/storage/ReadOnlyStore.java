@@ -20,6 +20,7 @@ import tech.devgao.hailong.datastructures.blocks.BeaconBlock;
 import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
 import tech.devgao.hailong.datastructures.state.BeaconState;
 import tech.devgao.hailong.datastructures.state.Checkpoint;
+import tech.devgao.hailong.storage.votes.VoteTable;
 
 public interface ReadOnlyStore {
 
@@ -51,5 +52,12 @@ public interface ReadOnlyStore {
 
   Checkpoint getLatestMessage(UnsignedLong validatorIndex);
 
+  /**
+   * @param validatorIndex the index of the validator
+   * @return the target epoch of the validator's latest message, or {@link VoteTable#NO_VOTE} if it
+   *     has none
+   */
+  long getLatestMessageEpoch(int validatorIndex);
+
   boolean containsLatestMessage(UnsignedLong validatorIndex);
 }
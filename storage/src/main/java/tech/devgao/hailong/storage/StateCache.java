@@ -0,0 +1,136 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.storage;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+import tech.devgao.hailong.datastructures.state.BeaconState;
+
+/**
+ * Holds states in memory up to an approximate total size in bytes, evicting the least recently
+ * used states first.
+ *
+ * <p>Pinned states are never evicted but still count towards the total, so the cache may exceed its
+ * limit when the pinned states alone are larger than it.
+ *
+ * @param <K> the key states are held by, such as a block root or a checkpoint
+ */
+final class StateCache<K> {
+  // Approximate heap sizes of the objects a state is made of
+  private static final long BASE_STATE_SIZE = 1024;
+  private static final long ROOT_SIZE = 80;
+  private static final long VALIDATOR_SIZE = 512;
+  private static final long UNSIGNED_LONG_SIZE = 24;
+  private static final long ETH1_DATA_SIZE = 256;
+  private static final long PENDING_ATTESTATION_SIZE = 512;
+
+  private final long maxSize;
+  private final ToLongFunction<BeaconState> weigher;
+  private final Map<K, WeighedState> states = new LinkedHashMap<>(16, 0.75f, true);
+  private final Set<K> pinnedKeys = new HashSet<>();
+  private long size = 0;
+
+  StateCache(final long maxSize) {
+    this(maxSize, StateCache::estimateSize);
+  }
+
+  StateCache(final long maxSize, final ToLongFunction<BeaconState> weigher) {
+    this.maxSize = maxSize;
+    this.weigher = weigher;
+  }
+
+  /**
+   * Estimates how much heap a state occupies. Parts of a state which are shared with other states
+   * are counted in full for each of them, so the estimate errs on the high side.
+   */
+  static long estimateSize(final BeaconState state) {
+    final long rootCount =
+        state.getBlock_roots().size()
+            + state.getState_roots().size()
+            + state.getHistorical_roots().size()
+            + state.getRandao_mixes().size();
+    final long attestationCount =
+        state.getPrevious_epoch_attestations().size()
+            + state.getCurrent_epoch_attestations().size();
+    return BASE_STATE_SIZE
+        + rootCount * ROOT_SIZE
+        + state.getValidators().size() * VALIDATOR_SIZE
+        + (state.getBalances().size() + state.getSlashings().size()) * UNSIGNED_LONG_SIZE
+        + state.getEth1_data_votes().size() * ETH1_DATA_SIZE
+        + attestationCount * PENDING_ATTESTATION_SIZE;
+  }
+
+  synchronized BeaconState get(final K key) {
+    final WeighedState entry = states.get(key);
+    return entry != null ? entry.state : null;
+  }
+
+  synchronized boolean contains(final K key) {
+    return states.containsKey(key);
+  }
+
+  synchronized void put(final K key, final BeaconState state) {
+    final WeighedState entry = new WeighedState(state, weigher.applyAsLong(state));
+    final WeighedState previous = states.put(key, entry);
+    if (previous != null) {
+      size -= previous.size;
+    }
+    size += entry.size;
+    evict();
+  }
+
+  /**
+   * Replaces the set of pinned keys. States which are pinned before they're added are kept once
+   * they are.
+   */
+  synchronized void pin(final Collection<K> keys) {
+    pinnedKeys.clear();
+    pinnedKeys.addAll(keys);
+    evict();
+  }
+
+  synchronized long getSize() {
+    return size;
+  }
+
+  synchronized int getCount() {
+    return states.size();
+  }
+
+  private void evict() {
+    final Iterator<Map.Entry<K, WeighedState>> iterator = states.entrySet().iterator();
+    while (size > maxSize && iterator.hasNext()) {
+      final Map.Entry<K, WeighedState> entry = iterator.next();
+      if (!pinnedKeys.contains(entry.getKey())) {
+        size -= entry.getValue().size;
+        iterator.remove();
+      }
+    }
+  }
+
+  private static class WeighedState {
+    private final BeaconState state;
+    private final long size;
+
+    private WeighedState(final BeaconState state, final long size) {
+      this.state = state;
+      this.size = size;
+    }
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.storage;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.compute_epoch_at_slot;
+
+import com.google.common.primitives.UnsignedLong;
+
+/** Decides which finalized states are written to disk. */
+public final class StateStorageMode {
+  public static final String ARCHIVE = "archive";
+  public static final String SNAPSHOT = "snapshot";
+
+  private final UnsignedLong snapshotIntervalEpochs;
+
+  private StateStorageMode(final UnsignedLong snapshotIntervalEpochs) {
+    this.snapshotIntervalEpochs = snapshotIntervalEpochs;
+  }
+
+  /** Stores the state of every finalized block. */
+  public static StateStorageMode archive() {
+    return new StateStorageMode(UnsignedLong.ZERO);
+  }
+
+  /**
+   * Stores the state of the first finalized block in every {@code intervalEpochs} epochs. Other
+   * finalized states are regenerated by replaying blocks from the nearest earlier stored state.
+   */
+  public static StateStorageMode snapshotEvery(final int intervalEpochs) {
+    checkArgument(intervalEpochs > 0, "Snapshot interval must be positive");
+    return new StateStorageMode(UnsignedLong.valueOf(intervalEpochs));
+  }
+
+  public static StateStorageMode create(final String mode, final int snapshotIntervalEpochs) {
+    switch (mode) {
+      case ARCHIVE:
+        return archive();
+      case SNAPSHOT:
+        return snapshotEvery(snapshotIntervalEpochs);
+      default:
+        throw new IllegalArgumentException("Unknown state storage mode: " + mode);
+    }
+  }
+
+  /**
+   * @param slot the slot of a newly finalized block
+   * @param parentSlot the slot of its parent block
+   * @return true if the state of the block should be written to disk
+   */
+  boolean shouldStoreState(final UnsignedLong slot, final UnsignedLong parentSlot) {
+    if (snapshotIntervalEpochs.equals(UnsignedLong.ZERO)) {
+      return true;
+    }
+    return !getSnapshotPeriod(slot).equals(getSnapshotPeriod(parentSlot));
+  }
+
+  private UnsignedLong getSnapshotPeriod(final UnsignedLong slot) {
+    return compute_epoch_at_slot(slot).dividedBy(snapshotIntervalEpochs);
+  }
+}
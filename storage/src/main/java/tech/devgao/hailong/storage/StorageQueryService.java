@@ -0,0 +1,151 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.storage;
+
+import com.google.common.primitives.UnsignedLong;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
+import tech.devgao.hailong.storage.api.StorageQueryChannel;
+import tech.devgao.hailong.util.async.SafeFuture;
+
+/**
+ * Answers {@link StorageQueryChannel} queries by reading the database on a dedicated pool of
+ * threads, so slow disk reads never run on the caller's thread.
+ */
+public class StorageQueryService implements StorageQueryChannel, AutoCloseable {
+  private static final Logger LOG = LogManager.getLogger();
+  private static final int QUERY_THREAD_COUNT = 4;
+  private static final long CLOSE_TIMEOUT_SECONDS = 5;
+
+  private final Database database;
+  private final ExecutorService executor;
+
+  StorageQueryService(final Database database, final ExecutorService executor) {
+    this.database = database;
+    this.executor = executor;
+  }
+
+  public static StorageQueryService create(final Database database) {
+    return new StorageQueryService(
+        database,
+        Executors.newFixedThreadPool(
+            QUERY_THREAD_COUNT,
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("storage-query-%d").build()));
+  }
+
+  @Override
+  public SafeFuture<Optional<SignedBeaconBlock>> getFinalizedBlockAtSlot(final UnsignedLong slot) {
+    return query(() -> database.getFinalizedRootAtSlot(slot).flatMap(database::getSignedBlock));
+  }
+
+  @Override
+  public SafeFuture<Optional<SignedBeaconBlock>> getBlockByRoot(final Bytes32 root) {
+    return query(() -> database.getSignedBlock(root));
+  }
+
+  @Override
+  public SafeFuture<Map<Bytes32, SignedBeaconBlock>> getBlocksByRoot(
+      final Collection<Bytes32> roots) {
+    return query(
+        () -> {
+          final Map<Bytes32, SignedBeaconBlock> blocks = new HashMap<>();
+          for (Bytes32 root : roots) {
+            database.getSignedBlock(root).ifPresent(block -> blocks.put(root, block));
+          }
+          return blocks;
+        });
+  }
+
+  @Override
+  public SafeFuture<List<SignedBeaconBlock>> getAncestors(final Bytes32 root, final int maxCount) {
+    return query(
+        () -> {
+          final List<SignedBeaconBlock> ancestors = new ArrayList<>();
+          Optional<SignedBeaconBlock> block = database.getSignedBlock(root);
+          while (block.isPresent() && ancestors.size() < maxCount) {
+            ancestors.add(block.get());
+            block = database.getSignedBlock(block.get().getParent_root());
+          }
+          return ancestors;
+        });
+  }
+
+  @Override
+  public SafeFuture<Void> streamFinalizedBlockBytes(
+      final UnsignedLong startSlot,
+      final UnsignedLong endSlot,
+      final UnsignedLong step,
+      final BlockBytesConsumer consumer) {
+    return query(
+        () -> {
+          try (final Stream<Bytes> blocks =
+              database.streamFinalizedBlockBytes(startSlot, endSlot, step)) {
+            final Iterator<Bytes> iterator = blocks.iterator();
+            while (iterator.hasNext()) {
+              if (!consumer.accept(iterator.next())) {
+                break;
+              }
+            }
+          }
+          return null;
+        });
+  }
+
+  private <T> SafeFuture<T> query(final Supplier<T> query) {
+    final SafeFuture<T> result = new SafeFuture<>();
+    try {
+      executor.execute(
+          () -> {
+            try {
+              result.complete(query.get());
+            } catch (final Throwable t) {
+              result.completeExceptionally(t);
+            }
+          });
+    } catch (final RejectedExecutionException e) {
+      result.completeExceptionally(e);
+    }
+    return result;
+  }
+
+  /** Stops accepting queries and waits briefly for running queries to finish. */
+  @Override
+  public void close() {
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        LOG.warn("Storage queries still running after {} seconds", CLOSE_TIMEOUT_SECONDS);
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
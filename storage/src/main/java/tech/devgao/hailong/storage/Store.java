@@ -17,8 +17,13 @@ import static tech.devgao.hailong.util.config.Constants.GENESIS_EPOCH;
 
 import com.google.common.collect.Sets;
 import com.google.common.primitives.UnsignedLong;
+import java.util.ArrayDeque;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -38,11 +43,31 @@ import tech.devgao.hailong.datastructures.state.BeaconState;
 import tech.devgao.hailong.datastructures.state.BeaconStateWithCache;
 import tech.devgao.hailong.datastructures.state.Checkpoint;
 import tech.devgao.hailong.storage.events.StoreDiskUpdateEvent;
+import tech.devgao.hailong.storage.protoarray.ProtoArrayForkChoiceStrategy;
+import tech.devgao.hailong.storage.votes.VoteTable;
 import tech.devgao.hailong.util.async.SafeFuture;
 import tech.devgao.hailong.util.bls.BLSSignature;
-
+import tech.devgao.hailong.util.collections.LimitedMap;
+
+/**
+ * The fork choice store. All non-finalized blocks are held in memory, but only recently used block
+ * and checkpoint states are, up to an approximate size limit. States of the justified and finalized
+ * checkpoints are always kept. Other block states are loaded from disk or regenerated by replaying
+ * blocks from the nearest ancestor state available when they're next requested, and checkpoint
+ * states are loaded from disk.
+ */
 public class Store implements ReadOnlyStore {
   private static final Logger LOG = LogManager.getLogger();
+  public static final long DEFAULT_MAX_STATE_CACHE_BYTES = 512L * 1024 * 1024;
+  private static final int MAX_LOADED_BLOCKS = 256;
+  // Attestations only target the current and previous epochs, so few checkpoint states are in use
+  // at once and they get a quarter of the state cache
+  private static final long CHECKPOINT_STATE_CACHE_SHARE = 4;
+  // Stores which keep every state in memory and have nothing to load from never replay blocks
+  private static final BlockReplayer NO_REPLAY =
+      (preState, block) -> {
+        throw new IllegalStateException("Store holding every state has no state to regenerate");
+      };
   private final ReadWriteLock lock = new ReentrantReadWriteLock();
   private final Lock readLock = lock.readLock();
   private long transactionCount = 0;
@@ -51,11 +76,20 @@ public class Store implements ReadOnlyStore {
   private Checkpoint justified_checkpoint;
   private Checkpoint finalized_checkpoint;
   private Checkpoint best_justified_checkpoint;
-  private Map<Bytes32, SignedBeaconBlock> blocks;
-  private Map<Bytes32, BeaconState> block_states;
-  private Map<Checkpoint, BeaconState> checkpoint_states;
-  private Map<UnsignedLong, Checkpoint> latest_messages;
-
+  private final Map<Bytes32, SignedBeaconBlock> blocks = new ConcurrentHashMap<>();
+  private final Map<Bytes32, SignedBeaconBlock> loaded_blocks =
+      LimitedMap.create(MAX_LOADED_BLOCKS);
+  private final Map<Bytes32, BlockMetadata> block_metadata;
+  private final StateCache<Bytes32> block_states;
+  private final Set<Bytes32> block_state_roots = ConcurrentHashMap.newKeySet();
+  private final StateCache<Checkpoint> checkpoint_states;
+  private final Set<Checkpoint> stored_checkpoints = ConcurrentHashMap.newKeySet();
+  private final VoteTable latest_messages;
+  private final StoreDataLoader dataLoader;
+  private final BlockReplayer blockReplayer;
+  private final ProtoArrayForkChoiceStrategy forkChoiceStrategy;
+
+  /** Creates a store which keeps every block and state in memory. */
   public Store(
       final UnsignedLong time,
       final UnsignedLong genesis_time,
@@ -66,18 +100,130 @@ public class Store implements ReadOnlyStore {
       final Map<Bytes32, BeaconState> block_states,
       final Map<Checkpoint, BeaconState> checkpoint_states,
       final Map<UnsignedLong, Checkpoint> latest_messages) {
+    this(
+        time,
+        genesis_time,
+        justified_checkpoint,
+        finalized_checkpoint,
+        best_justified_checkpoint,
+        blocks,
+        block_states,
+        checkpoint_states,
+        latest_messages,
+        StoreDataLoader.NONE,
+        NO_REPLAY,
+        Long.MAX_VALUE);
+  }
+
+  private Store(
+      final UnsignedLong time,
+      final UnsignedLong genesis_time,
+      final Checkpoint justified_checkpoint,
+      final Checkpoint finalized_checkpoint,
+      final Checkpoint best_justified_checkpoint,
+      final Map<Bytes32, SignedBeaconBlock> blocks,
+      final Map<Bytes32, BeaconState> block_states,
+      final Map<Checkpoint, BeaconState> checkpoint_states,
+      final Map<UnsignedLong, Checkpoint> latest_messages,
+      final StoreDataLoader dataLoader,
+      final BlockReplayer blockReplayer,
+      final long maxStateCacheBytes) {
+    this(
+        time,
+        genesis_time,
+        justified_checkpoint,
+        finalized_checkpoint,
+        best_justified_checkpoint,
+        getBlockMetadata(blocks, block_states),
+        Collections.emptySet(),
+        VoteTable.create(latest_messages),
+        dataLoader,
+        blockReplayer,
+        maxStateCacheBytes);
+    this.blocks.putAll(blocks);
+    block_states.forEach(this::cacheBlockState);
+    this.block_state_roots.addAll(block_states.keySet());
+    checkpoint_states.forEach(this.checkpoint_states::put);
+  }
+
+  /**
+   * Creates a store which holds only the metadata of its blocks in memory, and loads blocks and
+   * states with {@code dataLoader} as they're needed. At most about {@code maxStateCacheBytes} of
+   * block and checkpoint states are kept in memory, besides the states of the justified and
+   * finalized checkpoints.
+   *
+   * @param block_metadata the metadata of every block in the store. Only blocks with post-state
+   *     epochs have a state and are considered by fork choice
+   * @param stored_checkpoints the checkpoints which {@code dataLoader} has a state for
+   * @param latest_messages the latest message of each validator, which the store copies
+   */
+  public Store(
+      final UnsignedLong time,
+      final UnsignedLong genesis_time,
+      final Checkpoint justified_checkpoint,
+      final Checkpoint finalized_checkpoint,
+      final Checkpoint best_justified_checkpoint,
+      final Map<Bytes32, BlockMetadata> block_metadata,
+      final Collection<Checkpoint> stored_checkpoints,
+      final VoteTable latest_messages,
+      final StoreDataLoader dataLoader,
+      final BlockReplayer blockReplayer,
+      final long maxStateCacheBytes) {
     this.time = time;
     this.genesis_time = genesis_time;
     this.justified_checkpoint = justified_checkpoint;
     this.finalized_checkpoint = finalized_checkpoint;
     this.best_justified_checkpoint = best_justified_checkpoint;
-    this.blocks = new ConcurrentHashMap<>(blocks);
-    this.block_states = new ConcurrentHashMap<>(block_states);
-    this.checkpoint_states = new ConcurrentHashMap<>(checkpoint_states);
-    this.latest_messages = new ConcurrentHashMap<>(latest_messages);
+    this.block_metadata = new ConcurrentHashMap<>(block_metadata);
+    final long maxCheckpointStateCacheBytes = maxStateCacheBytes / CHECKPOINT_STATE_CACHE_SHARE;
+    this.block_states = new StateCache<>(maxStateCacheBytes - maxCheckpointStateCacheBytes);
+    this.checkpoint_states = new StateCache<>(maxCheckpointStateCacheBytes);
+    this.stored_checkpoints.addAll(stored_checkpoints);
+    this.latest_messages = latest_messages.copy();
+    this.dataLoader = dataLoader;
+    this.blockReplayer = blockReplayer;
+    pinCheckpointStates();
+    block_metadata.forEach(
+        (root, metadata) -> {
+          if (metadata.hasPostState()) {
+            block_state_roots.add(root);
+          }
+        });
+    this.forkChoiceStrategy =
+        ProtoArrayForkChoiceStrategy.create(
+            justified_checkpoint, finalized_checkpoint, this.block_metadata, this.latest_messages);
+  }
+
+  private static Map<Bytes32, BlockMetadata> getBlockMetadata(
+      final Map<Bytes32, SignedBeaconBlock> blocks, final Map<Bytes32, BeaconState> block_states) {
+    final Map<Bytes32, BlockMetadata> metadata = new HashMap<>();
+    blocks.forEach(
+        (root, block) -> {
+          final BeaconState state = block_states.get(root);
+          metadata.put(
+              root,
+              state != null
+                  ? BlockMetadata.create(block.getMessage(), state)
+                  : BlockMetadata.create(block.getMessage()));
+        });
+    return metadata;
   }
 
+  /** Creates a store which keeps every block and state in memory. */
   public static Store get_genesis_store(final BeaconState genesisState) {
+    return get_genesis_store(genesisState, StoreDataLoader.NONE, NO_REPLAY, Long.MAX_VALUE);
+  }
+
+  /**
+   * Creates a store which keeps the genesis state and at most {@code maxStateCacheBytes} of other
+   * states in memory. The rest are loaded with {@code dataLoader} once they've been written to
+   * disk, and block states are otherwise regenerated with {@code blockReplayer}.
+   */
+  public static Store get_genesis_store(
+      final BeaconState genesisState,
+      final StoreDataLoader dataLoader,
+      final BlockReplayer blockReplayer,
+      final long maxStateCacheBytes) {
     BeaconBlock genesisBlock = new BeaconBlock(genesisState.hash_tree_root());
     Bytes32 root = genesisBlock.hash_tree_root();
 
@@ -101,7 +247,10 @@ public class Store implements ReadOnlyStore {
         blocks,
         block_states,
         checkpoint_states,
-        latest_messages);
+        latest_messages,
+        dataLoader,
+        blockReplayer,
+        maxStateCacheBytes);
   }
 
   Transaction startTransaction(final TransactionPrecommit transactionPrecommit) {
@@ -113,6 +262,28 @@ public class Store implements ReadOnlyStore {
     return new Transaction(transactionCount++, transactionPrecommit, updateHandler);
   }
 
+  /**
+   * Advances the store time in memory only, without a transaction. The time is written to disk by
+   * the next transaction that sets it.
+   *
+   * @param time the new store time, which is ignored if it's earlier than the current time
+   */
+  public void updateTime(final UnsignedLong time) {
+    final Lock writeLock = lock.writeLock();
+    writeLock.lock();
+    try {
+      if (time.compareTo(this.time) > 0) {
+        this.time = time;
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  public ProtoArrayForkChoiceStrategy getForkChoiceStrategy() {
+    return forkChoiceStrategy;
+  }
+
   @Override
   public UnsignedLong getTime() {
     readLock.lock();
@@ -173,17 +344,31 @@ public class Store implements ReadOnlyStore {
   public SignedBeaconBlock getSignedBlock(Bytes32 blockRoot) {
     readLock.lock();
     try {
-      return blocks.get(blockRoot);
+      return findBlock(blockRoot);
     } finally {
       readLock.unlock();
     }
   }
 
+  private SignedBeaconBlock findBlock(final Bytes32 blockRoot) {
+    SignedBeaconBlock block = blocks.get(blockRoot);
+    if (block == null) {
+      block = loaded_blocks.get(blockRoot);
+    }
+    if (block == null && block_metadata.containsKey(blockRoot)) {
+      block = dataLoader.loadBlock(blockRoot).orElse(null);
+      if (block != null) {
+        loaded_blocks.put(blockRoot, block);
+      }
+    }
+    return block;
+  }
+
   @Override
   public boolean containsBlock(Bytes32 blockRoot) {
     readLock.lock();
     try {
-      return blocks.containsKey(blockRoot);
+      return blocks.containsKey(blockRoot) || block_metadata.containsKey(blockRoot);
     } finally {
       readLock.unlock();
     }
@@ -193,7 +378,7 @@ public class Store implements ReadOnlyStore {
   public Set<Bytes32> getBlockRoots() {
     readLock.lock();
     try {
-      return Collections.unmodifiableSet(blocks.keySet());
+      return Sets.union(blocks.keySet(), block_metadata.keySet());
     } finally {
       readLock.unlock();
     }
@@ -203,7 +388,11 @@ public class Store implements ReadOnlyStore {
   public BeaconState getBlockState(Bytes32 blockRoot) {
     readLock.lock();
     try {
-      return block_states.get(blockRoot);
+      final BeaconState state = block_states.get(blockRoot);
+      if (state != null || !block_state_roots.contains(blockRoot)) {
+        return state;
+      }
+      return cacheBlockState(blockRoot, loadBlockState(blockRoot));
     } finally {
       readLock.unlock();
     }
@@ -213,17 +402,73 @@ public class Store implements ReadOnlyStore {
   public boolean containsBlockState(Bytes32 blockRoot) {
     readLock.lock();
     try {
-      return block_states.containsKey(blockRoot);
+      return block_state_roots.contains(blockRoot);
     } finally {
       readLock.unlock();
     }
   }
 
+  private BeaconState cacheBlockState(final Bytes32 blockRoot, final BeaconState state) {
+    if (state != null) {
+      block_states.put(blockRoot, state);
+    }
+    return state;
+  }
+
+  private BeaconState loadBlockState(final Bytes32 blockRoot) {
+    final Optional<BeaconState> storedState = dataLoader.loadBlockState(blockRoot);
+    if (storedState.isPresent()) {
+      return storedState.get();
+    }
+
+    // Walk back to the nearest available state, then replay the blocks after it
+    final Deque<SignedBeaconBlock> blocksToReplay = new ArrayDeque<>();
+    Bytes32 root = blockRoot;
+    BeaconState baseState = null;
+    while (baseState == null) {
+      final SignedBeaconBlock block = findBlock(root);
+      if (block == null) {
+        LOG.error("Missing block {} while regenerating state {}", root, blockRoot);
+        return null;
+      }
+      blocksToReplay.push(block);
+      root = block.getMessage().getParent_root();
+      baseState = block_states.get(root);
+      if (baseState == null && block_state_roots.contains(root)) {
+        baseState = dataLoader.loadBlockState(root).orElse(null);
+      }
+    }
+
+    LOG.debug("Regenerating state {} by replaying {} blocks", blockRoot, blocksToReplay.size());
+    BeaconState state = baseState;
+    for (SignedBeaconBlock block : blocksToReplay) {
+      state = blockReplayer.replay(state, block);
+    }
+    return state;
+  }
+
+  /** Keeps the states fork choice needs in memory, whatever else is evicted. */
+  private void pinCheckpointStates() {
+    block_states.pin(
+        List.of(
+            justified_checkpoint.getRoot(),
+            best_justified_checkpoint.getRoot(),
+            finalized_checkpoint.getRoot()));
+    checkpoint_states.pin(List.of(justified_checkpoint, best_justified_checkpoint));
+  }
+
   @Override
   public BeaconState getCheckpointState(Checkpoint checkpoint) {
     readLock.lock();
     try {
-      return checkpoint_states.get(checkpoint);
+      final BeaconState state = checkpoint_states.get(checkpoint);
+      if (state != null) {
+        return state;
+      }
+      // Committed checkpoint states are written to disk, so evicted ones can be loaded back
+      final Optional<BeaconState> storedState = dataLoader.loadCheckpointState(checkpoint);
+      storedState.ifPresent(value -> checkpoint_states.put(checkpoint, value));
+      return storedState.orElse(null);
     } finally {
       readLock.unlock();
     }
@@ -233,7 +478,7 @@ public class Store implements ReadOnlyStore {
   public boolean containsCheckpointState(Checkpoint checkpoint) {
     readLock.lock();
     try {
-      return checkpoint_states.containsKey(checkpoint);
+      return checkpoint_states.contains(checkpoint) || stored_checkpoints.contains(checkpoint);
     } finally {
       readLock.unlock();
     }
@@ -243,7 +488,17 @@ public class Store implements ReadOnlyStore {
   public Checkpoint getLatestMessage(UnsignedLong validatorIndex) {
     readLock.lock();
     try {
-      return latest_messages.get(validatorIndex);
+      return latest_messages.get(validatorIndex.intValue()).orElse(null);
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public long getLatestMessageEpoch(final int validatorIndex) {
+    readLock.lock();
+    try {
+      return latest_messages.getEpoch(validatorIndex);
     } finally {
       readLock.unlock();
     }
@@ -253,7 +508,7 @@ public class Store implements ReadOnlyStore {
   public boolean containsLatestMessage(UnsignedLong validatorIndex) {
     readLock.lock();
     try {
-      return latest_messages.containsKey(validatorIndex);
+      return latest_messages.contains(validatorIndex.intValue());
     } finally {
       readLock.unlock();
     }
@@ -271,7 +526,7 @@ public class Store implements ReadOnlyStore {
     private Map<Bytes32, SignedBeaconBlock> blocks = new HashMap<>();
     private Map<Bytes32, BeaconState> block_states = new HashMap<>();
     private Map<Checkpoint, BeaconState> checkpoint_states = new HashMap<>();
-    private Map<UnsignedLong, Checkpoint> latest_messages = new HashMap<>();
+    private final VoteTable latest_messages = new VoteTable();
     private final StoreUpdateHandler updateHandler;
 
     Transaction(
@@ -287,6 +542,17 @@ public class Store implements ReadOnlyStore {
       latest_messages.put(validatorIndex, latestMessage);
     }
 
+    /**
+     * Records a validator's latest message without allocating a checkpoint.
+     *
+     * @param validatorIndex the index of the validator
+     * @param epoch the target epoch of the message
+     * @param root the block root the validator voted for
+     */
+    public void putLatestMessage(final int validatorIndex, final long epoch, final Bytes32 root) {
+      latest_messages.put(validatorIndex, epoch, root);
+    }
+
     public void putCheckpointState(Checkpoint checkpoint, BeaconState state) {
       checkpoint_states.put(checkpoint, state);
     }
@@ -346,10 +612,13 @@ public class Store implements ReadOnlyStore {
                   finalized_checkpoint.ifPresent(value -> Store.this.finalized_checkpoint = value);
                   best_justified_checkpoint.ifPresent(
                       value -> Store.this.best_justified_checkpoint = value);
+                  pinCheckpointStates();
                   Store.this.blocks.putAll(blocks);
-                  Store.this.block_states.putAll(block_states);
-                  Store.this.checkpoint_states.putAll(checkpoint_states);
-                  Store.this.latest_messages.putAll(latest_messages);
+                  block_states.forEach(Store.this::cacheBlockState);
+                  Store.this.block_state_roots.addAll(block_states.keySet());
+                  checkpoint_states.forEach(Store.this.checkpoint_states::put);
+                  latest_messages.forEach(Store.this.latest_messages::put);
+                  updateForkChoice();
                 } finally {
                   writeLock.unlock();
                 }
@@ -359,6 +628,29 @@ public class Store implements ReadOnlyStore {
               });
     }
 
+    private void updateForkChoice() {
+      blocks.entrySet().stream()
+          .sorted(Comparator.comparing(entry -> entry.getValue().getSlot()))
+          .forEach(
+              entry -> {
+                final BeaconState state = getBlockState(entry.getKey());
+                final BlockMetadata metadata =
+                    state != null
+                        ? BlockMetadata.create(entry.getValue().getMessage(), state)
+                        : BlockMetadata.create(entry.getValue().getMessage());
+                Store.this.block_metadata.put(entry.getKey(), metadata);
+                if (metadata.hasPostState()) {
+                  forkChoiceStrategy.onBlock(entry.getKey(), metadata);
+                }
+              });
+      latest_messages.forEach(
+          (validatorIndex, epoch, root) ->
+              forkChoiceStrategy.processAttestation(
+                  UnsignedLong.valueOf(validatorIndex), root, UnsignedLong.fromLongBits(epoch)));
+      finalized_checkpoint.ifPresent(
+          checkpoint -> forkChoiceStrategy.maybePrune(checkpoint.getRoot()));
+    }
+
     public void commit(final Runnable onSuccess, final String errorMessage) {
       commit(onSuccess, err -> LOG.error(errorMessage, err));
     }
@@ -441,12 +733,20 @@ public class Store implements ReadOnlyStore {
 
     @Override
     public Checkpoint getLatestMessage(final UnsignedLong validatorIndex) {
-      return either(validatorIndex, latest_messages::get, Store.this::getLatestMessage);
+      return latest_messages
+          .get(validatorIndex.intValue())
+          .orElseGet(() -> Store.this.getLatestMessage(validatorIndex));
+    }
+
+    @Override
+    public long getLatestMessageEpoch(final int validatorIndex) {
+      final long epoch = latest_messages.getEpoch(validatorIndex);
+      return epoch != VoteTable.NO_VOTE ? epoch : Store.this.getLatestMessageEpoch(validatorIndex);
     }
 
     @Override
     public boolean containsLatestMessage(final UnsignedLong validatorIndex) {
-      return latest_messages.containsKey(validatorIndex)
+      return latest_messages.contains(validatorIndex.intValue())
           || Store.this.containsLatestMessage(validatorIndex);
     }
   }
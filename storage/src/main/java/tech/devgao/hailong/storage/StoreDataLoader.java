@@ -0,0 +1,52 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.storage;
+
+import java.util.Optional;
+import org.apache.tuweni.bytes.Bytes32;
+import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
+import tech.devgao.hailong.datastructures.state.BeaconState;
+import tech.devgao.hailong.datastructures.state.Checkpoint;
+
+/** Loads the non-finalized blocks and states which the store doesn't hold in memory. */
+public interface StoreDataLoader {
+
+  StoreDataLoader NONE =
+      new StoreDataLoader() {
+        @Override
+        public Optional<SignedBeaconBlock> loadBlock(final Bytes32 blockRoot) {
+          return Optional.empty();
+        }
+
+        @Override
+        public Optional<BeaconState> loadBlockState(final Bytes32 blockRoot) {
+          return Optional.empty();
+        }
+
+        @Override
+        public Optional<BeaconState> loadCheckpointState(final Checkpoint checkpoint) {
+          return Optional.empty();
+        }
+      };
+
+  Optional<SignedBeaconBlock> loadBlock(Bytes32 blockRoot);
+
+  /**
+   * @param blockRoot the root of the block
+   * @return the post-state of the block, or empty if it isn't available
+   */
+  Optional<BeaconState> loadBlockState(Bytes32 blockRoot);
+
+  Optional<BeaconState> loadCheckpointState(Checkpoint checkpoint);
+}
@@ -28,6 +28,10 @@ public interface TransactionPrecommit {
     return new StoreToDiskTransactionPrecommit(eventBus);
   }
 
+  static TransactionPrecommit writeBehind(final EventBus eventBus, final int maxPendingUpdates) {
+    return new WriteBehindTransactionPrecommit(eventBus, maxPendingUpdates);
+  }
+
   @CheckReturnValue
   SafeFuture<Void> precommit(StoreDiskUpdateEvent updateEvent);
 }
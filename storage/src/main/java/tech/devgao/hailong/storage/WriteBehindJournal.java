@@ -0,0 +1,147 @@
+/*
+ * Copyright 2020 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.storage;
+
+import com.google.common.eventbus.EventBus;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import tech.devgao.hailong.storage.events.StoreDiskUpdateCompleteEvent;
+import tech.devgao.hailong.storage.events.StoreDiskUpdateEvent;
+
+/**
+ * A bounded queue of store updates which are written to the database by a single thread, in the
+ * order they were appended. All the updates waiting when the thread is ready are committed
+ * together, so a burst of transactions costs one database commit rather than one each.
+ *
+ * <p>A {@link StoreDiskUpdateCompleteEvent} is posted for each update once it has been committed.
+ * If a group fails to commit, its updates are retried one at a time so that only the failing
+ * updates report an error.
+ *
+ * <p>Updates are only durable once their complete event is posted. Updates still queued when the
+ * process crashes are lost, but the database is left at the end of the last group commit, which is
+ * a consistent earlier version of the store. {@link #close()} writes out all queued updates before
+ * returning.
+ */
+public class WriteBehindJournal implements AutoCloseable {
+  private static final Logger LOG = LogManager.getLogger();
+  private static final int MAX_GROUP_SIZE = 32;
+
+  private final Database database;
+  private final EventBus eventBus;
+  private final BlockingQueue<StoreDiskUpdateEvent> queue;
+  private final Thread writerThread;
+  private volatile boolean closed = false;
+
+  public WriteBehindJournal(final Database database, final EventBus eventBus, final int capacity) {
+    this.database = database;
+    this.eventBus = eventBus;
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.writerThread = new Thread(this::writeUpdates, "storage-write-behind");
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  /**
+   * Queues an update to be written, blocking while the journal is full.
+   *
+   * @param event the update to write
+   * @throws IllegalStateException if the journal has been closed
+   */
+  public void append(final StoreDiskUpdateEvent event) {
+    if (closed) {
+      throw new IllegalStateException("Write-behind journal is closed");
+    }
+    try {
+      queue.put(event);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while queueing store update", e);
+    }
+  }
+
+  private void writeUpdates() {
+    final List<StoreDiskUpdateEvent> group = new ArrayList<>(MAX_GROUP_SIZE);
+    while (!closed || !queue.isEmpty()) {
+      try {
+        final StoreDiskUpdateEvent first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        group.add(first);
+        queue.drainTo(group, MAX_GROUP_SIZE - 1);
+        commit(group);
+      } catch (final InterruptedException e) {
+        LOG.debug("Write-behind journal interrupted", e);
+      } finally {
+        group.clear();
+      }
+    }
+  }
+
+  private void commit(final List<StoreDiskUpdateEvent> group) {
+    try {
+      database.insertAll(group);
+      group.forEach(event -> onComplete(event, Optional.empty()));
+    } catch (final RuntimeException e) {
+      if (group.size() == 1) {
+        onFailure(group.get(0), e);
+        return;
+      }
+      LOG.debug("Failed to commit {} store updates together, retrying individually", group.size());
+      for (StoreDiskUpdateEvent event : group) {
+        try {
+          database.insert(event);
+          onComplete(event, Optional.empty());
+        } catch (final RuntimeException individualError) {
+          onFailure(event, individualError);
+        }
+      }
+    }
+  }
+
+  private void onFailure(final StoreDiskUpdateEvent event, final RuntimeException error) {
+    LOG.error("Failed to write transaction " + event.getTransactionId() + " to disk", error);
+    onComplete(event, Optional.of(error));
+  }
+
+  private void onComplete(
+      final StoreDiskUpdateEvent event, final Optional<RuntimeException> error) {
+    eventBus.post(new StoreDiskUpdateCompleteEvent(event.getTransactionId(), error));
+  }
+
+  /** Stops accepting updates and waits for the queued updates to be written. */
+  @Override
+  public void close() {
+    closed = true;
+    try {
+      writerThread.join();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOG.warn("Interrupted before {} queued store updates were written", queue.size());
+      return;
+    }
+    // Write any update appended while the writer thread was stopping
+    final List<StoreDiskUpdateEvent> remaining = new ArrayList<>();
+    queue.drainTo(remaining);
+    if (!remaining.isEmpty()) {
+      commit(remaining);
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.storage;
+
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import javax.annotation.CheckReturnValue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import tech.devgao.hailong.storage.events.StoreDiskUpdateCompleteEvent;
+import tech.devgao.hailong.storage.events.StoreDiskUpdateEvent;
+import tech.devgao.hailong.util.async.SafeFuture;
+
+/**
+ * Commits transactions to the in-memory store without waiting for them to be written to disk.
+ *
+ * <p>At most {@code maxPendingUpdates} transactions may be waiting to be written. Further commits
+ * block until earlier transactions have been written, so a slow disk throttles block import rather
+ * than letting unwritten updates build up in memory. A transaction that fails to be written is
+ * logged but remains in the in-memory store.
+ */
+public class WriteBehindTransactionPrecommit implements TransactionPrecommit {
+  private static final Logger LOG = LogManager.getLogger();
+
+  private final EventBus eventBus;
+  private final Semaphore pendingUpdates;
+  private final Set<Long> pendingTransactionIds = ConcurrentHashMap.newKeySet();
+
+  public WriteBehindTransactionPrecommit(final EventBus eventBus, final int maxPendingUpdates) {
+    this.eventBus = eventBus;
+    this.pendingUpdates = new Semaphore(maxPendingUpdates);
+    eventBus.register(this);
+  }
+
+  @Override
+  @CheckReturnValue
+  public SafeFuture<Void> precommit(final StoreDiskUpdateEvent updateEvent) {
+    try {
+      pendingUpdates.acquire();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return SafeFuture.failedFuture(e);
+    }
+    pendingTransactionIds.add(updateEvent.getTransactionId());
+    eventBus.post(updateEvent);
+    return SafeFuture.completedFuture(null);
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  void onResponse(final StoreDiskUpdateCompleteEvent event) {
+    if (!pendingTransactionIds.remove(event.getTransactionId())) {
+      return;
+    }
+    pendingUpdates.release();
+    event
+        .getError()
+        .ifPresent(
+            error ->
+                LOG.error(
+                    "Transaction " + event.getTransactionId() + " was not written to disk", error));
+  }
+}
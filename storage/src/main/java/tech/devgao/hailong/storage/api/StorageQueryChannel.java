@@ -0,0 +1,75 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.storage.api;
+
+import com.google.common.primitives.UnsignedLong;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
+import tech.devgao.hailong.util.async.SafeFuture;
+
+/**
+ * Queries against blocks held in the database. Each query is answered directly by the storage
+ * service, so callers get a future per query rather than correlating request and response events.
+ */
+public interface StorageQueryChannel {
+
+  SafeFuture<Optional<SignedBeaconBlock>> getFinalizedBlockAtSlot(UnsignedLong slot);
+
+  SafeFuture<Optional<SignedBeaconBlock>> getBlockByRoot(Bytes32 root);
+
+  /**
+   * Looks up a set of blocks with a single query.
+   *
+   * @param roots the roots of the blocks to look up
+   * @return the blocks that were found, keyed by root
+   */
+  SafeFuture<Map<Bytes32, SignedBeaconBlock>> getBlocksByRoot(Collection<Bytes32> roots);
+
+  /**
+   * Walks back from a block through its parents.
+   *
+   * @param root the root of the block to start from
+   * @param maxCount the maximum number of blocks to return
+   * @return the block and its ancestors, newest first, stopping at the first block not in storage
+   */
+  SafeFuture<List<SignedBeaconBlock>> getAncestors(Bytes32 root, int maxCount);
+
+  /**
+   * Streams the serialized SSZ of the finalized blocks in every {@code step}th slot from {@code
+   * startSlot} to {@code endSlot} inclusive, in slot order, without collecting them in memory.
+   *
+   * @param startSlot the first slot to read
+   * @param endSlot the last slot to read
+   * @param step the number of slots between each slot read
+   * @param consumer receives each block in turn on a storage thread
+   * @return a future which completes once the range is exhausted or the consumer stops it
+   */
+  SafeFuture<Void> streamFinalizedBlockBytes(
+      UnsignedLong startSlot, UnsignedLong endSlot, UnsignedLong step, BlockBytesConsumer consumer);
+
+  @FunctionalInterface
+  interface BlockBytesConsumer {
+
+    /**
+     * @param block the serialized block
+     * @return true to continue streaming, false to stop
+     */
+    boolean accept(Bytes block);
+  }
+}
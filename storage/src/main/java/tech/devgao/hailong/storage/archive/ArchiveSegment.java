@@ -0,0 +1,112 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.storage.archive;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.apache.tuweni.bytes.Bytes;
+
+/**
+ * A file of serialized blocks written back to back. The active segment is appended to through its
+ * channel. Once sealed it is fsynced and read through a read-only memory mapping.
+ */
+class ArchiveSegment implements Closeable {
+  private final int id;
+  private final FileChannel channel;
+  private volatile long size;
+  private volatile MappedByteBuffer mappedData;
+
+  private ArchiveSegment(final int id, final FileChannel channel, final long size) {
+    this.id = id;
+    this.channel = channel;
+    this.size = size;
+  }
+
+  static ArchiveSegment open(final int id, final Path file) throws IOException {
+    final FileChannel channel =
+        FileChannel.open(
+            file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    return new ArchiveSegment(id, channel, channel.size());
+  }
+
+  int getId() {
+    return id;
+  }
+
+  long getSize() {
+    return size;
+  }
+
+  /** @return the offset the data was written at */
+  long append(final Bytes data) throws IOException {
+    final long offset = size;
+    final ByteBuffer buffer = ByteBuffer.wrap(data.toArrayUnsafe());
+    long position = offset;
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+    size = position;
+    return offset;
+  }
+
+  Bytes read(final long offset, final int length) throws IOException {
+    final byte[] data = new byte[length];
+    final MappedByteBuffer mappedData = this.mappedData;
+    if (mappedData != null) {
+      final ByteBuffer buffer = mappedData.duplicate();
+      buffer.position(Math.toIntExact(offset));
+      buffer.get(data);
+      return Bytes.wrap(data);
+    }
+    final ByteBuffer buffer = ByteBuffer.wrap(data);
+    long position = offset;
+    while (buffer.hasRemaining()) {
+      final int read = channel.read(buffer, position);
+      if (read < 0) {
+        throw new IOException("Segment " + id + " ends before offset " + (offset + length));
+      }
+      position += read;
+    }
+    return Bytes.wrap(data);
+  }
+
+  /** Discards any data after <code>newSize</code>, left by an append that was interrupted. */
+  void truncate(final long newSize) throws IOException {
+    if (newSize < size) {
+      channel.truncate(newSize);
+      size = newSize;
+    }
+  }
+
+  /** Writes the segment to disk and switches reads to a memory mapping. */
+  void seal() throws IOException {
+    channel.force(false);
+    mappedData = channel.map(MapMode.READ_ONLY, 0, size);
+  }
+
+  void flush() throws IOException {
+    channel.force(false);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
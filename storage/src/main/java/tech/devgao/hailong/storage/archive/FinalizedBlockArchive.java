@@ -0,0 +1,382 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.storage.archive;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.primitives.UnsignedLong;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+
+/**
+ * An append-only archive of finalized blocks. Finalized blocks never change, so they are kept out
+ * of the transactional database and written once to flat files.
+ *
+ * <p>Blocks are appended as raw SSZ to segment files. When a segment reaches the maximum segment
+ * size it is sealed: fsynced, then read through a read-only memory mapping. The index file has a
+ * fixed-width entry per slot holding the block root and the segment, offset and length of the
+ * block, so finding a slot is a single lookup. The index is memory-mapped in fixed-size chunks and
+ * flushed whenever a segment is sealed.
+ *
+ * <p>Nothing is fsynced between seals, so blocks appended since the last seal can be lost if the
+ * machine, rather than just the process, crashes. When the archive is reopened, trailing index
+ * entries that point past the end of their segment are discarded.
+ */
+public class FinalizedBlockArchive implements Closeable {
+  private static final Logger LOG = LogManager.getLogger();
+
+  static final long DEFAULT_MAX_SEGMENT_SIZE = 64 * 1024 * 1024;
+  private static final String INDEX_FILE_NAME = "slots.idx";
+  private static final String SEGMENT_FILE_FORMAT = "blocks-%06d.ssz";
+  private static final Pattern SEGMENT_FILE_PATTERN = Pattern.compile("blocks-(\\d{6})\\.ssz");
+
+  // Index entry layout: root, segment id, offset in segment, length (0 for an empty slot)
+  private static final int SEGMENT_ID_POSITION = Bytes32.SIZE;
+  private static final int OFFSET_POSITION = SEGMENT_ID_POSITION + Integer.BYTES;
+  private static final int LENGTH_POSITION = OFFSET_POSITION + Long.BYTES;
+  static final int ENTRY_SIZE = LENGTH_POSITION + Integer.BYTES;
+  private static final int ENTRIES_PER_INDEX_CHUNK = 1 << 16;
+  private static final long INDEX_CHUNK_SIZE = (long) ENTRIES_PER_INDEX_CHUNK * ENTRY_SIZE;
+
+  private final Path directory;
+  private final long maxSegmentSize;
+  private final boolean deleteOnClose;
+  private final FileChannel indexChannel;
+  private final List<MappedByteBuffer> indexChunks = new CopyOnWriteArrayList<>();
+  private final List<ArchiveSegment> segments = new CopyOnWriteArrayList<>();
+  private final Map<Bytes32, Long> slotsByRoot = new ConcurrentHashMap<>();
+  // The highest slot with a block, or -1 while the archive is empty
+  private volatile long lastSlot = -1;
+
+  private FinalizedBlockArchive(
+      final Path directory, final long maxSegmentSize, final boolean deleteOnClose)
+      throws IOException {
+    this.directory = directory;
+    this.maxSegmentSize = maxSegmentSize;
+    this.deleteOnClose = deleteOnClose;
+    this.indexChannel =
+        FileChannel.open(
+            directory.resolve(INDEX_FILE_NAME),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    openSegments();
+    final long existingChunks = (indexChannel.size() + INDEX_CHUNK_SIZE - 1) / INDEX_CHUNK_SIZE;
+    for (long i = 0; i < existingChunks; i++) {
+      mapIndexChunk();
+    }
+    recover();
+  }
+
+  public static FinalizedBlockArchive open(final Path directory) {
+    return open(directory, DEFAULT_MAX_SEGMENT_SIZE);
+  }
+
+  static FinalizedBlockArchive open(final Path directory, final long maxSegmentSize) {
+    try {
+      Files.createDirectories(directory);
+      return new FinalizedBlockArchive(directory, maxSegmentSize, false);
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Failed to open finalized block archive " + directory, e);
+    }
+  }
+
+  /** Creates an archive in a temporary directory which is deleted when the archive is closed. */
+  public static FinalizedBlockArchive createTemporary() {
+    try {
+      final Path directory = Files.createTempDirectory("finalized-blocks");
+      return new FinalizedBlockArchive(directory, DEFAULT_MAX_SEGMENT_SIZE, true);
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Failed to create temporary finalized block archive", e);
+    }
+  }
+
+  /** Deletes the archive in <code>directory</code>, if there is one. */
+  public static void delete(final Path directory) {
+    if (!Files.exists(directory)) {
+      return;
+    }
+    try (final Stream<Path> files = Files.walk(directory)) {
+      for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+        Files.delete(file);
+      }
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Failed to delete finalized block archive " + directory, e);
+    }
+  }
+
+  /**
+   * Appends a finalized block. Blocks must be appended in slot order.
+   *
+   * @param slot the slot of the block
+   * @param root the root of the block
+   * @param block the serialized block
+   */
+  public synchronized void append(final UnsignedLong slot, final Bytes32 root, final Bytes block) {
+    final long slotValue = slot.longValue();
+    checkArgument(
+        slotValue > lastSlot, "Block at slot %s is not after archived slot %s", slot, lastSlot);
+    checkArgument(!block.isEmpty(), "Block at slot %s is empty", slot);
+    try {
+      ArchiveSegment segment = getActiveSegment();
+      if (segment.getSize() > 0 && segment.getSize() + block.size() > maxSegmentSize) {
+        sealActiveSegment();
+        segment = startSegment(segment.getId() + 1);
+      }
+      final long offset = segment.append(block);
+      writeEntry(slotValue, root, segment.getId(), offset, block.size());
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Failed to archive block at slot " + slot, e);
+    }
+    slotsByRoot.put(root, slotValue);
+    lastSlot = slotValue;
+  }
+
+  public Optional<UnsignedLong> getLastSlot() {
+    final long lastSlot = this.lastSlot;
+    return lastSlot < 0 ? Optional.empty() : Optional.of(UnsignedLong.valueOf(lastSlot));
+  }
+
+  public boolean contains(final Bytes32 root) {
+    return slotsByRoot.containsKey(root);
+  }
+
+  public Optional<Bytes32> getRootAtSlot(final UnsignedLong slot) {
+    final long lastSlot = this.lastSlot;
+    if (lastSlot < 0 || slot.compareTo(UnsignedLong.valueOf(lastSlot)) > 0) {
+      return Optional.empty();
+    }
+    return readEntry(slot.longValue()).map(entry -> entry.root);
+  }
+
+  public Optional<Bytes> getBlock(final Bytes32 root) {
+    final Long slot = slotsByRoot.get(root);
+    return slot != null ? readEntry(slot).map(this::readBlock) : Optional.empty();
+  }
+
+  /**
+   * Streams the blocks in every <code>step</code>th slot from <code>startSlot</code> to <code>
+   * endSlot</code> inclusive, in slot order. Empty slots are skipped.
+   */
+  public Stream<Bytes> streamBlocks(
+      final UnsignedLong startSlot, final UnsignedLong endSlot, final UnsignedLong step) {
+    checkArgument(step.compareTo(UnsignedLong.ZERO) > 0, "Step must be positive");
+    final long lastSlot = this.lastSlot;
+    if (lastSlot < 0
+        || startSlot.compareTo(endSlot) > 0
+        || startSlot.compareTo(UnsignedLong.valueOf(lastSlot)) > 0) {
+      return Stream.empty();
+    }
+    final long start = startSlot.longValue();
+    final long end =
+        endSlot.compareTo(UnsignedLong.valueOf(lastSlot)) < 0 ? endSlot.longValue() : lastSlot;
+    final long slotCount =
+        step.compareTo(UnsignedLong.valueOf(end - start)) > 0
+            ? 1
+            : (end - start) / step.longValue() + 1;
+    return LongStream.range(0, slotCount)
+        .mapToObj(i -> readEntry(start + i * step.longValue()))
+        .flatMap(Optional::stream)
+        .map(this::readBlock);
+  }
+
+  private Optional<Entry> readEntry(final long slot) {
+    final ByteBuffer chunk = indexChunks.get(Math.toIntExact(slot / ENTRIES_PER_INDEX_CHUNK));
+    final int position = Math.toIntExact(slot % ENTRIES_PER_INDEX_CHUNK) * ENTRY_SIZE;
+    final int length = chunk.getInt(position + LENGTH_POSITION);
+    if (length == 0) {
+      return Optional.empty();
+    }
+    final byte[] root = new byte[Bytes32.SIZE];
+    chunk.duplicate().position(position).get(root);
+    return Optional.of(
+        new Entry(
+            Bytes32.wrap(root),
+            chunk.getInt(position + SEGMENT_ID_POSITION),
+            chunk.getLong(position + OFFSET_POSITION),
+            length));
+  }
+
+  private void writeEntry(
+      final long slot, final Bytes32 root, final int segmentId, final long offset, final int length)
+      throws IOException {
+    final int chunkIndex = Math.toIntExact(slot / ENTRIES_PER_INDEX_CHUNK);
+    while (indexChunks.size() <= chunkIndex) {
+      mapIndexChunk();
+    }
+    final ByteBuffer chunk = indexChunks.get(chunkIndex);
+    final int position = Math.toIntExact(slot % ENTRIES_PER_INDEX_CHUNK) * ENTRY_SIZE;
+    chunk.duplicate().position(position).put(root.toArrayUnsafe());
+    chunk.putInt(position + SEGMENT_ID_POSITION, segmentId);
+    chunk.putLong(position + OFFSET_POSITION, offset);
+    chunk.putInt(position + LENGTH_POSITION, length);
+  }
+
+  private void clearEntry(final long slot) {
+    final ByteBuffer chunk = indexChunks.get(Math.toIntExact(slot / ENTRIES_PER_INDEX_CHUNK));
+    final int position = Math.toIntExact(slot % ENTRIES_PER_INDEX_CHUNK) * ENTRY_SIZE;
+    chunk.duplicate().position(position).put(new byte[ENTRY_SIZE]);
+  }
+
+  private Bytes readBlock(final Entry entry) {
+    try {
+      return segments.get(entry.segmentId).read(entry.offset, entry.length);
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Failed to read archived block " + entry.root, e);
+    }
+  }
+
+  private void mapIndexChunk() throws IOException {
+    // Mapping beyond the end of the file extends it with zeros, which read as empty slots
+    final long position = indexChunks.size() * INDEX_CHUNK_SIZE;
+    indexChunks.add(indexChannel.map(MapMode.READ_WRITE, position, INDEX_CHUNK_SIZE));
+  }
+
+  private void openSegments() throws IOException {
+    final List<Integer> segmentIds = new ArrayList<>();
+    try (final Stream<Path> files = Files.list(directory)) {
+      files.forEach(
+          file -> {
+            final Matcher matcher = SEGMENT_FILE_PATTERN.matcher(file.getFileName().toString());
+            if (matcher.matches()) {
+              segmentIds.add(Integer.parseInt(matcher.group(1)));
+            }
+          });
+    }
+    segmentIds.sort(Comparator.naturalOrder());
+    for (int i = 0; i < segmentIds.size(); i++) {
+      if (segmentIds.get(i) != i) {
+        throw new IOException("Finalized block archive is missing segment " + i);
+      }
+      final ArchiveSegment segment = ArchiveSegment.open(i, segmentFile(i));
+      if (i < segmentIds.size() - 1) {
+        segment.seal();
+      }
+      segments.add(segment);
+    }
+    if (segments.isEmpty()) {
+      startSegment(0);
+    }
+  }
+
+  private ArchiveSegment startSegment(final int id) throws IOException {
+    final ArchiveSegment segment = ArchiveSegment.open(id, segmentFile(id));
+    segments.add(segment);
+    return segment;
+  }
+
+  private Path segmentFile(final int id) {
+    return directory.resolve(String.format(SEGMENT_FILE_FORMAT, id));
+  }
+
+  private ArchiveSegment getActiveSegment() {
+    return segments.get(segments.size() - 1);
+  }
+
+  private void sealActiveSegment() throws IOException {
+    final ArchiveSegment segment = getActiveSegment();
+    LOG.debug("Sealing finalized block segment {} at {} bytes", segment.getId(), segment.getSize());
+    segment.seal();
+    indexChunks.forEach(MappedByteBuffer::force);
+  }
+
+  /**
+   * Drops trailing index entries whose data didn't reach the disk, then truncates the active
+   * segment to the end of the last remaining block and rebuilds the root lookup.
+   */
+  private void recover() throws IOException {
+    long slot = (long) indexChunks.size() * ENTRIES_PER_INDEX_CHUNK - 1;
+    Optional<Entry> lastEntry = Optional.empty();
+    for (; slot >= 0 && lastEntry.isEmpty(); slot--) {
+      final Optional<Entry> entry = readEntry(slot);
+      if (entry.isPresent() && isComplete(entry.get())) {
+        lastEntry = entry;
+        lastSlot = slot;
+      } else if (entry.isPresent()) {
+        LOG.warn("Discarding incomplete archived block at slot {}", slot);
+        clearEntry(slot);
+      }
+    }
+    final ArchiveSegment activeSegment = getActiveSegment();
+    final long validSize =
+        lastEntry
+            .filter(entry -> entry.segmentId == activeSegment.getId())
+            .map(entry -> entry.offset + entry.length)
+            .orElse(0L);
+    activeSegment.truncate(validSize);
+
+    for (long i = 0; i <= lastSlot; i++) {
+      final long archivedSlot = i;
+      readEntry(i).ifPresent(entry -> slotsByRoot.put(entry.root, archivedSlot));
+    }
+  }
+
+  private boolean isComplete(final Entry entry) {
+    return entry.segmentId >= 0
+        && entry.segmentId < segments.size()
+        && entry.offset >= 0
+        && entry.offset + entry.length <= segments.get(entry.segmentId).getSize();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    getActiveSegment().flush();
+    indexChunks.forEach(MappedByteBuffer::force);
+    indexChannel.close();
+    for (ArchiveSegment segment : segments) {
+      segment.close();
+    }
+    if (deleteOnClose) {
+      delete(directory);
+    }
+  }
+
+  private static class Entry {
+    private final Bytes32 root;
+    private final int segmentId;
+    private final long offset;
+    private final int length;
+
+    private Entry(final Bytes32 root, final int segmentId, final long offset, final int length) {
+      this.root = root;
+      this.segmentId = segmentId;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+}
@@ -13,25 +13,18 @@
 
 package tech.devgao.hailong.storage.events;
 
-import com.google.common.primitives.UnsignedLong;
-import java.util.Optional;
-import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
+import tech.devgao.hailong.storage.StoreDataLoader;
 
-public class GetFinalizedBlockAtSlotResponse {
-  private final UnsignedLong slot;
-  private final Optional<SignedBeaconBlock> block;
+/** Provides the loader a store created from genesis uses to read blocks and states from disk. */
+public class StoreDataLoaderEvent {
 
-  public GetFinalizedBlockAtSlotResponse(
-      final UnsignedLong slot, final Optional<SignedBeaconBlock> block) {
-    this.slot = slot;
-    this.block = block;
-  }
+  private final StoreDataLoader dataLoader;
 
-  public UnsignedLong getSlot() {
-    return slot;
+  public StoreDataLoaderEvent(final StoreDataLoader dataLoader) {
+    this.dataLoader = dataLoader;
   }
 
-  public Optional<SignedBeaconBlock> getBlock() {
-    return block;
+  public StoreDataLoader getDataLoader() {
+    return dataLoader;
   }
 }
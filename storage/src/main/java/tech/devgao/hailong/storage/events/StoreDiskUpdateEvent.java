@@ -20,6 +20,7 @@ import org.apache.tuweni.bytes.Bytes32;
 import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
 import tech.devgao.hailong.datastructures.state.BeaconState;
 import tech.devgao.hailong.datastructures.state.Checkpoint;
+import tech.devgao.hailong.storage.votes.VoteTable;
 
 public class StoreDiskUpdateEvent {
 
@@ -32,7 +33,7 @@ public class StoreDiskUpdateEvent {
   private final Map<Bytes32, SignedBeaconBlock> blocks;
   private final Map<Bytes32, BeaconState> blockStates;
   private final Map<Checkpoint, BeaconState> checkpointStates;
-  private final Map<UnsignedLong, Checkpoint> latestMessages;
+  private final VoteTable latestMessages;
 
   public StoreDiskUpdateEvent(
       final long transactionId,
@@ -44,7 +45,7 @@ public class StoreDiskUpdateEvent {
       final Map<Bytes32, SignedBeaconBlock> blocks,
       final Map<Bytes32, BeaconState> blockStates,
       final Map<Checkpoint, BeaconState> checkpointStates,
-      final Map<UnsignedLong, Checkpoint> latestMessages) {
+      final VoteTable latestMessages) {
     this.transactionId = transactionId;
     this.time = time;
     this.genesisTime = genesisTime;
@@ -93,7 +94,7 @@ public class StoreDiskUpdateEvent {
     return checkpointStates;
   }
 
-  public Map<UnsignedLong, Checkpoint> getLatestMessages() {
+  public VoteTable getLatestMessages() {
     return latestMessages;
   }
 }
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2020 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.storage.protoarray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static tech.devgao.hailong.util.config.Constants.GENESIS_EPOCH;
+
+import com.google.common.primitives.UnsignedLong;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.apache.tuweni.bytes.Bytes32;
+
+/**
+ * Block tree used by the LMD-GHOST fork choice, stored as a flat list ordered so that every parent
+ * appears before its children.
+ *
+ * <p>Each node caches its best child and best descendant, so after the weight changes from new
+ * votes have been applied in a single backwards pass over the list, the head is found by a direct
+ * lookup from the justified block.
+ */
+public class ProtoArray {
+
+  /**
+   * Do not prune the array until at least this many nodes precede the finalized block, so the
+   * cost of re-indexing is amortised over several finalized epochs.
+   */
+  public static final int DEFAULT_PRUNE_THRESHOLD = 256;
+
+  private final int pruneThreshold;
+  private UnsignedLong justifiedEpoch;
+  private UnsignedLong finalizedEpoch;
+  private List<ProtoNode> nodes = new ArrayList<>();
+  private final Map<Bytes32, Integer> indices = new HashMap<>();
+
+  public ProtoArray(
+      final int pruneThreshold,
+      final UnsignedLong justifiedEpoch,
+      final UnsignedLong finalizedEpoch) {
+    this.pruneThreshold = pruneThreshold;
+    this.justifiedEpoch = justifiedEpoch;
+    this.finalizedEpoch = finalizedEpoch;
+  }
+
+  public UnsignedLong getJustifiedEpoch() {
+    return justifiedEpoch;
+  }
+
+  public UnsignedLong getFinalizedEpoch() {
+    return finalizedEpoch;
+  }
+
+  public List<ProtoNode> getNodes() {
+    return nodes;
+  }
+
+  public Map<Bytes32, Integer> getIndices() {
+    return indices;
+  }
+
+  public boolean contains(final Bytes32 blockRoot) {
+    return indices.containsKey(blockRoot);
+  }
+
+  public Optional<ProtoNode> getNode(final Bytes32 blockRoot) {
+    return Optional.ofNullable(indices.get(blockRoot)).map(nodes::get);
+  }
+
+  /**
+   * Register a block with the fork choice. Blocks must be added after their parent; a block whose
+   * parent is unknown becomes a new root of the tree.
+   */
+  public void onBlock(
+      final UnsignedLong slot,
+      final Bytes32 blockRoot,
+      final Bytes32 parentRoot,
+      final Bytes32 stateRoot,
+      final UnsignedLong justifiedEpoch,
+      final UnsignedLong finalizedEpoch) {
+    if (indices.containsKey(blockRoot)) {
+      return;
+    }
+
+    final int nodeIndex = nodes.size();
+    final ProtoNode node =
+        new ProtoNode(
+            slot,
+            stateRoot,
+            blockRoot,
+            parentRoot,
+            justifiedEpoch,
+            finalizedEpoch,
+            Optional.ofNullable(indices.get(parentRoot)));
+
+    indices.put(blockRoot, nodeIndex);
+    nodes.add(node);
+
+    node.getParentIndex()
+        .ifPresent(parentIndex -> maybeUpdateBestChildAndDescendant(parentIndex, nodeIndex));
+  }
+
+  /**
+   * Follow the best-descendant link from the justified block to find the head of the chain.
+   *
+   * <p>If no descendant of the justified block is viable, the justified block itself is the head,
+   * matching the behaviour of the spec when the filtered block tree is empty.
+   */
+  public Bytes32 findHead(final Bytes32 justifiedRoot) {
+    final Integer justifiedIndex = indices.get(justifiedRoot);
+    if (justifiedIndex == null) {
+      throw new IllegalStateException(
+          "ProtoArray: Unknown justified root " + justifiedRoot + " when finding head");
+    }
+
+    final ProtoNode justifiedNode = nodes.get(justifiedIndex);
+    final int bestDescendantIndex = justifiedNode.getBestDescendantIndex().orElse(justifiedIndex);
+    final ProtoNode bestNode = nodes.get(bestDescendantIndex);
+    if (!nodeIsViableForHead(bestNode)) {
+      return justifiedRoot;
+    }
+    return bestNode.getBlockRoot();
+  }
+
+  /**
+   * Apply the per-node weight changes in {@code deltas} and update the best child and best
+   * descendant of every node.
+   *
+   * <p>Iterates backwards through the array so that each node's delta is pushed to its parent
+   * before the parent itself is visited, touching every node exactly once.
+   */
+  public void applyScoreChanges(
+      final long[] deltas, final UnsignedLong justifiedEpoch, final UnsignedLong finalizedEpoch) {
+    checkArgument(
+        deltas.length == nodes.size(),
+        "ProtoArray: Invalid delta length, expected %s but got %s",
+        nodes.size(),
+        deltas.length);
+
+    this.justifiedEpoch = justifiedEpoch;
+    this.finalizedEpoch = finalizedEpoch;
+
+    // Best children are recomputed from scratch below. Because every child comes after its parent,
+    // by the time a node is compared against its siblings its own weight and best descendant are
+    // final.
+    for (ProtoNode node : nodes) {
+      node.setBestChildIndex(Optional.empty());
+      node.setBestDescendantIndex(Optional.empty());
+    }
+
+    for (int nodeIndex = nodes.size() - 1; nodeIndex >= 0; nodeIndex--) {
+      final ProtoNode node = nodes.get(nodeIndex);
+      final long nodeDelta = deltas[nodeIndex];
+      node.adjustWeight(nodeDelta);
+
+      if (node.getParentIndex().isPresent()) {
+        final int parentIndex = node.getParentIndex().get();
+        deltas[parentIndex] += nodeDelta;
+        maybeUpdateBestChildAndDescendant(parentIndex, nodeIndex);
+      }
+    }
+  }
+
+  /**
+   * Drop every node that is not the finalized block or one of its descendants, which removes both
+   * its ancestors and any forks that branch off before it. Nothing is removed until the finalized
+   * block has moved at least {@link #pruneThreshold} nodes into the array.
+   */
+  public void maybePrune(final Bytes32 finalizedRoot) {
+    final Integer finalizedIndex = indices.get(finalizedRoot);
+    if (finalizedIndex == null) {
+      throw new IllegalStateException(
+          "ProtoArray: Unknown finalized root " + finalizedRoot + " when pruning");
+    }
+
+    if (finalizedIndex < pruneThreshold) {
+      return;
+    }
+
+    // Parents come before their children, so a node descends from the finalized block exactly
+    // when its parent was kept. Dropped nodes map to -1.
+    final int[] newIndices = new int[nodes.size()];
+    Arrays.fill(newIndices, -1);
+    final List<ProtoNode> retainedNodes = new ArrayList<>();
+    for (int nodeIndex = finalizedIndex; nodeIndex < nodes.size(); nodeIndex++) {
+      final ProtoNode node = nodes.get(nodeIndex);
+      final boolean isRetained =
+          nodeIndex == finalizedIndex
+              || node.getParentIndex()
+                  .map(parentIndex -> newIndices[parentIndex] >= 0)
+                  .orElse(false);
+      if (isRetained) {
+        newIndices[nodeIndex] = retainedNodes.size();
+        retainedNodes.add(node);
+      }
+    }
+
+    nodes = retainedNodes;
+    indices.clear();
+    for (int nodeIndex = 0; nodeIndex < nodes.size(); nodeIndex++) {
+      final ProtoNode node = nodes.get(nodeIndex);
+      indices.put(node.getBlockRoot(), nodeIndex);
+      // Best children and descendants are descendants, so they are always retained
+      node.setParentIndex(
+          node.getParentIndex()
+              .map(parentIndex -> newIndices[parentIndex])
+              .filter(parentIndex -> parentIndex >= 0));
+      node.setBestChildIndex(node.getBestChildIndex().map(index -> newIndices[index]));
+      node.setBestDescendantIndex(node.getBestDescendantIndex().map(index -> newIndices[index]));
+    }
+  }
+
+  /**
+   * Reconsider {@code childIndex} as the best child of {@code parentIndex}, updating the parent's
+   * best child and best descendant accordingly.
+   */
+  private void maybeUpdateBestChildAndDescendant(final int parentIndex, final int childIndex) {
+    final ProtoNode child = nodes.get(childIndex);
+    final ProtoNode parent = nodes.get(parentIndex);
+
+    final boolean childLeadsToViableHead = nodeLeadsToViableHead(child);
+    final Optional<Integer> currentBestChildIndex = parent.getBestChildIndex();
+
+    if (currentBestChildIndex.isEmpty()) {
+      if (childLeadsToViableHead) {
+        changeToChild(parent, child, childIndex);
+      }
+      return;
+    }
+
+    final int bestChildIndex = currentBestChildIndex.get();
+    if (bestChildIndex == childIndex) {
+      if (childLeadsToViableHead) {
+        // Refresh the best descendant, which may have changed below the child
+        changeToChild(parent, child, childIndex);
+      } else {
+        parent.setBestChildIndex(Optional.empty());
+        parent.setBestDescendantIndex(Optional.empty());
+      }
+      return;
+    }
+
+    final ProtoNode bestChild = nodes.get(bestChildIndex);
+    final boolean bestChildLeadsToViableHead = nodeLeadsToViableHead(bestChild);
+    if (childLeadsToViableHead && !bestChildLeadsToViableHead) {
+      changeToChild(parent, child, childIndex);
+    } else if (childLeadsToViableHead == bestChildLeadsToViableHead
+        && isHeavier(child, bestChild)) {
+      changeToChild(parent, child, childIndex);
+    }
+  }
+
+  private void changeToChild(final ProtoNode parent, final ProtoNode child, final int childIndex) {
+    parent.setBestChildIndex(Optional.of(childIndex));
+    parent.setBestDescendantIndex(
+        Optional.of(child.getBestDescendantIndex().orElse(childIndex)));
+  }
+
+  /** Compare by weight, with ties broken lexicographically by block root as in the spec. */
+  private boolean isHeavier(final ProtoNode candidate, final ProtoNode current) {
+    if (candidate.getWeight() != current.getWeight()) {
+      return candidate.getWeight() > current.getWeight();
+    }
+    return candidate
+            .getBlockRoot()
+            .toHexString()
+            .compareTo(current.getBlockRoot().toHexString())
+        >= 0;
+  }
+
+  private boolean nodeLeadsToViableHead(final ProtoNode node) {
+    final boolean bestDescendantIsViableForHead =
+        node.getBestDescendantIndex().map(nodes::get).map(this::nodeIsViableForHead).orElse(false);
+    return bestDescendantIsViableForHead || nodeIsViableForHead(node);
+  }
+
+  /**
+   * A node is only a head candidate if its state agrees with the store's justified and finalized
+   * checkpoints.
+   *
+   * @see
+   *     <a>https://github.com/ethereum/eth2.0-specs/blob/v0.8.1/specs/core/0_fork-choice.md#filter_block_tree</a>
+   */
+  private boolean nodeIsViableForHead(final ProtoNode node) {
+    final UnsignedLong genesisEpoch = UnsignedLong.valueOf(GENESIS_EPOCH);
+    return (node.getJustifiedEpoch().equals(justifiedEpoch) || justifiedEpoch.equals(genesisEpoch))
+        && (node.getFinalizedEpoch().equals(finalizedEpoch)
+            || finalizedEpoch.equals(genesisEpoch));
+  }
+}
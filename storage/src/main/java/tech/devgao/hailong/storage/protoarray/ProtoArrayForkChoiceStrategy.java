@@ -0,0 +1,209 @@
+/*
+ * Copyright 2020 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.storage.protoarray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.get_current_epoch;
+import static tech.devgao.hailong.datastructures.util.ValidatorsUtil.is_active_validator;
+
+import com.google.common.primitives.UnsignedLong;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.apache.tuweni.bytes.Bytes32;
+import tech.devgao.hailong.datastructures.state.BeaconState;
+import tech.devgao.hailong.datastructures.state.Checkpoint;
+import tech.devgao.hailong.datastructures.state.Validator;
+import tech.devgao.hailong.storage.BlockMetadata;
+import tech.devgao.hailong.storage.ReadOnlyStore;
+import tech.devgao.hailong.storage.votes.VoteTable;
+
+/**
+ * Incremental LMD-GHOST fork choice. Blocks and votes are fed in as they are committed to the
+ * store, and finding the head only applies the balance changes since the previous call.
+ */
+public class ProtoArrayForkChoiceStrategy {
+
+  private final ProtoArray protoArray;
+  private final List<VoteTracker> votes = new ArrayList<>();
+  private long[] balances = new long[0];
+  private Optional<Checkpoint> balancesCheckpoint = Optional.empty();
+
+  private ProtoArrayForkChoiceStrategy(final ProtoArray protoArray) {
+    this.protoArray = protoArray;
+  }
+
+  public static ProtoArrayForkChoiceStrategy create(
+      final Checkpoint justifiedCheckpoint,
+      final Checkpoint finalizedCheckpoint,
+      final Map<Bytes32, BlockMetadata> blocks,
+      final VoteTable latestMessages) {
+    final ProtoArray protoArray =
+        new ProtoArray(
+            ProtoArray.DEFAULT_PRUNE_THRESHOLD,
+            justifiedCheckpoint.getEpoch(),
+            finalizedCheckpoint.getEpoch());
+    final ProtoArrayForkChoiceStrategy strategy = new ProtoArrayForkChoiceStrategy(protoArray);
+
+    // Parents must be added before their children
+    blocks.entrySet().stream()
+        .sorted(Comparator.comparing(entry -> entry.getValue().getSlot()))
+        .filter(entry -> entry.getValue().hasPostState())
+        .forEach(entry -> strategy.onBlock(entry.getKey(), entry.getValue()));
+    latestMessages.forEach(
+        (validatorIndex, epoch, root) ->
+            strategy.processAttestation(
+                UnsignedLong.valueOf(validatorIndex), root, UnsignedLong.fromLongBits(epoch)));
+    return strategy;
+  }
+
+  /**
+   * @param blockRoot the root of the block
+   * @param block the metadata of the block, which must include its post-state epochs
+   */
+  public synchronized void onBlock(final Bytes32 blockRoot, final BlockMetadata block) {
+    checkArgument(block.hasPostState(), "Block %s has no post-state", blockRoot);
+    protoArray.onBlock(
+        block.getSlot(),
+        blockRoot,
+        block.getParentRoot(),
+        block.getStateRoot(),
+        block.getJustifiedEpoch().orElseThrow(),
+        block.getFinalizedEpoch().orElseThrow());
+  }
+
+  /**
+   * Record a validator's latest message. Only messages with a later target epoch than the one
+   * already recorded replace it, mirroring the latest_messages update in on_attestation.
+   */
+  public synchronized void processAttestation(
+      final UnsignedLong validatorIndex, final Bytes32 blockRoot, final UnsignedLong targetEpoch) {
+    final VoteTracker vote = getVote(validatorIndex.intValue());
+    if (!vote.hasVoted() || targetEpoch.compareTo(vote.getNextEpoch()) > 0) {
+      vote.setNextVote(blockRoot, targetEpoch);
+    }
+  }
+
+  /**
+   * Apply the votes and balance changes since the last call and return the head.
+   *
+   * <p>Everything needed from the store is read before taking this strategy's lock, since store
+   * transactions update the strategy while holding the store's write lock.
+   *
+   * @see
+   *     <a>https://github.com/ethereum/eth2.0-specs/blob/v0.8.1/specs/core/0_fork-choice.md#get_head</a>
+   */
+  public Bytes32 findHead(final ReadOnlyStore store) {
+    final Checkpoint justifiedCheckpoint = store.getJustifiedCheckpoint();
+    final Checkpoint finalizedCheckpoint = store.getFinalizedCheckpoint();
+    BeaconState justifiedState = store.getCheckpointState(justifiedCheckpoint);
+    if (justifiedState == null) {
+      justifiedState = store.getBlockState(justifiedCheckpoint.getRoot());
+    }
+    if (justifiedState == null) {
+      throw new IllegalStateException(
+          "ProtoArrayForkChoiceStrategy: No state available for justified checkpoint "
+              + justifiedCheckpoint);
+    }
+    return findHead(justifiedCheckpoint, finalizedCheckpoint, justifiedState);
+  }
+
+  private synchronized Bytes32 findHead(
+      final Checkpoint justifiedCheckpoint,
+      final Checkpoint finalizedCheckpoint,
+      final BeaconState justifiedState) {
+    final long[] newBalances = getJustifiedBalances(justifiedCheckpoint, justifiedState);
+
+    final long[] deltas = computeDeltas(newBalances);
+    protoArray.applyScoreChanges(
+        deltas, justifiedCheckpoint.getEpoch(), finalizedCheckpoint.getEpoch());
+    balances = newBalances;
+
+    return protoArray.findHead(justifiedCheckpoint.getRoot());
+  }
+
+  public synchronized void maybePrune(final Bytes32 finalizedRoot) {
+    if (protoArray.contains(finalizedRoot)) {
+      protoArray.maybePrune(finalizedRoot);
+    }
+  }
+
+  public synchronized int size() {
+    return protoArray.getNodes().size();
+  }
+
+  /**
+   * Compute the weight change for every node, moving each validator's balance from the block it
+   * was previously counted towards to the block its latest message points to.
+   *
+   * @see
+   *     <a>https://github.com/ethereum/eth2.0-specs/blob/v0.8.1/specs/core/0_fork-choice.md#get_latest_attesting_balance</a>
+   */
+  private long[] computeDeltas(final long[] newBalances) {
+    final Map<Bytes32, Integer> indices = protoArray.getIndices();
+    final long[] deltas = new long[protoArray.getNodes().size()];
+
+    for (int validatorIndex = 0; validatorIndex < votes.size(); validatorIndex++) {
+      final VoteTracker vote = votes.get(validatorIndex);
+      if (!vote.hasVoted()) {
+        continue;
+      }
+
+      final long oldBalance = validatorIndex < balances.length ? balances[validatorIndex] : 0;
+      final long newBalance =
+          validatorIndex < newBalances.length ? newBalances[validatorIndex] : 0;
+
+      if (!vote.getCurrentRoot().equals(vote.getNextRoot()) || oldBalance != newBalance) {
+        final Integer currentIndex = indices.get(vote.getCurrentRoot());
+        if (currentIndex != null) {
+          deltas[currentIndex] -= oldBalance;
+        }
+        final Integer nextIndex = indices.get(vote.getNextRoot());
+        if (nextIndex != null) {
+          deltas[nextIndex] += newBalance;
+        }
+        vote.setCurrentRoot(vote.getNextRoot());
+      }
+    }
+    return deltas;
+  }
+
+  private long[] getJustifiedBalances(
+      final Checkpoint justifiedCheckpoint, final BeaconState justifiedState) {
+    if (balancesCheckpoint.isPresent() && balancesCheckpoint.get().equals(justifiedCheckpoint)) {
+      return balances;
+    }
+
+    final UnsignedLong currentEpoch = get_current_epoch(justifiedState);
+    final List<Validator> validators = justifiedState.getValidators();
+    final long[] justifiedBalances = new long[validators.size()];
+    for (int i = 0; i < validators.size(); i++) {
+      final Validator validator = validators.get(i);
+      if (is_active_validator(validator, currentEpoch)) {
+        justifiedBalances[i] = validator.getEffective_balance().longValue();
+      }
+    }
+    balancesCheckpoint = Optional.of(justifiedCheckpoint);
+    return justifiedBalances;
+  }
+
+  private VoteTracker getVote(final int validatorIndex) {
+    while (votes.size() <= validatorIndex) {
+      votes.add(new VoteTracker());
+    }
+    return votes.get(validatorIndex);
+  }
+}
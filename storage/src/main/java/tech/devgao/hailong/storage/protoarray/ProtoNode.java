@@ -0,0 +1,131 @@
+/*
+ * Copyright 2020 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.storage.protoarray;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.primitives.UnsignedLong;
+import java.util.Optional;
+import org.apache.tuweni.bytes.Bytes32;
+
+/** A single block in the {@link ProtoArray}, referencing its parent and best child by index. */
+public class ProtoNode {
+
+  private final UnsignedLong slot;
+  private final Bytes32 stateRoot;
+  private final Bytes32 blockRoot;
+  private final Bytes32 parentRoot;
+  private final UnsignedLong justifiedEpoch;
+  private final UnsignedLong finalizedEpoch;
+
+  private long weight;
+  private Optional<Integer> parentIndex;
+  private Optional<Integer> bestChildIndex;
+  private Optional<Integer> bestDescendantIndex;
+
+  ProtoNode(
+      final UnsignedLong slot,
+      final Bytes32 stateRoot,
+      final Bytes32 blockRoot,
+      final Bytes32 parentRoot,
+      final UnsignedLong justifiedEpoch,
+      final UnsignedLong finalizedEpoch,
+      final Optional<Integer> parentIndex) {
+    this.slot = slot;
+    this.stateRoot = stateRoot;
+    this.blockRoot = blockRoot;
+    this.parentRoot = parentRoot;
+    this.justifiedEpoch = justifiedEpoch;
+    this.finalizedEpoch = finalizedEpoch;
+    this.weight = 0;
+    this.parentIndex = parentIndex;
+    this.bestChildIndex = Optional.empty();
+    this.bestDescendantIndex = Optional.empty();
+  }
+
+  public UnsignedLong getSlot() {
+    return slot;
+  }
+
+  public Bytes32 getStateRoot() {
+    return stateRoot;
+  }
+
+  public Bytes32 getBlockRoot() {
+    return blockRoot;
+  }
+
+  public Bytes32 getParentRoot() {
+    return parentRoot;
+  }
+
+  public UnsignedLong getJustifiedEpoch() {
+    return justifiedEpoch;
+  }
+
+  public UnsignedLong getFinalizedEpoch() {
+    return finalizedEpoch;
+  }
+
+  public long getWeight() {
+    return weight;
+  }
+
+  public Optional<Integer> getParentIndex() {
+    return parentIndex;
+  }
+
+  public Optional<Integer> getBestChildIndex() {
+    return bestChildIndex;
+  }
+
+  public Optional<Integer> getBestDescendantIndex() {
+    return bestDescendantIndex;
+  }
+
+  void adjustWeight(final long delta) {
+    final long newWeight = weight + delta;
+    if (newWeight < 0) {
+      throw new IllegalStateException(
+          "ProtoNode: weight of block " + blockRoot + " would become negative");
+    }
+    weight = newWeight;
+  }
+
+  void setParentIndex(final Optional<Integer> parentIndex) {
+    this.parentIndex = parentIndex;
+  }
+
+  void setBestChildIndex(final Optional<Integer> bestChildIndex) {
+    this.bestChildIndex = bestChildIndex;
+  }
+
+  void setBestDescendantIndex(final Optional<Integer> bestDescendantIndex) {
+    this.bestDescendantIndex = bestDescendantIndex;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("slot", slot)
+        .add("blockRoot", blockRoot)
+        .add("parentRoot", parentRoot)
+        .add("justifiedEpoch", justifiedEpoch)
+        .add("finalizedEpoch", finalizedEpoch)
+        .add("weight", weight)
+        .add("parentIndex", parentIndex)
+        .add("bestChildIndex", bestChildIndex)
+        .add("bestDescendantIndex", bestDescendantIndex)
+        .toString();
+  }
+}
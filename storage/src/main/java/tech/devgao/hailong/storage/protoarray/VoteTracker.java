@@ -0,0 +1,65 @@
+/*
+ * Copyright 2020 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.storage.protoarray;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.primitives.UnsignedLong;
+import org.apache.tuweni.bytes.Bytes32;
+
+/**
+ * Tracks the block a validator's balance is currently counted towards in the {@link ProtoArray}
+ * and the block its latest message points to, which will be applied on the next head update.
+ */
+public class VoteTracker {
+
+  private Bytes32 currentRoot = Bytes32.ZERO;
+  private Bytes32 nextRoot = Bytes32.ZERO;
+  private UnsignedLong nextEpoch = UnsignedLong.ZERO;
+  private boolean hasVoted = false;
+
+  public Bytes32 getCurrentRoot() {
+    return currentRoot;
+  }
+
+  public Bytes32 getNextRoot() {
+    return nextRoot;
+  }
+
+  public UnsignedLong getNextEpoch() {
+    return nextEpoch;
+  }
+
+  public boolean hasVoted() {
+    return hasVoted;
+  }
+
+  void setCurrentRoot(final Bytes32 currentRoot) {
+    this.currentRoot = currentRoot;
+  }
+
+  void setNextVote(final Bytes32 nextRoot, final UnsignedLong nextEpoch) {
+    this.nextRoot = nextRoot;
+    this.nextEpoch = nextEpoch;
+    this.hasVoted = true;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("currentRoot", currentRoot)
+        .add("nextRoot", nextRoot)
+        .add("nextEpoch", nextEpoch)
+        .toString();
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.storage.utils;
+
+import com.google.common.primitives.UnsignedLong;
+import java.io.IOException;
+import java.util.Optional;
+import org.apache.tuweni.bytes.Bytes32;
+import org.mapdb.DataInput2;
+import org.mapdb.DataOutput2;
+import org.mapdb.serializer.GroupSerializerObjectArray;
+import tech.devgao.hailong.storage.BlockMetadata;
+
+/**
+ * Stores block metadata as a fixed-width record, without going through SSZ. The post-state epochs
+ * are written as zero and flagged as absent when they aren't known.
+ */
+public class BlockMetadataSerializer extends GroupSerializerObjectArray<BlockMetadata> {
+  private static final int SIZE = Long.BYTES * 3 + Bytes32.SIZE * 2 + 1;
+
+  @Override
+  public void serialize(final DataOutput2 out, final BlockMetadata value) throws IOException {
+    out.writeLong(value.getSlot().longValue());
+    out.write(value.getParentRoot().toArrayUnsafe());
+    out.write(value.getStateRoot().toArrayUnsafe());
+    out.writeBoolean(value.hasPostState());
+    out.writeLong(value.getJustifiedEpoch().orElse(UnsignedLong.ZERO).longValue());
+    out.writeLong(value.getFinalizedEpoch().orElse(UnsignedLong.ZERO).longValue());
+  }
+
+  @Override
+  public BlockMetadata deserialize(final DataInput2 in, final int available) throws IOException {
+    final UnsignedLong slot = UnsignedLong.fromLongBits(in.readLong());
+    final Bytes32 parentRoot = readBytes32(in);
+    final Bytes32 stateRoot = readBytes32(in);
+    final boolean hasPostState = in.readBoolean();
+    final UnsignedLong justifiedEpoch = UnsignedLong.fromLongBits(in.readLong());
+    final UnsignedLong finalizedEpoch = UnsignedLong.fromLongBits(in.readLong());
+    if (!hasPostState) {
+      return new BlockMetadata(slot, parentRoot, stateRoot, Optional.empty(), Optional.empty());
+    }
+    return new BlockMetadata(
+        slot, parentRoot, stateRoot, Optional.of(justifiedEpoch), Optional.of(finalizedEpoch));
+  }
+
+  private Bytes32 readBytes32(final DataInput2 in) throws IOException {
+    final byte[] data = new byte[Bytes32.SIZE];
+    in.readFully(data);
+    return Bytes32.wrap(data);
+  }
+
+  @Override
+  public boolean isTrusted() {
+    return true;
+  }
+
+  @Override
+  public int fixedSize() {
+    return SIZE;
+  }
+}
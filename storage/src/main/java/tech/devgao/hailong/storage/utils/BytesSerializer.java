@@ -0,0 +1,47 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.storage.utils;
+
+import java.io.IOException;
+import org.apache.tuweni.bytes.Bytes;
+import org.mapdb.DataInput2;
+import org.mapdb.DataOutput2;
+import org.mapdb.Serializer;
+
+/**
+ * Stores values as raw bytes. The format matches {@link MapDBSerializer}, so a collection written
+ * with that serializer can be read with this one without deserializing each value.
+ */
+public class BytesSerializer implements Serializer<Bytes> {
+
+  @Override
+  public void serialize(DataOutput2 out, Bytes value) throws IOException {
+    Serializer.BYTE_ARRAY.serialize(out, value.toArrayUnsafe());
+  }
+
+  @Override
+  public Bytes deserialize(DataInput2 in, int available) throws IOException {
+    return Bytes.wrap(Serializer.BYTE_ARRAY.deserialize(in, available));
+  }
+
+  @Override
+  public int fixedSize() {
+    return Serializer.BYTE_ARRAY.fixedSize();
+  }
+
+  @Override
+  public boolean isTrusted() {
+    return Serializer.BYTE_ARRAY.isTrusted();
+  }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.storage.votes;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.primitives.UnsignedLong;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import org.apache.tuweni.bytes.Bytes32;
+import tech.devgao.hailong.datastructures.state.Checkpoint;
+
+/**
+ * The latest message of each validator, stored as columns indexed by validator index: the target
+ * epoch in a {@code long[]} and the block root as an id into a dictionary of roots. Many validators
+ * vote for the same few roots, so each distinct root is held once. Recording a vote allocates
+ * nothing unless its root is new or the table has to grow.
+ *
+ * <p>Roots that no validator votes for any more are dropped from the dictionary once it has grown
+ * to twice the number of roots in use.
+ *
+ * <p>Not thread-safe.
+ */
+public final class VoteTable {
+  public static final long NO_VOTE = -1;
+  private static final int INITIAL_CAPACITY = 64;
+  private static final int MIN_COMPACTION_SIZE = 1024;
+
+  private long[] epochs;
+  private int[] rootIds;
+  private final List<Bytes32> roots = new ArrayList<>();
+  private final Map<Bytes32, Integer> rootIdsByRoot = new HashMap<>();
+  private int validatorCount = 0;
+  private int compactionSize = MIN_COMPACTION_SIZE;
+
+  public VoteTable() {
+    this(INITIAL_CAPACITY);
+  }
+
+  private VoteTable(final int capacity) {
+    this.epochs = new long[capacity];
+    this.rootIds = new int[capacity];
+    Arrays.fill(epochs, NO_VOTE);
+  }
+
+  public static VoteTable create(final Map<UnsignedLong, Checkpoint> latestMessages) {
+    final VoteTable table = new VoteTable();
+    latestMessages.forEach(table::put);
+    return table;
+  }
+
+  public VoteTable copy() {
+    final VoteTable copy = new VoteTable(Math.max(validatorCount, INITIAL_CAPACITY));
+    forEach(copy::put);
+    return copy;
+  }
+
+  /** @return one more than the highest validator index that has voted */
+  public int getValidatorCount() {
+    return validatorCount;
+  }
+
+  public boolean contains(final int validatorIndex) {
+    return validatorIndex < validatorCount && epochs[validatorIndex] != NO_VOTE;
+  }
+
+  /**
+   * Returns the target epoch of a validator's latest message without allocating a checkpoint.
+   *
+   * @param validatorIndex the index of the validator
+   * @return the target epoch, or {@link #NO_VOTE} if the validator hasn't voted
+   */
+  public long getEpoch(final int validatorIndex) {
+    return validatorIndex < validatorCount ? epochs[validatorIndex] : NO_VOTE;
+  }
+
+  public Optional<Checkpoint> get(final int validatorIndex) {
+    if (!contains(validatorIndex)) {
+      return Optional.empty();
+    }
+    return Optional.of(
+        new Checkpoint(
+            UnsignedLong.fromLongBits(epochs[validatorIndex]),
+            roots.get(rootIds[validatorIndex])));
+  }
+
+  public void put(final UnsignedLong validatorIndex, final Checkpoint latestMessage) {
+    put(validatorIndex.intValue(), latestMessage.getEpoch().longValue(), latestMessage.getRoot());
+  }
+
+  /**
+   * Records a validator's latest message, replacing any it already has.
+   *
+   * @param validatorIndex the index of the validator
+   * @param epoch the target epoch of the message
+   * @param root the block root the validator voted for
+   */
+  public void put(final int validatorIndex, final long epoch, final Bytes32 root) {
+    checkArgument(validatorIndex >= 0, "Invalid validator index %s", validatorIndex);
+    checkArgument(epoch != NO_VOTE, "Invalid epoch %s", epoch);
+    ensureCapacity(validatorIndex + 1);
+    final int rootId = getRootId(root);
+    epochs[validatorIndex] = epoch;
+    rootIds[validatorIndex] = rootId;
+    validatorCount = Math.max(validatorCount, validatorIndex + 1);
+  }
+
+  public void forEach(final VoteConsumer consumer) {
+    for (int i = 0; i < validatorCount; i++) {
+      if (epochs[i] != NO_VOTE) {
+        consumer.accept(i, epochs[i], roots.get(rootIds[i]));
+      }
+    }
+  }
+
+  private void ensureCapacity(final int size) {
+    if (size <= epochs.length) {
+      return;
+    }
+    final int oldCapacity = epochs.length;
+    final int newCapacity = Math.max(size, oldCapacity * 2);
+    epochs = Arrays.copyOf(epochs, newCapacity);
+    rootIds = Arrays.copyOf(rootIds, newCapacity);
+    Arrays.fill(epochs, oldCapacity, newCapacity, NO_VOTE);
+  }
+
+  private int getRootId(final Bytes32 root) {
+    final Integer existingId = rootIdsByRoot.get(root);
+    if (existingId != null) {
+      return existingId;
+    }
+    if (roots.size() >= compactionSize) {
+      compactRoots();
+    }
+    final int id = roots.size();
+    roots.add(root);
+    rootIdsByRoot.put(root, id);
+    return id;
+  }
+
+  private void compactRoots() {
+    final List<Bytes32> oldRoots = new ArrayList<>(roots);
+    roots.clear();
+    rootIdsByRoot.clear();
+    for (int i = 0; i < validatorCount; i++) {
+      if (epochs[i] != NO_VOTE) {
+        final Bytes32 root = oldRoots.get(rootIds[i]);
+        Integer id = rootIdsByRoot.get(root);
+        if (id == null) {
+          id = roots.size();
+          roots.add(root);
+          rootIdsByRoot.put(root, id);
+        }
+        rootIds[i] = id;
+      }
+    }
+    compactionSize = Math.max(MIN_COMPACTION_SIZE, roots.size() * 2);
+  }
+
+  /** Only used by tests. */
+  int getRootCount() {
+    return roots.size();
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof VoteTable)) {
+      return false;
+    }
+    final VoteTable other = (VoteTable) o;
+    final int count = Math.max(validatorCount, other.validatorCount);
+    for (int i = 0; i < count; i++) {
+      if (!get(i).equals(other.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = 1;
+    for (int i = 0; i < validatorCount; i++) {
+      if (epochs[i] != NO_VOTE) {
+        hash = 31 * hash + Objects.hash(i, epochs[i], roots.get(rootIds[i]));
+      }
+    }
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("validatorCount", validatorCount)
+        .add("rootCount", roots.size())
+        .toString();
+  }
+
+  @FunctionalInterface
+  public interface VoteConsumer {
+    void accept(int validatorIndex, long epoch, Bytes32 root);
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.storage.votes;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes32;
+
+/**
+ * Stores a {@link VoteTable} as a flat file with a fixed-width record per validator index, so a
+ * vote is recorded by overwriting a single record in place.
+ *
+ * <p>Each record holds the target epoch, the block root and a CRC32 of both. Records are not
+ * fsynced as they are written, so a crash can lose or tear the most recent votes. Records with a
+ * bad checksum, including those of validators which never voted, are read back as no vote, which
+ * fork choice recovers from with the validator's next attestation.
+ */
+public class VoteTableFile implements Closeable {
+  private static final Logger LOG = LogManager.getLogger();
+
+  // Record layout: target epoch, block root, checksum of the epoch and root
+  private static final int ROOT_POSITION = Long.BYTES;
+  private static final int CHECKSUM_POSITION = ROOT_POSITION + Bytes32.SIZE;
+  static final int RECORD_SIZE = CHECKSUM_POSITION + Integer.BYTES;
+  private static final int RECORDS_PER_READ = 4096;
+
+  private final Path file;
+  private final boolean deleteOnClose;
+  private final FileChannel channel;
+  private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+  private final CRC32 checksum = new CRC32();
+
+  private VoteTableFile(final Path file, final boolean deleteOnClose) throws IOException {
+    this.file = file;
+    this.deleteOnClose = deleteOnClose;
+    this.channel =
+        FileChannel.open(
+            file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+  }
+
+  public static VoteTableFile open(final Path file) {
+    try {
+      return new VoteTableFile(file, false);
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Failed to open vote table " + file, e);
+    }
+  }
+
+  /** Creates a vote table file which is deleted when it is closed. */
+  public static VoteTableFile createTemporary() {
+    try {
+      return new VoteTableFile(Files.createTempFile("votes", ".dat"), true);
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Failed to create temporary vote table", e);
+    }
+  }
+
+  /** Deletes the vote table file, if there is one. */
+  public static void delete(final Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Failed to delete vote table " + file, e);
+    }
+  }
+
+  /** Reads every stored vote into a new table. */
+  public synchronized VoteTable load() {
+    final VoteTable table = new VoteTable();
+    final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * RECORDS_PER_READ);
+    int corruptRecords = 0;
+    try {
+      final long recordCount = channel.size() / RECORD_SIZE;
+      for (long first = 0; first < recordCount; first += RECORDS_PER_READ) {
+        final int count = (int) Math.min(RECORDS_PER_READ, recordCount - first);
+        buffer.clear().limit(count * RECORD_SIZE);
+        long position = first * RECORD_SIZE;
+        while (buffer.hasRemaining()) {
+          position += channel.read(buffer, position);
+        }
+        for (int i = 0; i < count; i++) {
+          if (!readRecord(buffer, i * RECORD_SIZE, (int) (first + i), table)) {
+            corruptRecords++;
+          }
+        }
+      }
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Failed to read vote table " + file, e);
+    }
+    if (corruptRecords > 0) {
+      LOG.warn("Ignored {} votes with a bad checksum in {}", corruptRecords, file);
+    }
+    return table;
+  }
+
+  /** @return false if the record is corrupt, rather than empty or valid */
+  private boolean readRecord(
+      final ByteBuffer records, final int offset, final int validatorIndex, final VoteTable table) {
+    final long epoch = records.getLong(offset);
+    final int storedChecksum = records.getInt(offset + CHECKSUM_POSITION);
+    checksum.reset();
+    checksum.update(records.array(), offset, CHECKSUM_POSITION);
+    if ((int) checksum.getValue() != storedChecksum) {
+      // Validators which never voted are left as zeroes
+      return epoch == 0 && storedChecksum == 0;
+    }
+    final Bytes32 root =
+        Bytes32.wrap(
+            Arrays.copyOfRange(
+                records.array(), offset + ROOT_POSITION, offset + ROOT_POSITION + Bytes32.SIZE));
+    table.put(validatorIndex, epoch, root);
+    return true;
+  }
+
+  /**
+   * Overwrites the record of a single validator.
+   *
+   * @param validatorIndex the index of the validator
+   * @param epoch the target epoch of the validator's latest message
+   * @param root the block root of the validator's latest message
+   */
+  public synchronized void write(final int validatorIndex, final long epoch, final Bytes32 root) {
+    checkArgument(validatorIndex >= 0, "Invalid validator index %s", validatorIndex);
+    record.clear();
+    record.putLong(epoch);
+    record.put(root.toArrayUnsafe());
+    checksum.reset();
+    checksum.update(record.array(), 0, CHECKSUM_POSITION);
+    record.putInt((int) checksum.getValue());
+    record.flip();
+    long position = (long) validatorIndex * RECORD_SIZE;
+    try {
+      while (record.hasRemaining()) {
+        position += channel.write(record, position);
+      }
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Failed to write vote of validator " + validatorIndex, e);
+    }
+  }
+
+  /** Writes every vote in the table. */
+  public synchronized void writeAll(final VoteTable table) {
+    table.forEach(this::write);
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    channel.force(false);
+    channel.close();
+    if (deleteOnClose) {
+      Files.deleteIfExists(file);
+    }
+  }
+}
@@ -23,6 +23,7 @@ import static tech.devgao.hailong.storage.Store.get_genesis_store;
 
 import com.google.common.eventbus.EventBus;
 import com.google.common.primitives.UnsignedLong;
+import java.util.Optional;
 import org.apache.tuweni.bytes.Bytes32;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -32,6 +33,7 @@ import tech.devgao.hailong.datastructures.state.Checkpoint;
 import tech.devgao.hailong.datastructures.util.DataStructureUtil;
 import tech.devgao.hailong.storage.Store.Transaction;
 import tech.devgao.hailong.storage.events.FinalizedCheckpointEvent;
+import tech.devgao.hailong.storage.events.StoreDataLoaderEvent;
 import tech.devgao.hailong.util.config.Constants;
 
 class ChainStorageClientTest {
@@ -59,6 +61,20 @@ class ChainStorageClientTest {
     assertThat(storageClient.getStore()).isNotNull();
   }
 
+  @Test
+  public void initialize_genesisStoreLoadsStatesFromStorage() {
+    final StoreDataLoader dataLoader = mock(StoreDataLoader.class);
+    final Checkpoint checkpoint = new Checkpoint(UnsignedLong.ONE, BEST_BLOCK_ROOT);
+    final BeaconState checkpointState = DataStructureUtil.randomBeaconState(seed++);
+    when(dataLoader.loadCheckpointState(checkpoint)).thenReturn(Optional.of(checkpointState));
+    storageClient.setStateCacheLimit(mock(BlockReplayer.class), 1);
+    storageClient.onStoreDataLoader(new StoreDataLoaderEvent(dataLoader));
+
+    final BeaconState initialState = DataStructureUtil.randomBeaconState(UnsignedLong.ZERO, seed++);
+    storageClient.initializeFromGenesis(initialState);
+    assertThat(storageClient.getStore().getCheckpointState(checkpoint)).isEqualTo(checkpointState);
+  }
+
   @Test
   public void getBlockBySlot_returnEmptyWhenStoreNotSet() {
     assertThat(storageClient.getBlockBySlot(UnsignedLong.ZERO)).isEmpty();
@@ -14,6 +14,7 @@
 package tech.devgao.hailong.storage;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static tech.devgao.hailong.util.async.SafeFuture.completedFuture;
@@ -27,12 +28,15 @@ import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
 import tech.devgao.hailong.datastructures.state.BeaconState;
 import tech.devgao.hailong.datastructures.util.BeaconStateUtil;
 import tech.devgao.hailong.datastructures.util.DataStructureUtil;
+import tech.devgao.hailong.storage.api.StorageQueryChannel;
+import tech.devgao.hailong.storage.api.StorageQueryChannel.BlockBytesConsumer;
+import tech.devgao.hailong.util.async.SafeFuture;
 import tech.devgao.hailong.util.config.Constants;
 
 class CombinedChainDataClientTest {
 
   private final ChainStorageClient recentChainData = mock(ChainStorageClient.class);
-  private final HistoricalChainData historicalChainData = mock(HistoricalChainData.class);
+  private final StorageQueryChannel historicalChainData = mock(StorageQueryChannel.class);
   private final Store store = mock(Store.class);
   private final CombinedChainDataClient client =
       new CombinedChainDataClient(recentChainData, historicalChainData);
@@ -108,6 +112,30 @@ class CombinedChainDataClientTest {
         .isCompletedWithValue(Optional.of(block));
   }
 
+  @Test
+  public void streamFinalizedBlockBytes_shouldStreamRangeFromHistoricalData() {
+    final UnsignedLong startSlot = UnsignedLong.ONE;
+    final UnsignedLong endSlot = UnsignedLong.valueOf(20);
+    final UnsignedLong step = UnsignedLong.ONE;
+    final BlockBytesConsumer consumer = block -> true;
+    final SafeFuture<Void> result = completedFuture(null);
+    when(recentChainData.getFinalizedEpoch()).thenReturn(UnsignedLong.valueOf(10));
+    when(historicalChainData.streamFinalizedBlockBytes(startSlot, endSlot, step, consumer))
+        .thenReturn(result);
+
+    assertThat(client.streamFinalizedBlockBytes(startSlot, endSlot, step, consumer))
+        .isSameAs(result);
+  }
+
+  @Test
+  public void streamFinalizedBlockBytes_shouldRejectRangeEndingAfterFinalizedSlot() {
+    final UnsignedLong step = UnsignedLong.ONE;
+    final UnsignedLong endSlot = client.getFinalizedSlot().plus(step);
+    assertThatThrownBy(
+            () -> client.streamFinalizedBlockBytes(UnsignedLong.ZERO, endSlot, step, block -> true))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
   @Test
   public void getBlockAtSlotExact_returnBlockInHeadSlot() {
     final UnsignedLong slot = UnsignedLong.ONE;
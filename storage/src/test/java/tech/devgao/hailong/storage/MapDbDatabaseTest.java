@@ -15,11 +15,16 @@ package tech.devgao.hailong.storage;
 
 import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
 import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.compute_start_slot_at_epoch;
 
 import com.google.common.primitives.UnsignedLong;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 import java.util.stream.Stream;
+import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.bytes.Bytes32;
 import org.apache.tuweni.junit.TempDirectory;
 import org.apache.tuweni.junit.TempDirectoryExtension;
@@ -30,8 +35,10 @@ import tech.devgao.hailong.datastructures.blocks.BeaconBlock;
 import tech.devgao.hailong.datastructures.blocks.BeaconBlockBody;
 import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
 import tech.devgao.hailong.datastructures.state.BeaconState;
+import tech.devgao.hailong.datastructures.state.BeaconStateWithCache;
 import tech.devgao.hailong.datastructures.state.Checkpoint;
 import tech.devgao.hailong.datastructures.util.DataStructureUtil;
+import tech.devgao.hailong.datastructures.util.SimpleOffsetSerializer;
 import tech.devgao.hailong.storage.Store.Transaction;
 import tech.devgao.hailong.util.async.SafeFuture;
 import tech.devgao.hailong.util.bls.BLSSignature;
@@ -47,7 +54,9 @@ class MapDbDatabaseTest {
   private static final Checkpoint CHECKPOINT3 =
       new Checkpoint(UnsignedLong.valueOf(8), Bytes32.fromHexString("0x9012"));
 
-  private Database database = MapDbDatabase.createInMemory();
+  private final BlockReplayer blockReplayer = mock(BlockReplayer.class);
+  private Database database =
+      MapDbDatabase.createInMemory(StateStorageMode.archive(), blockReplayer);
   private final TransactionPrecommit databaseTransactionPrecommit =
       updateEvent -> {
         database.insert(updateEvent);
@@ -65,7 +74,59 @@ class MapDbDatabaseTest {
   @Test
   public void shouldRecreateOriginalGenesisStore() {
     final Store memoryStore = database.createMemoryStore();
-    assertThat(memoryStore).isEqualToIgnoringGivenFields(store, "lock", "readLock");
+    // Blocks and states are loaded on demand, so compare what the stores hold rather than fields
+    assertThat(memoryStore)
+        .isEqualToComparingOnlyGivenFields(
+            store,
+            "time",
+            "genesis_time",
+            "justified_checkpoint",
+            "finalized_checkpoint",
+            "best_justified_checkpoint",
+            "block_metadata",
+            "latest_messages");
+    assertThat(memoryStore.getBlockRoots()).hasSameElementsAs(store.getBlockRoots());
+    for (Bytes32 root : store.getBlockRoots()) {
+      assertThat(memoryStore.getSignedBlock(root)).isEqualTo(store.getSignedBlock(root));
+      assertThat(memoryStore.getBlockState(root)).isEqualTo(store.getBlockState(root));
+    }
+    assertThat(memoryStore.getCheckpointState(store.getFinalizedCheckpoint()))
+        .isEqualTo(store.getCheckpointState(store.getFinalizedCheckpoint()));
+  }
+
+  @Test
+  public void shouldLoadHotBlocksAndStatesOnDemandAfterRestart(@TempDirectory final Path tempDir)
+      throws Exception {
+    database =
+        MapDbDatabase.createOnDisk(
+            tempDir.toFile(), false, StateStorageMode.archive(), blockReplayer);
+    database.storeGenesis(store);
+
+    final SignedBeaconBlock block1 = blockAtSlot(1, store.getFinalizedCheckpoint().getRoot());
+    final SignedBeaconBlock block2 = blockAtSlot(2, block1);
+    final BeaconState state1 = DataStructureUtil.randomBeaconState(block1.getSlot(), seed++);
+    final Bytes32 root1 = block1.getMessage().hash_tree_root();
+    final Bytes32 root2 = block2.getMessage().hash_tree_root();
+    final Transaction transaction = store.startTransaction(databaseTransactionPrecommit);
+    transaction.putBlock(root1, block1);
+    transaction.putBlockState(root1, state1);
+    transaction.putBlock(root2, block2);
+    commit(transaction);
+
+    database.close();
+    database =
+        MapDbDatabase.createOnDisk(
+            tempDir.toFile(), true, StateStorageMode.archive(), blockReplayer);
+    final Store memoryStore = database.createMemoryStore();
+
+    assertThat(memoryStore.containsBlock(root1)).isTrue();
+    assertThat(memoryStore.containsBlock(root2)).isTrue();
+    assertThat(memoryStore.getSignedBlock(root1)).isEqualTo(block1);
+    assertThat(memoryStore.getSignedBlock(root2)).isEqualTo(block2);
+    assertThat(memoryStore.containsBlockState(root1)).isTrue();
+    assertThat(memoryStore.getBlockState(root1)).isEqualTo(state1);
+    // Blocks stored without their state still don't have one
+    assertThat(memoryStore.containsBlockState(root2)).isFalse();
   }
 
   @Test
@@ -303,9 +364,36 @@ class MapDbDatabaseTest {
     assertThat(database.getSignedBlock(block1.getMessage().hash_tree_root())).contains(block1);
   }
 
+  @Test
+  public void shouldStreamFinalizedBlockBytesInRange() {
+    final SignedBeaconBlock block1 = blockAtSlot(1);
+    final SignedBeaconBlock block2 = blockAtSlot(2, block1);
+    final SignedBeaconBlock block3 = blockAtSlot(3, block2);
+    // Skipped slot 4
+    final SignedBeaconBlock block5 = blockAtSlot(5, block3);
+    final SignedBeaconBlock block6 = blockAtSlot(6, block5);
+    addBlocks(block1, block2, block3, block5, block6);
+    finalizeEpoch(UnsignedLong.ONE, block6.getMessage().hash_tree_root());
+
+    assertThat(
+            database.streamFinalizedBlockBytes(
+                UnsignedLong.ONE, UnsignedLong.valueOf(5), UnsignedLong.valueOf(2)))
+        .containsExactly(serialize(block1), serialize(block3), serialize(block5));
+    assertThat(
+            database.streamFinalizedBlockBytes(
+                UnsignedLong.valueOf(3), UnsignedLong.valueOf(10), UnsignedLong.ONE))
+        .containsExactly(serialize(block3), serialize(block5), serialize(block6));
+    assertThat(
+            database.streamFinalizedBlockBytes(
+                UnsignedLong.valueOf(7), UnsignedLong.valueOf(3), UnsignedLong.ONE))
+        .isEmpty();
+  }
+
   @Test
   public void shouldPersistOnDisk(@TempDirectory final Path tempDir) throws Exception {
-    database = MapDbDatabase.createOnDisk(tempDir.toFile(), false);
+    database =
+        MapDbDatabase.createOnDisk(
+            tempDir.toFile(), false, StateStorageMode.archive(), blockReplayer);
     database.storeGenesis(store);
 
     final SignedBeaconBlock block1 = blockAtSlot(1, store.getFinalizedCheckpoint().getRoot());
@@ -339,7 +427,9 @@ class MapDbDatabaseTest {
 
     // Close and re-read from disk store.
     database.close();
-    database = MapDbDatabase.createOnDisk(tempDir.toFile(), true);
+    database =
+        MapDbDatabase.createOnDisk(
+            tempDir.toFile(), true, StateStorageMode.archive(), blockReplayer);
     assertOnlyHotBlocks(block8, block9, forkBlock8, forkBlock9);
     assertBlocksFinalized(block1, block2, block3, block7);
 
@@ -347,6 +437,59 @@ class MapDbDatabaseTest {
     assertThat(database.getSignedBlock(block1.getMessage().hash_tree_root())).contains(block1);
   }
 
+  @Test
+  public void shouldRegenerateFinalizedStatesBetweenSnapshots() {
+    final List<SignedBeaconBlock> replayedBlocks = new ArrayList<>();
+    database =
+        MapDbDatabase.createInMemory(
+            StateStorageMode.snapshotEvery(1),
+            (preState, block) -> {
+              replayedBlocks.add(block);
+              final BeaconState state = BeaconStateWithCache.deepCopy(preState);
+              state.setSlot(block.getSlot());
+              return state;
+            });
+    database.storeGenesis(store);
+
+    final long epoch1Slot = compute_start_slot_at_epoch(UnsignedLong.ONE).longValue();
+    final SignedBeaconBlock block1 = blockAtSlot(1);
+    final SignedBeaconBlock block2 = blockAtSlot(2, block1);
+    final SignedBeaconBlock epoch1Block = blockAtSlot(epoch1Slot + 1, block2);
+    final SignedBeaconBlock epoch1Block2 = blockAtSlot(epoch1Slot + 2, epoch1Block);
+    final BeaconState epoch1State =
+        DataStructureUtil.randomBeaconState(epoch1Block.getSlot(), seed++);
+    final Transaction transaction = store.startTransaction(databaseTransactionPrecommit);
+    for (SignedBeaconBlock block : List.of(block1, block2, epoch1Block, epoch1Block2)) {
+      final Bytes32 root = block.getMessage().hash_tree_root();
+      transaction.putBlock(root, block);
+      transaction.putBlockState(
+          root,
+          block == epoch1Block
+              ? epoch1State
+              : DataStructureUtil.randomBeaconState(block.getSlot(), seed++));
+    }
+    commit(transaction);
+    finalizeEpoch(UnsignedLong.valueOf(2), epoch1Block2.getMessage().hash_tree_root());
+
+    // The first finalized block in each epoch has its state stored
+    assertThat(database.getFinalizedState(epoch1Block.getMessage().hash_tree_root()))
+        .contains(epoch1State);
+    assertThat(replayedBlocks).isEmpty();
+
+    // Others are replayed from the nearest stored state
+    final Optional<BeaconState> block2State =
+        database.getFinalizedState(block2.getMessage().hash_tree_root());
+    assertThat(block2State.map(BeaconState::getSlot)).contains(block2.getSlot());
+    assertThat(replayedBlocks).containsExactly(block1, block2);
+
+    replayedBlocks.clear();
+    assertThat(database.getFinalizedState(block2.getMessage().hash_tree_root()))
+        .isEqualTo(block2State);
+    assertThat(database.getFinalizedState(epoch1Block2.getMessage().hash_tree_root()))
+        .isPresent();
+    assertThat(replayedBlocks).containsExactly(epoch1Block2);
+  }
+
   private void assertBlocksFinalized(final SignedBeaconBlock... blocks) {
     for (SignedBeaconBlock block : blocks) {
       assertThat(database.getFinalizedRootAtSlot(block.getSlot()))
@@ -376,6 +519,10 @@ class MapDbDatabaseTest {
     commit(transaction);
   }
 
+  private Bytes serialize(final SignedBeaconBlock block) {
+    return SimpleOffsetSerializer.serialize(block);
+  }
+
   private SignedBeaconBlock blockAtSlot(final long slot) {
     return blockAtSlot(slot, store.getFinalizedCheckpoint().getRoot());
   }
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.devgao.hailong.datastructures.util.DataStructureUtil.randomBeaconState;
+import static tech.devgao.hailong.datastructures.util.DataStructureUtil.randomBytes32;
+
+import java.util.List;
+import org.apache.tuweni.bytes.Bytes32;
+import org.junit.jupiter.api.Test;
+import tech.devgao.hailong.datastructures.state.BeaconState;
+
+class StateCacheTest {
+  private static final long STATE_SIZE = 100;
+
+  private final StateCache<Bytes32> cache = new StateCache<>(2 * STATE_SIZE, state -> STATE_SIZE);
+  private final Bytes32 root1 = randomBytes32(1);
+  private final Bytes32 root2 = randomBytes32(2);
+  private final Bytes32 root3 = randomBytes32(3);
+  private final BeaconState state1 = randomBeaconState(1);
+  private final BeaconState state2 = randomBeaconState(2);
+  private final BeaconState state3 = randomBeaconState(3);
+
+  @Test
+  void shouldEvictLeastRecentlyUsedStateWhenFull() {
+    cache.put(root1, state1);
+    cache.put(root2, state2);
+    assertThat(cache.get(root1)).isEqualTo(state1);
+
+    cache.put(root3, state3);
+
+    assertThat(cache.contains(root1)).isTrue();
+    assertThat(cache.contains(root2)).isFalse();
+    assertThat(cache.contains(root3)).isTrue();
+    assertThat(cache.getSize()).isEqualTo(2 * STATE_SIZE);
+  }
+
+  @Test
+  void shouldNotEvictPinnedStates() {
+    cache.pin(List.of(root1, root2));
+    cache.put(root1, state1);
+    cache.put(root2, state2);
+    cache.put(root3, state3);
+
+    assertThat(cache.contains(root1)).isTrue();
+    assertThat(cache.contains(root2)).isTrue();
+    assertThat(cache.contains(root3)).isFalse();
+  }
+
+  @Test
+  void shouldEvictStatesOnceTheyAreUnpinned() {
+    cache.pin(List.of(root1, root2, root3));
+    cache.put(root1, state1);
+    cache.put(root2, state2);
+    cache.put(root3, state3);
+    assertThat(cache.getCount()).isEqualTo(3);
+
+    cache.pin(List.of(root3));
+
+    assertThat(cache.getCount()).isEqualTo(2);
+    assertThat(cache.contains(root1)).isFalse();
+    assertThat(cache.contains(root3)).isTrue();
+  }
+
+  @Test
+  void shouldReplaceSizeOfUpdatedState() {
+    cache.put(root1, state1);
+    cache.put(root1, state2);
+
+    assertThat(cache.get(root1)).isEqualTo(state2);
+    assertThat(cache.getSize()).isEqualTo(STATE_SIZE);
+  }
+
+  @Test
+  void shouldEstimateLargerSizeForMoreValidators() {
+    final BeaconState state = randomBeaconState(4);
+    final long size = StateCache.estimateSize(state);
+    state.getValidators().add(state.getValidators().get(0));
+
+    assertThat(StateCache.estimateSize(state)).isGreaterThan(size);
+  }
+}
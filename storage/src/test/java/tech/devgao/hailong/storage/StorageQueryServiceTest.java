@@ -0,0 +1,131 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.primitives.UnsignedLong;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.junit.jupiter.api.Test;
+import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
+import tech.devgao.hailong.datastructures.util.DataStructureUtil;
+import tech.devgao.hailong.util.async.SafeFuture;
+
+class StorageQueryServiceTest {
+  private final Database database = mock(Database.class);
+  private final ExecutorService executor = MoreExecutors.newDirectExecutorService();
+  private final StorageQueryService queryService = new StorageQueryService(database, executor);
+
+  private final SignedBeaconBlock block1 = DataStructureUtil.randomSignedBeaconBlock(1, 1);
+  private final SignedBeaconBlock block2 =
+      DataStructureUtil.randomSignedBeaconBlock(2, root(block1), 2);
+  private final SignedBeaconBlock block3 =
+      DataStructureUtil.randomSignedBeaconBlock(3, root(block2), 3);
+
+  @Test
+  public void getFinalizedBlockAtSlot_shouldLookUpRootThenBlock() {
+    final UnsignedLong slot = UnsignedLong.ONE;
+    withBlocks(block1);
+    when(database.getFinalizedRootAtSlot(slot)).thenReturn(Optional.of(root(block1)));
+
+    assertThat(queryService.getFinalizedBlockAtSlot(slot))
+        .isCompletedWithValue(Optional.of(block1));
+  }
+
+  @Test
+  public void getFinalizedBlockAtSlot_shouldReturnEmptyForEmptySlot() {
+    final UnsignedLong slot = UnsignedLong.ONE;
+    when(database.getFinalizedRootAtSlot(slot)).thenReturn(Optional.empty());
+
+    assertThat(queryService.getFinalizedBlockAtSlot(slot)).isCompletedWithValue(Optional.empty());
+  }
+
+  @Test
+  public void getBlocksByRoot_shouldReturnOnlyBlocksThatWereFound() {
+    withBlocks(block1, block2);
+    final Bytes32 unknownRoot = Bytes32.fromHexStringLenient("0x1234");
+
+    assertThat(queryService.getBlocksByRoot(List.of(root(block1), root(block2), unknownRoot)))
+        .isCompletedWithValue(Map.of(root(block1), block1, root(block2), block2));
+  }
+
+  @Test
+  public void getAncestors_shouldWalkBackToFirstMissingBlock() {
+    withBlocks(block2, block3);
+
+    assertThat(queryService.getAncestors(root(block3), 10))
+        .isCompletedWithValue(List.of(block3, block2));
+  }
+
+  @Test
+  public void getAncestors_shouldStopAtMaxCount() {
+    withBlocks(block1, block2, block3);
+
+    assertThat(queryService.getAncestors(root(block3), 2))
+        .isCompletedWithValue(List.of(block3, block2));
+  }
+
+  @Test
+  public void streamFinalizedBlockBytes_shouldStopWhenConsumerReturnsFalse() {
+    final UnsignedLong startSlot = UnsignedLong.ONE;
+    final UnsignedLong endSlot = UnsignedLong.valueOf(3);
+    final UnsignedLong step = UnsignedLong.ONE;
+    final List<Bytes> received = new ArrayList<>();
+    when(database.streamFinalizedBlockBytes(startSlot, endSlot, step))
+        .thenReturn(Stream.of(Bytes.of(1), Bytes.of(2), Bytes.of(3)));
+
+    final SafeFuture<Void> result =
+        queryService.streamFinalizedBlockBytes(
+            startSlot, endSlot, step, block -> received.add(block) && received.size() < 2);
+
+    assertThat(result).isCompleted();
+    assertThat(received).containsExactly(Bytes.of(1), Bytes.of(2));
+  }
+
+  @Test
+  public void shouldFailQueriesAfterClose() {
+    queryService.close();
+
+    assertThat(queryService.getBlockByRoot(root(block1))).isCompletedExceptionally();
+  }
+
+  @Test
+  public void shouldFailQueryWhenDatabaseThrows() {
+    when(database.getSignedBlock(root(block1))).thenThrow(new IllegalStateException("Closed"));
+
+    assertThat(queryService.getBlockByRoot(root(block1))).isCompletedExceptionally();
+  }
+
+  private void withBlocks(final SignedBeaconBlock... blocks) {
+    when(database.getSignedBlock(any())).thenReturn(Optional.empty());
+    for (SignedBeaconBlock block : blocks) {
+      when(database.getSignedBlock(root(block))).thenReturn(Optional.of(block));
+    }
+  }
+
+  private static Bytes32 root(final SignedBeaconBlock block) {
+    return block.getMessage().hash_tree_root();
+  }
+}
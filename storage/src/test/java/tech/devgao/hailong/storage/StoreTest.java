@@ -16,12 +16,20 @@ package tech.devgao.hailong.storage;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static tech.devgao.hailong.datastructures.util.DataStructureUtil.randomBeaconState;
 import static tech.devgao.hailong.datastructures.util.DataStructureUtil.randomBytes32;
 import static tech.devgao.hailong.datastructures.util.DataStructureUtil.randomSignedBeaconBlock;
 
 import com.google.common.primitives.UnsignedLong;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import org.apache.tuweni.bytes.Bytes32;
 import org.junit.jupiter.api.Test;
 import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
@@ -29,6 +37,7 @@ import tech.devgao.hailong.datastructures.state.BeaconState;
 import tech.devgao.hailong.datastructures.state.Checkpoint;
 import tech.devgao.hailong.datastructures.util.DataStructureUtil;
 import tech.devgao.hailong.storage.Store.Transaction;
+import tech.devgao.hailong.storage.votes.VoteTable;
 
 class StoreTest {
 
@@ -41,6 +50,8 @@ class StoreTest {
   private UnsignedLong INITIAL_GENESIS_TIME = UnsignedLong.ZERO;
   private UnsignedLong INITIAL_TIME = UnsignedLong.ONE;
   private final TransactionPrecommit transactionPrecommit = TransactionPrecommit.memoryOnly();
+  private final StoreDataLoader dataLoader = mock(StoreDataLoader.class);
+  private final BlockReplayer blockReplayer = mock(BlockReplayer.class);
   private final Store store =
       new Store(
           INITIAL_TIME,
@@ -102,4 +113,158 @@ class StoreTest {
     assertEquals(time, store.getTime());
     assertEquals(genesisTime, store.getGenesisTime());
   }
+
+  @Test
+  public void shouldApplyLatestMessagesWhenTransactionCommits() {
+    final Bytes32 root = randomBytes32(SEED);
+    final Transaction transaction = store.startTransaction(transactionPrecommit);
+    transaction.putLatestMessage(3, 5, root);
+
+    assertThat(store.getLatestMessageEpoch(3)).isEqualTo(VoteTable.NO_VOTE);
+    assertThat(transaction.getLatestMessageEpoch(3)).isEqualTo(5);
+    assertThat(transaction.getLatestMessage(UnsignedLong.valueOf(3)))
+        .isEqualTo(new Checkpoint(UnsignedLong.valueOf(5), root));
+
+    assertThat(transaction.commit()).isCompleted();
+
+    assertThat(store.getLatestMessageEpoch(3)).isEqualTo(5);
+    assertThat(store.getLatestMessage(UnsignedLong.valueOf(3)))
+        .isEqualTo(new Checkpoint(UnsignedLong.valueOf(5), root));
+  }
+
+  @Test
+  public void shouldLoadBlocksOnlyWhenRequested() {
+    final Bytes32 finalizedRoot = randomBytes32(SEED);
+    final SignedBeaconBlock finalizedBlock = randomSignedBeaconBlock(0, SEED);
+    when(dataLoader.loadBlock(finalizedRoot)).thenReturn(Optional.of(finalizedBlock));
+    final Store boundedStore = createBoundedStore(finalizedRoot);
+
+    assertThat(boundedStore.containsBlock(finalizedRoot)).isTrue();
+    assertThat(boundedStore.getBlockRoots()).containsExactly(finalizedRoot);
+    verify(dataLoader, never()).loadBlock(any());
+
+    assertEquals(finalizedBlock, boundedStore.getSignedBlock(finalizedRoot));
+    assertEquals(finalizedBlock, boundedStore.getSignedBlock(finalizedRoot));
+    verify(dataLoader).loadBlock(finalizedRoot);
+  }
+
+  @Test
+  public void shouldLoadCheckpointStatesOnlyWhenRequested() {
+    final Checkpoint checkpoint = new Checkpoint(UnsignedLong.ONE, randomBytes32(SEED + 1));
+    final BeaconState state = randomBeaconState(SEED + 1);
+    when(dataLoader.loadCheckpointState(checkpoint)).thenReturn(Optional.of(state));
+    final Store boundedStore = createBoundedStore(randomBytes32(SEED), Set.of(checkpoint));
+
+    assertThat(boundedStore.containsCheckpointState(checkpoint)).isTrue();
+    verify(dataLoader, never()).loadCheckpointState(any());
+
+    assertEquals(state, boundedStore.getCheckpointState(checkpoint));
+    verify(dataLoader).loadCheckpointState(checkpoint);
+  }
+
+  @Test
+  public void shouldLoadEvictedCheckpointStateFromDisk() {
+    final Store boundedStore = createBoundedStore(randomBytes32(SEED));
+    final Checkpoint checkpoint = new Checkpoint(UnsignedLong.ONE, randomBytes32(SEED + 1));
+    final BeaconState state = randomBeaconState(SEED + 1);
+    when(dataLoader.loadCheckpointState(checkpoint)).thenReturn(Optional.of(state));
+
+    final Transaction transaction = boundedStore.startTransaction(transactionPrecommit);
+    transaction.putCheckpointState(checkpoint, state);
+    assertThat(transaction.commit()).isCompleted();
+
+    assertEquals(state, boundedStore.getCheckpointState(checkpoint));
+    verify(dataLoader).loadCheckpointState(checkpoint);
+  }
+
+  @Test
+  public void shouldKeepJustifiedCheckpointStateInMemory() {
+    final Bytes32 finalizedRoot = randomBytes32(SEED);
+    final Checkpoint justifiedCheckpoint = new Checkpoint(UnsignedLong.ZERO, finalizedRoot);
+    final BeaconState state = randomBeaconState(SEED + 1);
+    final Store boundedStore = createBoundedStore(finalizedRoot);
+
+    final Transaction transaction = boundedStore.startTransaction(transactionPrecommit);
+    transaction.putCheckpointState(justifiedCheckpoint, state);
+    assertThat(transaction.commit()).isCompleted();
+
+    assertEquals(state, boundedStore.getCheckpointState(justifiedCheckpoint));
+    verify(dataLoader, never()).loadCheckpointState(any());
+  }
+
+  @Test
+  public void shouldLoadEvictedStateFromDisk() {
+    final Bytes32 finalizedRoot = randomBytes32(SEED);
+    final Store boundedStore = createBoundedStore(finalizedRoot);
+    final SignedBeaconBlock block = randomSignedBeaconBlock(1, finalizedRoot, SEED);
+    final Bytes32 blockRoot = block.getMessage().hash_tree_root();
+    final BeaconState state = randomBeaconState(SEED + 1);
+    when(dataLoader.loadBlockState(blockRoot)).thenReturn(Optional.of(state));
+
+    final Transaction transaction = boundedStore.startTransaction(transactionPrecommit);
+    transaction.putBlock(blockRoot, block);
+    transaction.putBlockState(blockRoot, state);
+    assertThat(transaction.commit()).isCompleted();
+
+    assertThat(boundedStore.containsBlockState(blockRoot)).isTrue();
+    assertEquals(state, boundedStore.getBlockState(blockRoot));
+    verify(dataLoader).loadBlockState(blockRoot);
+    verify(blockReplayer, never()).replay(any(), any());
+  }
+
+  @Test
+  public void shouldRegenerateEvictedStateFromPinnedFinalizedState() {
+    final Bytes32 finalizedRoot = randomBytes32(SEED);
+    final BeaconState finalizedState = randomBeaconState(SEED);
+    when(dataLoader.loadBlockState(finalizedRoot)).thenReturn(Optional.of(finalizedState));
+    final Store boundedStore = createBoundedStore(finalizedRoot);
+    final SignedBeaconBlock block1 = randomSignedBeaconBlock(1, finalizedRoot, SEED);
+    final Bytes32 blockRoot1 = block1.getMessage().hash_tree_root();
+    final SignedBeaconBlock block2 = randomSignedBeaconBlock(2, blockRoot1, SEED);
+    final Bytes32 blockRoot2 = block2.getMessage().hash_tree_root();
+    final BeaconState state1 = randomBeaconState(SEED + 1);
+    final BeaconState state2 = randomBeaconState(SEED + 2);
+    when(blockReplayer.replay(finalizedState, block1)).thenReturn(state1);
+    when(blockReplayer.replay(state1, block2)).thenReturn(state2);
+
+    final Transaction transaction = boundedStore.startTransaction(transactionPrecommit);
+    transaction.putBlock(blockRoot1, block1);
+    transaction.putBlockState(blockRoot1, state1);
+    transaction.putBlock(blockRoot2, block2);
+    transaction.putBlockState(blockRoot2, state2);
+    assertThat(transaction.commit()).isCompleted();
+
+    assertEquals(state2, boundedStore.getBlockState(blockRoot2));
+    verify(blockReplayer).replay(finalizedState, block1);
+    verify(blockReplayer).replay(state1, block2);
+  }
+
+  private Store createBoundedStore(final Bytes32 finalizedRoot) {
+    return createBoundedStore(finalizedRoot, Set.of());
+  }
+
+  private Store createBoundedStore(
+      final Bytes32 finalizedRoot, final Set<Checkpoint> storedCheckpoints) {
+    final Checkpoint finalizedCheckpoint = new Checkpoint(UnsignedLong.ZERO, finalizedRoot);
+    final BlockMetadata finalizedBlock =
+        new BlockMetadata(
+            UnsignedLong.ZERO,
+            Bytes32.ZERO,
+            randomBytes32(SEED + 3),
+            Optional.of(UnsignedLong.ZERO),
+            Optional.of(UnsignedLong.ZERO));
+    // Too small for any state, so only the pinned checkpoint states are kept
+    return new Store(
+        INITIAL_TIME,
+        INITIAL_GENESIS_TIME,
+        finalizedCheckpoint,
+        finalizedCheckpoint,
+        finalizedCheckpoint,
+        Map.of(finalizedRoot, finalizedBlock),
+        storedCheckpoints,
+        new VoteTable(),
+        dataLoader,
+        blockReplayer,
+        1);
+  }
 }
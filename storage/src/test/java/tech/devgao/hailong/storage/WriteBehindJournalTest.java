@@ -0,0 +1,146 @@
+/*
+ * Copyright 2020 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tech.devgao.hailong.storage.events.StoreDiskUpdateCompleteEvent;
+import tech.devgao.hailong.storage.events.StoreDiskUpdateEvent;
+import tech.devgao.hailong.storage.votes.VoteTable;
+
+class WriteBehindJournalTest {
+  private final Database database = mock(Database.class);
+  private final EventBus eventBus = new EventBus();
+  private final List<StoreDiskUpdateCompleteEvent> completed = new CopyOnWriteArrayList<>();
+  private final List<List<Long>> committedGroups = new CopyOnWriteArrayList<>();
+  private final CountDownLatch firstCommitReleased = new CountDownLatch(1);
+  private final RuntimeException error = new IllegalStateException("Failed");
+  private volatile long failingTransactionId = -1;
+
+  @BeforeEach
+  void setUp() {
+    eventBus.register(this);
+    // Hold the first commit so the following updates queue up behind it
+    doAnswer(
+            invocation -> {
+              final List<Long> transactionIds = transactionIds(invocation.getArgument(0));
+              if (transactionIds.contains(failingTransactionId)) {
+                throw error;
+              }
+              committedGroups.add(transactionIds);
+              if (committedGroups.size() == 1) {
+                firstCommitReleased.await();
+              }
+              return null;
+            })
+        .when(database)
+        .insertAll(any());
+    doAnswer(
+            invocation -> {
+              final StoreDiskUpdateEvent event = invocation.getArgument(0);
+              if (event.getTransactionId() == failingTransactionId) {
+                throw error;
+              }
+              committedGroups.add(List.of(event.getTransactionId()));
+              return null;
+            })
+        .when(database)
+        .insert(any());
+  }
+
+  @Subscribe
+  public void onComplete(final StoreDiskUpdateCompleteEvent event) {
+    completed.add(event);
+  }
+
+  @Test
+  void shouldCommitQueuedUpdatesTogether() {
+    final WriteBehindJournal journal = new WriteBehindJournal(database, eventBus, 10);
+    journal.append(updateEvent(1));
+    verify(database, timeout(1000)).insertAll(any());
+    journal.append(updateEvent(2));
+    journal.append(updateEvent(3));
+    firstCommitReleased.countDown();
+    journal.close();
+
+    assertThat(committedGroups).containsExactly(List.of(1L), List.of(2L, 3L));
+    assertThat(completed)
+        .extracting(StoreDiskUpdateCompleteEvent::getTransactionId)
+        .containsExactly(1L, 2L, 3L);
+    assertThat(completed).allMatch(event -> event.getError().isEmpty());
+  }
+
+  @Test
+  void shouldReportOnlyTheFailingUpdateWhenAGroupFails() {
+    failingTransactionId = 3;
+    final WriteBehindJournal journal = new WriteBehindJournal(database, eventBus, 10);
+    journal.append(updateEvent(1));
+    verify(database, timeout(1000)).insertAll(any());
+    journal.append(updateEvent(2));
+    journal.append(updateEvent(3));
+    journal.append(updateEvent(4));
+    firstCommitReleased.countDown();
+    journal.close();
+
+    assertThat(committedGroups).containsExactly(List.of(1L), List.of(2L), List.of(4L));
+    assertThat(completed)
+        .extracting(StoreDiskUpdateCompleteEvent::getTransactionId)
+        .containsExactly(1L, 2L, 3L, 4L);
+    assertThat(completed.get(2).getError()).contains(error);
+    assertThat(completed).filteredOn(event -> event.getError().isPresent()).hasSize(1);
+  }
+
+  @Test
+  void shouldRejectUpdatesAfterClose() {
+    final WriteBehindJournal journal = new WriteBehindJournal(database, eventBus, 10);
+    journal.close();
+
+    assertThatThrownBy(() -> journal.append(updateEvent(1)))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  private List<Long> transactionIds(final List<StoreDiskUpdateEvent> group) {
+    return group.stream().map(StoreDiskUpdateEvent::getTransactionId).collect(Collectors.toList());
+  }
+
+  private StoreDiskUpdateEvent updateEvent(final long transactionId) {
+    return new StoreDiskUpdateEvent(
+        transactionId,
+        Optional.empty(),
+        Optional.empty(),
+        Optional.empty(),
+        Optional.empty(),
+        Optional.empty(),
+        Map.of(),
+        Map.of(),
+        Map.of(),
+        new VoteTable());
+  }
+}
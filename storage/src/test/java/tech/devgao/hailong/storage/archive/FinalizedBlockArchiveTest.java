@@ -0,0 +1,138 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.storage.archive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.google.common.primitives.UnsignedLong;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.junit.TempDirectory;
+import org.apache.tuweni.junit.TempDirectoryExtension;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(TempDirectoryExtension.class)
+class FinalizedBlockArchiveTest {
+  private static final Bytes32 ROOT1 = Bytes32.fromHexStringLenient("0x01");
+  private static final Bytes32 ROOT2 = Bytes32.fromHexStringLenient("0x02");
+  private static final Bytes32 ROOT3 = Bytes32.fromHexStringLenient("0x03");
+  private static final Bytes BLOCK1 = Bytes.fromHexString("0x010101");
+  private static final Bytes BLOCK2 = Bytes.fromHexString("0x0202");
+  private static final Bytes BLOCK3 = Bytes.fromHexString("0x03030303");
+
+  private FinalizedBlockArchive archive;
+
+  @AfterEach
+  void tearDown() throws IOException {
+    archive.close();
+  }
+
+  @Test
+  public void shouldReadBlocksBySlotAndRoot(@TempDirectory final Path tempDir) {
+    archive = FinalizedBlockArchive.open(tempDir);
+    appendBlocks();
+
+    assertThat(archive.getLastSlot()).contains(UnsignedLong.valueOf(5));
+    assertThat(archive.getRootAtSlot(UnsignedLong.ONE)).contains(ROOT1);
+    assertThat(archive.getRootAtSlot(UnsignedLong.valueOf(2))).isEmpty();
+    assertThat(archive.getRootAtSlot(UnsignedLong.valueOf(6))).isEmpty();
+    assertThat(archive.getBlock(ROOT2)).contains(BLOCK2);
+    assertThat(archive.getBlock(Bytes32.ZERO)).isEmpty();
+    assertThat(archive.contains(ROOT3)).isTrue();
+  }
+
+  @Test
+  public void shouldStreamBlocksInRange(@TempDirectory final Path tempDir) {
+    archive = FinalizedBlockArchive.open(tempDir);
+    appendBlocks();
+
+    assertThat(archive.streamBlocks(UnsignedLong.ZERO, UnsignedLong.valueOf(10), UnsignedLong.ONE))
+        .containsExactly(BLOCK1, BLOCK2, BLOCK3);
+    assertThat(
+            archive.streamBlocks(
+                UnsignedLong.ONE, UnsignedLong.valueOf(5), UnsignedLong.valueOf(2)))
+        .containsExactly(BLOCK1, BLOCK2, BLOCK3);
+    assertThat(
+            archive.streamBlocks(
+                UnsignedLong.valueOf(2), UnsignedLong.valueOf(5), UnsignedLong.valueOf(2)))
+        .isEmpty();
+    assertThat(
+            archive.streamBlocks(UnsignedLong.ONE, UnsignedLong.MAX_VALUE, UnsignedLong.MAX_VALUE))
+        .containsExactly(BLOCK1);
+    assertThat(archive.streamBlocks(UnsignedLong.valueOf(6), UnsignedLong.ZERO, UnsignedLong.ONE))
+        .isEmpty();
+  }
+
+  @Test
+  public void shouldRejectBlocksOutOfSlotOrder(@TempDirectory final Path tempDir) {
+    archive = FinalizedBlockArchive.open(tempDir);
+    archive.append(UnsignedLong.valueOf(3), ROOT1, BLOCK1);
+
+    assertThatThrownBy(() -> archive.append(UnsignedLong.valueOf(3), ROOT2, BLOCK2))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  public void shouldReadSealedSegmentsAfterReopening(@TempDirectory final Path tempDir)
+      throws IOException {
+    // Small segments so every block after the first seals the previous segment
+    archive = FinalizedBlockArchive.open(tempDir, 2);
+    appendBlocks();
+    archive.close();
+
+    archive = FinalizedBlockArchive.open(tempDir, 2);
+    assertThat(archive.getLastSlot()).contains(UnsignedLong.valueOf(5));
+    assertThat(archive.getBlock(ROOT1)).contains(BLOCK1);
+    assertThat(archive.getBlock(ROOT3)).contains(BLOCK3);
+    assertThat(archive.streamBlocks(UnsignedLong.ZERO, UnsignedLong.valueOf(5), UnsignedLong.ONE))
+        .containsExactly(BLOCK1, BLOCK2, BLOCK3);
+
+    archive.append(UnsignedLong.valueOf(6), Bytes32.ZERO, BLOCK1);
+    assertThat(archive.getBlock(Bytes32.ZERO)).contains(BLOCK1);
+  }
+
+  @Test
+  public void shouldDiscardBlocksWhoseDataWasNotWritten(@TempDirectory final Path tempDir)
+      throws IOException {
+    archive = FinalizedBlockArchive.open(tempDir);
+    appendBlocks();
+    archive.close();
+    try (FileChannel segment =
+        FileChannel.open(tempDir.resolve("blocks-000000.ssz"), StandardOpenOption.WRITE)) {
+      segment.truncate(BLOCK1.size() + BLOCK2.size() + 1);
+    }
+
+    archive = FinalizedBlockArchive.open(tempDir);
+    assertThat(archive.getLastSlot()).contains(UnsignedLong.valueOf(3));
+    assertThat(archive.contains(ROOT3)).isFalse();
+    assertThat(archive.getRootAtSlot(UnsignedLong.valueOf(5))).isEmpty();
+
+    archive.append(UnsignedLong.valueOf(4), ROOT3, BLOCK3);
+    assertThat(archive.getBlock(ROOT3)).contains(BLOCK3);
+    assertThat(archive.getBlock(ROOT2)).contains(BLOCK2);
+  }
+
+  private void appendBlocks() {
+    archive.append(UnsignedLong.ONE, ROOT1, BLOCK1);
+    archive.append(UnsignedLong.valueOf(3), ROOT2, BLOCK2);
+    archive.append(UnsignedLong.valueOf(5), ROOT3, BLOCK3);
+  }
+}
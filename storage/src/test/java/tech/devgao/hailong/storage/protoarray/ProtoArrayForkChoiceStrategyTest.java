@@ -0,0 +1,124 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.storage.protoarray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static tech.devgao.hailong.datastructures.util.DataStructureUtil.randomBytes32;
+import static tech.devgao.hailong.datastructures.util.DataStructureUtil.randomValidator;
+
+import com.google.common.primitives.UnsignedLong;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.apache.tuweni.bytes.Bytes32;
+import org.junit.jupiter.api.Test;
+import tech.devgao.hailong.datastructures.state.BeaconState;
+import tech.devgao.hailong.datastructures.state.Checkpoint;
+import tech.devgao.hailong.datastructures.state.Validator;
+import tech.devgao.hailong.storage.BlockMetadata;
+import tech.devgao.hailong.storage.ReadOnlyStore;
+import tech.devgao.hailong.storage.votes.VoteTable;
+import tech.devgao.hailong.util.SSZTypes.SSZList;
+import tech.devgao.hailong.util.config.Constants;
+
+class ProtoArrayForkChoiceStrategyTest {
+
+  private static final int SEED = 2478;
+  private static final UnsignedLong EPOCH_0 = UnsignedLong.ZERO;
+  private static final UnsignedLong EPOCH_1 = UnsignedLong.ONE;
+
+  private final Bytes32 genesisRoot = randomBytes32(SEED);
+  private final Checkpoint genesisCheckpoint = new Checkpoint(EPOCH_0, genesisRoot);
+  private final ReadOnlyStore store = mock(ReadOnlyStore.class);
+
+  private final ProtoArrayForkChoiceStrategy strategy =
+      ProtoArrayForkChoiceStrategy.create(
+          genesisCheckpoint,
+          genesisCheckpoint,
+          Map.of(genesisRoot, blockMetadata(0, Bytes32.ZERO)),
+          new VoteTable());
+
+  @Test
+  public void findHead_shouldFollowVotesMovingToAnotherBranch() {
+    final Bytes32 blockA = randomBytes32(SEED + 1);
+    final Bytes32 blockB = randomBytes32(SEED + 2);
+    strategy.onBlock(blockA, blockMetadata(1, genesisRoot));
+    strategy.onBlock(blockB, blockMetadata(1, genesisRoot));
+    setJustified(genesisCheckpoint, stateWithBalances(10, 10, 10));
+
+    strategy.processAttestation(UnsignedLong.valueOf(0), blockA, EPOCH_0);
+    strategy.processAttestation(UnsignedLong.valueOf(1), blockA, EPOCH_0);
+    strategy.processAttestation(UnsignedLong.valueOf(2), blockB, EPOCH_0);
+    assertThat(strategy.findHead(store)).isEqualTo(blockA);
+
+    // A vote for an older target doesn't replace the latest message
+    strategy.processAttestation(UnsignedLong.valueOf(1), blockB, EPOCH_0);
+    assertThat(strategy.findHead(store)).isEqualTo(blockA);
+
+    strategy.processAttestation(UnsignedLong.valueOf(1), blockB, EPOCH_1);
+    assertThat(strategy.findHead(store)).isEqualTo(blockB);
+  }
+
+  @Test
+  public void findHead_shouldUseBalancesOfNewJustifiedCheckpoint() {
+    final Bytes32 commonAncestor = randomBytes32(SEED + 1);
+    final Bytes32 blockA = randomBytes32(SEED + 2);
+    final Bytes32 blockB = randomBytes32(SEED + 3);
+    strategy.onBlock(commonAncestor, blockMetadata(1, genesisRoot));
+    strategy.onBlock(blockA, blockMetadata(2, commonAncestor));
+    strategy.onBlock(blockB, blockMetadata(2, commonAncestor));
+
+    strategy.processAttestation(UnsignedLong.valueOf(0), blockA, EPOCH_0);
+    strategy.processAttestation(UnsignedLong.valueOf(1), blockB, EPOCH_0);
+    strategy.processAttestation(UnsignedLong.valueOf(2), blockB, EPOCH_0);
+    setJustified(genesisCheckpoint, stateWithBalances(10, 10, 10));
+    assertThat(strategy.findHead(store)).isEqualTo(blockB);
+
+    // Validator 0 outweighs the other two in the new justified state
+    setJustified(new Checkpoint(EPOCH_0, commonAncestor), stateWithBalances(50, 10, 10));
+    assertThat(strategy.findHead(store)).isEqualTo(blockA);
+  }
+
+  private void setJustified(final Checkpoint checkpoint, final BeaconState state) {
+    when(store.getJustifiedCheckpoint()).thenReturn(checkpoint);
+    when(store.getFinalizedCheckpoint()).thenReturn(genesisCheckpoint);
+    when(store.getCheckpointState(checkpoint)).thenReturn(state);
+  }
+
+  private BeaconState stateWithBalances(final long... effectiveBalances) {
+    final List<Validator> validators = new ArrayList<>();
+    for (int i = 0; i < effectiveBalances.length; i++) {
+      final Validator validator = randomValidator(SEED + i);
+      validator.setActivation_epoch(EPOCH_0);
+      validator.setEffective_balance(UnsignedLong.valueOf(effectiveBalances[i]));
+      validators.add(validator);
+    }
+    final BeaconState state = new BeaconState();
+    state.setValidators(
+        new SSZList<>(validators, Constants.VALIDATOR_REGISTRY_LIMIT, Validator.class));
+    return state;
+  }
+
+  private BlockMetadata blockMetadata(final long slot, final Bytes32 parentRoot) {
+    return new BlockMetadata(
+        UnsignedLong.valueOf(slot),
+        parentRoot,
+        randomBytes32(SEED + 100 + slot),
+        Optional.of(EPOCH_0),
+        Optional.of(EPOCH_0));
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2020 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.storage.protoarray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.google.common.primitives.UnsignedLong;
+import org.apache.tuweni.bytes.Bytes32;
+import org.junit.jupiter.api.Test;
+
+class ProtoArrayTest {
+
+  private static final UnsignedLong EPOCH_0 = UnsignedLong.ZERO;
+  private static final UnsignedLong EPOCH_1 = UnsignedLong.ONE;
+  private static final Bytes32 GENESIS = root(0);
+
+  private final ProtoArray protoArray = new ProtoArray(0, EPOCH_0, EPOCH_0);
+
+  @Test
+  public void findHead_shouldReturnJustifiedRootWhenNoChildren() {
+    addBlock(0, GENESIS, Bytes32.ZERO);
+    applyDeltas(0);
+    assertThat(protoArray.findHead(GENESIS)).isEqualTo(GENESIS);
+  }
+
+  @Test
+  public void findHead_shouldFollowLongestChainWithoutVotes() {
+    addBlock(0, GENESIS, Bytes32.ZERO);
+    addBlock(1, root(1), GENESIS);
+    addBlock(2, root(2), root(1));
+    applyDeltas(0, 0, 0);
+    assertThat(protoArray.findHead(GENESIS)).isEqualTo(root(2));
+  }
+
+  @Test
+  public void findHead_shouldBreakTiesByHigherRoot() {
+    addBlock(0, GENESIS, Bytes32.ZERO);
+    addBlock(1, root(1), GENESIS);
+    addBlock(1, root(2), GENESIS);
+    applyDeltas(0, 0, 0);
+    assertThat(protoArray.findHead(GENESIS)).isEqualTo(root(2));
+  }
+
+  @Test
+  public void findHead_shouldFollowHeaviestBranch() {
+    addBlock(0, GENESIS, Bytes32.ZERO);
+    addBlock(1, root(1), GENESIS);
+    addBlock(1, root(2), GENESIS);
+    addBlock(2, root(3), root(1));
+    applyDeltas(0, 0, 0, 10);
+    assertThat(protoArray.findHead(GENESIS)).isEqualTo(root(3));
+    assertThat(protoArray.getNode(root(1)).orElseThrow().getWeight()).isEqualTo(10);
+    assertThat(protoArray.getNode(GENESIS).orElseThrow().getWeight()).isEqualTo(10);
+
+    // Move the weight over to the other branch
+    applyDeltas(0, 0, 20, -10);
+    assertThat(protoArray.findHead(GENESIS)).isEqualTo(root(2));
+    assertThat(protoArray.getNode(root(1)).orElseThrow().getWeight()).isEqualTo(0);
+    assertThat(protoArray.getNode(GENESIS).orElseThrow().getWeight()).isEqualTo(20);
+  }
+
+  @Test
+  public void findHead_shouldIgnoreBranchesWithDifferentJustifiedEpoch() {
+    addBlock(0, GENESIS, Bytes32.ZERO);
+    addBlock(1, root(1), GENESIS);
+    protoArray.onBlock(UnsignedLong.valueOf(1), root(2), GENESIS, Bytes32.ZERO, EPOCH_1, EPOCH_0);
+    applyDeltas(0, 0, 100);
+    assertThat(protoArray.findHead(GENESIS)).isEqualTo(root(2));
+
+    protoArray.applyScoreChanges(new long[3], EPOCH_1, EPOCH_0);
+    assertThat(protoArray.findHead(GENESIS)).isEqualTo(root(2));
+
+    protoArray.applyScoreChanges(new long[3], UnsignedLong.valueOf(2), EPOCH_0);
+    assertThat(protoArray.findHead(GENESIS)).isEqualTo(GENESIS);
+  }
+
+  @Test
+  public void applyScoreChanges_shouldRejectNegativeWeight() {
+    addBlock(0, GENESIS, Bytes32.ZERO);
+    assertThatThrownBy(() -> applyDeltas(-1)).isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  public void maybePrune_shouldRemoveNodesBeforeFinalizedBlock() {
+    addBlock(0, GENESIS, Bytes32.ZERO);
+    addBlock(1, root(1), GENESIS);
+    addBlock(2, root(2), root(1));
+    addBlock(3, root(3), root(2));
+    applyDeltas(0, 0, 0, 0);
+
+    protoArray.maybePrune(root(2));
+
+    assertThat(protoArray.getNodes()).hasSize(2);
+    assertThat(protoArray.contains(GENESIS)).isFalse();
+    assertThat(protoArray.contains(root(1))).isFalse();
+    assertThat(protoArray.getNode(root(2)).orElseThrow().getParentIndex()).isEmpty();
+    assertThat(protoArray.getNode(root(3)).orElseThrow().getParentIndex()).contains(0);
+    assertThat(protoArray.findHead(root(2))).isEqualTo(root(3));
+  }
+
+  @Test
+  public void maybePrune_shouldRemoveForksOfFinalizedBlock() {
+    addBlock(0, GENESIS, Bytes32.ZERO);
+    addBlock(1, root(1), GENESIS);
+    addBlock(1, root(2), GENESIS);
+    addBlock(2, root(3), root(1));
+    addBlock(2, root(4), root(2));
+    addBlock(3, root(5), root(3));
+    applyDeltas(0, 0, 0, 0, 0, 0);
+
+    protoArray.maybePrune(root(1));
+
+    assertThat(protoArray.getNodes()).hasSize(3);
+    assertThat(protoArray.contains(root(2))).isFalse();
+    assertThat(protoArray.contains(root(4))).isFalse();
+    assertThat(protoArray.getNode(root(1)).orElseThrow().getParentIndex()).isEmpty();
+    assertThat(protoArray.getNode(root(3)).orElseThrow().getParentIndex()).contains(0);
+    assertThat(protoArray.getNode(root(5)).orElseThrow().getParentIndex()).contains(1);
+    assertThat(protoArray.findHead(root(1))).isEqualTo(root(5));
+  }
+
+  private void addBlock(final long slot, final Bytes32 blockRoot, final Bytes32 parentRoot) {
+    protoArray.onBlock(
+        UnsignedLong.valueOf(slot), blockRoot, parentRoot, Bytes32.ZERO, EPOCH_0, EPOCH_0);
+  }
+
+  private void applyDeltas(final long... deltas) {
+    protoArray.applyScoreChanges(deltas, EPOCH_0, EPOCH_0);
+  }
+
+  private static Bytes32 root(final int value) {
+    return Bytes32.fromHexStringLenient(Integer.toHexString(value + 1));
+  }
+}
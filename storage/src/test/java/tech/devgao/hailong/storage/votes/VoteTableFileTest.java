@@ -0,0 +1,88 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.storage.votes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.primitives.UnsignedLong;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.junit.TempDirectory;
+import org.apache.tuweni.junit.TempDirectoryExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import tech.devgao.hailong.datastructures.state.Checkpoint;
+
+@ExtendWith(TempDirectoryExtension.class)
+class VoteTableFileTest {
+  private static final Bytes32 ROOT1 = Bytes32.fromHexStringLenient("0x01");
+  private static final Bytes32 ROOT2 = Bytes32.fromHexStringLenient("0x02");
+
+  @Test
+  public void shouldReloadWrittenVotes(@TempDirectory final Path tempDir) throws IOException {
+    final Path file = tempDir.resolve("votes.dat");
+    try (VoteTableFile votes = VoteTableFile.open(file)) {
+      votes.write(2, 4, ROOT1);
+      votes.write(10, 5, ROOT2);
+      votes.write(2, 6, ROOT2);
+    }
+
+    try (VoteTableFile votes = VoteTableFile.open(file)) {
+      final VoteTable table = votes.load();
+      assertThat(table.get(2)).contains(new Checkpoint(UnsignedLong.valueOf(6), ROOT2));
+      assertThat(table.get(10)).contains(new Checkpoint(UnsignedLong.valueOf(5), ROOT2));
+      assertThat(table.contains(0)).isFalse();
+      assertThat(table.contains(3)).isFalse();
+      assertThat(table.getValidatorCount()).isEqualTo(11);
+    }
+  }
+
+  @Test
+  public void shouldIgnoreCorruptRecords(@TempDirectory final Path tempDir) throws IOException {
+    final Path file = tempDir.resolve("votes.dat");
+    try (VoteTableFile votes = VoteTableFile.open(file)) {
+      votes.write(0, 4, ROOT1);
+      votes.write(1, 5, ROOT2);
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      // Tear the epoch of the second record
+      channel.write(ByteBuffer.wrap(new byte[] {9}), VoteTableFile.RECORD_SIZE);
+    }
+
+    try (VoteTableFile votes = VoteTableFile.open(file)) {
+      final VoteTable table = votes.load();
+      assertThat(table.get(0)).contains(new Checkpoint(UnsignedLong.valueOf(4), ROOT1));
+      assertThat(table.contains(1)).isFalse();
+    }
+  }
+
+  @Test
+  public void shouldWriteWholeTable(@TempDirectory final Path tempDir) throws IOException {
+    final VoteTable table = new VoteTable();
+    table.put(1, 2, ROOT1);
+    table.put(4, 3, ROOT2);
+    final Path file = tempDir.resolve("votes.dat");
+    try (VoteTableFile votes = VoteTableFile.open(file)) {
+      votes.writeAll(table);
+    }
+
+    try (VoteTableFile votes = VoteTableFile.open(file)) {
+      assertThat(votes.load()).isEqualTo(table);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.storage.votes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.primitives.UnsignedLong;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.tuweni.bytes.Bytes32;
+import org.junit.jupiter.api.Test;
+import tech.devgao.hailong.datastructures.state.Checkpoint;
+
+class VoteTableTest {
+  private static final Bytes32 ROOT1 = Bytes32.fromHexStringLenient("0x01");
+  private static final Bytes32 ROOT2 = Bytes32.fromHexStringLenient("0x02");
+
+  private final VoteTable table = new VoteTable();
+
+  @Test
+  public void shouldRecordLatestMessageOfEachValidator() {
+    table.put(0, 3, ROOT1);
+    table.put(1000, 4, ROOT2);
+    table.put(0, 5, ROOT2);
+
+    assertThat(table.get(0)).contains(new Checkpoint(UnsignedLong.valueOf(5), ROOT2));
+    assertThat(table.get(1000)).contains(new Checkpoint(UnsignedLong.valueOf(4), ROOT2));
+    assertThat(table.contains(1)).isFalse();
+    assertThat(table.get(1)).isEmpty();
+    assertThat(table.get(5000)).isEmpty();
+    assertThat(table.getValidatorCount()).isEqualTo(1001);
+  }
+
+  @Test
+  public void shouldReturnEpochOfLatestMessage() {
+    table.put(2, 7, ROOT1);
+
+    assertThat(table.getEpoch(2)).isEqualTo(7);
+    assertThat(table.getEpoch(1)).isEqualTo(VoteTable.NO_VOTE);
+    assertThat(table.getEpoch(5000)).isEqualTo(VoteTable.NO_VOTE);
+  }
+
+  @Test
+  public void shouldVisitVotesInValidatorOrder() {
+    table.put(7, 2, ROOT1);
+    table.put(2, 1, ROOT2);
+    final List<Integer> validators = new ArrayList<>();
+    table.forEach((validatorIndex, epoch, root) -> validators.add(validatorIndex));
+
+    assertThat(validators).containsExactly(2, 7);
+  }
+
+  @Test
+  public void shouldDropRootsNoLongerVotedFor() {
+    for (int i = 0; i < 2000; i++) {
+      table.put(0, i, root(i));
+    }
+    table.put(1, 1, ROOT1);
+
+    assertThat(table.getRootCount()).isLessThan(2000);
+    assertThat(table.get(0)).contains(new Checkpoint(UnsignedLong.valueOf(1999), root(1999)));
+    assertThat(table.get(1)).contains(new Checkpoint(UnsignedLong.ONE, ROOT1));
+  }
+
+  @Test
+  public void shouldCopyIndependently() {
+    table.put(3, 1, ROOT1);
+    final VoteTable copy = table.copy();
+    table.put(3, 2, ROOT2);
+
+    assertThat(copy.get(3)).contains(new Checkpoint(UnsignedLong.ONE, ROOT1));
+    assertThat(copy).isNotEqualTo(table);
+  }
+
+  @Test
+  public void shouldBeEqualWhenVotesMatch() {
+    table.put(3, 1, ROOT1);
+    final VoteTable other =
+        VoteTable.create(Map.of(UnsignedLong.valueOf(3), new Checkpoint(UnsignedLong.ONE, ROOT1)));
+
+    assertThat(other).isEqualTo(table);
+    assertThat(other.hashCode()).isEqualTo(table.hashCode());
+  }
+
+  private Bytes32 root(final int value) {
+    return Bytes32.fromHexStringLenient("0x" + Integer.toHexString(value + 0x100));
+  }
+}
@@ -24,6 +24,8 @@ import org.apache.tuweni.bytes.Bytes32;
 import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
 import tech.devgao.hailong.datastructures.operations.AggregateAndProof;
 import tech.devgao.hailong.datastructures.operations.Attestation;
+import tech.devgao.hailong.networking.eth2.gossip.events.GossipedAggregateEvent;
+import tech.devgao.hailong.networking.eth2.gossip.events.GossipedAttestationEvent;
 import tech.devgao.hailong.service.serviceutils.Service;
 import tech.devgao.hailong.statetransition.StateTransition;
 import tech.devgao.hailong.statetransition.attestation.AttestationProcessingResult;
@@ -68,19 +70,42 @@ public class AttestationManager extends Service {
 
   @Subscribe
   @SuppressWarnings("unused")
-  private void onGossipedAttestation(final Attestation attestation) {
-    processAttestation(
-        new DelayableAttestation(
-            attestation, () -> eventBus.post(new ProcessedAttestationEvent(attestation))));
+  private void onAttestation(final Attestation attestation) {
+    onAttestation(attestation, false);
+  }
+
+  @Subscribe
+  @SuppressWarnings("unused")
+  private void onGossipedAttestation(final GossipedAttestationEvent event) {
+    onAttestation(event.getAttestation(), true);
   }
 
   @Subscribe
   @SuppressWarnings("unused")
   private void onAggregateAndProof(final AggregateAndProof aggregateAndProof) {
-    final Attestation aggregate = aggregateAndProof.getAggregate();
+    onAggregate(aggregateAndProof.getAggregate(), false);
+  }
+
+  @Subscribe
+  @SuppressWarnings("unused")
+  private void onGossipedAggregate(final GossipedAggregateEvent event) {
+    onAggregate(event.getAggregateAndProof().getAggregate(), true);
+  }
+
+  private void onAttestation(final Attestation attestation, final boolean signatureVerified) {
+    processAttestation(
+        new DelayableAttestation(
+            attestation,
+            signatureVerified,
+            () -> eventBus.post(new ProcessedAttestationEvent(attestation))));
+  }
+
+  private void onAggregate(final Attestation aggregate, final boolean signatureVerified) {
     processAttestation(
         new DelayableAttestation(
-            aggregate, () -> eventBus.post(new ProcessedAggregateEvent(aggregate))));
+            aggregate,
+            signatureVerified,
+            () -> eventBus.post(new ProcessedAggregateEvent(aggregate))));
   }
 
   @Subscribe
@@ -107,8 +132,12 @@ public class AttestationManager extends Service {
     if (pendingAttestations.contains(delayableAttestation)) {
       return;
     }
+    final Attestation attestation = delayableAttestation.getAttestation();
+    // Gossip validation has already batch-verified the signature, so don't check it again
     final AttestationProcessingResult result =
-        attestationProcessor.processAttestation(delayableAttestation.getAttestation());
+        delayableAttestation.isSignatureVerified()
+            ? attestationProcessor.processVerifiedAttestation(attestation)
+            : attestationProcessor.processAttestation(attestation);
     if (result.isSuccessful()) {
       LOG.trace("Processed attestation {} successfully", delayableAttestation::hash_tree_root);
       delayableAttestation.onAttestationProcessedSuccessfully();
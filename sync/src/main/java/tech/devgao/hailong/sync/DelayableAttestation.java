@@ -20,11 +20,15 @@ import tech.devgao.hailong.datastructures.operations.Attestation;
 
 public class DelayableAttestation {
   private final Attestation attestation;
+  private final boolean signatureVerified;
   private final Runnable onSuccessfulProcessing;
 
   public DelayableAttestation(
-      final Attestation attestation, final Runnable onSuccessfulProcessing) {
+      final Attestation attestation,
+      final boolean signatureVerified,
+      final Runnable onSuccessfulProcessing) {
     this.attestation = attestation;
+    this.signatureVerified = signatureVerified;
     this.onSuccessfulProcessing = onSuccessfulProcessing;
   }
 
@@ -32,6 +36,10 @@ public class DelayableAttestation {
     return attestation;
   }
 
+  boolean isSignatureVerified() {
+    return signatureVerified;
+  }
+
   void onAttestationProcessedSuccessfully() {
     onSuccessfulProcessing.run();
   }
@@ -15,24 +15,18 @@ package tech.devgao.hailong.sync;
 
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
 import org.apache.tuweni.bytes.Bytes32;
-import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
 import tech.devgao.hailong.networking.eth2.Eth2Network;
 import tech.devgao.hailong.networking.eth2.peers.Eth2Peer;
 import tech.devgao.hailong.networking.p2p.peer.NodeId;
-import tech.devgao.hailong.sync.FetchBlockTask.FetchBlockResult.Status;
-import tech.devgao.hailong.util.async.SafeFuture;
 
+/** Tracks the peers which have been asked for a missing block and how often it was requested. */
 class FetchBlockTask {
-  private static final Logger LOG = LogManager.getLogger();
   private static final Comparator<Eth2Peer> SHUFFLING_COMPARATOR =
       Comparator.comparing(p -> Math.random());
 
@@ -64,69 +58,31 @@ class FetchBlockTask {
     return Math.max(0, numberOfRuns.get() - 1);
   }
 
-  public SafeFuture<FetchBlockResult> run() {
-    if (cancelled.get()) {
-      return SafeFuture.completedFuture(FetchBlockResult.createFailed(Status.CANCELLED));
-    }
+  public boolean isCancelled() {
+    return cancelled.get();
+  }
 
-    final Optional<Eth2Peer> maybePeer =
-        eth2Network
-            .streamPeers()
-            .filter(p -> !queriedPeers.contains(p.getId()))
-            .min(
-                Comparator.comparing(Eth2Peer::getOutstandingRequests)
-                    .thenComparing(SHUFFLING_COMPARATOR));
+  /**
+   * Selects the least busy peer which hasn't been asked for this block yet.
+   *
+   * @return the peer to request the block from, or empty if every peer has been tried
+   */
+  public Optional<Eth2Peer> selectPeer() {
+    return eth2Network
+        .streamPeers()
+        .filter(p -> !hasQueried(p))
+        .min(
+            Comparator.comparing(Eth2Peer::getOutstandingRequests)
+                .thenComparing(SHUFFLING_COMPARATOR));
+  }
 
-    if (maybePeer.isEmpty()) {
-      return SafeFuture.completedFuture(FetchBlockResult.createFailed(Status.NO_AVAILABLE_PEERS));
-    }
-    final Eth2Peer peer = maybePeer.get();
+  public boolean hasQueried(final Eth2Peer peer) {
+    return queriedPeers.contains(peer.getId());
+  }
 
+  /** Records that the block has been requested from {@code peer}. */
+  public void onRequestSent(final Eth2Peer peer) {
     numberOfRuns.incrementAndGet();
     queriedPeers.add(peer.getId());
-    return peer.requestBlockByRoot(blockRoot)
-        .thenApply(FetchBlockResult::createSuccessful)
-        .exceptionally(
-            err -> {
-              LOG.debug("Failed to fetch block " + blockRoot, err);
-              return FetchBlockResult.createFailed(Status.FETCH_FAILED);
-            });
-  }
-
-  static final class FetchBlockResult {
-    public enum Status {
-      SUCCESSFUL,
-      NO_AVAILABLE_PEERS,
-      CANCELLED,
-      FETCH_FAILED
-    }
-
-    private final Status status;
-    private final Optional<SignedBeaconBlock> block;
-
-    private FetchBlockResult(final Status status, final Optional<SignedBeaconBlock> block) {
-      this.status = status;
-      this.block = block;
-    }
-
-    public static FetchBlockResult createSuccessful(SignedBeaconBlock block) {
-      return new FetchBlockResult(Status.SUCCESSFUL, Optional.of(block));
-    }
-
-    public static FetchBlockResult createFailed(Status failureStatus) {
-      return new FetchBlockResult(failureStatus, Optional.empty());
-    }
-
-    public boolean isSuccessful() {
-      return status == Status.SUCCESSFUL;
-    }
-
-    public SignedBeaconBlock getBlock() throws NoSuchElementException {
-      return block.orElseThrow();
-    }
-
-    public Status getStatus() {
-      return status;
-    }
   }
 }
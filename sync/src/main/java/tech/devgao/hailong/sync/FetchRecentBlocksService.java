@@ -15,8 +15,12 @@ package tech.devgao.hailong.sync;
 
 import com.google.common.annotations.VisibleForTesting;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -26,8 +30,8 @@ import org.apache.logging.log4j.Logger;
 import org.apache.tuweni.bytes.Bytes32;
 import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
 import tech.devgao.hailong.networking.eth2.Eth2Network;
+import tech.devgao.hailong.networking.eth2.peers.Eth2Peer;
 import tech.devgao.hailong.service.serviceutils.Service;
-import tech.devgao.hailong.sync.FetchBlockTask.FetchBlockResult;
 import tech.devgao.hailong.util.async.AsyncRunner;
 import tech.devgao.hailong.util.async.DelayedExecutorAsyncRunner;
 import tech.devgao.hailong.util.async.SafeFuture;
@@ -37,17 +41,20 @@ class FetchRecentBlocksService extends Service {
   private static final Logger LOG = LogManager.getLogger();
 
   private static final int MAX_CONCURRENT_REQUESTS = 3;
+  private static final int MAX_BLOCKS_PER_REQUEST = 64;
   private static final Duration WAIT_FOR_PEERS_DURATION = Duration.ofSeconds(30);
   private static final RetryDelayFunction RETRY_DELAY_FUNCTION =
       RetryDelayFunction.createExponentialRetry(2, Duration.ofSeconds(5), Duration.ofMinutes(5));
 
   private final int maxConcurrentRequests;
+  private final int maxBlocksPerRequest;
   private final Eth2Network eth2Network;
   private final PendingPool<SignedBeaconBlock> pendingBlocksPool;
 
   private final Map<Bytes32, FetchBlockTask> allTasks = new ConcurrentHashMap<>();
   private final Queue<FetchBlockTask> pendingTasks = new ConcurrentLinkedQueue<>();
   private final Collection<FetchBlockTask> activeTasks = new ConcurrentLinkedQueue<>();
+  private int activeRequests = 0;
 
   private final FetchBlockTaskFactory fetchBlockTaskFactory;
   private final Subscribers<BlockSubscriber> blockSubscribers = Subscribers.create(true);
@@ -58,9 +65,11 @@ class FetchRecentBlocksService extends Service {
       final Eth2Network eth2Network,
       final PendingPool<SignedBeaconBlock> pendingBlocksPool,
       final FetchBlockTaskFactory fetchBlockTaskFactory,
-      final int maxConcurrentRequests) {
+      final int maxConcurrentRequests,
+      final int maxBlocksPerRequest) {
     this.asyncRunner = asyncRunner;
     this.maxConcurrentRequests = maxConcurrentRequests;
+    this.maxBlocksPerRequest = maxBlocksPerRequest;
     this.eth2Network = eth2Network;
     this.pendingBlocksPool = pendingBlocksPool;
     this.fetchBlockTaskFactory = fetchBlockTaskFactory;
@@ -73,7 +82,8 @@ class FetchRecentBlocksService extends Service {
         eth2Network,
         pendingBlocksPool,
         FetchBlockTask::create,
-        MAX_CONCURRENT_REQUESTS);
+        MAX_CONCURRENT_REQUESTS,
+        MAX_BLOCKS_PER_REQUEST);
   }
 
   @Override
@@ -123,55 +133,88 @@ class FetchRecentBlocksService extends Service {
   }
 
   private synchronized void checkTasks() {
-    // If we have capacity, execute the next task
-    if (activeTasks.size() < maxConcurrentRequests) {
+    // While we have capacity, send the pending tasks to peers in as few requests as possible
+    while (activeRequests < maxConcurrentRequests) {
       final FetchBlockTask nextTask = pendingTasks.poll();
       if (nextTask == null) {
         return;
       }
-      runNextTask(nextTask);
+      if (nextTask.isCancelled()) {
+        LOG.trace("Request for block cancelled: {}.", nextTask.getBlockRoot());
+        removeTask(nextTask);
+        continue;
+      }
+      final Optional<Eth2Peer> peer = nextTask.selectPeer();
+      if (peer.isEmpty()) {
+        // Wait a bit and then requeue
+        queueTaskWithDelay(nextTask, WAIT_FOR_PEERS_DURATION);
+        continue;
+      }
+      runRequest(peer.get(), collectTasksForPeer(nextTask, peer.get()));
     }
   }
 
-  private void runNextTask(final FetchBlockTask task) {
-    registerActiveTask(task);
-    task.run()
-        .thenAccept(res -> processFetchResult(task, res))
-        .exceptionally(
-            (err) -> {
-              LOG.warn("Failed to run " + task.getClass().getSimpleName(), err);
-              return null;
+  private List<FetchBlockTask> collectTasksForPeer(
+      final FetchBlockTask firstTask, final Eth2Peer peer) {
+    final List<FetchBlockTask> tasks = new ArrayList<>();
+    tasks.add(firstTask);
+    final Iterator<FetchBlockTask> pending = pendingTasks.iterator();
+    while (tasks.size() < maxBlocksPerRequest && pending.hasNext()) {
+      final FetchBlockTask task = pending.next();
+      if (!task.isCancelled() && !task.hasQueried(peer)) {
+        pending.remove();
+        tasks.add(task);
+      }
+    }
+    return tasks;
+  }
+
+  private void runRequest(final Eth2Peer peer, final List<FetchBlockTask> tasks) {
+    LOG.trace("Fetch {} blocks from peer {}", tasks.size(), peer);
+    activeRequests++;
+    activeTasks.addAll(tasks);
+    final List<Bytes32> blockRoots = new ArrayList<>(tasks.size());
+    final Map<Bytes32, FetchBlockTask> remainingTasks = new ConcurrentHashMap<>();
+    for (FetchBlockTask task : tasks) {
+      task.onRequestSent(peer);
+      blockRoots.add(task.getBlockRoot());
+      remainingTasks.put(task.getBlockRoot(), task);
+    }
+    peer.requestBlocksByRoot(
+            blockRoots,
+            block -> {
+              final Bytes32 blockRoot = block.getMessage().hash_tree_root();
+              final FetchBlockTask task = remainingTasks.remove(blockRoot);
+              if (task != null) {
+                handleFetchedBlock(task, block);
+              }
             })
-        .always(() -> deregisterActiveTask(task));
+        .finish(
+            () -> onRequestComplete(tasks, remainingTasks.values(), false),
+            err -> {
+              LOG.debug("Failed to fetch blocks from peer " + peer, err);
+              onRequestComplete(tasks, remainingTasks.values(), true);
+            });
   }
 
-  private void processFetchResult(final FetchBlockTask task, final FetchBlockResult result) {
-    switch (result.getStatus()) {
-      case SUCCESSFUL:
-        handleFetchedBlock(task, result.getBlock());
-        break;
-      case NO_AVAILABLE_PEERS:
-        // Wait a bit and then requeue
-        queueTaskWithDelay(task, WAIT_FOR_PEERS_DURATION);
-        break;
-      case FETCH_FAILED:
-        // Push task back onto queue to retry
-        queueTaskWithRetryDelay(task);
-        break;
-      case CANCELLED:
+  private synchronized void onRequestComplete(
+      final List<FetchBlockTask> tasks,
+      final Collection<FetchBlockTask> unfetchedTasks,
+      final boolean failed) {
+    activeRequests--;
+    activeTasks.removeAll(tasks);
+    for (FetchBlockTask task : unfetchedTasks) {
+      if (task.isCancelled()) {
         LOG.trace("Request for block cancelled: {}.", task.getBlockRoot());
         removeTask(task);
-        break;
+      } else if (failed) {
+        // Push task back onto queue to retry
+        queueTaskWithRetryDelay(task);
+      } else {
+        // The peer didn't have this block, so try another peer straight away
+        pendingTasks.add(task);
+      }
     }
-  }
-
-  private void registerActiveTask(FetchBlockTask task) {
-    LOG.trace("Fetch block {}", task.getBlockRoot());
-    activeTasks.add(task);
-  }
-
-  private void deregisterActiveTask(FetchBlockTask task) {
-    activeTasks.remove(task);
     checkTasks();
   }
 
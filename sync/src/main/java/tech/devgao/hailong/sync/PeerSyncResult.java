@@ -17,7 +17,6 @@ enum PeerSyncResult {
   SUCCESSFUL_SYNC,
   FAULTY_ADVERTISEMENT,
   CANCELLED,
-  BAD_BLOCK,
   IMPORT_FAILED,
   IMPORT_STALLED
 }
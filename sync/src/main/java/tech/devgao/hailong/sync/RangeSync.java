@@ -0,0 +1,365 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.sync;
+
+import static tech.devgao.hailong.datastructures.networking.libp2p.rpc.GoodbyeMessage.REASON_FAULT_ERROR;
+import static tech.devgao.hailong.datastructures.util.BeaconStateUtil.compute_start_slot_at_epoch;
+import static tech.devgao.hailong.util.config.Constants.MAX_BLOCK_BY_RANGE_REQUEST_SIZE;
+
+import com.google.common.base.Throwables;
+import com.google.common.primitives.UnsignedLong;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
+import tech.devgao.hailong.networking.eth2.peers.Eth2Peer;
+import tech.devgao.hailong.networking.eth2.rpc.core.InvalidResponseException;
+import tech.devgao.hailong.networking.eth2.rpc.core.ResponseStream.ResponseListener;
+import tech.devgao.hailong.statetransition.blockimport.BlockImportResult;
+import tech.devgao.hailong.statetransition.blockimport.BlockImportResult.FailureReason;
+import tech.devgao.hailong.statetransition.blockimport.BlockImporter;
+import tech.devgao.hailong.storage.ChainStorageClient;
+import tech.devgao.hailong.util.async.AsyncRunner;
+import tech.devgao.hailong.util.async.DelayedExecutorAsyncRunner;
+import tech.devgao.hailong.util.async.SafeFuture;
+
+/**
+ * Syncs the chain from our finalized slot to the best head advertised by a set of peers.
+ *
+ * <p>The range is split into fixed-size batches of slots. Every peer downloads one batch at a
+ * time, so batches are fetched from all peers concurrently, while a single import thread imports
+ * the downloaded batches in slot order. Only a bounded number of batches are tracked at once, so a
+ * slow batch holds back downloads rather than letting blocks build up in memory.
+ *
+ * <p>A peer whose request fails, or whose blocks don't attach to the chain, takes no further part
+ * in the sync and its batch is retried on another peer. A peer which sends an invalid block is
+ * also disconnected. When the first block of a batch doesn't attach, the previous batch may have
+ * been truncated instead, so that batch is downloaded again from another peer first and the peer
+ * which withheld its blocks is dropped.
+ */
+public class RangeSync {
+  private static final Logger LOG = LogManager.getLogger();
+  private static final UnsignedLong STEP = UnsignedLong.ONE;
+  private static final UnsignedLong DEFAULT_BATCH_SIZE = UnsignedLong.valueOf(64);
+  private static final int DEFAULT_MAX_PENDING_BATCHES = 16;
+
+  private final AtomicBoolean stopped = new AtomicBoolean(false);
+  private final ChainStorageClient storageClient;
+  private final BlockImporter blockImporter;
+  private final AsyncRunner asyncRunner;
+  private final Executor importExecutor;
+  private final UnsignedLong batchSize;
+  private final int maxPendingBatches;
+
+  RangeSync(
+      final ChainStorageClient storageClient,
+      final BlockImporter blockImporter,
+      final AsyncRunner asyncRunner,
+      final Executor importExecutor,
+      final UnsignedLong batchSize,
+      final int maxPendingBatches) {
+    this.storageClient = storageClient;
+    this.blockImporter = blockImporter;
+    this.asyncRunner = asyncRunner;
+    this.importExecutor = importExecutor;
+    this.batchSize = batchSize;
+    this.maxPendingBatches = maxPendingBatches;
+  }
+
+  public static RangeSync create(
+      final ChainStorageClient storageClient, final BlockImporter blockImporter) {
+    final Executor importExecutor =
+        Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("sync-import").build());
+    final UnsignedLong batchSize =
+        DEFAULT_BATCH_SIZE.compareTo(MAX_BLOCK_BY_RANGE_REQUEST_SIZE) > 0
+            ? MAX_BLOCK_BY_RANGE_REQUEST_SIZE
+            : DEFAULT_BATCH_SIZE;
+    return new RangeSync(
+        storageClient,
+        blockImporter,
+        new DelayedExecutorAsyncRunner(),
+        importExecutor,
+        batchSize,
+        DEFAULT_MAX_PENDING_BATCHES);
+  }
+
+  public SafeFuture<PeerSyncResult> sync(final Collection<Eth2Peer> peers) {
+    LOG.debug("Start syncing from {} peers", peers.size());
+    // Begin requesting blocks at our first non-finalized slot
+    final UnsignedLong finalizedEpoch = storageClient.getFinalizedEpoch();
+    final UnsignedLong latestFinalizedSlot = compute_start_slot_at_epoch(finalizedEpoch);
+    final UnsignedLong firstNonFinalSlot = latestFinalizedSlot.plus(UnsignedLong.ONE);
+
+    return new SyncRun(peers, firstNonFinalSlot)
+        .start()
+        .whenComplete(
+            (res, err) -> {
+              if (err != null) {
+                LOG.debug("Failed to sync from peers {}: {}", peers, err);
+              } else {
+                LOG.debug("Finished syncing (with status {}) from peers {}", res.name(), peers);
+              }
+            });
+  }
+
+  public void stop() {
+    stopped.set(true);
+  }
+
+  private void disconnectFromPeer(final Eth2Peer peer) {
+    peer.sendGoodbye(REASON_FAULT_ERROR).reportExceptions();
+  }
+
+  /** The state of a single sync, guarded by its own lock. */
+  private class SyncRun {
+    private final Collection<Eth2Peer> advertisingPeers;
+    private final Set<Eth2Peer> peers;
+    private final Set<Eth2Peer> busyPeers = new HashSet<>();
+    private final Deque<SyncBatch> batches = new ArrayDeque<>();
+    private final UnsignedLong targetSlot;
+    private final SafeFuture<PeerSyncResult> result = new SafeFuture<>();
+    private UnsignedLong nextBatchStartSlot;
+    private SyncBatch lastImportedBatch;
+    private boolean importing = false;
+
+    private SyncRun(final Collection<Eth2Peer> peers, final UnsignedLong startSlot) {
+      this.advertisingPeers = peers;
+      this.peers = new HashSet<>(peers);
+      this.nextBatchStartSlot = startSlot;
+      this.targetSlot =
+          peers.stream()
+              .map(peer -> peer.getStatus().getHeadSlot())
+              .max(Comparator.naturalOrder())
+              .orElse(UnsignedLong.ZERO);
+    }
+
+    private synchronized SafeFuture<PeerSyncResult> start() {
+      update();
+      return result;
+    }
+
+    private synchronized void update() {
+      if (result.isDone()) {
+        return;
+      }
+      if (stopped.get()) {
+        result.complete(PeerSyncResult.CANCELLED);
+        return;
+      }
+      createBatches();
+      if (batches.isEmpty()) {
+        completeSync();
+        return;
+      }
+      requestBatches();
+      importNextBatch();
+      if (!importing && busyPeers.isEmpty()) {
+        // No remaining peer is able to provide the next batch
+        LOG.debug("Unable to download blocks from slot {}", batches.getFirst().getStartSlot());
+        result.complete(PeerSyncResult.IMPORT_STALLED);
+      }
+    }
+
+    private void createBatches() {
+      while (batches.size() < maxPendingBatches && nextBatchStartSlot.compareTo(targetSlot) <= 0) {
+        final UnsignedLong remainingSlots =
+            targetSlot.minus(nextBatchStartSlot).plus(UnsignedLong.ONE);
+        final UnsignedLong count =
+            remainingSlots.compareTo(batchSize) > 0 ? batchSize : remainingSlots;
+        batches.addLast(new SyncBatch(nextBatchStartSlot, count));
+        nextBatchStartSlot = nextBatchStartSlot.plus(count);
+      }
+    }
+
+    private void requestBatches() {
+      // Responses may be handled immediately and remove failed peers, so iterate over a copy
+      for (Eth2Peer peer : new ArrayList<>(peers)) {
+        if (!peers.contains(peer) || busyPeers.contains(peer)) {
+          continue;
+        }
+        batches.stream()
+            .filter(batch -> batch.getState() == SyncBatch.State.PENDING)
+            .filter(batch -> batch.canDownloadFrom(peer))
+            .filter(batch -> peer.getStatus().getHeadSlot().compareTo(batch.getStartSlot()) >= 0)
+            .findFirst()
+            .ifPresent(batch -> requestBatch(peer, batch));
+      }
+    }
+
+    private void requestBatch(final Eth2Peer peer, final SyncBatch batch) {
+      LOG.trace("Request batch {} from peer {}", batch, peer);
+      busyPeers.add(peer);
+      batch.onDownloadStarted(peer);
+      final List<SignedBeaconBlock> blocks = new ArrayList<>();
+      peer.requestBlocksByRange(
+              peer.getStatus().getHeadRoot(),
+              batch.getStartSlot(),
+              batch.getCount(),
+              STEP,
+              blockResponseListener(batch, blocks))
+          .finish(
+              () -> onBatchDownloaded(peer, batch, blocks),
+              error -> onBatchDownloadFailed(peer, batch, error));
+    }
+
+    private ResponseListener<SignedBeaconBlock> blockResponseListener(
+        final SyncBatch batch, final List<SignedBeaconBlock> blocks) {
+      return block -> {
+        if (stopped.get()) {
+          throw new CancellationException("Range sync was cancelled");
+        }
+        final UnsignedLong slot = block.getMessage().getSlot();
+        if (!batch.containsSlot(slot)
+            || (!blocks.isEmpty()
+                && slot.compareTo(blocks.get(blocks.size() - 1).getMessage().getSlot()) <= 0)) {
+          throw new InvalidResponseException("Received unexpected block at slot " + slot);
+        }
+        blocks.add(block);
+      };
+    }
+
+    private synchronized void onBatchDownloaded(
+        final Eth2Peer peer, final SyncBatch batch, final List<SignedBeaconBlock> blocks) {
+      busyPeers.remove(peer);
+      batch.onDownloadComplete(blocks);
+      update();
+    }
+
+    private synchronized void onBatchDownloadFailed(
+        final Eth2Peer peer, final SyncBatch batch, final Throwable error) {
+      LOG.debug("Failed to download batch {} from peer {}: {}", batch, peer, error);
+      busyPeers.remove(peer);
+      peers.remove(peer);
+      batch.reset();
+      update();
+    }
+
+    private void importNextBatch() {
+      final SyncBatch batch = batches.getFirst();
+      if (importing || batch.getState() != SyncBatch.State.DOWNLOADED) {
+        return;
+      }
+      importing = true;
+      batch.onImportStarted();
+      asyncRunner
+          .runAsync(() -> importBlocks(batch), importExecutor)
+          .finish(() -> onBatchImported(batch), error -> onBatchImportFailed(batch, error));
+    }
+
+    private SafeFuture<Void> importBlocks(final SyncBatch batch) {
+      for (SignedBeaconBlock block : batch.getBlocks()) {
+        if (stopped.get()) {
+          return SafeFuture.failedFuture(new CancellationException("Range sync was cancelled"));
+        }
+        final BlockImportResult result = blockImporter.importBlock(block);
+        LOG.trace("Block import result for block at {}: {}", block.getMessage().getSlot(), result);
+        if (!result.isSuccessful()) {
+          return SafeFuture.failedFuture(new FailedBlockImportException(block, result));
+        }
+        batch.onBlockImported(block.getMessage().getSlot());
+      }
+      return SafeFuture.completedFuture(null);
+    }
+
+    private synchronized void onBatchImported(final SyncBatch batch) {
+      importing = false;
+      batches.remove(batch);
+      batch
+          .getPreviousAttempt()
+          .filter(previous -> previous.getBlocks().size() < batch.getBlocks().size())
+          .ifPresent(
+              previous -> {
+                LOG.debug("Peer {} withheld blocks from batch {}", previous.getPeer(), batch);
+                peers.remove(previous.getPeer());
+              });
+      lastImportedBatch = batch;
+      update();
+    }
+
+    private synchronized void onBatchImportFailed(final SyncBatch batch, final Throwable error) {
+      importing = false;
+      final Throwable rootException = Throwables.getRootCause(error);
+      if (rootException instanceof FailedBlockImportException) {
+        handleFailedImport(batch, (FailedBlockImportException) rootException);
+      } else if (!(rootException instanceof CancellationException)) {
+        result.completeExceptionally(error);
+      }
+      update();
+    }
+
+    private void handleFailedImport(
+        final SyncBatch batch, final FailedBlockImportException importException) {
+      final Eth2Peer peer = batch.getPeer();
+      final FailureReason reason = importException.getResult().getFailureReason();
+      final SignedBeaconBlock block = importException.getBlock();
+      LOG.warn("Failed to import block from peer {}: {}", peer, block);
+      if (reason == FailureReason.FAILED_STATE_TRANSITION) {
+        LOG.debug("Disconnecting from peer ({}) who sent invalid block: {}", peer, block);
+        disconnectFromPeer(peer);
+      } else if (reason != FailureReason.UNKNOWN_PARENT) {
+        result.complete(PeerSyncResult.IMPORT_FAILED);
+        return;
+      } else if (shouldRefetchPreviousBatch(batch, block)) {
+        // The previous batch may have been empty or truncated, so download it again from another
+        // peer before deciding which of the two peers is at fault
+        LOG.debug("Refetching batch {} before retrying batch {}", lastImportedBatch, batch);
+        batches.addFirst(SyncBatch.refetch(lastImportedBatch));
+        lastImportedBatch = null;
+        batch.reset();
+        return;
+      }
+      // An unknown parent may only mean the peer follows a different fork to the peers which
+      // provided earlier batches, so it isn't disconnected but the batch is retried elsewhere
+      peers.remove(peer);
+      batch.reset();
+    }
+
+    private boolean shouldRefetchPreviousBatch(
+        final SyncBatch batch, final SignedBeaconBlock block) {
+      return lastImportedBatch != null
+          && lastImportedBatch.getPreviousAttempt().isEmpty()
+          && batch.getBlocks().get(0).equals(block);
+    }
+
+    private void completeSync() {
+      final UnsignedLong ourFinalizedEpoch = storageClient.getFinalizedEpoch();
+      boolean reachedAdvertisedFinalizedEpoch = true;
+      for (Eth2Peer peer : advertisingPeers) {
+        if (peer.getStatus().getFinalizedEpoch().compareTo(ourFinalizedEpoch) > 0) {
+          reachedAdvertisedFinalizedEpoch = false;
+          if (peers.contains(peer)) {
+            disconnectFromPeer(peer);
+          }
+        }
+      }
+      result.complete(
+          reachedAdvertisedFinalizedEpoch
+              ? PeerSyncResult.SUCCESSFUL_SYNC
+              : PeerSyncResult.FAULTY_ADVERTISEMENT);
+    }
+  }
+}
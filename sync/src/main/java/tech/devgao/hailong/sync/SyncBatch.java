@@ -0,0 +1,141 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.sync;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.primitives.UnsignedLong;
+import java.util.List;
+import java.util.Optional;
+import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
+import tech.devgao.hailong.networking.eth2.peers.Eth2Peer;
+
+/** A fixed range of slots which is downloaded from a single peer and imported as a unit. */
+class SyncBatch {
+  enum State {
+    PENDING,
+    DOWNLOADING,
+    DOWNLOADED,
+    IMPORTING
+  }
+
+  private final UnsignedLong firstSlot;
+  private final UnsignedLong endSlot;
+  private final Optional<SyncBatch> previousAttempt;
+  private UnsignedLong startSlot;
+  private State state = State.PENDING;
+  private Eth2Peer peer;
+  private List<SignedBeaconBlock> blocks = List.of();
+
+  SyncBatch(final UnsignedLong startSlot, final UnsignedLong count) {
+    this(startSlot, startSlot.plus(count).minus(UnsignedLong.ONE), Optional.empty());
+  }
+
+  private SyncBatch(
+      final UnsignedLong startSlot,
+      final UnsignedLong endSlot,
+      final Optional<SyncBatch> previousAttempt) {
+    this.firstSlot = startSlot;
+    this.startSlot = startSlot;
+    this.endSlot = endSlot;
+    this.previousAttempt = previousAttempt;
+  }
+
+  /**
+   * Creates a batch which downloads the whole range of an already imported batch again, from any
+   * peer other than the one which provided it.
+   */
+  static SyncBatch refetch(final SyncBatch importedBatch) {
+    return new SyncBatch(
+        importedBatch.firstSlot, importedBatch.endSlot, Optional.of(importedBatch));
+  }
+
+  UnsignedLong getStartSlot() {
+    return startSlot;
+  }
+
+  UnsignedLong getEndSlot() {
+    return endSlot;
+  }
+
+  UnsignedLong getCount() {
+    return endSlot.minus(startSlot).plus(UnsignedLong.ONE);
+  }
+
+  boolean containsSlot(final UnsignedLong slot) {
+    return slot.compareTo(startSlot) >= 0 && slot.compareTo(endSlot) <= 0;
+  }
+
+  boolean canDownloadFrom(final Eth2Peer peer) {
+    return previousAttempt.map(previous -> !peer.equals(previous.getPeer())).orElse(true);
+  }
+
+  /** Returns the imported batch this batch downloads again, if it is a refetch. */
+  Optional<SyncBatch> getPreviousAttempt() {
+    return previousAttempt;
+  }
+
+  State getState() {
+    return state;
+  }
+
+  Eth2Peer getPeer() {
+    return peer;
+  }
+
+  List<SignedBeaconBlock> getBlocks() {
+    return blocks;
+  }
+
+  void onDownloadStarted(final Eth2Peer peer) {
+    checkState(state == State.PENDING, "Batch %s is already being downloaded", this);
+    this.state = State.DOWNLOADING;
+    this.peer = peer;
+  }
+
+  void onDownloadComplete(final List<SignedBeaconBlock> blocks) {
+    checkState(state == State.DOWNLOADING, "Batch %s is not being downloaded", this);
+    this.state = State.DOWNLOADED;
+    this.blocks = blocks;
+  }
+
+  void onImportStarted() {
+    checkState(state == State.DOWNLOADED, "Batch %s has not been downloaded", this);
+    this.state = State.IMPORTING;
+  }
+
+  /** Records that a block from this batch was imported, so a retry won't request it again. */
+  void onBlockImported(final UnsignedLong slot) {
+    startSlot = slot.plus(UnsignedLong.ONE);
+  }
+
+  /** Returns the batch to the pending state so its remaining slots can be downloaded again. */
+  void reset() {
+    this.state = State.PENDING;
+    this.peer = null;
+    this.blocks = List.of();
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("startSlot", startSlot)
+        .add("endSlot", endSlot)
+        .add("state", state)
+        .add("peer", peer)
+        .add("refetch", previousAttempt.isPresent())
+        .toString();
+  }
+}
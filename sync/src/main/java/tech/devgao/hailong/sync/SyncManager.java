@@ -17,8 +17,8 @@ import static tech.devgao.hailong.util.async.SafeFuture.completedFuture;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.primitives.UnsignedLong;
-import java.util.Comparator;
-import java.util.Optional;
+import java.util.List;
+import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import tech.devgao.hailong.networking.eth2.Eth2Network;
@@ -32,24 +32,26 @@ public class SyncManager extends Service {
   private static final Logger LOG = LogManager.getLogger();
   private final Eth2Network network;
   private final ChainStorageClient storageClient;
-  private final PeerSync peerSync;
+  private final RangeSync rangeSync;
 
   private boolean syncActive = false;
   private boolean syncQueued = false;
   private volatile long peerConnectSubscriptionId;
 
   SyncManager(
-      final Eth2Network network, final ChainStorageClient storageClient, final PeerSync peerSync) {
+      final Eth2Network network,
+      final ChainStorageClient storageClient,
+      final RangeSync rangeSync) {
     this.network = network;
     this.storageClient = storageClient;
-    this.peerSync = peerSync;
+    this.rangeSync = rangeSync;
   }
 
   public static SyncManager create(
       final Eth2Network network,
       final ChainStorageClient storageClient,
       final BlockImporter blockImporter) {
-    return new SyncManager(network, storageClient, new PeerSync(storageClient, blockImporter));
+    return new SyncManager(network, storageClient, RangeSync.create(storageClient, blockImporter));
   }
 
   @Override
@@ -65,7 +67,7 @@ public class SyncManager extends Service {
     synchronized (this) {
       syncQueued = false;
     }
-    peerSync.stop();
+    rangeSync.stop();
     return completedFuture(null);
   }
 
@@ -106,12 +108,12 @@ public class SyncManager extends Service {
   }
 
   private SafeFuture<Void> executeSync() {
-    return findBestSyncPeer().map(this::syncToPeer).orElseGet(() -> completedFuture(null));
-  }
-
-  private SafeFuture<Void> syncToPeer(final Eth2Peer syncPeer) {
-    return peerSync
-        .sync(syncPeer)
+    final List<Eth2Peer> syncPeers = findSyncPeers();
+    if (syncPeers.isEmpty()) {
+      return completedFuture(null);
+    }
+    return rangeSync
+        .sync(syncPeers)
         .thenCompose(
             result -> {
               if (result != PeerSyncResult.SUCCESSFUL_SYNC) {
@@ -122,11 +124,8 @@ public class SyncManager extends Service {
             });
   }
 
-  private Optional<Eth2Peer> findBestSyncPeer() {
-    return network
-        .streamPeers()
-        .filter(this::isPeerSyncSuitable)
-        .max(Comparator.comparing(p -> p.getStatus().getFinalizedEpoch()));
+  private List<Eth2Peer> findSyncPeers() {
+    return network.streamPeers().filter(this::isPeerSyncSuitable).collect(Collectors.toList());
   }
 
   private void onNewPeer(Eth2Peer peer) {
@@ -36,6 +36,8 @@ import tech.devgao.hailong.datastructures.operations.Attestation;
 import tech.devgao.hailong.datastructures.operations.AttestationData;
 import tech.devgao.hailong.datastructures.state.Checkpoint;
 import tech.devgao.hailong.datastructures.util.DataStructureUtil;
+import tech.devgao.hailong.networking.eth2.gossip.events.GossipedAggregateEvent;
+import tech.devgao.hailong.networking.eth2.gossip.events.GossipedAttestationEvent;
 import tech.devgao.hailong.statetransition.attestation.AttestationProcessingResult;
 import tech.devgao.hailong.statetransition.attestation.ForkChoiceAttestationProcessor;
 import tech.devgao.hailong.statetransition.events.BlockImportedEvent;
@@ -105,6 +107,30 @@ class AttestationManagerTest {
     assertThat(processedAttestationEvents).isEmpty();
   }
 
+  @Test
+  public void shouldNotReverifySignatureOfGossipedAttestations() {
+    final Attestation attestation = DataStructureUtil.randomAttestation(seed++);
+    when(attestationProcessor.processVerifiedAttestation(attestation)).thenReturn(SUCCESSFUL);
+    eventBus.post(new GossipedAttestationEvent(attestation));
+
+    verify(attestationProcessor).processVerifiedAttestation(attestation);
+    verifyNoMoreInteractions(attestationProcessor);
+    assertThat(processedAttestationEvents)
+        .containsExactly(new ProcessedAttestationEvent(attestation));
+  }
+
+  @Test
+  public void shouldNotReverifySignatureOfGossipedAggregates() {
+    final AggregateAndProof aggregateAndProof = DataStructureUtil.randomAggregateAndProof(seed++);
+    final Attestation aggregate = aggregateAndProof.getAggregate();
+    when(attestationProcessor.processVerifiedAttestation(aggregate)).thenReturn(SUCCESSFUL);
+    eventBus.post(new GossipedAggregateEvent(aggregateAndProof));
+
+    verify(attestationProcessor).processVerifiedAttestation(aggregate);
+    verifyNoMoreInteractions(attestationProcessor);
+    assertThat(processedAggregateEvents).containsExactly(new ProcessedAggregateEvent(aggregate));
+  }
+
   @Test
   public void shouldDeferProcessingForAttestationsThatHaveNotYetReachedTargetSlot() {
     final Attestation attestation = attestationFromSlot(100);
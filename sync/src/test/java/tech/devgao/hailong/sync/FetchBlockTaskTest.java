@@ -22,19 +22,16 @@ import java.util.List;
 import org.apache.tuweni.bytes.Bytes32;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
 import tech.devgao.hailong.datastructures.util.DataStructureUtil;
 import tech.devgao.hailong.networking.eth2.Eth2Network;
 import tech.devgao.hailong.networking.eth2.peers.Eth2Peer;
 import tech.devgao.hailong.networking.p2p.mock.MockNodeId;
-import tech.devgao.hailong.sync.FetchBlockTask.FetchBlockResult;
-import tech.devgao.hailong.sync.FetchBlockTask.FetchBlockResult.Status;
-import tech.devgao.hailong.util.async.SafeFuture;
 
 public class FetchBlockTaskTest {
 
   final Eth2Network eth2Network = mock(Eth2Network.class);
   final List<Eth2Peer> peers = new ArrayList<>();
+  final Bytes32 blockRoot = DataStructureUtil.randomBytes32(1);
 
   @BeforeEach
   public void setup() {
@@ -42,134 +39,70 @@ public class FetchBlockTaskTest {
   }
 
   @Test
-  public void run_successful() {
-    final SignedBeaconBlock block = DataStructureUtil.randomSignedBeaconBlock(10, 1);
-    final Bytes32 blockRoot = block.getMessage().hash_tree_root();
+  public void create() {
     FetchBlockTask task = FetchBlockTask.create(eth2Network, blockRoot);
     assertThat(task.getBlockRoot()).isEqualTo(blockRoot);
-
-    final Eth2Peer peer = registerNewPeer();
-    when(peer.requestBlockByRoot(blockRoot)).thenReturn(SafeFuture.completedFuture(block));
-
-    final SafeFuture<FetchBlockResult> result = task.run();
-    assertThat(result).isDone();
-    final FetchBlockResult fetchBlockResult = result.getNow(null);
-    assertThat(fetchBlockResult.isSuccessful()).isTrue();
-    assertThat(fetchBlockResult.getBlock()).isEqualTo(block);
+    assertThat(task.getNumberOfRetries()).isEqualTo(0);
+    assertThat(task.isCancelled()).isFalse();
   }
 
   @Test
-  public void run_noPeers() {
-    final SignedBeaconBlock block = DataStructureUtil.randomSignedBeaconBlock(10, 1);
-    final Bytes32 blockRoot = block.getMessage().hash_tree_root();
+  public void selectPeer_noPeers() {
     FetchBlockTask task = FetchBlockTask.create(eth2Network, blockRoot);
 
-    final SafeFuture<FetchBlockResult> result = task.run();
-    assertThat(result).isDone();
-    final FetchBlockResult fetchBlockResult = result.getNow(null);
-    assertThat(fetchBlockResult.isSuccessful()).isFalse();
-    assertThat(fetchBlockResult.getStatus()).isEqualTo(Status.NO_AVAILABLE_PEERS);
+    assertThat(task.selectPeer()).isEmpty();
   }
 
   @Test
-  public void run_failAndRetryWithNoNewPeers() {
-    final SignedBeaconBlock block = DataStructureUtil.randomSignedBeaconBlock(10, 1);
-    final Bytes32 blockRoot = block.getMessage().hash_tree_root();
+  public void selectPeer_failAndRetryWithNoNewPeers() {
     FetchBlockTask task = FetchBlockTask.create(eth2Network, blockRoot);
+    final Eth2Peer peer = registerNewPeer(0);
 
-    final Eth2Peer peer = registerNewPeer();
-    when(peer.requestBlockByRoot(blockRoot))
-        .thenReturn(SafeFuture.failedFuture(new RuntimeException("whoops")));
-
-    final SafeFuture<FetchBlockResult> result = task.run();
-    assertThat(result).isDone();
-    final FetchBlockResult fetchBlockResult = result.getNow(null);
-    assertThat(fetchBlockResult.isSuccessful()).isFalse();
-    assertThat(fetchBlockResult.getStatus()).isEqualTo(Status.FETCH_FAILED);
+    assertThat(task.selectPeer()).contains(peer);
+    task.onRequestSent(peer);
+    assertThat(task.hasQueried(peer)).isTrue();
     assertThat(task.getNumberOfRetries()).isEqualTo(0);
 
     // Retry
-    final SafeFuture<FetchBlockResult> result2 = task.run();
-    assertThat(result).isDone();
-    final FetchBlockResult fetchBlockResult2 = result2.getNow(null);
-    assertThat(fetchBlockResult2.isSuccessful()).isFalse();
-    assertThat(fetchBlockResult2.getStatus()).isEqualTo(Status.NO_AVAILABLE_PEERS);
-    assertThat(task.getNumberOfRetries()).isEqualTo(0);
+    assertThat(task.selectPeer()).isEmpty();
   }
 
   @Test
-  public void run_failAndRetryWithNewPeer() {
-    final SignedBeaconBlock block = DataStructureUtil.randomSignedBeaconBlock(10, 1);
-    final Bytes32 blockRoot = block.getMessage().hash_tree_root();
+  public void selectPeer_failAndRetryWithNewPeer() {
     FetchBlockTask task = FetchBlockTask.create(eth2Network, blockRoot);
-
-    final Eth2Peer peer = registerNewPeer();
-    when(peer.requestBlockByRoot(blockRoot))
-        .thenReturn(SafeFuture.failedFuture(new RuntimeException("whoops")));
-
-    final SafeFuture<FetchBlockResult> result = task.run();
-    assertThat(result).isDone();
-    final FetchBlockResult fetchBlockResult = result.getNow(null);
-    assertThat(fetchBlockResult.isSuccessful()).isFalse();
-    assertThat(fetchBlockResult.getStatus()).isEqualTo(Status.FETCH_FAILED);
-    assertThat(task.getNumberOfRetries()).isEqualTo(0);
+    final Eth2Peer peer = registerNewPeer(0);
+    task.onRequestSent(peer);
 
     // Add another peer
-    final Eth2Peer peer2 = registerNewPeer();
-    when(peer2.requestBlockByRoot(blockRoot)).thenReturn(SafeFuture.completedFuture(block));
+    final Eth2Peer peer2 = registerNewPeer(0);
 
     // Retry
-    final SafeFuture<FetchBlockResult> result2 = task.run();
-    assertThat(result).isDone();
-    final FetchBlockResult fetchBlockResult2 = result2.getNow(null);
-    assertThat(fetchBlockResult2.isSuccessful()).isTrue();
-    assertThat(fetchBlockResult2.getBlock()).isEqualTo(block);
+    assertThat(task.selectPeer()).contains(peer2);
+    task.onRequestSent(peer2);
     assertThat(task.getNumberOfRetries()).isEqualTo(1);
   }
 
   @Test
-  public void run_withMultiplesPeersAvailable() {
-    final SignedBeaconBlock block = DataStructureUtil.randomSignedBeaconBlock(10, 1);
-    final Bytes32 blockRoot = block.getMessage().hash_tree_root();
+  public void selectPeer_withMultiplesPeersAvailable() {
     FetchBlockTask task = FetchBlockTask.create(eth2Network, blockRoot);
+    registerNewPeer(1);
+    final Eth2Peer peer2 = registerNewPeer(0);
 
-    final Eth2Peer peer = registerNewPeer();
-    when(peer.requestBlockByRoot(blockRoot))
-        .thenReturn(SafeFuture.failedFuture(new RuntimeException("whoops")));
-    when(peer.getOutstandingRequests()).thenReturn(1);
-    // Add another peer
-    final Eth2Peer peer2 = registerNewPeer();
-    when(peer2.requestBlockByRoot(blockRoot)).thenReturn(SafeFuture.completedFuture(block));
-    when(peer2.getOutstandingRequests()).thenReturn(0);
-
-    // We should choose the peer that is less busy, which successfully returns the block
-    final SafeFuture<FetchBlockResult> result = task.run();
-    assertThat(result).isDone();
-    final FetchBlockResult fetchBlockResult = result.getNow(null);
-    assertThat(fetchBlockResult.isSuccessful()).isTrue();
-    assertThat(fetchBlockResult.getBlock()).isEqualTo(block);
+    // We should choose the peer that is less busy
+    assertThat(task.selectPeer()).contains(peer2);
   }
 
   @Test
   public void cancel() {
-    final SignedBeaconBlock block = DataStructureUtil.randomSignedBeaconBlock(10, 1);
-    final Bytes32 blockRoot = block.getMessage().hash_tree_root();
     FetchBlockTask task = FetchBlockTask.create(eth2Network, blockRoot);
 
-    final Eth2Peer peer = registerNewPeer();
-    when(peer.requestBlockByRoot(blockRoot)).thenReturn(SafeFuture.completedFuture(block));
-
     task.cancel();
-    final SafeFuture<FetchBlockResult> result = task.run();
-    assertThat(result).isDone();
-    final FetchBlockResult fetchBlockResult = result.getNow(null);
-    assertThat(fetchBlockResult.isSuccessful()).isFalse();
-    assertThat(fetchBlockResult.getStatus()).isEqualTo(Status.CANCELLED);
+    assertThat(task.isCancelled()).isTrue();
   }
 
-  private Eth2Peer registerNewPeer() {
+  private Eth2Peer registerNewPeer(final int outstandingRequests) {
     final Eth2Peer peer = mock(Eth2Peer.class);
-    when(peer.getOutstandingRequests()).thenReturn(0);
+    when(peer.getOutstandingRequests()).thenReturn(outstandingRequests);
     when(peer.getId()).thenReturn(new MockNodeId());
 
     peers.add(peer);
@@ -17,8 +17,6 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.never;
-import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
@@ -28,14 +26,13 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
-import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
 import tech.devgao.hailong.datastructures.util.DataStructureUtil;
 import tech.devgao.hailong.networking.eth2.Eth2Network;
-import tech.devgao.hailong.sync.FetchBlockTask.FetchBlockResult;
-import tech.devgao.hailong.sync.FetchBlockTask.FetchBlockResult.Status;
-import tech.devgao.hailong.sync.FetchRecentBlocksService.FetchBlockTaskFactory;
+import tech.devgao.hailong.networking.eth2.peers.Eth2Peer;
+import tech.devgao.hailong.networking.eth2.rpc.core.ResponseStream.ResponseListener;
+import tech.devgao.hailong.networking.p2p.mock.MockNodeId;
 import tech.devgao.hailong.util.async.SafeFuture;
 import tech.devgao.hailong.util.async.StubAsyncRunner;
 
@@ -44,13 +41,13 @@ public class FetchRecentBlocksServiceTest {
 
   @Mock private Eth2Network eth2Network;
   @Mock private PendingPool<SignedBeaconBlock> pendingBlocksPool;
-  @Mock private FetchBlockTaskFactory fetchBlockTaskFactory;
 
   private final int maxConcurrentRequests = 2;
+  private final int maxBlocksPerRequest = 3;
   private final StubAsyncRunner asyncRunner = new StubAsyncRunner();
 
-  private final List<FetchBlockTask> tasks = new ArrayList<>();
-  private final List<SafeFuture<FetchBlockResult>> taskFutures = new ArrayList<>();
+  private final List<Eth2Peer> peers = new ArrayList<>();
+  private final List<BlocksByRootRequest> requests = new ArrayList<>();
   private final List<SignedBeaconBlock> importedBlocks = new ArrayList<>();
 
   private FetchRecentBlocksService recentBlockFetcher;
@@ -62,39 +59,27 @@ public class FetchRecentBlocksServiceTest {
             asyncRunner,
             eth2Network,
             pendingBlocksPool,
-            fetchBlockTaskFactory,
-            maxConcurrentRequests);
+            FetchBlockTask::create,
+            maxConcurrentRequests,
+            maxBlocksPerRequest);
 
-    lenient().when(fetchBlockTaskFactory.create(any(), any())).thenAnswer(this::createMockTask);
+    lenient().when(eth2Network.streamPeers()).thenAnswer(invocation -> peers.stream());
     recentBlockFetcher.subscribeBlockFetched(importedBlocks::add);
   }
 
-  private FetchBlockTask createMockTask(final InvocationOnMock invocationOnMock) {
-    Bytes32 blockRoot = invocationOnMock.getArgument(1);
-    final FetchBlockTask task = mock(FetchBlockTask.class);
-
-    lenient().when(task.getBlockRoot()).thenReturn(blockRoot);
-    lenient().when(task.getNumberOfRetries()).thenReturn(0);
-    final SafeFuture<FetchBlockResult> future = new SafeFuture<>();
-    lenient().when(task.run()).thenReturn(future);
-    taskFutures.add(future);
-
-    tasks.add(task);
-
-    return task;
-  }
-
   @Test
   public void fetchSingleBlockSuccessfully() {
-    final Bytes32 root = DataStructureUtil.randomBytes32(1);
-    recentBlockFetcher.requestRecentBlock(root);
+    final Eth2Peer peer = registerNewPeer(0);
+    final SignedBeaconBlock block = DataStructureUtil.randomSignedBeaconBlock(1, 1);
+    recentBlockFetcher.requestRecentBlock(blockRoot(block));
 
     assertTaskCounts(1, 1, 0);
     assertThat(importedBlocks).isEmpty();
 
-    final SafeFuture<FetchBlockResult> future = taskFutures.get(0);
-    final SignedBeaconBlock block = DataStructureUtil.randomSignedBeaconBlock(1, 1);
-    future.complete(FetchBlockResult.createSuccessful(block));
+    final BlocksByRootRequest request = requests.get(0);
+    assertThat(request.peer).isEqualTo(peer);
+    assertThat(request.blockRoots).containsExactly(blockRoot(block));
+    request.respond(block);
 
     assertThat(importedBlocks).containsExactly(block);
     assertTaskCounts(0, 0, 0);
@@ -102,16 +87,15 @@ public class FetchRecentBlocksServiceTest {
 
   @Test
   public void handleDuplicateRequiredBlocks() {
-    final Bytes32 root = DataStructureUtil.randomBytes32(1);
-    recentBlockFetcher.requestRecentBlock(root);
-    recentBlockFetcher.requestRecentBlock(root);
+    registerNewPeer(0);
+    final SignedBeaconBlock block = DataStructureUtil.randomSignedBeaconBlock(1, 1);
+    recentBlockFetcher.requestRecentBlock(blockRoot(block));
+    recentBlockFetcher.requestRecentBlock(blockRoot(block));
 
     assertTaskCounts(1, 1, 0);
-    assertThat(importedBlocks).isEmpty();
+    assertThat(requests).hasSize(1);
 
-    final SafeFuture<FetchBlockResult> future = taskFutures.get(0);
-    final SignedBeaconBlock block = DataStructureUtil.randomSignedBeaconBlock(1, 1);
-    future.complete(FetchBlockResult.createSuccessful(block));
+    requests.get(0).respond(block);
 
     assertThat(importedBlocks).containsExactly(block);
     assertTaskCounts(0, 0, 0);
@@ -129,66 +113,58 @@ public class FetchRecentBlocksServiceTest {
 
   @Test
   public void cancelBlockRequest() {
+    registerNewPeer(0);
     final Bytes32 root = DataStructureUtil.randomBytes32(1);
     recentBlockFetcher.requestRecentBlock(root);
     recentBlockFetcher.cancelRecentBlockRequest(root);
 
-    verify(tasks.get(0)).cancel();
-    // Manually cancel future
-    taskFutures.get(0).complete(FetchBlockResult.createFailed(Status.CANCELLED));
+    requests.get(0).respond();
 
-    // Task should be removed
+    // Task should be removed rather than retried
     assertTaskCounts(0, 0, 0);
+    assertThat(asyncRunner.hasDelayedActions()).isFalse();
     assertThat(importedBlocks).isEmpty();
   }
 
   @Test
   public void fetchSingleBlockWithRetry() {
+    registerNewPeer(0);
     final Bytes32 root = DataStructureUtil.randomBytes32(1);
     recentBlockFetcher.requestRecentBlock(root);
 
     assertTaskCounts(1, 1, 0);
-    assertThat(importedBlocks).isEmpty();
 
-    final SafeFuture<FetchBlockResult> future = taskFutures.get(0);
-    future.complete(FetchBlockResult.createFailed(Status.FETCH_FAILED));
+    requests.get(0).future.completeExceptionally(new RuntimeException("whoops"));
 
     // Task should be queued for a retry via the scheduled executor
-    verify(tasks.get(0)).getNumberOfRetries();
     assertThat(asyncRunner.countDelayedActions()).isEqualTo(1);
     assertTaskCounts(1, 0, 0);
 
-    // Executor should requeue task
-    when(tasks.get(0).run()).thenReturn(new SafeFuture<>());
+    // Executor should requeue task, which is sent to a peer that hasn't been asked yet
+    final Eth2Peer peer2 = registerNewPeer(0);
     asyncRunner.executeQueuedActions();
     assertTaskCounts(1, 1, 0);
+    assertThat(requests.get(1).peer).isEqualTo(peer2);
   }
 
   @Test
   public void cancelTaskWhileWaitingToRetry() {
+    registerNewPeer(0);
     final Bytes32 root = DataStructureUtil.randomBytes32(1);
     recentBlockFetcher.requestRecentBlock(root);
 
-    assertTaskCounts(1, 1, 0);
-    assertThat(importedBlocks).isEmpty();
-
-    final SafeFuture<FetchBlockResult> future = taskFutures.get(0);
-    future.complete(FetchBlockResult.createFailed(Status.FETCH_FAILED));
-
-    // Task should be queued for a retry via the scheduled executor
-    verify(tasks.get(0)).getNumberOfRetries();
+    requests.get(0).future.completeExceptionally(new RuntimeException("whoops"));
     assertThat(asyncRunner.countDelayedActions()).isEqualTo(1);
     assertTaskCounts(1, 0, 0);
 
     // Cancel task
     recentBlockFetcher.cancelRecentBlockRequest(root);
-    verify(tasks.get(0)).cancel();
-    when(tasks.get(0).run())
-        .thenReturn(SafeFuture.completedFuture(FetchBlockResult.createFailed(Status.CANCELLED)));
 
-    // Executor should requeue task, it should complete immediately and be removed
+    // Executor should requeue task, it should be removed without sending a request
+    registerNewPeer(0);
     asyncRunner.executeQueuedActions();
     assertTaskCounts(0, 0, 0);
+    assertThat(requests).hasSize(1);
   }
 
   @Test
@@ -196,46 +172,134 @@ public class FetchRecentBlocksServiceTest {
     final Bytes32 root = DataStructureUtil.randomBytes32(1);
     recentBlockFetcher.requestRecentBlock(root);
 
-    assertTaskCounts(1, 1, 0);
-    assertThat(importedBlocks).isEmpty();
-
-    final SafeFuture<FetchBlockResult> future = taskFutures.get(0);
-    future.complete(FetchBlockResult.createFailed(Status.NO_AVAILABLE_PEERS));
-
     // Task should be queued for a retry via the scheduled executor
-    verify(tasks.get(0), never()).getNumberOfRetries();
     assertThat(asyncRunner.countDelayedActions()).isEqualTo(1);
     assertTaskCounts(1, 0, 0);
 
     // Executor should requeue task
-    when(tasks.get(0).run()).thenReturn(new SafeFuture<>());
+    registerNewPeer(0);
     asyncRunner.executeQueuedActions();
     assertTaskCounts(1, 1, 0);
   }
 
   @Test
   public void queueFetchTaskWhenConcurrencyLimitReached() {
+    registerNewPeer(0);
     final int taskCount = maxConcurrentRequests + 1;
+    final List<SignedBeaconBlock> blocks = new ArrayList<>();
     for (int i = 0; i < taskCount; i++) {
-      final Bytes32 root = DataStructureUtil.randomBytes32(1);
-      recentBlockFetcher.requestRecentBlock(root);
+      blocks.add(DataStructureUtil.randomSignedBeaconBlock(i, i));
+      recentBlockFetcher.requestRecentBlock(blockRoot(blocks.get(i)));
     }
 
     assertTaskCounts(taskCount, taskCount - 1, 1);
 
-    // Complete first task
-    final SafeFuture<FetchBlockResult> future = taskFutures.get(0);
-    final SignedBeaconBlock block = DataStructureUtil.randomSignedBeaconBlock(1, 1);
-    future.complete(FetchBlockResult.createSuccessful(block));
+    // Complete first request
+    requests.get(0).respond(blocks.get(0));
 
-    // After first task completes, remaining pending count should become active
+    // After first request completes, remaining pending task should become active
     assertTaskCounts(taskCount - 1, taskCount - 1, 0);
   }
 
+  @Test
+  public void coalescePendingBlocksIntoOneRequest() {
+    registerNewPeer(0);
+    final List<SignedBeaconBlock> blocks = new ArrayList<>();
+    final List<Bytes32> roots = new ArrayList<>();
+    for (int i = 0; i < maxConcurrentRequests + maxBlocksPerRequest + 1; i++) {
+      blocks.add(DataStructureUtil.randomSignedBeaconBlock(i, i));
+      roots.add(blockRoot(blocks.get(i)));
+      recentBlockFetcher.requestRecentBlock(roots.get(i));
+    }
+    assertThat(requests).hasSize(maxConcurrentRequests);
+
+    requests.get(0).respond(blocks.get(0));
+
+    // The next pending blocks are requested together, up to the request limit
+    assertThat(requests).hasSize(maxConcurrentRequests + 1);
+    assertThat(requests.get(maxConcurrentRequests).blockRoots)
+        .containsExactlyElementsOf(
+            roots.subList(maxConcurrentRequests, maxConcurrentRequests + maxBlocksPerRequest));
+    assertTaskCounts(roots.size() - 1, maxBlocksPerRequest + 1, 1);
+  }
+
+  @Test
+  public void redistributeBlocksMissingFromResponse() {
+    final Eth2Peer peer1 = registerNewPeer(0);
+    final Eth2Peer peer2 = registerNewPeer(1);
+    final SignedBeaconBlock block1 = DataStructureUtil.randomSignedBeaconBlock(1, 1);
+    final SignedBeaconBlock block2 = DataStructureUtil.randomSignedBeaconBlock(2, 2);
+    final SignedBeaconBlock block3 = DataStructureUtil.randomSignedBeaconBlock(3, 3);
+    final SignedBeaconBlock block4 = DataStructureUtil.randomSignedBeaconBlock(4, 4);
+    recentBlockFetcher.requestRecentBlock(blockRoot(block1));
+    recentBlockFetcher.requestRecentBlock(blockRoot(block2));
+    recentBlockFetcher.requestRecentBlock(blockRoot(block3));
+    recentBlockFetcher.requestRecentBlock(blockRoot(block4));
+    requests.get(0).respond(block1);
+
+    final BlocksByRootRequest batchRequest = requests.get(2);
+    assertThat(batchRequest.peer).isEqualTo(peer1);
+    assertThat(batchRequest.blockRoots).containsExactly(blockRoot(block3), blockRoot(block4));
+
+    // Peer only has one of the blocks, so the other is requested from the other peer
+    batchRequest.respond(block3);
+
+    final BlocksByRootRequest retryRequest = requests.get(3);
+    assertThat(retryRequest.peer).isEqualTo(peer2);
+    assertThat(retryRequest.blockRoots).containsExactly(blockRoot(block4));
+    assertThat(asyncRunner.hasDelayedActions()).isFalse();
+    assertThat(importedBlocks).containsExactly(block1, block3);
+  }
+
+  private Bytes32 blockRoot(final SignedBeaconBlock block) {
+    return block.getMessage().hash_tree_root();
+  }
+
+  private Eth2Peer registerNewPeer(final int outstandingRequests) {
+    final Eth2Peer peer = mock(Eth2Peer.class);
+    lenient().when(peer.getOutstandingRequests()).thenReturn(outstandingRequests);
+    lenient().when(peer.getId()).thenReturn(new MockNodeId());
+    lenient()
+        .when(peer.requestBlocksByRoot(any(), any()))
+        .thenAnswer(
+            invocation -> {
+              final BlocksByRootRequest request =
+                  new BlocksByRootRequest(
+                      peer, invocation.getArgument(0), invocation.getArgument(1));
+              requests.add(request);
+              return request.future;
+            });
+    peers.add(peer);
+    return peer;
+  }
+
   private void assertTaskCounts(
       final int totalTasks, final int activeTasks, final int queuedTasks) {
     assertThat(recentBlockFetcher.countTrackedTasks()).isEqualTo(totalTasks);
     assertThat(recentBlockFetcher.countActiveTasks()).isEqualTo(activeTasks);
     assertThat(recentBlockFetcher.countPendingTasks()).isEqualTo(queuedTasks);
   }
+
+  private static class BlocksByRootRequest {
+    private final Eth2Peer peer;
+    private final List<Bytes32> blockRoots;
+    private final ResponseListener<SignedBeaconBlock> listener;
+    private final SafeFuture<Void> future = new SafeFuture<>();
+
+    private BlocksByRootRequest(
+        final Eth2Peer peer,
+        final List<Bytes32> blockRoots,
+        final ResponseListener<SignedBeaconBlock> listener) {
+      this.peer = peer;
+      this.blockRoots = blockRoots;
+      this.listener = listener;
+    }
+
+    private void respond(final SignedBeaconBlock... blocks) {
+      for (SignedBeaconBlock block : blocks) {
+        listener.onResponse(block);
+      }
+      future.complete(null);
+    }
+  }
 }
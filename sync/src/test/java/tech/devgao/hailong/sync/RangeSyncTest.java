@@ -0,0 +1,371 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.sync;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.google.common.primitives.UnsignedLong;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import org.apache.tuweni.bytes.Bytes32;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import tech.devgao.hailong.data.BlockProcessingRecord;
+import tech.devgao.hailong.datastructures.blocks.SignedBeaconBlock;
+import tech.devgao.hailong.datastructures.networking.libp2p.rpc.GoodbyeMessage;
+import tech.devgao.hailong.datastructures.networking.libp2p.rpc.StatusMessage;
+import tech.devgao.hailong.datastructures.state.Fork;
+import tech.devgao.hailong.datastructures.util.DataStructureUtil;
+import tech.devgao.hailong.networking.eth2.peers.Eth2Peer;
+import tech.devgao.hailong.networking.eth2.peers.PeerStatus;
+import tech.devgao.hailong.networking.eth2.rpc.core.InvalidResponseException;
+import tech.devgao.hailong.networking.eth2.rpc.core.ResponseStream.ResponseListener;
+import tech.devgao.hailong.statetransition.StateTransitionException;
+import tech.devgao.hailong.statetransition.blockimport.BlockImportResult;
+import tech.devgao.hailong.statetransition.blockimport.BlockImporter;
+import tech.devgao.hailong.storage.ChainStorageClient;
+import tech.devgao.hailong.util.async.SafeFuture;
+import tech.devgao.hailong.util.async.StubAsyncRunner;
+
+public class RangeSyncTest {
+
+  private static final Bytes32 PEER_HEAD_BLOCK_ROOT = Bytes32.fromHexString("0x1234");
+  private static final UnsignedLong PEER_HEAD_SLOT = UnsignedLong.valueOf(30);
+  private static final UnsignedLong PEER_FINALIZED_EPOCH = UnsignedLong.valueOf(3);
+  private static final UnsignedLong BATCH_SIZE = UnsignedLong.valueOf(10);
+
+  private final BlockImporter blockImporter = mock(BlockImporter.class);
+  private final ChainStorageClient storageClient = mock(ChainStorageClient.class);
+  private final StubAsyncRunner asyncRunner = new StubAsyncRunner();
+  private final List<BlocksByRangeRequest> requests = new ArrayList<>();
+
+  private RangeSync rangeSync = createRangeSync(16);
+
+  @BeforeEach
+  public void setUp() {
+    when(storageClient.getFinalizedEpoch()).thenReturn(UnsignedLong.ZERO);
+    // By default set up block import to succeed
+    final BlockProcessingRecord processingRecord = mock(BlockProcessingRecord.class);
+    when(blockImporter.importBlock(any()))
+        .thenReturn(BlockImportResult.successful(processingRecord));
+  }
+
+  @Test
+  void sync_shouldDownloadBatchesConcurrentlyFromAllPeers() {
+    final Eth2Peer peer1 = createPeer();
+    final Eth2Peer peer2 = createPeer();
+
+    final SafeFuture<PeerSyncResult> syncFuture = rangeSync.sync(List.of(peer1, peer2));
+
+    assertThat(syncFuture).isNotDone();
+    assertThat(requests).hasSize(2);
+    assertThat(requests)
+        .extracting(request -> request.startSlot)
+        .containsExactlyInAnyOrder(UnsignedLong.ONE, UnsignedLong.valueOf(11));
+    assertThat(requests).extracting(request -> request.count).containsOnly(BATCH_SIZE);
+    assertThat(requests).extracting(request -> request.peer).containsOnly(peer1, peer2);
+  }
+
+  @Test
+  void sync_shouldOnlyTrackLimitedNumberOfBatches() {
+    rangeSync = createRangeSync(2);
+
+    rangeSync.sync(List.of(createPeer(), createPeer(), createPeer()));
+
+    assertThat(requests).hasSize(2);
+  }
+
+  @Test
+  void sync_shouldImportBatchesInOrder() {
+    rangeSync.sync(List.of(createPeer(), createPeer()));
+
+    final SignedBeaconBlock laterBlock = respond(requestFor(11), 15).get(0);
+    asyncRunner.executeQueuedActions();
+    verifyNoInteractions(blockImporter);
+
+    final SignedBeaconBlock earlierBlock = respond(requestFor(1), 5).get(0);
+    asyncRunner.executeQueuedActions();
+    asyncRunner.executeQueuedActions();
+
+    final InOrder inOrder = inOrder(blockImporter);
+    inOrder.verify(blockImporter).importBlock(earlierBlock);
+    inOrder.verify(blockImporter).importBlock(laterBlock);
+  }
+
+  @Test
+  void sync_shouldRetryFailedBatchOnAnotherPeer() {
+    rangeSync.sync(List.of(createPeer(), createPeer()));
+    final BlocksByRangeRequest failedRequest = requestFor(1);
+    final BlocksByRangeRequest otherRequest = requestFor(11);
+
+    failedRequest.future.completeExceptionally(new IllegalStateException("Peer disconnected"));
+    respond(otherRequest, 12);
+
+    final BlocksByRangeRequest retry = requests.get(requests.size() - 1);
+    assertThat(retry.startSlot).isEqualTo(UnsignedLong.ONE);
+    assertThat(retry.peer).isEqualTo(otherRequest.peer);
+    verify(failedRequest.peer, never()).sendGoodbye(any());
+  }
+
+  @Test
+  void sync_shouldStallWhenNoPeerCanProvideNextBatch() {
+    final SafeFuture<PeerSyncResult> syncFuture = rangeSync.sync(List.of(createPeer()));
+
+    requestFor(1).future.completeExceptionally(new IllegalStateException("Peer disconnected"));
+
+    assertThat(syncFuture).isCompletedWithValue(PeerSyncResult.IMPORT_STALLED);
+  }
+
+  @Test
+  void sync_shouldRejectBlocksOutsideOfBatch() {
+    rangeSync.sync(List.of(createPeer()));
+
+    final ResponseListener<SignedBeaconBlock> listener = requestFor(1).listener;
+    listener.onResponse(DataStructureUtil.randomSignedBeaconBlock(3, 3));
+
+    assertThatThrownBy(() -> listener.onResponse(DataStructureUtil.randomSignedBeaconBlock(2, 2)))
+        .isInstanceOf(InvalidResponseException.class);
+    assertThatThrownBy(() -> listener.onResponse(DataStructureUtil.randomSignedBeaconBlock(11, 11)))
+        .isInstanceOf(InvalidResponseException.class);
+  }
+
+  @Test
+  void sync_failedImport_stateTransitionError() {
+    final BlockImportResult importResult =
+        BlockImportResult.failedStateTransition(new StateTransitionException(null));
+    testFailedBlockImport(importResult, true);
+  }
+
+  @Test
+  void sync_failedImport_unknownParent() {
+    testFailedBlockImport(BlockImportResult.FAILED_UNKNOWN_PARENT, false);
+  }
+
+  @Test
+  void sync_shouldRefetchWithheldBatchFromAnotherPeer() {
+    final SafeFuture<PeerSyncResult> syncFuture =
+        rangeSync.sync(List.of(createPeer(), createPeer()));
+    final BlocksByRangeRequest withheldRequest = requestFor(1);
+    final BlocksByRangeRequest nextRequest = requestFor(11);
+    final Eth2Peer withholdingPeer = withheldRequest.peer;
+    final Eth2Peer honestPeer = nextRequest.peer;
+    final SignedBeaconBlock detachedBlock = DataStructureUtil.randomSignedBeaconBlock(11, 11);
+    when(blockImporter.importBlock(detachedBlock))
+        .thenReturn(BlockImportResult.FAILED_UNKNOWN_PARENT);
+
+    // The first batch is returned empty and so imports without any error
+    respond(withheldRequest);
+    asyncRunner.executeQueuedActions();
+    nextRequest.listener.onResponse(detachedBlock);
+    nextRequest.future.complete(null);
+    asyncRunner.executeQueuedActions();
+
+    // The withheld range is requested again from the peer whose block didn't attach
+    final BlocksByRangeRequest refetch = requests.get(requests.size() - 1);
+    assertThat(refetch.peer).isEqualTo(honestPeer);
+    assertThat(refetch.startSlot).isEqualTo(UnsignedLong.ONE);
+    assertThat(refetch.count).isEqualTo(BATCH_SIZE);
+
+    respond(refetch, 5);
+    asyncRunner.executeQueuedActions();
+
+    // The next batch is then retried on the same peer
+    final BlocksByRangeRequest retry = requests.get(requests.size() - 1);
+    assertThat(retry.peer).isEqualTo(honestPeer);
+    assertThat(retry.startSlot).isEqualTo(UnsignedLong.valueOf(11));
+
+    respond(retry, 11, 15);
+    respond(requestFor(21), 21, 30);
+    when(storageClient.getFinalizedEpoch()).thenReturn(PEER_FINALIZED_EPOCH);
+    asyncRunner.executeQueuedActions();
+    asyncRunner.executeQueuedActions();
+
+    assertThat(syncFuture).isCompletedWithValue(PeerSyncResult.SUCCESSFUL_SYNC);
+    verify(honestPeer, never()).sendGoodbye(any());
+  }
+
+  private void testFailedBlockImport(
+      final BlockImportResult importResult, final boolean shouldDisconnect) {
+    rangeSync.sync(List.of(createPeer(), createPeer()));
+    final BlocksByRangeRequest badRequest = requestFor(1);
+    final BlocksByRangeRequest otherRequest = requestFor(11);
+    final SignedBeaconBlock badBlock = DataStructureUtil.randomSignedBeaconBlock(5, 5);
+    when(blockImporter.importBlock(badBlock)).thenReturn(importResult);
+
+    badRequest.listener.onResponse(DataStructureUtil.randomSignedBeaconBlock(3, 3));
+    badRequest.listener.onResponse(badBlock);
+    badRequest.future.complete(null);
+    asyncRunner.executeQueuedActions();
+    respond(otherRequest);
+
+    if (shouldDisconnect) {
+      verify(badRequest.peer).sendGoodbye(GoodbyeMessage.REASON_FAULT_ERROR);
+    } else {
+      verify(badRequest.peer, never()).sendGoodbye(any());
+    }
+    // Only the slots after the last imported block are requested again, from the other peer
+    final BlocksByRangeRequest retry = requests.get(requests.size() - 1);
+    assertThat(retry.peer).isEqualTo(otherRequest.peer);
+    assertThat(retry.startSlot).isEqualTo(UnsignedLong.valueOf(4));
+    assertThat(retry.count).isEqualTo(UnsignedLong.valueOf(7));
+  }
+
+  @Test
+  void sync_failedImport_blockFromFuture() {
+    final Eth2Peer peer = createPeer();
+    final SafeFuture<PeerSyncResult> syncFuture = rangeSync.sync(List.of(peer));
+    final SignedBeaconBlock block = DataStructureUtil.randomSignedBeaconBlock(5, 5);
+    when(blockImporter.importBlock(block))
+        .thenReturn(BlockImportResult.FAILED_BLOCK_IS_FROM_FUTURE);
+
+    requestFor(1).listener.onResponse(block);
+    requestFor(1).future.complete(null);
+    asyncRunner.executeQueuedActions();
+
+    assertThat(syncFuture).isCompletedWithValue(PeerSyncResult.IMPORT_FAILED);
+    verify(peer, never()).sendGoodbye(any());
+  }
+
+  @Test
+  void sync_stoppedBeforeBlockImport() {
+    final Eth2Peer peer = createPeer();
+    final SafeFuture<PeerSyncResult> syncFuture = rangeSync.sync(List.of(peer));
+
+    rangeSync.stop();
+
+    final BlocksByRangeRequest request = requestFor(1);
+    assertThatThrownBy(
+            () -> request.listener.onResponse(DataStructureUtil.randomSignedBeaconBlock(1, 1)))
+        .isInstanceOf(CancellationException.class);
+    request.future.completeExceptionally(new CancellationException());
+
+    verify(peer, never()).sendGoodbye(any());
+    verifyNoInteractions(blockImporter);
+    assertThat(syncFuture).isCompletedWithValue(PeerSyncResult.CANCELLED);
+  }
+
+  @Test
+  void sync_successfulWhenAdvertisedFinalizedEpochReached() {
+    final Eth2Peer peer = createPeer();
+    final SafeFuture<PeerSyncResult> syncFuture = rangeSync.sync(List.of(peer));
+
+    respond(requestFor(1), 1, 10);
+    respond(requestFor(11), 11, 20);
+    respond(requestFor(21), 21, 30);
+    when(storageClient.getFinalizedEpoch()).thenReturn(PEER_FINALIZED_EPOCH);
+    asyncRunner.executeQueuedActions();
+    asyncRunner.executeQueuedActions();
+    asyncRunner.executeQueuedActions();
+
+    assertThat(syncFuture).isCompletedWithValue(PeerSyncResult.SUCCESSFUL_SYNC);
+    verify(blockImporter, times(6)).importBlock(any());
+    verify(peer, never()).sendGoodbye(any());
+  }
+
+  @Test
+  void sync_badAdvertisedFinalizedEpoch() {
+    final Eth2Peer peer = createPeer();
+    final SafeFuture<PeerSyncResult> syncFuture = rangeSync.sync(List.of(peer));
+
+    respond(requestFor(1));
+    respond(requestFor(11));
+    respond(requestFor(21));
+    asyncRunner.executeQueuedActions();
+    asyncRunner.executeQueuedActions();
+    asyncRunner.executeQueuedActions();
+
+    assertThat(syncFuture).isCompletedWithValue(PeerSyncResult.FAULTY_ADVERTISEMENT);
+    verify(peer).sendGoodbye(GoodbyeMessage.REASON_FAULT_ERROR);
+  }
+
+  private RangeSync createRangeSync(final int maxPendingBatches) {
+    return new RangeSync(
+        storageClient, blockImporter, asyncRunner, Runnable::run, BATCH_SIZE, maxPendingBatches);
+  }
+
+  private Eth2Peer createPeer() {
+    final Eth2Peer peer = mock(Eth2Peer.class);
+    when(peer.getStatus())
+        .thenReturn(
+            PeerStatus.fromStatusMessage(
+                new StatusMessage(
+                    Fork.VERSION_ZERO,
+                    Bytes32.ZERO,
+                    PEER_FINALIZED_EPOCH,
+                    PEER_HEAD_BLOCK_ROOT,
+                    PEER_HEAD_SLOT)));
+    when(peer.sendGoodbye(any())).thenReturn(new SafeFuture<>());
+    when(peer.requestBlocksByRange(any(), any(), any(), any(), any()))
+        .thenAnswer(
+            invocation -> {
+              final BlocksByRangeRequest request =
+                  new BlocksByRangeRequest(
+                      peer,
+                      invocation.getArgument(1),
+                      invocation.getArgument(2),
+                      invocation.getArgument(4));
+              requests.add(request);
+              return request.future;
+            });
+    return peer;
+  }
+
+  private BlocksByRangeRequest requestFor(final long startSlot) {
+    return requests.stream()
+        .filter(request -> request.startSlot.equals(UnsignedLong.valueOf(startSlot)))
+        .findFirst()
+        .orElseThrow();
+  }
+
+  private List<SignedBeaconBlock> respond(final BlocksByRangeRequest request, final int... slots) {
+    final List<SignedBeaconBlock> blocks = new ArrayList<>();
+    for (int slot : slots) {
+      final SignedBeaconBlock block = DataStructureUtil.randomSignedBeaconBlock(slot, slot);
+      blocks.add(block);
+      request.listener.onResponse(block);
+    }
+    request.future.complete(null);
+    return blocks;
+  }
+
+  private static class BlocksByRangeRequest {
+    private final Eth2Peer peer;
+    private final UnsignedLong startSlot;
+    private final UnsignedLong count;
+    private final ResponseListener<SignedBeaconBlock> listener;
+    private final SafeFuture<Void> future = new SafeFuture<>();
+
+    private BlocksByRangeRequest(
+        final Eth2Peer peer,
+        final UnsignedLong startSlot,
+        final UnsignedLong count,
+        final ResponseListener<SignedBeaconBlock> listener) {
+      this.peer = peer;
+      this.startSlot = startSlot;
+      this.count = count;
+      this.listener = listener;
+    }
+  }
+}
@@ -21,6 +21,7 @@ import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import com.google.common.primitives.UnsignedLong;
+import java.util.List;
 import java.util.stream.Stream;
 import org.apache.tuweni.bytes.Bytes32;
 import org.junit.jupiter.api.BeforeEach;
@@ -40,8 +41,8 @@ public class SyncManagerTest {
   private static final long SUBSCRIPTION_ID = 3423;
   private ChainStorageClient storageClient = mock(ChainStorageClient.class);
   private Eth2Network network = mock(Eth2Network.class);
-  private final PeerSync peerSync = mock(PeerSync.class);
-  private SyncManager syncManager = new SyncManager(network, storageClient, peerSync);
+  private final RangeSync rangeSync = mock(RangeSync.class);
+  private SyncManager syncManager = new SyncManager(network, storageClient, rangeSync);
   private final Eth2Peer peer = mock(Eth2Peer.class);
   private static final Bytes32 PEER_HEAD_BLOCK_ROOT = Bytes32.fromHexString("0x1234");
   private static final UnsignedLong PEER_HEAD_SLOT = UnsignedLong.valueOf(20);
@@ -74,7 +75,7 @@ public class SyncManagerTest {
     assertThat(syncManager.start()).isCompleted();
     assertThat(syncManager.isSyncActive()).isFalse();
     assertThat(syncManager.isSyncQueued()).isFalse();
-    verifyNoInteractions(peerSync);
+    verifyNoInteractions(rangeSync);
   }
 
   @Test
@@ -86,7 +87,7 @@ public class SyncManagerTest {
     assertThat(syncManager.start()).isCompleted();
     assertThat(syncManager.isSyncActive()).isFalse();
     assertThat(syncManager.isSyncQueued()).isFalse();
-    verifyNoInteractions(peerSync);
+    verifyNoInteractions(rangeSync);
   }
 
   @Test
@@ -94,13 +95,13 @@ public class SyncManagerTest {
     when(network.streamPeers()).thenReturn(Stream.of(peer));
 
     final SafeFuture<PeerSyncResult> syncFuture = new SafeFuture<>();
-    when(peerSync.sync(peer)).thenReturn(syncFuture);
+    when(rangeSync.sync(List.of(peer))).thenReturn(syncFuture);
 
     assertThat(syncManager.start()).isCompleted();
     assertThat(syncManager.isSyncActive()).isTrue();
     assertThat(syncManager.isSyncQueued()).isFalse();
 
-    verify(peerSync).sync(peer);
+    verify(rangeSync).sync(List.of(peer));
 
     // Signal the peer sync is complete
     syncFuture.complete(PeerSyncResult.SUCCESSFUL_SYNC);
@@ -110,27 +111,50 @@ public class SyncManagerTest {
     assertThat(syncManager.isSyncQueued()).isFalse();
   }
 
+  @Test
+  void sync_shouldSyncFromAllSuitablePeers() {
+    final Eth2Peer peer2 = mock(Eth2Peer.class);
+    final Eth2Peer syncedPeer = mock(Eth2Peer.class);
+    when(peer2.getStatus()).thenReturn(PEER_STATUS);
+    when(syncedPeer.getStatus())
+        .thenReturn(
+            PeerStatus.fromStatusMessage(
+                new StatusMessage(
+                    Fork.VERSION_ZERO,
+                    Bytes32.ZERO,
+                    UnsignedLong.ZERO,
+                    PEER_HEAD_BLOCK_ROOT,
+                    PEER_HEAD_SLOT)));
+    when(network.streamPeers()).thenReturn(Stream.of(peer, syncedPeer, peer2));
+    when(rangeSync.sync(List.of(peer, peer2))).thenReturn(new SafeFuture<>());
+
+    assertThat(syncManager.start()).isCompleted();
+
+    verify(rangeSync).sync(List.of(peer, peer2));
+    assertThat(syncManager.isSyncActive()).isTrue();
+  }
+
   @Test
   void sync_retrySyncIfNotSuccessful() {
     when(network.streamPeers()).thenReturn(Stream.of(peer));
 
     final SafeFuture<PeerSyncResult> syncFuture = new SafeFuture<>();
-    when(peerSync.sync(peer)).thenReturn(syncFuture);
+    when(rangeSync.sync(List.of(peer))).thenReturn(syncFuture);
 
     assertThat(syncManager.start()).isCompleted();
     assertThat(syncManager.isSyncActive()).isTrue();
     assertThat(syncManager.isSyncQueued()).isFalse();
 
-    verify(peerSync).sync(peer);
+    verify(rangeSync).sync(List.of(peer));
 
     // The sync didn't complete correctly so we should start a new one with a new peer
     final Eth2Peer peer2 = mock(Eth2Peer.class);
     when(peer2.getStatus()).thenReturn(PEER_STATUS);
     when(network.streamPeers()).thenReturn(Stream.of(peer2));
-    when(peerSync.sync(peer2)).thenReturn(new SafeFuture<>());
+    when(rangeSync.sync(List.of(peer2))).thenReturn(new SafeFuture<>());
     syncFuture.complete(PeerSyncResult.FAULTY_ADVERTISEMENT);
 
-    verify(peerSync).sync(peer2);
+    verify(rangeSync).sync(List.of(peer2));
     assertThat(syncManager.isSyncActive()).isTrue();
     assertThat(syncManager.isSyncQueued()).isFalse();
   }
@@ -147,13 +171,13 @@ public class SyncManagerTest {
 
     final SafeFuture<PeerSyncResult> syncFuture1 = new SafeFuture<>();
     final SafeFuture<PeerSyncResult> syncFuture2 = new SafeFuture<>();
-    when(peerSync.sync(peer)).thenReturn(syncFuture1);
+    when(rangeSync.sync(List.of(peer))).thenReturn(syncFuture1);
 
     when(network.streamPeers()).thenReturn(Stream.of(peer));
     subscriber.onConnected(peer);
 
     // Sync is activated by first peer joining.
-    verify(peerSync).sync(peer);
+    verify(rangeSync).sync(List.of(peer));
     assertThat(syncManager.isSyncActive()).isTrue();
     assertThat(syncManager.isSyncQueued()).isFalse();
 
@@ -161,7 +185,7 @@ public class SyncManagerTest {
     final Eth2Peer peer2 = mock(Eth2Peer.class);
     when(peer2.getStatus()).thenReturn(PEER_STATUS);
     when(network.streamPeers()).thenReturn(Stream.of(peer2));
-    when(peerSync.sync(peer2)).thenReturn(syncFuture2);
+    when(rangeSync.sync(List.of(peer2))).thenReturn(syncFuture2);
 
     subscriber.onConnected(peer2);
     assertThat(syncManager.isSyncActive()).isTrue();
@@ -169,7 +193,7 @@ public class SyncManagerTest {
 
     // First sync completes and should kick off the second sync.
     syncFuture1.complete(PeerSyncResult.SUCCESSFUL_SYNC);
-    verify(peerSync).sync(peer2);
+    verify(rangeSync).sync(List.of(peer2));
     assertThat(syncManager.isSyncActive()).isTrue();
     assertThat(syncManager.isSyncQueued()).isFalse();
 
@@ -180,13 +204,13 @@ public class SyncManagerTest {
   }
 
   @Test
-  void stop_shouldStopPeerSyncAndRemoveListener() {
+  void stop_shouldStopRangeSyncAndRemoveListener() {
     assertThat(syncManager.start()).isCompleted();
 
     assertThat(syncManager.stop()).isCompleted();
     assertThat(syncManager.isSyncQueued()).isFalse();
     assertThat(syncManager.isSyncActive()).isFalse();
-    verify(peerSync).stop();
+    verify(rangeSync).stop();
     verify(network).unsubscribeConnect(SUBSCRIPTION_ID);
   }
 }
@@ -13,10 +13,14 @@
 
 package tech.devgao.hailong.util.SSZTypes;
 
-import java.util.ArrayList;
 import java.util.List;
+import tech.devgao.hailong.util.collections.PersistentList;
 
-public class SSZList<T> extends ArrayList<T> {
+/**
+ * An SSZ list with a maximum size. Copies made with {@link #SSZList(SSZList)} share structure with
+ * the original, so copying is O(1) and each write only copies the path to the changed element.
+ */
+public class SSZList<T> extends PersistentList<T> {
 
   private long maxSize;
   private Class<T> classInfo;
@@ -41,8 +45,9 @@ public class SSZList<T> extends ArrayList<T> {
 
   @Override
   public boolean add(T object) {
-    if (super.size() < maxSize) {
-      return super.add(object);
+    if (size() < maxSize) {
+      append(object);
+      return true;
     } else {
       return false;
     }
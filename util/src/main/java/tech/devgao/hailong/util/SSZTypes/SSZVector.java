@@ -13,11 +13,15 @@
 
 package tech.devgao.hailong.util.SSZTypes;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import tech.devgao.hailong.util.collections.PersistentList;
 
-public class SSZVector<T> extends ArrayList<T> {
+/**
+ * A fixed size SSZ vector. Copies made with {@link #SSZVector(SSZVector)} share structure with the
+ * original, so copying is O(1) and each write only copies the path to the changed element.
+ */
+public class SSZVector<T> extends PersistentList<T> {
 
   private int maxSize;
   private Class<T> classInfo;
@@ -15,6 +15,8 @@ package tech.devgao.hailong.util.bls;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
@@ -29,6 +31,14 @@ public class BLSPublicKey implements SimpleOffsetSerializable {
   public static final int SSZ_FIELD_COUNT = 1;
   public static final int BLS_PUBKEY_SIZE = 48;
 
+  // Decompressing a key is far more expensive than looking it up, and the same validator keys are
+  // deserialized with every state, so decompressed keys are shared across all instances. Sized to
+  // hold every key in a large validator registry. Signatures are checked on several threads, so
+  // the cache is concurrent rather than behind a single lock.
+  private static final int DECOMPRESSED_KEY_CACHE_SIZE = 1 << 18;
+  private static final Cache<Bytes, PublicKey> DECOMPRESSED_KEYS =
+      CacheBuilder.newBuilder().maximumSize(DECOMPRESSED_KEY_CACHE_SIZE).build();
+
   /**
    * Generates a compressed, serialised, random, valid public key
    *
@@ -53,7 +63,7 @@ public class BLSPublicKey implements SimpleOffsetSerializable {
 
   public static BLSPublicKey aggregate(List<BLSPublicKey> publicKeys) {
     List<PublicKey> publicKeyObjects =
-        publicKeys.stream().map(x -> x.publicKey).collect(Collectors.toList());
+        publicKeys.stream().map(BLSPublicKey::getPublicKey).collect(Collectors.toList());
     return new BLSPublicKey(PublicKey.aggregate(publicKeyObjects));
   }
 
@@ -64,7 +74,7 @@ public class BLSPublicKey implements SimpleOffsetSerializable {
 
   @Override
   public List<Bytes> get_fixed_parts() {
-    return List.of(SSZ.encode(writer -> writer.writeFixedBytes(publicKey.toBytesCompressed())));
+    return List.of(SSZ.encode(writer -> writer.writeFixedBytes(bytesCompressed)));
   }
 
   public static BLSPublicKey fromBytes(Bytes bytes) {
@@ -73,22 +83,30 @@ public class BLSPublicKey implements SimpleOffsetSerializable {
         "Expected " + BLS_PUBKEY_SIZE + " bytes but received %s.",
         bytes.size());
     return SSZ.decode(
-        bytes,
-        reader ->
-            new BLSPublicKey(
-                PublicKey.fromBytesCompressed(reader.readFixedBytes(BLS_PUBKEY_SIZE))));
+        bytes, reader -> fromBytesCompressed(reader.readFixedBytes(BLS_PUBKEY_SIZE)));
   }
 
   public static BLSPublicKey fromBytesCompressed(Bytes bytes) {
-    return new BLSPublicKey(PublicKey.fromBytesCompressed(bytes));
+    checkArgument(
+        bytes.size() == BLS_PUBKEY_SIZE,
+        "Expected " + BLS_PUBKEY_SIZE + " bytes but received %s.",
+        bytes.size());
+    // Copy so that a key read from a larger buffer, such as a serialized state, doesn't retain it
+    return new BLSPublicKey(bytes.copy());
   }
 
-  private final PublicKey publicKey;
+  private final Bytes bytesCompressed;
+  private volatile PublicKey publicKey;
 
   public BLSPublicKey(PublicKey publicKey) {
+    this.bytesCompressed = publicKey.toBytesCompressed();
     this.publicKey = publicKey;
   }
 
+  private BLSPublicKey(Bytes bytesCompressed) {
+    this.bytesCompressed = bytesCompressed;
+  }
+
   /**
    * Returns the SSZ serialisation of the <em>compressed</em> form of the signature
    *
@@ -97,21 +115,36 @@ public class BLSPublicKey implements SimpleOffsetSerializable {
   public Bytes toBytes() {
     return SSZ.encode(
         writer -> {
-          writer.writeFixedBytes(publicKey.toBytesCompressed());
+          writer.writeFixedBytes(bytesCompressed);
         });
   }
 
   public Bytes toBytesCompressed() {
-    return publicKey.toBytesCompressed();
+    return bytesCompressed;
   }
 
+  /**
+   * Returns the public key as a curve point, decompressing it on first use.
+   *
+   * @return the public key
+   */
   public PublicKey getPublicKey() {
-    return publicKey;
+    PublicKey key = publicKey;
+    if (key == null) {
+      // PublicKey decompresses its point once, on first use, so sharing the instance shares the
+      // decompressed point
+      key =
+          DECOMPRESSED_KEYS
+              .asMap()
+              .computeIfAbsent(bytesCompressed, PublicKey::fromBytesCompressed);
+      publicKey = key;
+    }
+    return key;
   }
 
   @Override
   public String toString() {
-    return publicKey.toString();
+    return bytesCompressed.toHexString();
   }
 
   @Override
@@ -129,11 +162,11 @@ public class BLSPublicKey implements SimpleOffsetSerializable {
     }
 
     BLSPublicKey other = (BLSPublicKey) obj;
-    return Objects.equals(this.getPublicKey(), other.getPublicKey());
+    return Objects.equals(this.bytesCompressed, other.bytesCompressed);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(publicKey);
+    return bytesCompressed.hashCode();
   }
 }
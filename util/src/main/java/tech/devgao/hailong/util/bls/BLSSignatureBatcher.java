@@ -0,0 +1,179 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.util.bls;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import tech.devgao.hailong.util.async.AsyncRunner;
+import tech.devgao.hailong.util.async.SafeFuture;
+import tech.devgao.hailong.util.mikuli.BLS12381;
+import tech.devgao.hailong.util.mikuli.PublicKey;
+import tech.devgao.hailong.util.mikuli.Signature;
+
+/**
+ * Verifies signatures which arrive independently, such as those of gossiped attestations, in
+ * batches.
+ *
+ * <p>Signatures are collected until {@code maxBatchSize} are waiting, or the first has waited for
+ * {@code maxDelayMillis}. The batch is then checked with a single randomized {@link
+ * BLS12381#verifyBatch} call on the thread which filled it, or on the async runner if the delay
+ * expired. If the batch fails it is split in half and each half checked again, so a few invalid
+ * signatures cost a few extra checks rather than one check for every signature in the batch.
+ */
+public class BLSSignatureBatcher {
+  private static final Logger LOG = LogManager.getLogger();
+
+  private final AsyncRunner asyncRunner;
+  private final int maxBatchSize;
+  private final long maxDelayMillis;
+  private List<PendingSignature> batch = new ArrayList<>();
+
+  public BLSSignatureBatcher(
+      final AsyncRunner asyncRunner, final int maxBatchSize, final long maxDelayMillis) {
+    this.asyncRunner = asyncRunner;
+    this.maxBatchSize = maxBatchSize;
+    this.maxDelayMillis = maxDelayMillis;
+  }
+
+  /**
+   * Runs a validity check, adding the signatures it verifies to the current batch.
+   *
+   * @param check a check which verifies its signatures with the given verifier, such as {@code
+   *     verifier -> is_valid_indexed_attestation(state, attestation, verifier)}
+   * @return a future completed with false if the check fails or any of its signatures are invalid,
+   *     and with true once all its signatures have been verified
+   */
+  public SafeFuture<Boolean> verify(final Function<BLSSignatureVerifier, Boolean> check) {
+    final List<SafeFuture<Boolean>> results = new ArrayList<>();
+    final boolean valid =
+        check.apply(
+            (pubkey, messageHash, signature, domain) -> {
+              results.add(add(new PendingSignature(pubkey, messageHash, signature, domain)));
+              return true;
+            });
+    if (!valid) {
+      return SafeFuture.completedFuture(false);
+    }
+    return SafeFuture.allOf(results.toArray(SafeFuture<?>[]::new))
+        .thenApply(__ -> results.stream().allMatch(SafeFuture::join));
+  }
+
+  private SafeFuture<Boolean> add(final PendingSignature signature) {
+    final List<PendingSignature> fullBatch;
+    synchronized (this) {
+      batch.add(signature);
+      if (batch.size() < maxBatchSize) {
+        if (batch.size() == 1) {
+          scheduleFlush(batch);
+        }
+        return signature.result;
+      }
+      fullBatch = batch;
+      batch = new ArrayList<>();
+    }
+    verifyBatch(fullBatch);
+    return signature.result;
+  }
+
+  private void scheduleFlush(final List<PendingSignature> expectedBatch) {
+    asyncRunner
+        .runAfterDelay(
+            () -> {
+              flush(expectedBatch);
+              return SafeFuture.completedFuture(null);
+            },
+            maxDelayMillis,
+            TimeUnit.MILLISECONDS)
+        .reportExceptions();
+  }
+
+  private void flush(final List<PendingSignature> expectedBatch) {
+    synchronized (this) {
+      if (batch != expectedBatch) {
+        // Already verified when it filled up
+        return;
+      }
+      batch = new ArrayList<>();
+    }
+    verifyBatch(expectedBatch);
+  }
+
+  private void verifyBatch(final List<PendingSignature> signatures) {
+    if (signatures.size() == 1) {
+      final PendingSignature signature = signatures.get(0);
+      signature.result.complete(signature.verify());
+      return;
+    }
+    if (verifyCombined(signatures)) {
+      signatures.forEach(signature -> signature.result.complete(true));
+      return;
+    }
+    LOG.trace("Batch of {} signatures failed, checking each half", signatures.size());
+    final int middle = signatures.size() / 2;
+    verifyBatch(signatures.subList(0, middle));
+    verifyBatch(signatures.subList(middle, signatures.size()));
+  }
+
+  private boolean verifyCombined(final List<PendingSignature> signatures) {
+    final List<PublicKey> publicKeys = new ArrayList<>(signatures.size());
+    final List<Signature> signatureObjects = new ArrayList<>(signatures.size());
+    final List<Bytes> messages = new ArrayList<>(signatures.size());
+    final List<Bytes> domains = new ArrayList<>(signatures.size());
+    try {
+      // Decoding may fail for a malformed key or signature, which is then found by bisecting
+      for (PendingSignature signature : signatures) {
+        publicKeys.add(signature.pubkey.getPublicKey());
+        signatureObjects.add(signature.signature.getSignature());
+        messages.add(signature.messageHash);
+        domains.add(signature.domain);
+      }
+      return BLS12381.verifyBatch(publicKeys, signatureObjects, messages, domains);
+    } catch (final RuntimeException e) {
+      return false;
+    }
+  }
+
+  private static class PendingSignature {
+    private final BLSPublicKey pubkey;
+    private final Bytes32 messageHash;
+    private final BLSSignature signature;
+    private final Bytes domain;
+    private final SafeFuture<Boolean> result = new SafeFuture<>();
+
+    private PendingSignature(
+        final BLSPublicKey pubkey,
+        final Bytes32 messageHash,
+        final BLSSignature signature,
+        final Bytes domain) {
+      this.pubkey = pubkey;
+      this.messageHash = messageHash;
+      this.signature = signature;
+      this.domain = domain;
+    }
+
+    private boolean verify() {
+      try {
+        return BLSVerify.bls_verify(pubkey, messageHash, signature, domain);
+      } catch (final RuntimeException e) {
+        return false;
+      }
+    }
+  }
+}
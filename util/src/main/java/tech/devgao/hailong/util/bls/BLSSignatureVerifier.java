@@ -0,0 +1,40 @@
+/*
+ * Copyright 2020 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.util.bls;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+
+/** Checks BLS signatures, either immediately or deferred to a later batch check. */
+@FunctionalInterface
+public interface BLSSignatureVerifier {
+
+  /** Verifies each signature immediately. */
+  BLSSignatureVerifier SIMPLE = BLSVerify::bls_verify;
+
+  /** Accepts every signature, for when signatures have already been checked. */
+  BLSSignatureVerifier NO_OP = (pubkey, messageHash, signature, domain) -> true;
+
+  /**
+   * Verify a signature as per bls_verify in the Eth2 specification.
+   *
+   * @param pubkey the compressed public key
+   * @param messageHash the message digest signed
+   * @param signature the signature
+   * @param domain the domain parameter defined by the spec
+   * @return false if the signature is known to be invalid. A verifier that defers checks returns
+   *     true and reports invalid signatures when the batch is checked.
+   */
+  boolean verify(BLSPublicKey pubkey, Bytes32 messageHash, BLSSignature signature, Bytes domain);
+}
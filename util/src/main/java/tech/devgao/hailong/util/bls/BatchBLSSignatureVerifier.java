@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.util.bls;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import tech.devgao.hailong.util.mikuli.BLS12381;
+import tech.devgao.hailong.util.mikuli.PublicKey;
+import tech.devgao.hailong.util.mikuli.Signature;
+
+/**
+ * Collects the signatures checked while processing a block so they can all be verified at once by
+ * {@link #batchVerify()}.
+ *
+ * <p>{@link #verify(BLSPublicKey, Bytes32, BLSSignature, Bytes)} only records the signature and
+ * returns true, so the result of processing is only valid once the batch has been verified. Safe
+ * to use from multiple threads.
+ */
+public class BatchBLSSignatureVerifier implements BLSSignatureVerifier {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  private final List<BLSPublicKey> publicKeys = new ArrayList<>();
+  private final List<Bytes32> messageHashes = new ArrayList<>();
+  private final List<BLSSignature> signatures = new ArrayList<>();
+  private final List<Bytes> domains = new ArrayList<>();
+
+  @Override
+  public synchronized boolean verify(
+      final BLSPublicKey pubkey,
+      final Bytes32 messageHash,
+      final BLSSignature signature,
+      final Bytes domain) {
+    publicKeys.add(pubkey);
+    messageHashes.add(messageHash);
+    signatures.add(signature);
+    domains.add(domain);
+    return true;
+  }
+
+  /**
+   * Verify every signature recorded so far. The combined check is tried first, and only if it
+   * fails is each signature checked separately to confirm which is invalid.
+   *
+   * @return true if all recorded signatures are valid
+   */
+  public synchronized boolean batchVerify() {
+    if (verifyCombined()) {
+      return true;
+    }
+    for (int i = 0; i < signatures.size(); i++) {
+      if (!BLSVerify.bls_verify(
+          publicKeys.get(i), messageHashes.get(i), signatures.get(i), domains.get(i))) {
+        LOG.debug("Invalid signature {} of {} in batch", i, signatures.size());
+        return false;
+      }
+    }
+    // The batch failed but every signature passed individually. Should not happen, but trust the
+    // individual checks since they are what the spec defines
+    return true;
+  }
+
+  public synchronized int size() {
+    return signatures.size();
+  }
+
+  private boolean verifyCombined() {
+    final List<PublicKey> publicKeyObjects = new ArrayList<>(publicKeys.size());
+    final List<Signature> signatureObjects = new ArrayList<>(signatures.size());
+    final List<Bytes> messages = new ArrayList<>(messageHashes.size());
+    for (int i = 0; i < signatures.size(); i++) {
+      publicKeyObjects.add(publicKeys.get(i).getPublicKey());
+      signatureObjects.add(signatures.get(i).getSignature());
+      messages.add(Bytes.wrap(messageHashes.get(i)));
+    }
+    try {
+      return BLS12381.verifyBatch(publicKeyObjects, signatureObjects, messages, domains);
+    } catch (RuntimeException e) {
+      return false;
+    }
+  }
+}
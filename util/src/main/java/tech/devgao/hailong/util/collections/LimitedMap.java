@@ -0,0 +1,43 @@
+/*
+ * Copyright 2020 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.util.collections;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Helper that creates a thread-safe map with a maximum capacity. */
+public final class LimitedMap {
+
+  private LimitedMap() {}
+
+  /**
+   * Creates a limited map that evicts the least recently accessed entry when it exceeds its max
+   * size.
+   *
+   * @param maxSize The maximum number of entries to keep in the map.
+   * @param <K> The type of the keys in the map.
+   * @param <V> The type of the values in the map.
+   * @return A thread-safe map that will evict entries when the max size is exceeded.
+   */
+  public static <K, V> Map<K, V> create(final int maxSize) {
+    return Collections.synchronizedMap(
+        new LinkedHashMap<K, V>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+            return size() > maxSize;
+          }
+        });
+  }
+}
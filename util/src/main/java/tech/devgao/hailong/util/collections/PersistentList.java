@@ -0,0 +1,388 @@
+/*
+ * Copyright 2020 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.util.collections;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.crypto.Hash;
+import tech.devgao.hailong.util.hashtree.ChunkPacker;
+import tech.devgao.hailong.util.hashtree.HashTreeUtil;
+
+/**
+ * A mutable {@link java.util.List} whose copies share structure.
+ *
+ * <p>Elements are held in a 32-way trie with a separate tail node for appends. Copying a list with
+ * {@link #PersistentList(PersistentList)} is O(1): both lists keep pointing at the same nodes and
+ * whichever is written to first copies only the path from the root to the changed leaf. Nodes a
+ * list has created itself since the last copy are updated in place, so repeated writes to the same
+ * region do not allocate.
+ *
+ * <p>Only the list structure is shared; elements themselves must be treated as immutable once
+ * added, since a mutable element would be visible through every copy. Replace the element with
+ * {@link #set(int, Object)} instead of mutating it.
+ *
+ * <p>Each node also caches the merkle root of its subtree, see {@link #merkleRoot(ChunkPacker,
+ * int)}.
+ *
+ * <p>Not thread-safe for concurrent modification, but a list may be read, hashed and copied
+ * concurrently as long as it is not being modified.
+ */
+public class PersistentList<E> extends AbstractList<E> implements RandomAccess {
+
+  private static final int BITS = 5;
+  private static final int WIDTH = 1 << BITS;
+  private static final int MASK = WIDTH - 1;
+
+  private static final class Node {
+    private final Object edit;
+    private final Object[] array;
+    // Merkle root of this subtree, cleared whenever the node is updated in place
+    private volatile Bytes32 root;
+
+    private Node(final Object edit, final Object[] array) {
+      this.edit = edit;
+      this.array = array;
+    }
+  }
+
+  private Object edit = new Object();
+  private int size;
+  private int shift;
+  private Node root;
+  private Node tail;
+
+  public PersistentList() {
+    clearInternal();
+  }
+
+  public PersistentList(final Collection<? extends E> elements) {
+    this();
+    if (elements instanceof PersistentList) {
+      shareWith((PersistentList<?>) elements);
+    } else {
+      elements.forEach(this::append);
+    }
+  }
+
+  /** Creates a copy of {@code other} in O(1) that shares all of its nodes. */
+  public PersistentList(final PersistentList<E> other) {
+    shareWith(other);
+  }
+
+  private void shareWith(final PersistentList<?> other) {
+    this.size = other.size;
+    this.shift = other.shift;
+    this.root = other.root;
+    this.tail = other.tail;
+    // Neither list may now update the shared nodes in place
+    other.edit = new Object();
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E get(final int index) {
+    checkIndex(index);
+    return (E) leafFor(index).array[index & MASK];
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E set(final int index, final E element) {
+    checkIndex(index);
+    final Node leaf;
+    if (index >= tailOffset()) {
+      tail = editable(tail);
+      leaf = tail;
+    } else {
+      root = editable(root);
+      Node node = root;
+      for (int level = shift; level > 0; level -= BITS) {
+        final int childIndex = (index >>> level) & MASK;
+        final Node child = editable((Node) node.array[childIndex]);
+        node.array[childIndex] = child;
+        node = child;
+      }
+      leaf = node;
+    }
+    final Object previous = leaf.array[index & MASK];
+    leaf.array[index & MASK] = element;
+    return (E) previous;
+  }
+
+  @Override
+  public boolean add(final E element) {
+    append(element);
+    return true;
+  }
+
+  @Override
+  public void add(final int index, final E element) {
+    if (index == size) {
+      append(element);
+      return;
+    }
+    if (index < 0 || index > size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    final Object[] elements = toArray();
+    clearInternal();
+    for (int i = 0; i < elements.length; i++) {
+      if (i == index) {
+        appendInternal(element);
+      }
+      appendInternal(elements[i]);
+    }
+    modCount++;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E remove(final int index) {
+    checkIndex(index);
+    final Object[] elements = toArray();
+    clearInternal();
+    for (int i = 0; i < elements.length; i++) {
+      if (i != index) {
+        appendInternal(elements[i]);
+      }
+    }
+    modCount++;
+    return (E) elements[index];
+  }
+
+  @Override
+  public void clear() {
+    clearInternal();
+    modCount++;
+  }
+
+  protected final void append(final E element) {
+    appendInternal(element);
+    modCount++;
+  }
+
+  private void appendInternal(final Object element) {
+    final int tailOffset = tailOffset();
+    if (size - tailOffset < WIDTH) {
+      tail = editable(tail);
+      tail.array[size - tailOffset] = element;
+      size++;
+      return;
+    }
+
+    // Tail is full, move it into the trie
+    final Node fullTail = tail;
+    if ((size >>> BITS) > (1 << shift)) {
+      final Node newRoot = new Node(edit, new Object[WIDTH]);
+      newRoot.array[0] = root;
+      newRoot.array[1] = newPath(shift, fullTail);
+      root = newRoot;
+      shift += BITS;
+    } else {
+      root = pushTail(shift, editable(root), fullTail);
+    }
+    tail = new Node(edit, new Object[WIDTH]);
+    tail.array[0] = element;
+    size++;
+  }
+
+  /**
+   * Computes the merkle root of this list's chunks, padded with zero chunks to a tree of the given
+   * depth.
+   *
+   * <p>The root of every full trie node is cached on the node. Copies share unmodified nodes, so
+   * only the paths to elements replaced since this list or any copy of it was last hashed are
+   * recomputed. A list must always be hashed with the same packer.
+   *
+   * @param packer converts blocks of elements into chunks
+   * @param depth depth of the merkle tree, which must be large enough to hold every element
+   * @return the merkle root
+   */
+  public Bytes32 merkleRoot(final ChunkPacker<? super E> packer, final int depth) {
+    final int tailOffset = tailOffset();
+    final int tailBlock = tailOffset >>> BITS;
+    final Bytes32 tailRoot = blockRoot(tail, size - tailOffset, packer);
+
+    // The tail is hashed as if it had been pushed into the trie, under a new root if it is full
+    Node trie = root;
+    int trieShift = shift;
+    if (tailBlock == 1 << shift) {
+      trie = new Node(null, new Object[WIDTH]);
+      trie.array[0] = root;
+      trieShift += BITS;
+    }
+
+    final int blockDepth = packer.getBlockDepth();
+    if (depth >= blockDepth + trieShift) {
+      Bytes32 result = subtreeRoot(trie, trieShift, 0, tailBlock, tailRoot, packer);
+      for (int i = blockDepth + trieShift; i < depth; i++) {
+        result = Hash.sha2_256(Bytes.concatenate(result, HashTreeUtil.zero_hash(i)));
+      }
+      return result;
+    }
+
+    // The tree is shallower than the trie, so every element is in its leftmost branch
+    Node node = trie;
+    int level = trieShift;
+    while (level > 0 && blockDepth + level - BITS >= depth) {
+      node = node == null ? null : (Node) node.array[0];
+      level -= BITS;
+    }
+    if (level > 0) {
+      final int childLevel = level - BITS;
+      final List<Bytes32> childRoots = new ArrayList<>();
+      for (int i = 0; i < 1 << (depth - blockDepth - childLevel); i++) {
+        final Node child = node == null ? null : (Node) node.array[i];
+        childRoots.add(subtreeRoot(child, childLevel, i << childLevel, tailBlock, tailRoot, packer));
+      }
+      return HashTreeUtil.merkleize(childRoots);
+    }
+    if (depth == blockDepth) {
+      return subtreeRoot(node, 0, 0, tailBlock, tailRoot, packer);
+    }
+    final Node block = tailBlock == 0 ? tail : node;
+    final int count = tailBlock == 0 ? size : WIDTH;
+    return HashTreeUtil.merkleize(packer.pack(elements(block, count)), 1L << depth);
+  }
+
+  private Bytes32 subtreeRoot(
+      final Node node,
+      final int level,
+      final int firstBlock,
+      final int tailBlock,
+      final Bytes32 tailRoot,
+      final ChunkPacker<? super E> packer) {
+    final boolean containsTail = tailBlock >= firstBlock && tailBlock < firstBlock + (1 << level);
+    if (level == 0) {
+      if (containsTail) {
+        return tailRoot;
+      }
+      return node == null
+          ? HashTreeUtil.zero_hash(packer.getBlockDepth())
+          : blockRoot(node, WIDTH, packer);
+    }
+    if (!containsTail) {
+      if (node == null) {
+        return HashTreeUtil.zero_hash(packer.getBlockDepth() + level);
+      }
+      final Bytes32 cachedRoot = node.root;
+      if (cachedRoot != null) {
+        return cachedRoot;
+      }
+    }
+
+    final int childLevel = level - BITS;
+    final List<Bytes32> childRoots = new ArrayList<>(WIDTH);
+    for (int i = 0; i < WIDTH; i++) {
+      final Node child = node == null ? null : (Node) node.array[i];
+      childRoots.add(
+          subtreeRoot(
+              child, childLevel, firstBlock + (i << childLevel), tailBlock, tailRoot, packer));
+    }
+    final Bytes32 result = HashTreeUtil.merkleize(childRoots);
+    // The tail moves on as elements are added, so only subtrees without it can be cached
+    if (!containsTail) {
+      node.root = result;
+    }
+    return result;
+  }
+
+  private Bytes32 blockRoot(
+      final Node block, final int count, final ChunkPacker<? super E> packer) {
+    final Bytes32 cachedRoot = block.root;
+    if (cachedRoot != null) {
+      return cachedRoot;
+    }
+    final Bytes32 result =
+        HashTreeUtil.merkleize(
+            packer.pack(elements(block, count)), 1L << packer.getBlockDepth());
+    block.root = result;
+    return result;
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<E> elements(final Node block, final int count) {
+    return (List<E>) Arrays.asList(block.array).subList(0, count);
+  }
+
+  private Node pushTail(final int level, final Node parent, final Node tailNode) {
+    final int subIndex = ((size - 1) >>> level) & MASK;
+    if (level == BITS) {
+      parent.array[subIndex] = tailNode;
+    } else {
+      final Node child = (Node) parent.array[subIndex];
+      parent.array[subIndex] =
+          child != null
+              ? pushTail(level - BITS, editable(child), tailNode)
+              : newPath(level - BITS, tailNode);
+    }
+    return parent;
+  }
+
+  private Node newPath(final int level, final Node node) {
+    if (level == 0) {
+      return node;
+    }
+    final Node path = new Node(edit, new Object[WIDTH]);
+    path.array[0] = newPath(level - BITS, node);
+    return path;
+  }
+
+  private Node leafFor(final int index) {
+    if (index >= tailOffset()) {
+      return tail;
+    }
+    Node node = root;
+    for (int level = shift; level > 0; level -= BITS) {
+      node = (Node) node.array[(index >>> level) & MASK];
+    }
+    return node;
+  }
+
+  private Node editable(final Node node) {
+    if (node.edit == edit) {
+      node.root = null;
+      return node;
+    }
+    return new Node(edit, Arrays.copyOf(node.array, WIDTH));
+  }
+
+  private int tailOffset() {
+    return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+  }
+
+  private void clearInternal() {
+    size = 0;
+    shift = BITS;
+    root = new Node(edit, new Object[WIDTH]);
+    tail = new Node(edit, new Object[WIDTH]);
+  }
+
+  private void checkIndex(final int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+}
@@ -52,6 +52,11 @@ public class HailongConfiguration {
         PropertyValidator.inRange(0, 65535));
     builder.addString("node.discovery", "", "static or discv5", null);
     builder.addString("node.bootnodes", "", "ENR of the bootnode", null);
+    builder.addString(
+        "node.gossipEncoding",
+        "ssz",
+        "Encoding of gossip messages, raw (ssz) or snappy compressed (ssz_snappy)",
+        PropertyValidator.anyOf("ssz", "ssz_snappy"));
     builder.addInteger(
         "node.naughtinessPercentage",
         0,
@@ -122,6 +127,31 @@ public class HailongConfiguration {
 
     // Database
     builder.addBoolean("database.startFromDisk", false, "Start from the disk if set to true", null);
+    builder.addBoolean(
+        "database.writeBehind",
+        false,
+        "Import blocks without waiting for them to be written to disk if set to true",
+        null);
+    builder.addInteger(
+        "database.writeBehindQueueSize",
+        64,
+        "Maximum number of store transactions waiting to be written to disk",
+        PropertyValidator.inRange(1, Integer.MAX_VALUE));
+    builder.addString(
+        "database.stateStorageMode",
+        "archive",
+        "Store the state of every finalized block (archive) or only periodic snapshots (snapshot)",
+        PropertyValidator.anyOf("archive", "snapshot"));
+    builder.addInteger(
+        "database.stateSnapshotInterval",
+        32,
+        "Number of epochs between finalized state snapshots in snapshot mode",
+        PropertyValidator.inRange(1, Integer.MAX_VALUE));
+    builder.addInteger(
+        "database.hotStateCacheSize",
+        512,
+        "Approximate size in MiB of the non-finalized states kept in memory",
+        PropertyValidator.inRange(1, Integer.MAX_VALUE));
 
     // Beacon Rest API
     builder.addInteger("beaconrestapi.portNumber", 5051, "Port number of Beacon Rest API", null);
@@ -302,6 +332,10 @@ public class HailongConfiguration {
     return config.getListOfString("node.peers");
   }
 
+  public String getGossipEncoding() {
+    return config.getString("node.gossipEncoding");
+  }
+
   /** @return the identifier of the network (mainnet, testnet, sidechain) */
   public long getNetworkID() {
     return config.getLong("node.networkID");
@@ -326,6 +360,28 @@ public class HailongConfiguration {
     return config.getBoolean("database.startFromDisk");
   }
 
+  public boolean isWriteBehindEnabled() {
+    return config.getBoolean("database.writeBehind");
+  }
+
+  public int getWriteBehindQueueSize() {
+    return config.getInteger("database.writeBehindQueueSize");
+  }
+
+  /** @return how finalized states are stored - archive or snapshot */
+  public String getStateStorageMode() {
+    return config.getString("database.stateStorageMode");
+  }
+
+  public int getStateSnapshotInterval() {
+    return config.getInteger("database.stateSnapshotInterval");
+  }
+
+  /** @return the approximate size in bytes of the non-finalized states kept in memory */
+  public long getHotStateCacheBytes() {
+    return config.getInteger("database.hotStateCacheSize") * 1024L * 1024L;
+  }
+
   public void validateConfig() throws IllegalArgumentException {
     if (getNumValidators() < Constants.SLOTS_PER_EPOCH) {
       throw new IllegalArgumentException("Invalid config.toml");
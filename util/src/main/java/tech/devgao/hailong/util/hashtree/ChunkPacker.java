@@ -0,0 +1,87 @@
+/*
+ * Copyright 2020 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.util.hashtree;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+import com.google.common.primitives.UnsignedLong;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.apache.tuweni.bytes.Bytes32;
+
+/**
+ * Converts the elements of an SSZ list or vector into the chunks that form the leaves of its
+ * merkle tree.
+ *
+ * <p>Elements are packed in blocks of {@link #BLOCK_SIZE}, matching the node width of {@link
+ * tech.devgao.hailong.util.collections.PersistentList}, so that the merkle root of every trie node
+ * is a subtree of the list's merkle tree.
+ */
+public final class ChunkPacker<E> {
+
+  public static final int BLOCK_SIZE = 32;
+
+  /** Composite elements, each contributing its own hash tree root as a chunk. */
+  public static final ChunkPacker<Merkleizable> COMPOSITE =
+      new ChunkPacker<>(
+          5,
+          elements ->
+              elements.stream().map(Merkleizable::hash_tree_root).collect(Collectors.toList()));
+
+  /** Bytes32 elements, each of which is already a chunk. */
+  public static final ChunkPacker<Bytes32> BYTES32 = new ChunkPacker<>(5, ArrayList::new);
+
+  /** uint64 elements, packed four to a chunk. */
+  public static final ChunkPacker<UnsignedLong> UINT64 =
+      new ChunkPacker<>(3, ChunkPacker::packUnsignedLongs);
+
+  private final int blockDepth;
+  private final Function<List<? extends E>, List<Bytes32>> packer;
+
+  private ChunkPacker(
+      final int blockDepth, final Function<List<? extends E>, List<Bytes32>> packer) {
+    this.blockDepth = blockDepth;
+    this.packer = packer;
+  }
+
+  /** @return the depth of the merkle subtree formed by a full block of elements */
+  public int getBlockDepth() {
+    return blockDepth;
+  }
+
+  /**
+   * @param elements up to {@link #BLOCK_SIZE} elements
+   * @return the chunks for the given elements, without padding
+   */
+  public List<Bytes32> pack(final List<? extends E> elements) {
+    return packer.apply(elements);
+  }
+
+  private static List<Bytes32> packUnsignedLongs(final List<? extends UnsignedLong> elements) {
+    final int chunkCount = (elements.size() * Long.BYTES + Bytes32.SIZE - 1) / Bytes32.SIZE;
+    final ByteBuffer buffer =
+        ByteBuffer.allocate(chunkCount * Bytes32.SIZE).order(LITTLE_ENDIAN);
+    elements.forEach(element -> buffer.putLong(element.longValue()));
+
+    final List<Bytes32> chunks = new ArrayList<>(chunkCount);
+    final byte[] array = buffer.array();
+    for (int i = 0; i < chunkCount; i++) {
+      chunks.add(Bytes32.wrap(array, i * Bytes32.SIZE));
+    }
+    return chunks;
+  }
+}
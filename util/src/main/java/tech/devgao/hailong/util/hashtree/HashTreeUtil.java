@@ -26,9 +26,9 @@ import java.util.stream.IntStream;
 import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.bytes.Bytes32;
 import org.apache.tuweni.crypto.Hash;
-import org.apache.tuweni.ssz.SSZ;
 import tech.devgao.hailong.util.SSZTypes.Bitlist;
 import tech.devgao.hailong.util.SSZTypes.Bitvector;
+import tech.devgao.hailong.util.SSZTypes.SSZList;
 import tech.devgao.hailong.util.SSZTypes.SSZVector;
 import tech.devgao.hailong.util.bls.BLSPublicKey;
 
@@ -151,10 +151,56 @@ public final class HashTreeUtil {
     return hash_tree_root_list_bytes(bytes, maxSize, bytes.size());
   }
 
+  /**
+   * Create the hash tree root of a vector of uint64 values, reusing the merkle roots cached on the
+   * vector for unchanged elements.
+   */
   public static Bytes32 hash_tree_root_vector_unsigned_long(SSZVector<UnsignedLong> vector) {
-    List<Bytes> bytes =
-        vector.stream().map(i -> SSZ.encodeUInt64(i.longValue())).collect(Collectors.toList());
-    return merkleize(pack(bytes.toArray(new Bytes[0])));
+    return vector.merkleRoot(
+        ChunkPacker.UINT64, tree_depth(chunk_count_list_unsigned_long(vector.size())));
+  }
+
+  /**
+   * Create the hash tree root of a vector of Bytes32 values, reusing the merkle roots cached on the
+   * vector for unchanged elements.
+   */
+  public static Bytes32 hash_tree_root_vector_bytes32(SSZVector<Bytes32> vector) {
+    return vector.merkleRoot(ChunkPacker.BYTES32, tree_depth(vector.size()));
+  }
+
+  /**
+   * Create the hash tree root of a list of Bytes32 values, reusing the merkle roots cached on the
+   * list for unchanged elements.
+   */
+  public static Bytes32 hash_tree_root_list_bytes32(long maxSize, SSZList<Bytes32> list) {
+    return mix_in_length(
+        list.merkleRoot(
+            ChunkPacker.BYTES32, tree_depth(chunk_count(SSZTypes.LIST_OF_COMPOSITE, maxSize))),
+        list.size());
+  }
+
+  /**
+   * Create the hash tree root of a list of uint64 values, reusing the merkle roots cached on the
+   * list for unchanged elements.
+   */
+  public static Bytes32 hash_tree_root_list_unsigned_long(
+      long maxSize, SSZList<UnsignedLong> list) {
+    return mix_in_length(
+        list.merkleRoot(ChunkPacker.UINT64, tree_depth(chunk_count_list_unsigned_long(maxSize))),
+        list.size());
+  }
+
+  /**
+   * Create the hash tree root of a list of composite SSZ types, reusing the merkle roots cached on
+   * the list for unchanged elements. Only elements replaced since the list or one of its copies was
+   * last hashed have their hash tree root recomputed.
+   */
+  public static Bytes32 hash_tree_root_list_composite(
+      long maxSize, SSZList<? extends Merkleizable> list) {
+    return mix_in_length(
+        list.merkleRoot(
+            ChunkPacker.COMPOSITE, tree_depth(chunk_count(SSZTypes.LIST_OF_COMPOSITE, maxSize))),
+        list.size());
   }
 
   @SuppressWarnings({"rawtypes", "unchecked"})
@@ -240,6 +286,16 @@ public final class HashTreeUtil {
     return merkleize(sszChunks, sszChunks.size());
   }
 
+  /** @return the root of a merkle tree of the given depth with all leaves set to zero */
+  public static Bytes32 zero_hash(int depth) {
+    return zerohashes.get(depth);
+  }
+
+  /** @return the depth of the smallest merkle tree that holds the given number of chunks */
+  public static int tree_depth(long chunkCount) {
+    return Long.SIZE - Long.numberOfLeadingZeros(max(chunkCount - 1, 0));
+  }
+
   /**
    * Create the hash tree root of a set of values of basic SSZ types or tuples of basic types. Basic
    * SSZ types are uintN, bool, and byte. bytesN (i.e. Bytes32) is a tuple of basic types. NOTE:
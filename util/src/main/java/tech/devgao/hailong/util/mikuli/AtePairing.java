@@ -13,6 +13,9 @@
 
 package tech.devgao.hailong.util.mikuli;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.List;
 import org.apache.milagro.amcl.BLS381.FP12;
 import org.apache.milagro.amcl.BLS381.PAIR;
 
@@ -28,4 +31,33 @@ final class AtePairing {
     FP12 e = PAIR.ate(p2.ecp2Point(), p1.ecpPoint());
     return new GTPoint(PAIR.fexp(e));
   }
+
+  /**
+   * Computes the product of the pairings of each (p1, p2) pair.
+   *
+   * <p>The final exponentiation distributes over the product, so the Miller loops are multiplied
+   * together and exponentiated once. Pairs are run two at a time through a double Miller loop,
+   * which also shares the squarings in the loop.
+   *
+   * @param p1s the points in Group1, not null
+   * @param p2s the points in Group2, one per point in Group1, not null
+   * @return the product of the pairings
+   */
+  static GTPoint pairProduct(List<G1Point> p1s, List<G2Point> p2s) {
+    checkArgument(p1s.size() == p2s.size(), "Each point in G1 must have a point in G2");
+    FP12 product = new FP12(1);
+    int i = 0;
+    for (; i + 1 < p1s.size(); i += 2) {
+      product.mul(
+          PAIR.ate2(
+              p2s.get(i).ecp2Point(),
+              p1s.get(i).ecpPoint(),
+              p2s.get(i + 1).ecp2Point(),
+              p1s.get(i + 1).ecpPoint()));
+    }
+    if (i < p1s.size()) {
+      product.mul(PAIR.ate(p2s.get(i).ecp2Point(), p1s.get(i).ecpPoint()));
+    }
+    return new GTPoint(PAIR.fexp(product));
+  }
 }
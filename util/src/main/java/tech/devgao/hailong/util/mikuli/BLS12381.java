@@ -13,10 +13,13 @@
 
 package tech.devgao.hailong.util.mikuli;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static tech.devgao.hailong.util.mikuli.G2Point.hashToG2;
 
+import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.List;
-import org.apache.milagro.amcl.BLS381.FP12;
+import org.apache.milagro.amcl.BLS381.BIG;
 import org.apache.tuweni.bytes.Bytes;
 
 /*
@@ -38,6 +41,9 @@ import org.apache.tuweni.bytes.Bytes;
  */
 public final class BLS12381 {
 
+  private static final SecureRandom RANDOM = new SecureRandom();
+  private static final G1Point NEGATED_G1_GENERATOR = KeyPair.g1Generator.neg();
+
   private BLS12381() {}
 
   /**
@@ -77,13 +83,14 @@ public final class BLS12381 {
    */
   public static boolean verify(
       PublicKey publicKey, Signature signature, Bytes message, Bytes domain) {
-    G1Point g1Generator = KeyPair.g1Generator;
-
     G2Point hashInGroup2 = hashFunction(message, domain);
-    GTPoint e1 = AtePairing.pair(publicKey.g1Point(), hashInGroup2);
-    GTPoint e2 = AtePairing.pair(g1Generator, signature.g2Point());
 
-    return e1.equals(e2);
+    // Check e(publicKey, H(message)) * e(-g1, signature) == 1 rather than comparing two pairings,
+    // so that only one final exponentiation is needed
+    return AtePairing.pairProduct(
+            List.of(publicKey.g1Point(), NEGATED_G1_GENERATOR),
+            List.of(hashInGroup2, signature.g2Point()))
+        .isUnity();
   }
 
   /**
@@ -101,17 +108,16 @@ public final class BLS12381 {
       return false;
     }
 
-    G1Point g1Generator = KeyPair.g1Generator;
-
-    GTPoint eCombined = new GTPoint(new FP12(1));
+    List<G1Point> g1Points = new ArrayList<>(publicKeys.size() + 1);
+    List<G2Point> g2Points = new ArrayList<>(publicKeys.size() + 1);
     for (int i = 0; i < publicKeys.size(); i++) {
-      G2Point hashInGroup2 = hashFunction(messages.get(i), domain);
-      eCombined = eCombined.mul(AtePairing.pair(publicKeys.get(i).g1Point(), hashInGroup2));
+      g1Points.add(publicKeys.get(i).g1Point());
+      g2Points.add(hashFunction(messages.get(i), domain));
     }
+    g1Points.add(NEGATED_G1_GENERATOR);
+    g2Points.add(signature.g2Point());
 
-    GTPoint e2 = AtePairing.pair(g1Generator, signature.g2Point());
-
-    return e2.equals(eCombined);
+    return AtePairing.pairProduct(g1Points, g2Points).isUnity();
   }
 
   /**
@@ -152,6 +158,62 @@ public final class BLS12381 {
     return verify(sigAndPubKey.publicKey(), sigAndPubKey.signature(), message, domain);
   }
 
+  /**
+   * Verifies a batch of signatures, each over its own message, with a single combined check.
+   *
+   * <p>Each signature and its public key are weighted by a random 64-bit scalar r_i, so that
+   * invalid signatures can't cancel each other out, and the batch is accepted if e(g1, sum(r_i *
+   * signature_i)) equals the product of e(r_i * publicKey_i, H(message_i, domain_i)). This takes n
+   * + 1 Miller loops and a single final exponentiation, rather than 2n pairings to verify each
+   * signature separately. If the batch is rejected it is not known which signature is invalid.
+   *
+   * @param publicKeys The public keys, not null
+   * @param signatures The signatures, one per public key, not null
+   * @param messages The messages signed, one per public key, not null
+   * @param domains The domains appended to the messages, one per public key, not null
+   * @return True if every signature in the batch is valid.
+   */
+  public static boolean verifyBatch(
+      List<PublicKey> publicKeys,
+      List<Signature> signatures,
+      List<Bytes> messages,
+      List<Bytes> domains) {
+    checkArgument(
+        publicKeys.size() == signatures.size()
+            && publicKeys.size() == messages.size()
+            && publicKeys.size() == domains.size(),
+        "Batch must have one signature, message and domain per public key");
+    if (publicKeys.isEmpty()) {
+      return true;
+    }
+
+    G2Point combinedSignature = new G2Point();
+    List<G1Point> g1Points = new ArrayList<>(publicKeys.size() + 1);
+    List<G2Point> g2Points = new ArrayList<>(publicKeys.size() + 1);
+    for (int i = 0; i < publicKeys.size(); i++) {
+      Scalar r = randomBatchScalar();
+      combinedSignature = combinedSignature.add(signatures.get(i).g2Point().mul(r));
+      g1Points.add(publicKeys.get(i).g1Point().mul(r));
+      g2Points.add(hashFunction(messages.get(i), domains.get(i)));
+    }
+    g1Points.add(NEGATED_G1_GENERATOR);
+    g2Points.add(combinedSignature);
+
+    return AtePairing.pairProduct(g1Points, g2Points).isUnity();
+  }
+
+  private static Scalar randomBatchScalar() {
+    byte[] bytes = new byte[BIG.MODBYTES];
+    long value;
+    do {
+      value = RANDOM.nextLong();
+    } while (value == 0);
+    for (int i = 0; i < Long.BYTES; i++) {
+      bytes[bytes.length - 1 - i] = (byte) (value >>> (8 * i));
+    }
+    return new Scalar(BIG.fromBytes(bytes));
+  }
+
   private static G2Point hashFunction(Bytes message, Bytes domain) {
     return hashToG2(message, domain);
   }
@@ -185,6 +185,13 @@ public final class G1Point implements Group<G1Point> {
     return new G1Point(newPoint);
   }
 
+  G1Point neg() {
+    ECP newPoint = new ECP();
+    newPoint.copy(point);
+    newPoint.neg();
+    return new G1Point(newPoint);
+  }
+
   public Bytes toBytes() {
     // Size of the byte array representing compressed ECP point for BLS12-381 is
     // 49 bytes in milagro
@@ -34,6 +34,10 @@ final class GTPoint {
     return new GTPoint(newPoint);
   }
 
+  boolean isUnity() {
+    return point.isunity();
+  }
+
   @Override
   public int hashCode() {
     final int prime = 31;
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.util.time;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.primitives.UnsignedLong;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Fires the deadlines within each slot: the start of the slot, one third of the way through when
+ * attestations are due and two thirds of the way through when aggregates are due.
+ *
+ * <p>Deadlines are computed from genesis time once, when the scheduler starts, and then tracked on
+ * a monotonic clock so they don't drift or jump with the wall clock. Each deadline is scheduled
+ * individually rather than polled for. Deadlines which have already passed, for example because a
+ * handler ran late, fire immediately and in order.
+ */
+public class SlotScheduler {
+  private static final Logger LOG = LogManager.getLogger();
+  private static final long NANOS_PER_MILLI = 1_000_000;
+  private static final int DEADLINES_PER_SLOT = 3;
+
+  private final ScheduledExecutorService executor;
+  private final TimeProvider timeProvider;
+  private final LongSupplier nanoTime;
+  private final long nanosPerSlot;
+  private final SlotEventHandler handler;
+
+  private volatile boolean started = false;
+  private volatile boolean stopped = false;
+  private long genesisNanos;
+  private UnsignedLong slot;
+  private int deadline;
+
+  public SlotScheduler(
+      final ScheduledExecutorService executor,
+      final TimeProvider timeProvider,
+      final LongSupplier nanoTime,
+      final int secondsPerSlot,
+      final SlotEventHandler handler) {
+    this.executor = executor;
+    this.timeProvider = timeProvider;
+    this.nanoTime = nanoTime;
+    this.nanosPerSlot = TimeUnit.SECONDS.toNanos(secondsPerSlot);
+    this.handler = handler;
+  }
+
+  public static SlotScheduler create(
+      final TimeProvider timeProvider, final int secondsPerSlot, final SlotEventHandler handler) {
+    return new SlotScheduler(
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("slot-scheduler").setDaemon(true).build()),
+        timeProvider,
+        System::nanoTime,
+        secondsPerSlot,
+        handler);
+  }
+
+  /**
+   * Starts firing deadlines, beginning with the start of {@code firstSlot}.
+   *
+   * @param genesisTime the genesis time in seconds
+   * @param firstSlot the first slot to fire deadlines for
+   */
+  public synchronized void start(final UnsignedLong genesisTime, final UnsignedLong firstSlot) {
+    checkState(!started, "Slot scheduler already started");
+    started = true;
+    final long millisSinceGenesis =
+        timeProvider.getTimeInMillis().longValue()
+            - genesisTime.times(TimeProvider.MILLIS_PER_SECOND).longValue();
+    genesisNanos = nanoTime.getAsLong() - millisSinceGenesis * NANOS_PER_MILLI;
+    slot = firstSlot;
+    deadline = 0;
+    scheduleNextDeadline();
+  }
+
+  public boolean isStarted() {
+    return started;
+  }
+
+  public void stop() {
+    stopped = true;
+    executor.shutdownNow();
+  }
+
+  private void scheduleNextDeadline() {
+    if (stopped) {
+      return;
+    }
+    final long deadlineNanos =
+        genesisNanos
+            + slot.longValue() * nanosPerSlot
+            + deadline * (nanosPerSlot / DEADLINES_PER_SLOT);
+    final long delay = Math.max(0, deadlineNanos - nanoTime.getAsLong());
+    executor.schedule(this::fireDeadline, delay, TimeUnit.NANOSECONDS);
+  }
+
+  private synchronized void fireDeadline() {
+    try {
+      switch (deadline) {
+        case 0:
+          handler.onSlotStart(slot);
+          break;
+        case 1:
+          handler.onAttestationDue(slot);
+          break;
+        default:
+          handler.onAggregationDue(slot);
+      }
+    } catch (final RuntimeException e) {
+      LOG.error("Failed to process deadline " + deadline + " of slot " + slot, e);
+    }
+    deadline++;
+    if (deadline == DEADLINES_PER_SLOT) {
+      deadline = 0;
+      slot = slot.plus(UnsignedLong.ONE);
+    }
+    scheduleNextDeadline();
+  }
+
+  /** Receives the deadlines within each slot, on the scheduler's thread. */
+  public interface SlotEventHandler {
+
+    void onSlotStart(UnsignedLong slot);
+
+    void onAttestationDue(UnsignedLong slot);
+
+    void onAggregationDue(UnsignedLong slot);
+  }
+}
@@ -15,6 +15,7 @@ package tech.devgao.hailong.util.bls;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import org.apache.tuweni.bytes.Bytes;
@@ -96,4 +97,22 @@ class BLSPublicKeyTest {
     BLSPublicKey publicKey2 = BLSPublicKey.fromBytes(publicKey1.toBytes());
     assertEquals(publicKey1, publicKey2);
   }
+
+  @Test
+  void succeedsWhenDeserialisingInvalidPublicKeyDoesNotDecompressIt() {
+    // Not a valid compressed point, so decompressing it would throw
+    Bytes invalidBytes = Bytes.fromHexString("0x" + "ff".repeat(48));
+    BLSPublicKey publicKey =
+        BLSPublicKey.fromBytes(SSZ.encode(writer -> writer.writeFixedBytes(invalidBytes)));
+    assertEquals(invalidBytes, publicKey.toBytesCompressed());
+    assertEquals(publicKey, BLSPublicKey.fromBytesCompressed(invalidBytes));
+  }
+
+  @Test
+  void succeedsWhenDeserialisedPublicKeysShareTheDecompressedKey() {
+    Bytes bytes = BLSPublicKey.random(3).toBytes();
+    BLSPublicKey publicKey1 = BLSPublicKey.fromBytes(bytes);
+    BLSPublicKey publicKey2 = BLSPublicKey.fromBytes(bytes);
+    assertSame(publicKey1.getPublicKey(), publicKey2.getPublicKey());
+  }
 }
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.util.bls;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.junit.jupiter.api.Test;
+import tech.devgao.hailong.util.async.SafeFuture;
+import tech.devgao.hailong.util.async.StubAsyncRunner;
+
+class BLSSignatureBatcherTest {
+
+  private static final Bytes DOMAIN = Bytes.wrap(new byte[8]);
+
+  private final StubAsyncRunner asyncRunner = new StubAsyncRunner();
+  private final BLSSignatureBatcher batcher = new BLSSignatureBatcher(asyncRunner, 4, 10);
+
+  @Test
+  void shouldVerifyBatchOnceFull() {
+    final SafeFuture<Boolean> first = verify(validSignature(1));
+    final SafeFuture<Boolean> second = verify(validSignature(2));
+    final SafeFuture<Boolean> third = verify(validSignature(3));
+    assertThat(first).isNotDone();
+
+    final SafeFuture<Boolean> fourth = verify(validSignature(4));
+    assertThat(first).isCompletedWithValue(true);
+    assertThat(second).isCompletedWithValue(true);
+    assertThat(third).isCompletedWithValue(true);
+    assertThat(fourth).isCompletedWithValue(true);
+  }
+
+  @Test
+  void shouldVerifyPartialBatchAfterDelay() {
+    final SafeFuture<Boolean> first = verify(validSignature(1));
+    final SafeFuture<Boolean> second = verify(invalidSignature(2));
+    assertThat(asyncRunner.countDelayedActions()).isEqualTo(1);
+    assertThat(first).isNotDone();
+
+    asyncRunner.executeQueuedActions();
+    assertThat(first).isCompletedWithValue(true);
+    assertThat(second).isCompletedWithValue(false);
+  }
+
+  @Test
+  void shouldIsolateInvalidSignaturesInFailedBatch() {
+    final SafeFuture<Boolean> first = verify(validSignature(1));
+    final SafeFuture<Boolean> second = verify(validSignature(2));
+    final SafeFuture<Boolean> third = verify(invalidSignature(3));
+    final SafeFuture<Boolean> fourth = verify(validSignature(4));
+
+    assertThat(first).isCompletedWithValue(true);
+    assertThat(second).isCompletedWithValue(true);
+    assertThat(third).isCompletedWithValue(false);
+    assertThat(fourth).isCompletedWithValue(true);
+  }
+
+  @Test
+  void shouldIsolateUndecodablePublicKeyInFailedBatch() {
+    final SafeFuture<Boolean> first = verify(validSignature(1));
+    final SafeFuture<Boolean> second = verify(malformedPublicKey(2));
+    final SafeFuture<Boolean> third = verify(validSignature(3));
+    final SafeFuture<Boolean> fourth = verify(validSignature(4));
+
+    assertThat(first).isCompletedWithValue(true);
+    assertThat(second).isCompletedWithValue(false);
+    assertThat(third).isCompletedWithValue(true);
+    assertThat(fourth).isCompletedWithValue(true);
+  }
+
+  @Test
+  void shouldIgnoreDelayForBatchAlreadyVerified() {
+    for (int i = 0; i < 4; i++) {
+      verify(validSignature(i)).reportExceptions();
+    }
+    asyncRunner.executeQueuedActions();
+
+    final SafeFuture<Boolean> next = verify(validSignature(5));
+    assertThat(next).isNotDone();
+    assertThat(asyncRunner.countDelayedActions()).isEqualTo(1);
+    asyncRunner.executeQueuedActions();
+    assertThat(next).isCompletedWithValue(true);
+  }
+
+  @Test
+  void shouldFailWithoutQueueingSignaturesWhenCheckFails() {
+    final SafeFuture<Boolean> result =
+        batcher.verify(
+            verifier -> {
+              validSignature(1).verify(verifier);
+              return false;
+            });
+
+    assertThat(result).isCompletedWithValue(false);
+  }
+
+  @Test
+  void shouldSucceedWhenCheckHasNoSignatures() {
+    assertThat(batcher.verify(verifier -> true)).isCompletedWithValue(true);
+  }
+
+  private SafeFuture<Boolean> verify(final SignatureCheck check) {
+    return batcher.verify(
+        verifier -> {
+          check.verify(verifier);
+          return true;
+        });
+  }
+
+  private SignatureCheck validSignature(final int seed) {
+    final BLSKeyPair keyPair = BLSKeyPair.random(seed);
+    final Bytes32 message = Bytes32.random();
+    final BLSSignature signature = BLSSignature.sign(keyPair, message, DOMAIN);
+    return verifier -> verifier.verify(keyPair.getPublicKey(), message, signature, DOMAIN);
+  }
+
+  private SignatureCheck invalidSignature(final int seed) {
+    final BLSKeyPair keyPair = BLSKeyPair.random(seed);
+    final BLSSignature signature = BLSSignature.sign(keyPair, Bytes32.random(), DOMAIN);
+    return verifier -> verifier.verify(keyPair.getPublicKey(), Bytes32.random(), signature, DOMAIN);
+  }
+
+  private SignatureCheck malformedPublicKey(final int seed) {
+    final BLSKeyPair keyPair = BLSKeyPair.random(seed);
+    final Bytes32 message = Bytes32.random();
+    final BLSSignature signature = BLSSignature.sign(keyPair, message, DOMAIN);
+    final byte[] keyBytes = new byte[BLSPublicKey.BLS_PUBKEY_SIZE];
+    Arrays.fill(keyBytes, (byte) 0xff);
+    final BLSPublicKey publicKey = BLSPublicKey.fromBytesCompressed(Bytes.wrap(keyBytes));
+    return verifier -> verifier.verify(publicKey, message, signature, DOMAIN);
+  }
+
+  private interface SignatureCheck {
+    void verify(BLSSignatureVerifier verifier);
+  }
+}
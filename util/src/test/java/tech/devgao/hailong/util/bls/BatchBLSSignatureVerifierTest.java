@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.util.bls;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.junit.jupiter.api.Test;
+
+class BatchBLSSignatureVerifierTest {
+
+  private static final Bytes DOMAIN_1 = Bytes.wrap(new byte[8]);
+  private static final Bytes DOMAIN_2 = Bytes.fromHexString("0x0100000000000000");
+
+  private final BatchBLSSignatureVerifier verifier = new BatchBLSSignatureVerifier();
+
+  @Test
+  void succeedsWhenBatchIsEmpty() {
+    assertTrue(verifier.batchVerify());
+  }
+
+  @Test
+  void succeedsWhenAllSignaturesAreValid() {
+    for (int i = 0; i < 5; i++) {
+      addSignature(BLSKeyPair.random(i), Bytes32.random(), i % 2 == 0 ? DOMAIN_1 : DOMAIN_2);
+    }
+    assertEquals(5, verifier.size());
+    assertTrue(verifier.batchVerify());
+  }
+
+  @Test
+  void failsWhenOneSignatureIsForADifferentMessage() {
+    addSignature(BLSKeyPair.random(1), Bytes32.random(), DOMAIN_1);
+    final BLSKeyPair keyPair = BLSKeyPair.random(2);
+    assertTrue(
+        verifier.verify(
+            keyPair.getPublicKey(),
+            Bytes32.random(),
+            BLSSignature.sign(keyPair, Bytes32.random(), DOMAIN_1),
+            DOMAIN_1));
+    addSignature(BLSKeyPair.random(3), Bytes32.random(), DOMAIN_2);
+
+    assertFalse(verifier.batchVerify());
+  }
+
+  @Test
+  void failsWhenSignaturesAreSwapped() {
+    final BLSKeyPair keyPair1 = BLSKeyPair.random(1);
+    final BLSKeyPair keyPair2 = BLSKeyPair.random(2);
+    final Bytes32 message1 = Bytes32.random();
+    final Bytes32 message2 = Bytes32.random();
+    verifier.verify(
+        keyPair1.getPublicKey(),
+        message1,
+        BLSSignature.sign(keyPair2, message2, DOMAIN_1),
+        DOMAIN_1);
+    verifier.verify(
+        keyPair2.getPublicKey(),
+        message2,
+        BLSSignature.sign(keyPair1, message1, DOMAIN_1),
+        DOMAIN_1);
+
+    assertFalse(verifier.batchVerify());
+  }
+
+  private void addSignature(final BLSKeyPair keyPair, final Bytes32 message, final Bytes domain) {
+    verifier.verify(
+        keyPair.getPublicKey(), message, BLSSignature.sign(keyPair, message, domain), domain);
+  }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2020 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.util.collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class LimitedMapTest {
+
+  @Test
+  public void create_evictLeastRecentlyAccessed() {
+    final Map<Integer, String> map = LimitedMap.create(2);
+    map.put(1, "a");
+    map.put(2, "b");
+    assertThat(map.size()).isEqualTo(2);
+
+    // Access entry 1 then add a new entry that will put us over the limit
+    assertThat(map.get(1)).isEqualTo("a");
+
+    map.put(3, "c");
+    assertThat(map.size()).isEqualTo(2);
+    // Entry 2 should have been evicted
+    assertThat(map).containsOnlyKeys(1, 3);
+  }
+}
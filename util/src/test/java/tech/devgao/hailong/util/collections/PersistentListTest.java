@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.util.collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+public class PersistentListTest {
+
+  @Test
+  public void add_shouldGrowAcrossTrieLevels() {
+    final PersistentList<Integer> list = new PersistentList<>();
+    final int size = 32 * 32 * 32 + 33;
+    for (int i = 0; i < size; i++) {
+      list.add(i);
+    }
+    assertThat(list).hasSize(size);
+    for (int i = 0; i < size; i++) {
+      assertThat(list.get(i)).isEqualTo(i);
+    }
+  }
+
+  @Test
+  public void set_shouldNotAffectCopy() {
+    final PersistentList<Integer> original = listOf(2000);
+    final PersistentList<Integer> copy = new PersistentList<>(original);
+
+    copy.set(5, -5);
+    copy.set(1999, -1999);
+    original.set(100, -100);
+
+    assertThat(original.get(5)).isEqualTo(5);
+    assertThat(original.get(1999)).isEqualTo(1999);
+    assertThat(original.get(100)).isEqualTo(-100);
+    assertThat(copy.get(5)).isEqualTo(-5);
+    assertThat(copy.get(1999)).isEqualTo(-1999);
+    assertThat(copy.get(100)).isEqualTo(100);
+  }
+
+  @Test
+  public void add_shouldNotAffectCopy() {
+    final PersistentList<Integer> original = listOf(64);
+    final PersistentList<Integer> copy = new PersistentList<>(original);
+
+    copy.add(64);
+    original.add(-64);
+
+    assertThat(original).hasSize(65);
+    assertThat(copy).hasSize(65);
+    assertThat(original.get(64)).isEqualTo(-64);
+    assertThat(copy.get(64)).isEqualTo(64);
+  }
+
+  @Test
+  public void addAndRemoveAtIndex_shouldShiftElements() {
+    final PersistentList<Integer> list = listOf(40);
+    list.add(3, -3);
+    assertThat(list).hasSize(41);
+    assertThat(list.subList(2, 5)).containsExactly(2, -3, 3);
+
+    assertThat(list.remove(3)).isEqualTo(-3);
+    assertThat(list).isEqualTo(expected(40));
+  }
+
+  @Test
+  public void clear_shouldNotAffectCopy() {
+    final PersistentList<Integer> original = listOf(100);
+    final PersistentList<Integer> copy = new PersistentList<>(original);
+
+    original.clear();
+
+    assertThat(original).isEmpty();
+    assertThat(copy).isEqualTo(expected(100));
+  }
+
+  @Test
+  public void get_shouldRejectOutOfBoundsIndex() {
+    final PersistentList<Integer> list = listOf(3);
+    assertThatThrownBy(() -> list.get(3)).isInstanceOf(IndexOutOfBoundsException.class);
+    assertThatThrownBy(() -> list.set(-1, 0)).isInstanceOf(IndexOutOfBoundsException.class);
+  }
+
+  private PersistentList<Integer> listOf(final int size) {
+    return new PersistentList<>(expected(size));
+  }
+
+  private List<Integer> expected(final int size) {
+    return IntStream.range(0, size).boxed().collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2020 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.util.hashtree;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.primitives.UnsignedLong;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.ssz.SSZ;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import tech.devgao.hailong.util.SSZTypes.SSZList;
+import tech.devgao.hailong.util.SSZTypes.SSZVector;
+import tech.devgao.hailong.util.hashtree.HashTreeUtil.SSZTypes;
+
+public class HashTreeUtilTest {
+
+  private static final long LIST_LIMIT = 1L << 40;
+
+  @ParameterizedTest
+  @ValueSource(ints = {0, 1, 31, 32, 33, 1024, 1056, 1057, 40000})
+  public void hash_tree_root_list_composite_shouldMatchFullHashAfterUpdates(final int size) {
+    final SSZList<Merkleizable> list =
+        new SSZList<>(
+            IntStream.range(0, size).mapToObj(this::element).collect(Collectors.toList()),
+            LIST_LIMIT,
+            Merkleizable.class);
+    assertThat(HashTreeUtil.hash_tree_root_list_composite(LIST_LIMIT, list))
+        .isEqualTo(HashTreeUtil.hash_tree_root(SSZTypes.LIST_OF_COMPOSITE, LIST_LIMIT, list));
+
+    final SSZList<Merkleizable> copy = new SSZList<>(list);
+    for (int i = 0; i < size; i += 997) {
+      copy.set(i, element(-i - 1));
+    }
+    copy.add(element(size));
+    assertThat(HashTreeUtil.hash_tree_root_list_composite(LIST_LIMIT, copy))
+        .isEqualTo(HashTreeUtil.hash_tree_root(SSZTypes.LIST_OF_COMPOSITE, LIST_LIMIT, copy));
+    assertThat(HashTreeUtil.hash_tree_root_list_composite(LIST_LIMIT, list))
+        .isEqualTo(HashTreeUtil.hash_tree_root(SSZTypes.LIST_OF_COMPOSITE, LIST_LIMIT, list));
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {0, 3, 32, 129, 5000})
+  public void hash_tree_root_list_unsigned_long_shouldMatchFullHashAfterUpdates(final int size) {
+    final SSZList<UnsignedLong> list =
+        new SSZList<>(
+            IntStream.range(0, size).mapToObj(UnsignedLong::valueOf).collect(Collectors.toList()),
+            LIST_LIMIT,
+            UnsignedLong.class);
+    assertThat(HashTreeUtil.hash_tree_root_list_unsigned_long(LIST_LIMIT, list))
+        .isEqualTo(HashTreeUtil.hash_tree_root_list_ul(LIST_LIMIT, encode(list)));
+
+    for (int i = 0; i < size; i += 61) {
+      list.set(i, UnsignedLong.valueOf(size + i));
+    }
+    assertThat(HashTreeUtil.hash_tree_root_list_unsigned_long(LIST_LIMIT, list))
+        .isEqualTo(HashTreeUtil.hash_tree_root_list_ul(LIST_LIMIT, encode(list)));
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 64, 8192, 65536})
+  public void hash_tree_root_vector_bytes32_shouldMatchFullHashAfterUpdates(final int size) {
+    final SSZVector<Bytes32> vector = new SSZVector<>(size, Bytes32.ZERO);
+    assertThat(HashTreeUtil.hash_tree_root_vector_bytes32(vector))
+        .isEqualTo(HashTreeUtil.hash_tree_root(SSZTypes.VECTOR_OF_COMPOSITE, vector));
+
+    vector.set(size - 1, Bytes32.fromHexStringLenient("0x1234"));
+    vector.set(size / 2, Bytes32.fromHexStringLenient("0x5678"));
+    assertThat(HashTreeUtil.hash_tree_root_vector_bytes32(vector))
+        .isEqualTo(HashTreeUtil.hash_tree_root(SSZTypes.VECTOR_OF_COMPOSITE, vector));
+  }
+
+  private Merkleizable element(final int value) {
+    final Bytes32 root = Bytes32.leftPad(Bytes.ofUnsignedInt(value & 0xFFFFFFFFL));
+    return () -> root;
+  }
+
+  private List<Bytes> encode(final List<UnsignedLong> values) {
+    return values.stream()
+        .map(value -> SSZ.encodeUInt64(value.longValue()))
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2020 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.util.mikuli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.apache.milagro.amcl.BLS381.BIG;
+import org.junit.jupiter.api.Test;
+
+class AtePairingTest {
+
+  @Test
+  void succeedsWhenPairProductOfOnePairMatchesPair() {
+    G1Point p1 = G1Point.random(1L);
+    G2Point p2 = G2Point.random(2L);
+    assertEquals(AtePairing.pair(p1, p2), AtePairing.pairProduct(List.of(p1), List.of(p2)));
+  }
+
+  @Test
+  void succeedsWhenPairProductMatchesProductOfPairs() {
+    G1Point a1 = G1Point.random(1L);
+    G1Point b1 = G1Point.random(2L);
+    G1Point c1 = G1Point.random(3L);
+    G2Point a2 = G2Point.random(4L);
+    G2Point b2 = G2Point.random(5L);
+    G2Point c2 = G2Point.random(6L);
+    GTPoint expected =
+        AtePairing.pair(a1, a2).mul(AtePairing.pair(b1, b2)).mul(AtePairing.pair(c1, c2));
+    assertEquals(expected, AtePairing.pairProduct(List.of(a1, b1, c1), List.of(a2, b2, c2)));
+  }
+
+  @Test
+  void succeedsWhenPairProductIsUnityForBilinearPairs() {
+    Scalar scalar = new Scalar(new BIG(12345));
+    G1Point p1 = G1Point.random(1L);
+    G2Point p2 = G2Point.random(2L);
+    assertTrue(
+        AtePairing.pairProduct(List.of(p1.mul(scalar), p1.neg()), List.of(p2, p2.mul(scalar)))
+            .isUnity());
+  }
+
+  @Test
+  void succeedsWhenPairProductIsNotUnityForUnrelatedPairs() {
+    G1Point p1 = G1Point.random(1L);
+    G2Point p2 = G2Point.random(2L);
+    assertFalse(
+        AtePairing.pairProduct(List.of(p1, p1.neg()), List.of(p2, G2Point.random(3L))).isUnity());
+  }
+}
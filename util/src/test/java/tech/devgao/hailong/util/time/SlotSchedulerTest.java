@@ -0,0 +1,128 @@
+/*
+ * Copyright 2019 Developer Gao.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package tech.devgao.hailong.util.time;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import com.google.common.primitives.UnsignedLong;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import tech.devgao.hailong.util.time.SlotScheduler.SlotEventHandler;
+
+class SlotSchedulerTest {
+  private static final int SECONDS_PER_SLOT = 12;
+  private static final UnsignedLong GENESIS_TIME = UnsignedLong.valueOf(10_000);
+
+  private final ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+  private final SlotEventHandler handler = mock(SlotEventHandler.class);
+  private final List<Runnable> scheduledTasks = new ArrayList<>();
+  private final List<Long> scheduledDelays = new ArrayList<>();
+  // The wall clock is deliberately unrelated to the monotonic clock
+  private long wallTimeMillis = (GENESIS_TIME.longValue() + 30) * 1000;
+  private long monotonicNanos = 123_456_789;
+
+  private final SlotScheduler scheduler =
+      new SlotScheduler(
+          executor,
+          () -> UnsignedLong.valueOf(wallTimeMillis),
+          () -> monotonicNanos,
+          SECONDS_PER_SLOT,
+          handler);
+
+  @BeforeEach
+  void setUp() {
+    doAnswer(
+            invocation -> {
+              scheduledTasks.add(invocation.getArgument(0));
+              final long delay = invocation.getArgument(1);
+              final TimeUnit unit = invocation.getArgument(2);
+              scheduledDelays.add(unit.toMillis(delay));
+              return null;
+            })
+        .when(executor)
+        .schedule(any(Runnable.class), anyLong(), any());
+  }
+
+  @Test
+  void shouldFireDeadlinesAtOffsetsFromGenesis() {
+    // 30 seconds after genesis is 6 seconds into slot 2
+    scheduler.start(GENESIS_TIME, UnsignedLong.valueOf(2));
+    runNextTask();
+    runNextTask();
+    advanceTimeMillis(2000);
+    runNextTask();
+    // Changes to the wall clock don't affect the schedule
+    wallTimeMillis += 60_000;
+    advanceTimeMillis(4000);
+    runNextTask();
+
+    // Deadlines that had already passed fire immediately
+    assertThat(scheduledDelays).containsExactly(0L, 0L, 2000L, 4000L, 4000L);
+    final InOrder inOrder = inOrder(handler);
+    inOrder.verify(handler).onSlotStart(UnsignedLong.valueOf(2));
+    inOrder.verify(handler).onAttestationDue(UnsignedLong.valueOf(2));
+    inOrder.verify(handler).onAggregationDue(UnsignedLong.valueOf(2));
+    inOrder.verify(handler).onSlotStart(UnsignedLong.valueOf(3));
+  }
+
+  @Test
+  void shouldWaitForGenesis() {
+    wallTimeMillis = GENESIS_TIME.longValue() * 1000 - 1500;
+    scheduler.start(GENESIS_TIME, UnsignedLong.ZERO);
+
+    assertThat(scheduledDelays).containsExactly(1500L);
+  }
+
+  @Test
+  void shouldContinueAfterHandlerFails() {
+    doThrow(new IllegalStateException("Failed")).when(handler).onSlotStart(UnsignedLong.valueOf(2));
+    scheduler.start(GENESIS_TIME, UnsignedLong.valueOf(2));
+    runNextTask();
+    runNextTask();
+
+    verify(handler).onAttestationDue(UnsignedLong.valueOf(2));
+  }
+
+  @Test
+  void shouldNotScheduleDeadlinesAfterStopping() {
+    scheduler.start(GENESIS_TIME, UnsignedLong.valueOf(2));
+    scheduler.stop();
+    runNextTask();
+
+    verify(executor).shutdownNow();
+    assertThat(scheduledTasks).isEmpty();
+  }
+
+  private void advanceTimeMillis(final long millis) {
+    wallTimeMillis += millis;
+    monotonicNanos += TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+
+  private void runNextTask() {
+    assertThat(scheduledTasks).isNotEmpty();
+    scheduledTasks.remove(0).run();
+  }
+}
@@ -68,6 +68,7 @@ import tech.devgao.hailong.statetransition.events.BroadcastAttestationEvent;
 import tech.devgao.hailong.statetransition.events.ProcessedAggregateEvent;
 import tech.devgao.hailong.statetransition.events.ProcessedAttestationEvent;
 import tech.devgao.hailong.statetransition.util.EpochProcessingException;
+import tech.devgao.hailong.statetransition.util.ProposerDutyIndex;
 import tech.devgao.hailong.statetransition.util.SlotProcessingException;
 import tech.devgao.hailong.storage.ChainStorageClient;
 import tech.devgao.hailong.storage.Store;
@@ -106,11 +107,12 @@ public class ValidatorCoordinator {
       ChainStorageClient chainStorageClient,
       AttestationAggregator attestationAggregator,
       BlockAttestationsPool blockAttestationsPool,
+      ProposerDutyIndex proposerDutyIndex,
       HailongConfiguration config) {
     this.eventBus = eventBus;
     this.chainStorageClient = chainStorageClient;
     this.stateTransition = new StateTransition(false);
-    this.blockCreator = new BlockProposalUtil(stateTransition);
+    this.blockCreator = new BlockProposalUtil(stateTransition, proposerDutyIndex);
     this.validators = initializeValidators(config);
     this.attestationAggregator = attestationAggregator;
     this.blockAttestationsPool = blockAttestationsPool;
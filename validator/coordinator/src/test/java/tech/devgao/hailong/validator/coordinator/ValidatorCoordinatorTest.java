@@ -33,8 +33,10 @@ import tech.devgao.hailong.datastructures.util.MockStartValidatorKeyPairFactory;
 import tech.devgao.hailong.statetransition.AttestationAggregator;
 import tech.devgao.hailong.statetransition.BeaconChainUtil;
 import tech.devgao.hailong.statetransition.BlockAttestationsPool;
+import tech.devgao.hailong.statetransition.StateTransition;
 import tech.devgao.hailong.statetransition.events.BlockProposedEvent;
 import tech.devgao.hailong.statetransition.events.BroadcastAttestationEvent;
+import tech.devgao.hailong.statetransition.util.ProposerDutyIndex;
 import tech.devgao.hailong.storage.ChainStorageClient;
 import tech.devgao.hailong.storage.events.SlotEvent;
 import tech.devgao.hailong.util.bls.BLSKeyPair;
@@ -121,6 +123,7 @@ public class ValidatorCoordinatorTest {
             storageClient,
             attestationAggregator,
             blockAttestationsPool,
+            new ProposerDutyIndex(new StateTransition(false)),
             config);
 
     chainUtil.initializeStorage();